@@ -4,7 +4,10 @@ import foundation.omni.BaseMainNetSpec
 import foundation.omni.CurrencyID
 import foundation.omni.consensus.ConsensusComparison
 import foundation.omni.consensus.ConsensusFetcher
+import foundation.omni.consensus.ConsensusVerifier
 import foundation.omni.consensus.MasterCoreConsensusTool
+import spock.lang.IgnoreIf
+import spock.lang.Requires
 import spock.lang.Shared
 import spock.lang.Subject
 import spock.lang.Unroll
@@ -45,6 +48,7 @@ abstract class BaseChestConsensusSpec extends BaseMainNetSpec {
     }
 
     @Unroll
+    @IgnoreIf({ Boolean.getBoolean("consensus.aggregate") })
     def "#address #entry1 == #entry2"() {
         expect:
         entry1.balance == entry2.balance
@@ -53,4 +57,30 @@ abstract class BaseChestConsensusSpec extends BaseMainNetSpec {
         [address, entry1, entry2] << comparison
     }
 
-}
\ No newline at end of file
+    /**
+     * Aggregated alternative to the per-address feature, enabled with -Dconsensus.aggregate=true
+     * <p>
+     * Fails with a summary of the first {@code consensus.maxDifferences} (default 20) differences.
+     * If {@code consensus.diffDir} is set, all differences are written to a file in that directory.
+     */
+    @Unroll
+    @Requires({ Boolean.getBoolean("consensus.aggregate") })
+    def "all balances (without reserved) match in a single pass (#currency)"() {
+        when:
+        def report = new ConsensusVerifier(Runtime.runtime.availableProcessors(), false).verify(comparison)
+        def diffDir = System.getProperty("consensus.diffDir")
+        if (diffDir && !report.mismatches.isEmpty()) {
+            def file = new File(diffDir, "consensus-diff-${currency.longValue()}-${comparison.c2.sourceType.replaceAll(/\W+/, "_")}.tsv")
+            file.parentFile.mkdirs()
+            report.writeDiff(file)
+            println "Consensus differences written to ${file}"
+        }
+
+        then:
+        assert report.mismatches.isEmpty(), report.summary(Integer.getInteger("consensus.maxDifferences", 20))
+
+        where:
+        currency = comparison.c1.currencyID
+    }
+
+}
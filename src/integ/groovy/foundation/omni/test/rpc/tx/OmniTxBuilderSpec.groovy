@@ -0,0 +1,81 @@
+package foundation.omni.test.rpc.tx
+
+import com.google.bitcoin.core.Address
+import com.msgilligan.bitcoin.rpc.BitcoinClient
+import foundation.omni.BaseRegTestSpec
+import foundation.omni.MPRegTestParams
+import foundation.omni.tx.ClassBEncoder
+import foundation.omni.tx.OmniPayloads
+import foundation.omni.tx.OmniTxBuilder
+import foundation.omni.tx.SpendableOutput
+import spock.lang.Shared
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Regression tests comparing locally encoded transactions against those built by Omni Core's sendrawtx_MP
+ */
+class OmniTxBuilderSpec extends BaseRegTestSpec {
+
+    final static BigDecimal startBTC = 1.0
+    final static BigDecimal startMSC = 50.0
+
+    @Shared
+    OmniTxBuilder builder = new OmniTxBuilder(MPRegTestParams.get())
+
+    def "Class B data outputs match those created by sendrawtx_MP byte-for-byte"() {
+        given:
+        def senderAddress = createFundedAddress(startBTC, startMSC)
+        def receiverAddress = getNewAddress()
+        def senderPubKey = (validateAddress(senderAddress).pubkey as String).decodeHex()
+        def payload = OmniPayloads.simpleSend(MSC, 100000000L)
+
+        when: "Omni Core creates the transaction"
+        def txid = sendrawtx_MP(senderAddress, BitcoinClient.byteArrayToHexString(payload), receiverAddress)
+        generateBlock()
+        def nodeTx = getRawTransaction(txid)
+        def nodeScripts = nodeTx.outputs*.scriptPubKey.findAll { it.sentToMultiSig }
+
+        and: "we encode the same payload locally"
+        def localScripts = ClassBEncoder.encode(senderAddress.toString(), senderPubKey, payload)
+
+        then: "both contain the same obfuscated packets (the randomized last key byte aside)"
+        nodeScripts.size() == localScripts.size()
+        [nodeScripts, localScripts].transpose().every { node, local ->
+            def nodeKeys = ClassBEncoder.multisigKeys(node.program)
+            def localKeys = ClassBEncoder.multisigKeys(local.program)
+            nodeKeys.size() == localKeys.size() &&
+                [nodeKeys, localKeys].transpose().every { a, b -> a[0..31] == b[0..31] }
+        }
+
+        and: "both decode to the same payload"
+        ClassBEncoder.decode(senderAddress.toString(), nodeScripts) == ClassBEncoder.decode(senderAddress.toString(), localScripts)
+    }
+
+    def "A locally built #encoding simple send is valid"() {
+        given:
+        def senderAddress = createFundedAddress(startBTC, startMSC)
+        def receiverAddress = getNewAddress()
+        def senderPubKey = (validateAddress(senderAddress).pubkey as String).decodeHex()
+        def unspent = listUnspent(0, 999999, [senderAddress]).collect { SpendableOutput.fromListUnspent(it) }
+
+        when: "we build the transaction locally and let the wallet sign it"
+        def tx = builder.simpleSend(senderAddress, senderPubKey, unspent, receiverAddress, MSC, 150000000L, encoding)
+        def signed = signRawTransaction(BitcoinClient.transactionToHex(tx))
+        def txid = sendRawTransaction(signed.hex as String)
+        generateBlock()
+
+        then: "Omni Core accepts it as a valid simple send"
+        def transaction = getTransactionMP(txid)
+        transaction.valid == true
+        transaction.confirmations == 1
+        transaction.sendingaddress == senderAddress.toString()
+        transaction.referenceaddress == receiverAddress.toString()
+
+        and: "the receiver is credited"
+        getbalance_MP(receiverAddress, MSC).balance == 1.5
+
+        where:
+        encoding << [OmniTxBuilder.Encoding.CLASS_B, OmniTxBuilder.Encoding.CLASS_C]
+    }
+}
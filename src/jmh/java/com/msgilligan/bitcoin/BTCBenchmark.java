@@ -0,0 +1,39 @@
+package com.msgilligan.bitcoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between BTC and satoshis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BTCBenchmark {
+    private BigInteger satoshis = BigInteger.valueOf(123456789012L);
+    private BigDecimal btc = new BigDecimal("1234.56789012");
+
+    @Benchmark
+    public BigDecimal satoshisToBTC() {
+        return BTC.satoshisToBTC(satoshis);
+    }
+
+    @Benchmark
+    public BigInteger btcToSatoshis() {
+        return BTC.btcToSatoshis(btc);
+    }
+}
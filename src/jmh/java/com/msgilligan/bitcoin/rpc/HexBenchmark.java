@@ -0,0 +1,51 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.google.bitcoin.core.ECKey;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.params.RegTestParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex encoding and decoding of raw transactions in {@link BitcoinClient}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HexBenchmark {
+    private Transaction transaction;
+    private String transactionHex;
+
+    @Setup
+    public void setup() {
+        transaction = new Transaction(RegTestParams.get());
+        for (int i = 0; i < 10; i++) {
+            transaction.addOutput(BigInteger.valueOf(100000 + i), new ECKey().toAddress(RegTestParams.get()));
+        }
+        transactionHex = BitcoinClient.transactionToHex(transaction);
+    }
+
+    @Benchmark
+    public String transactionToHex() {
+        return BitcoinClient.transactionToHex(transaction);
+    }
+
+    @Benchmark
+    public byte[] hexStringToByteArray() {
+        return BitcoinClient.hexStringToByteArray(transactionHex);
+    }
+}
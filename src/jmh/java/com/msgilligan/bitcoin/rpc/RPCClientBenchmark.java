@@ -0,0 +1,69 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON-RPC request serialization and response parsing, as done by {@link RPCClient} for every call
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RPCClientBenchmark {
+    private RPCClient client;
+    private ObjectMapper mapper;
+    private String balancesResponse;
+    private String blockCountResponse;
+
+    @Setup
+    public void setup() throws Exception {
+        client = new RPCClient(new URL("http://localhost:1"), "user", "pass");
+        mapper = new ObjectMapper();
+        StringBuilder json = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"address\":\"1Address").append(i).append("xxxxxxxxxxxxxxxxxxxxxx\",")
+                .append("\"balance\":\"").append(i).append(".12345678\",\"reserved\":\"0.00000000\"}");
+        }
+        json.append("],\"error\":null,\"id\":\"1\"}");
+        balancesResponse = json.toString();
+        blockCountResponse = "{\"result\":340000,\"error\":null,\"id\":\"1\"}";
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() throws Exception {
+        List<Object> params = new ArrayList<Object>(Arrays.asList((Object) "1EXoDusjGwvnjZUyKkxZ4UHEf77z6A5S4P", 1L));
+        return mapper.writeValueAsBytes(client.createRequest("getbalance_MP", params));
+    }
+
+    @Benchmark
+    public Map parseSmallResponse() throws Exception {
+        return mapper.readValue(blockCountResponse, Map.class);
+    }
+
+    @Benchmark
+    public Map parseBalancesResponse() throws Exception {
+        return mapper.readValue(balancesResponse, Map.class);
+    }
+}
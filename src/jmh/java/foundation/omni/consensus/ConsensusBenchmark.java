@@ -0,0 +1,68 @@
+package foundation.omni.consensus;
+
+import foundation.omni.CurrencyID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing consensus snapshots, as the consensus specs do for every address
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConsensusBenchmark {
+    @Param({"10000"})
+    public int holders;
+
+    private ConsensusSnapshot snapshot1;
+    private ConsensusSnapshot snapshot2;
+
+    @Setup
+    public void setup() {
+        SortedMap<String, ConsensusEntry> entries1 = new TreeMap<String, ConsensusEntry>();
+        SortedMap<String, ConsensusEntry> entries2 = new TreeMap<String, ConsensusEntry>();
+        for (int i = 0; i < holders; i++) {
+            String address = "1Address" + i;
+            ConsensusEntry entry = new ConsensusEntry(new BigDecimal(i), BigDecimal.ZERO);
+            entries1.put(address, entry);
+            /* Every tenth address only appears in the first snapshot */
+            if (i % 10 != 0) {
+                entries2.put(address, entry);
+            }
+        }
+        URI uri = URI.create("http://localhost");
+        snapshot1 = new ConsensusSnapshot(CurrencyID.MSC, 1L, "benchmark", uri, entries1);
+        snapshot2 = new ConsensusSnapshot(CurrencyID.MSC, 1L, "benchmark", uri, entries2);
+    }
+
+    @Benchmark
+    public void comparisonIteration(Blackhole blackhole) {
+        for (ConsensusEntryPair pair : new ConsensusComparison(snapshot1, snapshot2)) {
+            blackhole.consume(pair);
+        }
+    }
+
+    @Benchmark
+    public SortedMap<String, ConsensusEntry> getEntriesExcluding() {
+        return snapshot1.getEntriesExcluding("1Address5");
+    }
+}
@@ -0,0 +1,64 @@
+package foundation.omni.rpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import foundation.omni.CurrencyID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of {@code getallbalancesforid_MP} results into {@link MPBalanceEntry} objects,
+ * with the HTTP exchange replaced by a pre-parsed response
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MastercoinClientBenchmark {
+    @Param({"1000", "100000"})
+    public int holders;
+
+    private MastercoinClient client;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder json = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < holders; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"address\":\"1Address").append(i).append("xxxxxxxxxxxxxxxxxxxxxx\",")
+                .append("\"balance\":\"").append(i).append(".12345678\",\"reserved\":\"0.00000000\"}");
+        }
+        json.append("],\"error\":null,\"id\":\"1\"}");
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> response = new ObjectMapper().readValue(json.toString(), Map.class);
+        client = new MastercoinClient(new URL("http://localhost:1"), "user", "pass") {
+            @Override
+            public Map<String, Object> send(String method, List<Object> params) {
+                return response;
+            }
+        };
+    }
+
+    @Benchmark
+    public List<MPBalanceEntry> getallbalancesforid_MP() throws Exception {
+        return client.getallbalancesforid_MP(CurrencyID.MSC);
+    }
+}
@@ -1,5 +1,6 @@
 package foundation.omni.consensus
 
+import com.msgilligan.bitcoin.jfr.FlightEvent
 import groovy.transform.Immutable
 import foundation.omni.MPMainNetParams
 
@@ -20,10 +21,12 @@ class ConsensusComparison implements Iterable<ConsensusEntryPair>  {
     @Override
     Iterator<ConsensusEntryPair> iterator() {
         if (unionAddresses == null) {
+            FlightEvent.Instance event = ConsensusEvents.COMPARISON.begin()
             def c1Keys = c1.entries.keySet()
             def c2Keys = c2.entries.keySet()
             unionAddresses = c1Keys + c2Keys
             unionAddresses.remove(MPMainNetParams.ExodusAddress)
+            event.commit(c1.sourceType, c2.sourceType, c1.currencyID?.longValue() ?: 0L, unionAddresses.size(), -1)
         }
         return new PairIterator(unionAddresses.iterator())
     }
@@ -0,0 +1,108 @@
+package foundation.omni.consensus
+
+import foundation.omni.CurrencyID
+
+/**
+ * Result of verifying a ConsensusComparison in a single pass, see {@link ConsensusVerifier}
+ */
+class ConsensusReport {
+    final ConsensusSnapshot c1
+    final ConsensusSnapshot c2
+    /**
+     * Number of addresses compared (the union of both snapshots)
+     */
+    final int compared
+    /**
+     * All differing addresses, sorted by address. A missing entry is null.
+     */
+    final List<ConsensusEntryPair> mismatches
+    /**
+     * Number of addresses only in the second snapshot
+     */
+    final int missingIn1
+    /**
+     * Number of addresses only in the first snapshot
+     */
+    final int missingIn2
+    /**
+     * Total balance of the first snapshot minus the second, over all compared addresses
+     */
+    final BigDecimal balanceDelta
+    /**
+     * Total reserved amount of the first snapshot minus the second, over all compared addresses
+     */
+    final BigDecimal reservedDelta
+
+    ConsensusReport(ConsensusSnapshot c1, ConsensusSnapshot c2, int compared, List<ConsensusEntryPair> mismatches,
+                    int missingIn1, int missingIn2, BigDecimal balanceDelta, BigDecimal reservedDelta) {
+        this.c1 = c1
+        this.c2 = c2
+        this.compared = compared
+        this.mismatches = Collections.unmodifiableList(mismatches)
+        this.missingIn1 = missingIn1
+        this.missingIn2 = missingIn2
+        this.balanceDelta = balanceDelta
+        this.reservedDelta = reservedDelta
+    }
+
+    CurrencyID getCurrencyID() {
+        return c1.currencyID
+    }
+
+    boolean isHeightMatching() {
+        return c1.blockHeight == c2.blockHeight
+    }
+
+    /**
+     * @return true if the block heights and all compared balances match
+     */
+    boolean isConsistent() {
+        return heightMatching && mismatches.isEmpty()
+    }
+
+    /**
+     * A compact description: counts, totals and the first differences
+     *
+     * @param maxDifferences maximum number of differing addresses to list
+     */
+    String summary(int maxDifferences = 20) {
+        def out = new StringBuilder()
+        out << "Currency ${currencyID.longValue()}: ${c1.sourceType} (block ${c1.blockHeight}) vs ${c2.sourceType} (block ${c2.blockHeight})\n"
+        out << "${compared} addresses compared, ${mismatches.size()} differ"
+        out << " (${missingIn2} only in ${c1.sourceType}, ${missingIn1} only in ${c2.sourceType})\n"
+        out << "Total balance delta: ${balanceDelta.toPlainString()}, total reserved delta: ${reservedDelta.toPlainString()}\n"
+        mismatches.take(maxDifferences).each { pair ->
+            out << "  ${pair.address}: ${format(pair.entry1)} != ${format(pair.entry2)}\n"
+        }
+        if (mismatches.size() > maxDifferences) {
+            out << "  ... ${mismatches.size() - maxDifferences} more\n"
+        }
+        return out.toString()
+    }
+
+    /**
+     * Write every difference as tab-separated values, with a header line
+     */
+    void writeDiff(Writer writer) {
+        writer << "address\tbalance1\treserved1\tbalance2\treserved2\tbalanceDelta\n"
+        for (pair in mismatches) {
+            BigDecimal balance1 = pair.entry1?.balance ?: BigDecimal.ZERO
+            BigDecimal balance2 = pair.entry2?.balance ?: BigDecimal.ZERO
+            writer << pair.address << '\t' << amount(pair.entry1?.balance) << '\t' << amount(pair.entry1?.reserved)
+            writer << '\t' << amount(pair.entry2?.balance) << '\t' << amount(pair.entry2?.reserved)
+            writer << '\t' << (balance1 - balance2).toPlainString() << '\n'
+        }
+    }
+
+    void writeDiff(File file) {
+        file.withWriter("UTF-8") { Writer writer -> writeDiff(writer) }
+    }
+
+    private static String format(ConsensusEntry entry) {
+        return entry == null ? "missing" : "${entry.balance.toPlainString()}/${entry.reserved.toPlainString()}"
+    }
+
+    private static String amount(BigDecimal value) {
+        return value == null ? "" : value.toPlainString()
+    }
+}
@@ -0,0 +1,46 @@
+package foundation.omni.consensus
+
+import foundation.omni.PropertyType
+import foundation.omni.sto.StoCalculator
+import foundation.omni.sto.StoDistribution
+
+/**
+ * Previews "send to owners" transactions against a ConsensusSnapshot, without a node.
+ */
+class ConsensusStoCalculator {
+    private final StoCalculator calculator
+
+    ConsensusStoCalculator(StoCalculator calculator = new StoCalculator()) {
+        this.calculator = calculator
+    }
+
+    /**
+     * Compute the distribution of a "send to owners" transaction
+     *
+     * @param snapshot Balances of the property being sent
+     * @param sender Address sending the tokens
+     * @param amount Amount to send, in tokens
+     * @param type Whether the property is divisible
+     * @return Amounts received, in the property's smallest unit, and the fee in willets
+     */
+    StoDistribution calculate(ConsensusSnapshot snapshot, String sender, BigDecimal amount, PropertyType type) {
+        int size = snapshot.entries.size()
+        String[] addresses = new String[size]
+        long[] holdings = new long[size]
+        int i = 0
+        for (Map.Entry<String, ConsensusEntry> entry : snapshot.entries.entrySet()) {
+            addresses[i] = entry.key
+            holdings[i] = toUnits(entry.value.balance + entry.value.reserved, type)
+            i++
+        }
+        return calculator.calculate(sender, addresses, holdings, toUnits(amount, type))
+    }
+
+    /**
+     * Convert a token amount to the property's smallest unit
+     */
+    static long toUnits(BigDecimal amount, PropertyType type) {
+        BigDecimal units = (type == PropertyType.DIVISIBLE) ? amount.movePointRight(8) : amount
+        return units.longValueExact()
+    }
+}
@@ -1,5 +1,6 @@
 package foundation.omni.consensus
 
+import com.msgilligan.bitcoin.jfr.FlightEvent
 import foundation.omni.CurrencyID
 
 /**
@@ -10,7 +11,7 @@ abstract class ConsensusTool implements ConsensusFetcher {
     void run(List args) {
         String currencyString = args[0]
         Long currencyLong =  Long.parseLong(currencyString, 10)
-        CurrencyID currencyID = currencyString ? new CurrencyID(currencyLong) : CurrencyID.MSC
+        CurrencyID currencyID = currencyString ? CurrencyID.valueOf(currencyLong) : CurrencyID.MSC
 
         String fileName = args[1]
 
@@ -33,6 +34,16 @@ abstract class ConsensusTool implements ConsensusFetcher {
 
     }
 
+    /**
+     * Run one phase of fetching a snapshot, recorded as a {@link ConsensusEvents#PHASE} event
+     */
+    protected <T> T phase(String phase, CurrencyID currencyID, int attempt, Closure<T> body) {
+        FlightEvent.Instance event = ConsensusEvents.PHASE.begin()
+        T result = body.call()
+        event.commit(this.class.simpleName, currencyID.longValue(), phase, attempt)
+        return result
+    }
+
     void print(ConsensusSnapshot consensus) {
         consensus.entries.each {  address, ConsensusEntry bal ->
             println "${address}: ${bal.balance}"
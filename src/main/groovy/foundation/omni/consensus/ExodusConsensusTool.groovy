@@ -0,0 +1,61 @@
+package foundation.omni.consensus
+
+import com.msgilligan.bitcoin.rpc.RPCURL
+import foundation.omni.CurrencyID
+import foundation.omni.MPMainNetParams
+import foundation.omni.MPNetworkParameters
+import foundation.omni.exodus.ExodusPurchase
+import foundation.omni.exodus.ExodusReplay
+import foundation.omni.rpc.MastercoinClient
+
+/**
+ * Command-line tool and class for computing the MSC and TMSC balances created by the Exodus fundraiser,
+ * by replaying the fundraiser from a Bitcoin node.
+ *
+ * Development MSC is not included, so compare against other sources excluding the Exodus address.
+ */
+class ExodusConsensusTool extends ConsensusTool {
+    static def rpcuser = "bitcoinrpc"
+    static def rpcpassword = "pass"
+    protected MastercoinClient client
+    protected MPNetworkParameters params
+    private List<ExodusPurchase> purchases
+    private int replayedBlock
+
+    ExodusConsensusTool(MastercoinClient client, MPNetworkParameters params = MPMainNetParams.get())
+    {
+        this.client = client
+        this.params = params
+    }
+
+    public static void main(String[] args) {
+        MastercoinClient client = new MastercoinClient(RPCURL.defaultMainNetURL, rpcuser, rpcpassword)
+        ExodusConsensusTool tool = new ExodusConsensusTool(client)
+        tool.run(args.toList())
+    }
+
+    public ConsensusSnapshot getConsensusSnapshot(CurrencyID currencyID) {
+        if (currencyID != CurrencyID.MSC && currencyID != CurrencyID.TMSC) {
+            throw new IllegalArgumentException("The Exodus fundraiser only created MSC and TMSC")
+        }
+        List<ExodusPurchase> purchases = replay()
+        SortedMap<String, ConsensusEntry> entries = new TreeMap<String, ConsensusEntry>()
+        ExodusReplay.allocations(purchases).each { String address, Long willets ->
+            entries.put(address, new ConsensusEntry(balance: BigDecimal.valueOf(willets, 8), reserved: 0.0))
+        }
+        return new ConsensusSnapshot(currencyID, replayedBlock as Long, "Exodus Replay",
+                client.serverURL.toURI(), entries)
+    }
+
+    /**
+     * Replay the fundraiser once, as it created the same MSC and TMSC balances
+     */
+    protected synchronized List<ExodusPurchase> replay() {
+        if (purchases == null) {
+            ExodusReplay replay = new ExodusReplay(client, params)
+            purchases = replay.replay()
+            replayedBlock = replay.lastReplayedBlock
+        }
+        return purchases
+    }
+}
@@ -1,5 +1,6 @@
 package foundation.omni.consensus
 
+import com.msgilligan.bitcoin.jfr.FlightEvent
 import com.msgilligan.bitcoin.rpc.RPCURL
 import foundation.omni.CurrencyID
 import foundation.omni.rpc.MPBalanceEntry
@@ -24,21 +25,26 @@ class MasterCoreConsensusTool extends ConsensusTool {
         tool.run(args.toList())
     }
 
-    private SortedMap<String, ConsensusEntry> getConsensusForCurrency(CurrencyID currencyID) {
-        List<MPBalanceEntry> balances = client.getallbalancesforid_MP(currencyID)
+    private SortedMap<String, ConsensusEntry> getConsensusForCurrency(CurrencyID currencyID, int attempt) {
+        // Fetching includes the conversion to MPBalanceEntry, the RPC call event has the exchange and JSON parsing
+        List<MPBalanceEntry> balances = phase("fetch", currencyID, attempt) {
+            client.getallbalancesforid_MP(currencyID)
+        }
 
-        TreeMap<String, ConsensusEntry> map = [:]
+        return phase("build", currencyID, attempt) {
+            TreeMap<String, ConsensusEntry> map = [:]
 
-        balances.each { MPBalanceEntry item ->
+            balances.each { MPBalanceEntry item ->
 
-            String address = item.address
-            ConsensusEntry entry = itemToEntry(item)
+                String address = item.addressString
+                ConsensusEntry entry = itemToEntry(item)
 
-            if (address != "" && entry.balance > 0) {
-                map.put(address, entry)
+                if (address != "" && entry.balance > 0) {
+                    map.put(address, entry)
+                }
             }
+            return map
         }
-        return map;
     }
 
     private ConsensusEntry itemToEntry(MPBalanceEntry item) {
@@ -49,20 +55,26 @@ class MasterCoreConsensusTool extends ConsensusTool {
         /* Since getallbalancesforid_MP doesn't return the blockHeight, we have to check
          * blockHeight before and after the call to make sure it didn't change.
          */
-        Integer beforeBlockHeight = client.blockCount
+        FlightEvent.Instance snapshotEvent = ConsensusEvents.SNAPSHOT.begin()
+        int attempt = 0
+        Integer beforeBlockHeight = phase("height", currencyID, attempt) { client.blockCount }
         Integer curBlockHeight
         SortedMap<String, ConsensusEntry> entries
         while (true) {
-            entries = this.getConsensusForCurrency(currencyID)
-            curBlockHeight = client.blockCount
+            FlightEvent.Instance attemptEvent = ConsensusEvents.PHASE.begin()
+            entries = this.getConsensusForCurrency(currencyID, attempt)
+            curBlockHeight = phase("height", currencyID, attempt) { client.blockCount }
             if (curBlockHeight == beforeBlockHeight) {
                 // If blockHeight didn't change, we're done
                 break;
             }
             // Otherwise we have to try again
+            attemptEvent.commit(this.class.simpleName, currencyID.longValue(), "retry", attempt)
+            attempt++
             beforeBlockHeight = curBlockHeight
         }
         def snap = new ConsensusSnapshot(currencyID, curBlockHeight, "Master Core", client.serverURL.toURI(), entries);
+        snapshotEvent.commit(this.class.simpleName, currencyID.longValue(), curBlockHeight, entries.size(), attempt + 1)
         return snap
     }
 
@@ -1,5 +1,6 @@
 package foundation.omni.consensus
 
+import com.msgilligan.bitcoin.jfr.FlightEvent
 import groovy.json.JsonSlurper
 import foundation.omni.CurrencyID
 
@@ -26,22 +27,25 @@ class OmniwalletConsensusTool extends ConsensusTool {
         tool.run(args.toList())
     }
 
-    private SortedMap<String, ConsensusEntry> getConsensusForCurrency(URL consensusURL) {
+    private SortedMap<String, ConsensusEntry> getConsensusForCurrency(URL consensusURL, CurrencyID currencyID, int attempt) {
         def slurper = new JsonSlurper()
-        def balances = slurper.parse(consensusURL)
+        String balancesText = phase("fetch", currencyID, attempt) { consensusURL.getText("UTF-8") }
+        def balances = phase("parse", currencyID, attempt) { slurper.parseText(balancesText) }
 
-        TreeMap<String, ConsensusEntry> map = [:]
+        return phase("build", currencyID, attempt) {
+            TreeMap<String, ConsensusEntry> map = [:]
 
-        balances.each { item ->
+            balances.each { item ->
 
-            String address = item.address
-            ConsensusEntry entry = itemToEntry(item)
+                String address = item.address
+                ConsensusEntry entry = itemToEntry(item)
 
-            if (address != "" && entry.balance > 0) {
-                map.put(address, entry)
+                if (address != "" && entry.balance > 0) {
+                    map.put(address, entry)
+                }
             }
+            return map
         }
-        return map;
     }
 
     private ConsensusEntry itemToEntry(Object item) {
@@ -74,20 +78,26 @@ class OmniwalletConsensusTool extends ConsensusTool {
          * loop does not resolve that issue, it only makes sure the reported block height
          * matches the data returned.
          */
-        Integer beforeBlockHeight = currentBlockHeight()
+        FlightEvent.Instance snapshotEvent = ConsensusEvents.SNAPSHOT.begin()
+        int attempt = 0
+        Integer beforeBlockHeight = phase("height", currencyID, attempt) { currentBlockHeight() }
         Integer curBlockHeight
         SortedMap<String, ConsensusEntry> entries
         while (true) {
-            entries = this.getConsensusForCurrency(consensusURL)
-            curBlockHeight = currentBlockHeight()
+            FlightEvent.Instance attemptEvent = ConsensusEvents.PHASE.begin()
+            entries = this.getConsensusForCurrency(consensusURL, currencyID, attempt)
+            curBlockHeight = phase("height", currencyID, attempt) { currentBlockHeight() }
             if (curBlockHeight == beforeBlockHeight) {
                 // If blockHeight didn't change, we're done
                 break;
             }
             // Otherwise we have to try again
+            attemptEvent.commit(this.class.simpleName, currencyID.longValue(), "retry", attempt)
+            attempt++
             beforeBlockHeight = curBlockHeight
         }
         def snap = new ConsensusSnapshot(currencyID, curBlockHeight, "Omniwallet (Master tools)", consensusURL.toURI(), entries);
+        snapshotEvent.commit(this.class.simpleName, currencyID.longValue(), curBlockHeight, entries.size(), attempt + 1)
         return snap
     }
 }
@@ -7,6 +7,8 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -20,6 +22,7 @@ public abstract class CliCommand {
     static final String defaultproto = "http";
     static final String defaulthost = "127.0.0.1";
     static final int defaultport = 8332;
+    static final int defaulttestport = 18332;
     static final String defaultfile = "/";
     static final String rpcuser ="bitcoinrpc";
     static final String rpcpassword ="pass";
@@ -30,6 +33,8 @@ public abstract class CliCommand {
     protected String name;
     protected HelpFormatter formatter = null;
     protected BitcoinClient client = null;
+    protected PrintStream out = System.out;
+    private boolean resident = false;
 
     protected CliCommand(String name, CliOptions options, String[] args) {
         this.name = name;
@@ -45,7 +50,7 @@ public abstract class CliCommand {
 
     public BitcoinClient getClient() {
         if (client == null) {
-            System.out.println("Connecting to: " + getRPCConfig().getUrl());
+            out.println("Connecting to: " + getRPCConfig().getUrl());
             try {
                 client = new BitcoinClient(getRPCConfig());
             } catch (IOException e) {
@@ -59,28 +64,68 @@ public abstract class CliCommand {
         if (formatter == null) {
             formatter = new HelpFormatter();
         }
-        formatter.printHelp(name, options, true);
+        PrintWriter writer = new PrintWriter(out);
+        formatter.printHelp(writer, formatter.getWidth(), name, null, options, formatter.getLeftPadding(),
+                formatter.getDescPadding(), null, true);
+        writer.flush();
+    }
+
+    /**
+     * Run inside a long-lived JVM ({@link CliDaemon}): write output to {@code out} and make
+     * {@link #exit(int)} throw {@link ExitException} instead of exiting the JVM
+     */
+    void setResident(PrintStream out) {
+        this.out = out;
+        this.resident = true;
+    }
+
+    /**
+     * Finish the command with an exit status
+     */
+    protected void exit(int status) {
+        out.flush();
+        if (resident) {
+            throw new ExitException(status);
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Thrown by {@link #exit(int)} when running resident
+     */
+    static class ExitException extends RuntimeException {
+        final int status;
+
+        ExitException(int status) {
+            super("exit " + status);
+            this.status = status;
+        }
     }
 
     public void preflight() {
         getClient();
         if (line.hasOption("help")) {
             printHelp();
-            System.exit(0);
+            exit(0);
         }
         if (line.hasOption("rpcwait")) {
             boolean available = client.waitForServer(60*60);   // Wait up to 1 hour
             if (!available) {
-                System.out.println("Timeout error.");
-                System.exit(1);
+                out.println("Timeout error.");
+                exit(1);
             }
         }
     }
 
     private URL getServerURL() {
-        String proto = defaultproto;
-        String host = defaulthost;
+        String proto = isSSL() ? "https" : defaultproto;
+        String host = line.getOptionValue("rpcconnect", defaulthost);
         int port = defaultport;
+        if (line.hasOption("rpcport")) {
+            port = Integer.parseInt(line.getOptionValue("rpcport"));
+        } else if (line.hasOption("testnet") || line.hasOption("regtest")) {
+            port = defaulttestport;
+        }
         String file = defaultfile;
 
         URL rpcServerURL = null;
@@ -95,14 +140,19 @@ public abstract class CliCommand {
         return rpcServerURL;
     }
 
-    private RPCConfig getRPCConfig() {
+    protected RPCConfig getRPCConfig() {
         URL url = getServerURL();
         RPCConfig cfg = new RPCConfig();
         cfg.setUrl(url);
-        cfg.setUsername(rpcuser);
-        cfg.setPassword(rpcpassword);
+        cfg.setUsername(line.getOptionValue("rpcuser", rpcuser));
+        cfg.setPassword(line.getOptionValue("rpcpassword", rpcpassword));
         return cfg;
     }
 
+    private boolean isSSL() {
+        String ssl = line.getOptionValue("rpcssl");
+        return ssl != null && (ssl.equals("1") || ssl.equalsIgnoreCase("true"));
+    }
+
 
 }
@@ -0,0 +1,169 @@
+package com.msgilligan.bitcoin.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident JVM that runs CLI commands on behalf of the {@code btcclient} shell front end, so repeated
+ * invocations don't pay for JVM startup and class loading.
+ * <p>
+ * The daemon listens on the loopback interface only. A client sends the number of arguments followed
+ * by one argument per line, the first being the command name (e.g. {@code btcstatus}). The daemon
+ * answers with the command's output followed by a line {@code #exit <status>} and closes the connection.
+ * <p>
+ * Connections are handled on a small pool of threads, so a long command such as {@code msc-consensus} doesn't
+ * hold up other invocations. Commands share nothing but the JVM; each sends its own RPC credentials.
+ */
+public class CliDaemon {
+    public static final int DEFAULT_PORT = 18399;
+    public static final int DEFAULT_THREADS = 4;
+    static final String EXIT_PREFIX = "#exit ";
+
+    private static final Map<String, String> commands = new HashMap<String, String>();
+    static {
+        // Class names, so a command's classes are only loaded when it is first used
+        commands.put(Status.commandName, "com.msgilligan.bitcoin.cli.Status");
+        commands.put(LoadGen.commandName, "com.msgilligan.bitcoin.cli.LoadGen");
+        commands.put(GetBlockCount.commandName, "com.msgilligan.bitcoin.cli.GetBlockCount");
+        commands.put("msc-consensus", "foundation.omni.cli.Consensus");
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    public CliDaemon(int port) throws IOException {
+        this(port, DEFAULT_THREADS);
+    }
+
+    /**
+     * @param threads number of connections handled at once, further clients wait for a free thread
+     */
+    public CliDaemon(int port, int threads) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serve clients until the socket is closed
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handle(socket);
+                    } catch (IOException e) {
+                        System.err.println("Client error: " + e);
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop accepting clients, commands already running are completed
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        PrintStream out = new PrintStream(socket.getOutputStream(), false, "UTF-8");
+        String countLine = in.readLine();
+        int count;
+        try {
+            count = Integer.parseInt(countLine == null ? "" : countLine.trim());
+        } catch (NumberFormatException e) {
+            out.println("Bad request");
+            out.println(EXIT_PREFIX + 2);
+            out.flush();
+            return;
+        }
+        String[] argv = new String[count];
+        for (int i = 0; i < count; i++) {
+            argv[i] = in.readLine();
+        }
+        int status = run(argv, out);
+        out.println(EXIT_PREFIX + status);
+        out.flush();
+    }
+
+    /**
+     * Run a command in this JVM
+     *
+     * @param argv command name followed by its arguments
+     * @param out  where the command's output goes
+     * @return the command's exit status
+     */
+    int run(String[] argv, PrintStream out) {
+        if (argv.length == 0 || !commands.containsKey(argv[0])) {
+            out.println("Unknown command, available: " + commands.keySet());
+            return 2;
+        }
+        String[] args = new String[argv.length - 1];
+        System.arraycopy(argv, 1, args, 0, args.length);
+        try {
+            Class<?> commandClass = Class.forName(commands.get(argv[0]));
+            CliCommand command = (CliCommand) commandClass.getConstructor(String[].class).newInstance((Object) args);
+            command.setResident(out);
+            commandClass.getMethod("run").invoke(command);
+            return 0;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CliCommand.ExitException) {
+                return ((CliCommand.ExitException) cause).status;
+            }
+            cause.printStackTrace(out);
+            return 1;
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace(out);
+            return 1;
+        } catch (RuntimeException e) {
+            e.printStackTrace(out);     // e.g. invalid options
+            return 1;
+        }
+    }
+
+    /**
+     * Run the daemon until killed
+     * <p>
+     * Arguments: {@code [port]}, default {@value #DEFAULT_PORT}
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        CliDaemon daemon = new CliDaemon(port);
+        System.out.println("CLI daemon listening on 127.0.0.1:" + daemon.getPort() + ", commands: " + commands.keySet());
+        daemon.serve();
+    }
+}
@@ -27,7 +27,7 @@ public class GetBlockCount extends CliCommand {
         preflight();
         this.count();
         this.incrementAndCount(2);
-        System.exit(0);
+        exit(0);
     }
 
     public void count() {
@@ -39,38 +39,38 @@ public class GetBlockCount extends CliCommand {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        System.out.println("Starting Block count is: " + blockCount);
+        out.println("Starting Block count is: " + blockCount);
     }
 
     public void incrementAndCount(long blocksToGen) {
         Integer blockCount = -1;
         try {
             BigDecimal balance = client.getBalance();
-            System.out.println("Starting balance: " + balance);
+            out.println("Starting balance: " + balance);
             client.setGenerate(true, 101L);
             balance = client.getBalance();
-            System.out.println("Balance after mining 101 blocks: " + balance);
+            out.println("Balance after mining 101 blocks: " + balance);
 
             List<Object> balances = client.listReceivedByAddress(1, false);
-            System.out.println("balances: " + balances);
+            out.println("balances: " + balances);
 
             client.setGenerate(true, blocksToGen);
             blockCount = client.getBlockCount();
             Address address1 = client.getNewAddress();
             Address address2 = client.getNewAddress();
-            System.out.println("Address: " + address1);
-            System.out.println("Address: " + address2);
+            out.println("Address: " + address1);
+            out.println("Address: " + address2);
             Sha256Hash txid = client.sendToAddress(address2, BigDecimal.valueOf(1), "comment", "comment-to");
-            System.out.println("txid: " + txid);
+            out.println("txid: " + txid);
             client.setGenerate(true, 6L);
             Map<String, Object> transaction = client.getTransaction(txid);
-            System.out.println("transaction: " + transaction);
+            out.println("transaction: " + transaction);
 
             balance = client.getBalance();
-            System.out.println("Ending balance: " + balance);
+            out.println("Ending balance: " + balance);
 
             balances = client.listReceivedByAddress(0, true);
-            System.out.println("balances: " + balances);
+            out.println("balances: " + balances);
 
             blockCount = client.getBlockCount();
         } catch (JsonRPCException e) {
@@ -78,7 +78,7 @@ public class GetBlockCount extends CliCommand {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        System.out.println("Block count is: " + blockCount);
+        out.println("Block count is: " + blockCount);
     }
 
 }
@@ -0,0 +1,303 @@
+package com.msgilligan.bitcoin.cli;
+
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A command-line load generator that sends a weighted mix of RPC calls and reports throughput,
+ * errors and latency percentiles per method.
+ * <p>
+ * With {@code --rate} requests are started on a fixed schedule (open loop), and latency is measured
+ * from the time a request was scheduled, so time spent waiting for a free connection counts.
+ * Without it, {@code --concurrency} threads send requests back-to-back (closed loop).
+ * <p>
+ * The mix is a comma-separated list of {@code method[:param...]=weight}, for example
+ * {@code getblockcount=5,getblockhash:1000=2,getinfo_MP=1}. Numeric parameters are sent as numbers,
+ * {@code true} and {@code false} as booleans and anything else as a string.
+ */
+public class LoadGen extends CliCommand {
+    public final static String commandName = "btcloadgen";
+    private static final String defaultMix = "getblockcount=1";
+
+    private final List<Call> calls = new ArrayList<Call>();
+    private long totalWeight;
+
+    public LoadGen(String[] args) {
+        super(commandName, createOptions(), args);
+    }
+
+    private static CliOptions createOptions() {
+        CliOptions options = new CliOptions();
+        options.addOption("m", "mix", true, "Weighted RPC mix, e.g. getblockcount=5,getblockhash:1000=1 (default: " + defaultMix + ")");
+        options.addOption("R", "rate", true, "Target requests per second, open loop (default: as fast as possible)");
+        options.addOption("C", "concurrency", true, "Maximum requests in flight (default: 4)");
+        options.addOption("D", "duration", true, "Test duration in seconds (default: 60)");
+        options.addOption("I", "interval", true, "Reporting interval in seconds (default: 10)");
+        return options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGen command = new LoadGen(args);
+        command.run();
+    }
+
+    public void run() throws InterruptedException {
+        preflight();
+        parseMix(line.getOptionValue("mix", defaultMix));
+        double rate = Double.parseDouble(line.getOptionValue("rate", "0"));
+        int concurrency = Integer.parseInt(line.getOptionValue("concurrency", "4"));
+        long durationMillis = (long) (Double.parseDouble(line.getOptionValue("duration", "60")) * 1000);
+        long intervalMillis = (long) (Double.parseDouble(line.getOptionValue("interval", "10")) * 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency + 1);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        if (rate > 0) {
+            executor.execute(new Scheduler(executor, rate, deadline));
+        } else {
+            for (int i = 0; i < concurrency; i++) {
+                executor.execute(new Worker(deadline));
+            }
+        }
+
+        out.println(String.format("Sending %s for %d s, %s", calls, durationMillis / 1000,
+                rate > 0 ? rate + " req/s" : concurrency + " concurrent"));
+        long lastReport = start;
+        while (System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            long nextReport = Math.min(lastReport + TimeUnit.MILLISECONDS.toNanos(intervalMillis), deadline);
+            if (nextReport > now) {
+                TimeUnit.NANOSECONDS.sleep(nextReport - now);
+            }
+            now = System.nanoTime();
+            printReport(out, String.format("%.0fs", (now - start) / 1e9), now - lastReport, false);
+            lastReport = now;
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            out.println("Requests still outstanding after 30 s, not included in the summary");
+            executor.shutdownNow();
+        }
+        printReport(out, "total", System.nanoTime() - start, true);
+        exit(0);
+    }
+
+    void parseMix(String mix) {
+        for (String entry : mix.split(",")) {
+            String[] methodAndWeight = entry.trim().split("=");
+            long weight = methodAndWeight.length > 1 ? Long.parseLong(methodAndWeight[1]) : 1;
+            String[] parts = methodAndWeight[0].split(":");
+            List<Object> params = new ArrayList<Object>();
+            for (int i = 1; i < parts.length; i++) {
+                params.add(parseParam(parts[i]));
+            }
+            totalWeight += weight;
+            calls.add(new Call(methodAndWeight[0], parts[0], params, totalWeight));
+        }
+    }
+
+    static Object parseParam(String param) {
+        if (param.equals("true") || param.equals("false")) {
+            return Boolean.valueOf(param);
+        }
+        try {
+            return Long.valueOf(param);
+        } catch (NumberFormatException e) {
+            try {
+                return Double.valueOf(param);
+            } catch (NumberFormatException e2) {
+                return param;
+            }
+        }
+    }
+
+    private Call pickCall() {
+        long ticket = ThreadLocalRandom.current().nextLong(totalWeight);
+        for (Call call : calls) {
+            if (ticket < call.cumulativeWeight) {
+                return call;
+            }
+        }
+        return calls.get(calls.size() - 1);
+    }
+
+    private void execute(Call call, long scheduledNanos) {
+        boolean ok;
+        try {
+            client.send(call.method, call.params);
+            ok = true;
+        } catch (JsonRPCException e) {
+            ok = false;
+        } catch (IOException e) {
+            ok = false;
+        }
+        call.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos), ok);
+    }
+
+    private void printReport(PrintStream out, String label, long elapsedNanos, boolean total) {
+        out.println(String.format("%-7s %-30s %9s %9s %7s %9s %9s %9s %9s %9s", label, "method", "count", "req/s",
+                "err%", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        double seconds = elapsedNanos / 1e9;
+        for (Call call : calls) {
+            Stats stats = total ? call.total : call.nextInterval();
+            // Errors are counted after latencies, so reading them first keeps err% at most 100
+            long errors = stats.errors.get();
+            LatencyHistogram histogram = stats.latencies;
+            long count = histogram.getCount();
+            out.println(String.format("%-7s %-30s %9d %9.1f %7.2f %9.2f %9.2f %9.2f %9.2f %9.2f", "", call.name, count,
+                    count / seconds, count == 0 ? 0.0 : 100.0 * errors / count,
+                    histogram.getPercentile(50) / 1e3, histogram.getPercentile(90) / 1e3,
+                    histogram.getPercentile(99) / 1e3, histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3));
+        }
+    }
+
+    /**
+     * One entry of the mix, with its statistics
+     */
+    static class Call {
+        final String name;
+        final String method;
+        final List<Object> params;
+        final long cumulativeWeight;
+        final AtomicReference<Stats> interval = new AtomicReference<Stats>(new Stats());
+        final Stats total = new Stats();
+
+        Call(String name, String method, List<Object> params, long cumulativeWeight) {
+            this.name = name;
+            this.method = method;
+            this.params = params.isEmpty() ? null : Collections.unmodifiableList(params);
+            this.cumulativeWeight = cumulativeWeight;
+        }
+
+        void record(long micros, boolean ok) {
+            Stats current;
+            while (true) {
+                current = interval.get();
+                current.writers.incrementAndGet();
+                if (interval.get() == current) {
+                    break;
+                }
+                current.writers.decrementAndGet();     // Swapped meanwhile, record into the new interval
+            }
+            try {
+                current.record(micros, ok);
+            } finally {
+                current.writers.decrementAndGet();
+            }
+            total.record(micros, ok);
+        }
+
+        /**
+         * Start a new interval
+         *
+         * @return the statistics of the interval that ended, including every sample recorded into it
+         */
+        Stats nextInterval() {
+            Stats ended = interval.getAndSet(new Stats());
+            while (ended.writers.get() != 0) {
+                Thread.yield();
+            }
+            return ended;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Latencies and errors of an interval or the whole run, swapped together so that the error rate
+     * matches the latencies
+     */
+    static class Stats {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        /* Threads between picking this interval and finishing their record */
+        final AtomicInteger writers = new AtomicInteger();
+
+        void record(long micros, boolean ok) {
+            latencies.record(micros);
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Sends requests back-to-back until the deadline
+     */
+    private class Worker implements Runnable {
+        private final long deadline;
+
+        Worker(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                execute(pickCall(), System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Starts requests at a fixed rate until the deadline, queueing them when all threads are busy
+     */
+    private class Scheduler implements Runnable {
+        private final ExecutorService executor;
+        private final double rate;
+        private final long deadline;
+
+        Scheduler(ExecutorService executor, double rate, long deadline) {
+            this.executor = executor;
+            this.rate = rate;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            for (long i = 0; ; i++) {
+                final long scheduled = start + (long) (i * 1e9 / rate);
+                if (scheduled >= deadline) {
+                    return;
+                }
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                final Call call = pickCall();
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            execute(call, scheduled);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    return;     // Shut down at the deadline
+                }
+            }
+        }
+    }
+}
@@ -29,12 +29,12 @@ public class Status extends CliCommand {
         Integer masterCoreVersion = (Integer) info.get("mastercoreversion");
         Integer blocks = (Integer) info.get("blocks");
 
-        System.out.println("Bitcoin Core Version: " + bitcoinVersion);
+        out.println("Bitcoin Core Version: " + bitcoinVersion);
         if (masterCoreVersion != null) {
-            System.out.println("Master Core version: " + masterCoreVersion);
+            out.println("Master Core version: " + masterCoreVersion);
         }
-        System.out.println("Block count: " + blocks);
-        System.exit(0);
+        out.println("Block count: " + blocks);
+        exit(0);
     }
 
 }
@@ -0,0 +1,261 @@
+package com.msgilligan.bitcoin.jfr;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JDK Flight Recorder event type, usable from code compiled for Java 7
+ * <p>
+ * Event types are defined at run time with {@code jdk.jfr.EventFactory} (JDK 11 and later), through
+ * reflection. On older JVMs, or if the Flight Recorder is not available, every event type is disabled
+ * and recording costs a single check.
+ * <p>
+ * Usage:
+ * <pre>
+ * static final FlightEvent fetch = FlightEvent.define("omni.Fetch", "Fetch", "Omni", "Balance fetch",
+ *         FlightEvent.field("currency", long.class, "Currency"));
+ *
+ * FlightEvent.Instance event = fetch.begin();
+ * ...
+ * event.commit(currencyID.longValue());
+ * </pre>
+ * Values are passed to {@link Instance#commit(Object...)} in the order the fields were defined. Numbers
+ * are converted to the type of their field, so e.g. an {@code Integer} may be committed to a {@code long} field.
+ */
+public final class FlightEvent {
+    private static final Instance disabled = new Instance(null, null);
+    private static final Reflection jfr = Reflection.load();
+
+    private final Object factory;   // jdk.jfr.EventFactory
+    private final Object eventType; // jdk.jfr.EventType
+    private final Field[] fields;
+
+    private FlightEvent(Object factory, Object eventType, Field[] fields) {
+        this.factory = factory;
+        this.eventType = eventType;
+        this.fields = fields;
+    }
+
+    /**
+     * A field of an event type
+     */
+    public static final class Field {
+        final String name;
+        final Class<?> type;
+        final String label;
+        final String unitAnnotation;
+        final String unit;
+
+        Field(String name, Class<?> type, String label, String unitAnnotation, String unit) {
+            this.name = name;
+            this.type = type;
+            this.label = label;
+            this.unitAnnotation = unitAnnotation;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * @param type A primitive type or {@code String}
+     */
+    public static Field field(String name, Class<?> type, String label) {
+        return new Field(name, type, label, null, null);
+    }
+
+    /**
+     * A duration in nanoseconds, shown as a time span
+     */
+    public static Field timespan(String name, String label) {
+        return new Field(name, long.class, label, "jdk.jfr.Timespan", "NANOSECONDS");
+    }
+
+    /**
+     * An amount of data in bytes
+     */
+    public static Field bytes(String name, String label) {
+        return new Field(name, long.class, label, "jdk.jfr.DataAmount", "BYTES");
+    }
+
+    /**
+     * Define an event type, or a disabled one if the Flight Recorder is not available
+     *
+     * @param name     Event name, e.g. {@code omni.RPCCall}
+     * @param label    Human-readable name
+     * @param category Category, shown as a folder by JDK Mission Control
+     */
+    public static FlightEvent define(String name, String label, String category, String description, Field... fields) {
+        if (jfr == null) {
+            return new FlightEvent(null, null, fields);
+        }
+        try {
+            return jfr.define(name, label, category, description, fields);
+        } catch (ReflectiveOperationException e) {
+            return new FlightEvent(null, null, fields);
+        } catch (RuntimeException e) {
+            return new FlightEvent(null, null, fields);
+        }
+    }
+
+    /**
+     * @return {@code true} if a running recording records this event type
+     */
+    public boolean isEnabled() {
+        if (eventType == null) {
+            return false;
+        }
+        try {
+            return (Boolean) jfr.isEnabled.invoke(eventType);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Start timing an event
+     *
+     * @return The event, to be committed when done; a shared no-op instance if the event type is not recorded
+     */
+    public Instance begin() {
+        if (!isEnabled()) {
+            return disabled;
+        }
+        try {
+            Object event = jfr.newEvent.invoke(factory);
+            jfr.begin.invoke(event);
+            return new Instance(this, event);
+        } catch (ReflectiveOperationException e) {
+            return disabled;
+        }
+    }
+
+    /**
+     * An event being timed
+     */
+    public static final class Instance {
+        private final FlightEvent type;
+        private final Object event;    // jdk.jfr.Event
+
+        private Instance(FlightEvent type, Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        /**
+         * @return {@code false} if the event won't be recorded, so values need not be computed
+         */
+        public boolean isEnabled() {
+            return event != null;
+        }
+
+        /**
+         * Set the field values, end timing and record the event
+         *
+         * @param values One value per field, in the order they were defined
+         */
+        public void commit(Object... values) {
+            if (event == null) {
+                return;
+            }
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    jfr.set.invoke(event, i, convert(values[i], type.fields[i].type));
+                }
+                jfr.commit.invoke(event);
+            } catch (ReflectiveOperationException e) {
+                // Recording is best effort
+            }
+        }
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        Number number = (Number) value;
+        if (type == long.class) {
+            return number.longValue();
+        } else if (type == int.class) {
+            return number.intValue();
+        } else if (type == double.class) {
+            return number.doubleValue();
+        } else if (type == float.class) {
+            return number.floatValue();
+        } else if (type == short.class) {
+            return number.shortValue();
+        } else if (type == byte.class) {
+            return number.byteValue();
+        }
+        return value;
+    }
+
+    /**
+     * The {@code jdk.jfr} API, looked up once
+     */
+    private static final class Reflection {
+        final Constructor<?> annotationElement;
+        final Constructor<?> valueDescriptor;
+        final Method create;
+        final Method getEventType;
+        final Method newEvent;
+        final Method isEnabled;
+        final Method begin;
+        final Method set;
+        final Method commit;
+
+        private Reflection() throws ReflectiveOperationException {
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            create = factoryClass.getMethod("create", List.class, List.class);
+            getEventType = factoryClass.getMethod("getEventType");
+            newEvent = factoryClass.getMethod("newEvent");
+            isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            begin = eventClass.getMethod("begin");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+        }
+
+        static Reflection load() {
+            try {
+                return new Reflection();
+            } catch (ReflectiveOperationException e) {
+                return null;    // Before JDK 11, or without the jdk.jfr module
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        FlightEvent define(String name, String label, String category, String description, Field[] fields)
+                throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation("jdk.jfr.Name", name));
+            annotations.add(annotation("jdk.jfr.Label", label));
+            annotations.add(annotation("jdk.jfr.Category", new String[] { category }));
+            annotations.add(annotation("jdk.jfr.Description", description));
+            List<Object> descriptors = new ArrayList<Object>();
+            for (Field field : fields) {
+                List<Object> fieldAnnotations = new ArrayList<Object>();
+                fieldAnnotations.add(annotation("jdk.jfr.Label", field.label));
+                if (field.unitAnnotation != null) {
+                    fieldAnnotations.add(annotation(field.unitAnnotation, field.unit));
+                }
+                descriptors.add(valueDescriptor.newInstance(field.type, field.name,
+                        Collections.unmodifiableList(fieldAnnotations)));
+            }
+            Object factory = create.invoke(null, annotations, descriptors);
+            return new FlightEvent(factory, getEventType.invoke(factory), fields);
+        }
+
+        private Object annotation(String annotationClass, Object value) throws ReflectiveOperationException {
+            Class<? extends Annotation> type = Class.forName(annotationClass).asSubclass(Annotation.class);
+            return annotationElement.newInstance(type, value);
+        }
+    }
+}
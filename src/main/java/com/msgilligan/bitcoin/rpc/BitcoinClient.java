@@ -8,14 +8,12 @@ import com.google.bitcoin.core.Sha256Hash;
 import com.google.bitcoin.core.Transaction;
 import com.google.bitcoin.params.RegTestParams;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.SocketException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 import java.util.Map;
 
@@ -426,6 +424,97 @@ public class BitcoinClient extends RPCClient {
         return transaction;
     }
 
+    public Sha256Hash getBlockHash(Integer index) throws JsonRPCException, IOException {
+        List<Object> params = createParamList(index);
+        Map<String, Object> response = send("getblockhash", params);
+
+        String hashString = (String) response.get("result");
+        return new Sha256Hash(hashString);
+    }
+
+    /**
+     * Returns the verbose JSON form of a block, including the txids of its transactions in {@code tx}.
+     *
+     * @param hash The block hash
+     * @return A Map (JSON object) with the block information
+     */
+    public Map<String, Object> getBlock(Sha256Hash hash) throws JsonRPCException, IOException {
+        List<Object> params = createParamList(hash.toString());
+        Map<String, Object> response = send("getblock", params);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> block = (Map<String, Object>) response.get("result");
+        return block;
+    }
+
+    /**
+     * Returns the serialized block, for parsing with BitcoinJ.
+     *
+     * @param hash The block hash
+     * @return The raw block
+     */
+    public byte[] getBlockBytes(Sha256Hash hash) throws JsonRPCException, IOException {
+        List<Object> params = createParamList(hash.toString(), false);
+        Map<String, Object> response = send("getblock", params);
+
+        String hexEncoded = (String) response.get("result");
+        return BitcoinClient.hexStringToByteArray(hexEncoded);
+    }
+
+    /**
+     * Returns information about an address, including its public key if it belongs to the wallet.
+     *
+     * @param address The address to validate
+     * @return A Map (JSON object) with the address information
+     */
+    public Map<String, Object> validateAddress(Address address) throws JsonRPCException, IOException {
+        List<Object> params = createParamList(address.toString());
+        Map<String, Object> response = send("validateaddress", params);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) response.get("result");
+        return result;
+    }
+
+    /**
+     * Add a watch-only address to the wallet, so its transactions are tracked (Bitcoin Core 0.10 or later)
+     *
+     * @param address The address
+     * @param label   Wallet account of the address, "" for the default account
+     * @param rescan  Scan the block chain for earlier transactions, which can take minutes
+     */
+    public void importAddress(Address address, String label, Boolean rescan) throws JsonRPCException, IOException {
+        List<Object> params = createParamList(address.toString(), label, rescan);
+        send("importaddress", params);
+    }
+
+    /**
+     * Add watch-only addresses to the wallet in batches, without rescanning the block chain
+     * <p>
+     * For new addresses, e.g. deposit addresses derived from an extended public key, which have no earlier
+     * transactions.
+     *
+     * @param addresses The addresses
+     * @param label     Wallet account of the addresses, "" for the default account
+     * @param batchSize Maximum number of requests per batch
+     */
+    public void importAddresses(List<Address> addresses, String label, int batchSize)
+            throws JsonRPCException, IOException {
+        for (int start = 0; start < addresses.size(); start += batchSize) {
+            List<Address> chunk = addresses.subList(start, Math.min(start + batchSize, addresses.size()));
+            List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>(chunk.size());
+            for (Address address : chunk) {
+                requests.add(createRequest("importaddress", createParamList(address.toString(), label, false)));
+            }
+            List<Map<String, Object>> responses = sendBatch(requests);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (responses.get(i).get("error") != null) {
+                    throw new JsonRPCException("importaddress " + chunk.get(i) + ": " + responses.get(i).get("error"));
+                }
+            }
+        }
+    }
+
     public Map<String, Object> getInfo() throws JsonRPCException, IOException {
         Map<String, Object> response = send("getinfo", null);
 
@@ -452,24 +541,20 @@ public class BitcoinClient extends RPCClient {
         return paramList;
     }
 
-    private String transactionToHex(Transaction tx) {
-        // From: http://bitcoin.stackexchange.com/questions/8475/how-to-get-hex-string-from-transaction-in-bitcoinj
-        final StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb);
-        try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            tx.bitcoinSerialize(os);
-            byte[] bytes = os.toByteArray();
-            for (byte b : bytes) {
-                formatter.format("%02x", b);
-            }
+    public static String transactionToHex(Transaction tx) {
+        return byteArrayToHexString(tx.bitcoinSerialize());
+    }
+
+    private static final char[] hexDigits = "0123456789abcdef".toCharArray();
 
-        } catch (IOException e) {
-            throw new RuntimeException("Can't convert Transaction to Hex String", e);
-        } finally {
-            formatter.close();
+    public static String byteArrayToHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[i * 2] = hexDigits[b >>> 4];
+            chars[i * 2 + 1] = hexDigits[b & 0x0F];
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
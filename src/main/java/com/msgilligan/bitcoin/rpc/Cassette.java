@@ -0,0 +1,132 @@
+package com.msgilligan.bitcoin.rpc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File format of recorded JSON-RPC exchanges, see {@link RecordingTransport} and {@link ReplayTransport}
+ * <p>
+ * A cassette is a gzip-compressed stream of a magic number followed by one record per exchange, in the
+ * order the exchanges completed. Each record holds the start time relative to the start of the recording,
+ * the duration, the outcome and the request and response JSON exactly as they were sent.
+ */
+public class Cassette {
+    private static final byte[] MAGIC = {'R', 'P', 'C', 'C', 'A', 'S', '0', '1'};
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Outcome of an exchange that ended in an {@link IOException} */
+    public static final int STATUS_IO_ERROR = -1;
+    /** Outcome of an exchange that ended in a {@link JsonRPCException} without an HTTP status */
+    public static final int STATUS_RPC_ERROR = -2;
+
+    /**
+     * A recorded exchange
+     */
+    public static class Entry {
+        public final long startNanos;
+        public final long durationNanos;
+        public final int status;            // HTTP status, or STATUS_IO_ERROR or STATUS_RPC_ERROR
+        public final String message;        // HTTP status message or exception message, may be null
+        public final String request;
+        public final String response;       // may be null for errors
+
+        public Entry(long startNanos, long durationNanos, int status, String message, String request, String response) {
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.status = status;
+            this.message = message;
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Appends entries to a new cassette file
+     */
+    static class Writer {
+        private final DataOutputStream out;
+
+        Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 65536)));
+            out.write(MAGIC);
+        }
+
+        synchronized void write(Entry entry) throws IOException {
+            out.writeLong(entry.startNanos);
+            out.writeLong(entry.durationNanos);
+            out.writeInt(entry.status);
+            writeString(entry.message);
+            writeString(entry.request);
+            writeString(entry.response);
+        }
+
+        synchronized void close() throws IOException {
+            out.close();
+        }
+
+        /* DataOutputStream.writeUTF is limited to 64 KB, responses can be much larger */
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = string.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Read all entries of a cassette
+     */
+    public static List<Entry> read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 65536)));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an RPC cassette: " + file);
+            }
+            List<Entry> entries = new ArrayList<Entry>();
+            while (true) {
+                long startNanos;
+                try {
+                    startNanos = in.readLong();
+                } catch (EOFException e) {
+                    return entries;
+                }
+                long durationNanos = in.readLong();
+                int status = in.readInt();
+                String message = readString(in);
+                String request = readString(in);
+                String response = readString(in);
+                entries.add(new Entry(startNanos, durationNanos, status, message, request, response));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
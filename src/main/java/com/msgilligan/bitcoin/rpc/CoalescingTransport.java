@@ -0,0 +1,142 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that sends identical concurrent requests to the server once
+ * <p>
+ * While a request is in flight, a request with the same method and parameters waits for its response
+ * instead of being sent, and gets a copy with its own {@code id}. Requests made after the response has
+ * arrived are sent again, so nothing is cached. Only methods without side effects are coalesced, by default
+ * {@link #DEFAULT_METHODS}; batches are always sent as they are.
+ * <p>
+ * To coalesce a client's calls:
+ * <pre>
+ * client.setTransport(new CoalescingTransport(client.getTransport()));
+ * </pre>
+ * If the request fails, every waiting caller gets the same exception.
+ */
+public class CoalescingTransport implements RPCTransport {
+    /**
+     * Methods without side effects: the reads of {@link RoutingTransport#DEFAULT_READ_METHODS} and
+     * reads of node or wallet state
+     */
+    public static final Set<String> DEFAULT_METHODS;
+    static {
+        Set<String> methods = new HashSet<String>(RoutingTransport.DEFAULT_READ_METHODS);
+        methods.addAll(Arrays.asList("getinfo", "getinfo_MP", "getbalance", "getreceivedbyaddress",
+                "listreceivedbyaddress", "listunspent", "gettransaction"));
+        DEFAULT_METHODS = Collections.unmodifiableSet(methods);
+    }
+
+    private final RPCTransport delegate;
+    private final Set<String> methods;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentMap<String, Call> inFlight = new ConcurrentHashMap<String, Call>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CoalescingTransport(RPCTransport delegate) {
+        this(delegate, DEFAULT_METHODS);
+    }
+
+    /**
+     * @param methods methods that may be coalesced, they must not change anything on the server
+     */
+    public CoalescingTransport(RPCTransport delegate, Set<String> methods) {
+        this.delegate = delegate;
+        this.methods = new HashSet<String>(methods);
+    }
+
+    @Override
+    public String exchange(String request) throws IOException, JsonRPCException {
+        JsonNode tree = mapper.readTree(request);
+        if (!tree.isObject() || !methods.contains(tree.path("method").asText())) {
+            return delegate.exchange(request);
+        }
+        JsonNode id = ((ObjectNode) tree).remove("id");
+        String key = mapper.writeValueAsString(tree);
+        Call call = new Call();
+        Call existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return replaceId(existing.await(), id);
+        }
+        try {
+            String response = delegate.exchange(request);
+            call.complete(response, null);
+            return response;
+        } catch (Throwable e) {
+            call.complete(null, e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return number of requests that were answered with the response of an identical one
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /*
+     * Replace the top-level id of a response object, keeping its type: a string, number or null
+     */
+    private String replaceId(String response, JsonNode id) throws IOException {
+        JsonNode tree = mapper.readTree(response);
+        if (!tree.isObject()) {
+            return response;
+        }
+        ((ObjectNode) tree).set("id", id != null ? id : NullNode.getInstance());
+        return mapper.writeValueAsString(tree);
+    }
+
+    /**
+     * A request in flight, completed once with its response or failure
+     */
+    private static class Call {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private String response;
+        private Throwable failure;
+
+        void complete(String response, Throwable failure) {
+            this.response = response;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        String await() throws IOException, JsonRPCException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a coalesced request");
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof JsonRPCException) {
+                throw (JsonRPCException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the confirmation of many transactions at once.
+ * <p>
+ * Instead of asking the node about every pending txid, each new block is fetched once and its
+ * transaction list is matched against all tracked txids, so the number of RPC calls depends on the
+ * number of blocks, not on the number of transactions. A transaction is confirmed when its block
+ * has {@code depth} confirmations, at which point its future completes with the block height
+ * and its listener, if any, is called.
+ * <p>
+ * Blocks are only scanned from the height at which the tracker was created (or the given start height),
+ * so create it before broadcasting. Reorganizations up to {@link #MAX_REORG_DEPTH} blocks deep are
+ * detected and transactions in orphaned blocks are tracked again, but a transaction that has already
+ * been reported as confirmed is not revoked: choose a depth accordingly.
+ */
+public class ConfirmationTracker {
+    public static final int MAX_REORG_DEPTH = 100;
+
+    /**
+     * Called from the polling thread when a transaction reaches the confirmation depth
+     */
+    public interface Listener {
+        void onConfirmed(Sha256Hash txid, int blockHeight, Sha256Hash blockHash);
+    }
+
+    private static class Entry {
+        final SettableFuture<Integer> future = SettableFuture.create();
+        final Listener listener;
+        int height = -1;
+        Sha256Hash blockHash;
+
+        Entry(Listener listener) {
+            this.listener = listener;
+        }
+    }
+
+    private final BitcoinClient client;
+    private final int depth;
+    private final ConcurrentMap<Sha256Hash, Entry> tracked = new ConcurrentHashMap<Sha256Hash, Entry>();
+    /* Guarded by this: txids included in each scanned block that are not yet deep enough */
+    private final TreeMap<Integer, List<Sha256Hash>> included = new TreeMap<Integer, List<Sha256Hash>>();
+    /* Guarded by this: hashes of the most recently scanned blocks, for reorganization detection */
+    private final Map<Integer, Sha256Hash> chain = new HashMap<Integer, Sha256Hash>();
+    private int scannedHeight;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a tracker that starts scanning after the current chain tip
+     *
+     * @param client the node to poll
+     * @param depth  number of confirmations required, at least 1
+     */
+    public ConfirmationTracker(BitcoinClient client, int depth) throws JsonRPCException, IOException {
+        this(client, depth, client.getBlockCount() + 1);
+    }
+
+    /**
+     * Create a tracker that starts scanning at a given height
+     *
+     * @param client      the node to poll
+     * @param depth       number of confirmations required, at least 1
+     * @param startHeight first block to scan
+     */
+    public ConfirmationTracker(BitcoinClient client, int depth, int startHeight) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.client = client;
+        this.depth = depth;
+        this.scannedHeight = startHeight - 1;
+    }
+
+    /**
+     * Start tracking a transaction
+     *
+     * @return a future that completes with the height of the block containing the transaction
+     */
+    public ListenableFuture<Integer> track(Sha256Hash txid) {
+        return track(txid, null);
+    }
+
+    /**
+     * Start tracking a transaction, calling a listener when it is confirmed
+     *
+     * @return a future that completes with the height of the block containing the transaction
+     */
+    public ListenableFuture<Integer> track(Sha256Hash txid, Listener listener) {
+        Entry entry = new Entry(listener);
+        Entry existing = tracked.putIfAbsent(txid, entry);
+        return (existing != null ? existing : entry).future;
+    }
+
+    public List<ListenableFuture<Integer>> trackAll(Collection<Sha256Hash> txids) {
+        List<ListenableFuture<Integer>> futures = new ArrayList<ListenableFuture<Integer>>(txids.size());
+        for (Sha256Hash txid : txids) {
+            futures.add(track(txid));
+        }
+        return futures;
+    }
+
+    /**
+     * @return number of transactions that are not yet confirmed
+     */
+    public int getPendingCount() {
+        return tracked.size();
+    }
+
+    public synchronized int getScannedHeight() {
+        return scannedHeight;
+    }
+
+    /**
+     * Scan any blocks added since the last poll and complete transactions that reached the confirmation depth
+     */
+    public synchronized void poll() throws JsonRPCException, IOException {
+        int tip = client.getBlockCount();
+        unwindOrphanedBlocks(tip);
+        for (int height = scannedHeight + 1; height <= tip; height++) {
+            scanBlock(height);
+        }
+        int confirmedHeight = tip - depth + 1;
+        while (!included.isEmpty() && included.firstKey() <= confirmedHeight) {
+            Map.Entry<Integer, List<Sha256Hash>> block = included.pollFirstEntry();
+            for (Sha256Hash txid : block.getValue()) {
+                Entry entry = tracked.remove(txid);
+                if (entry != null) {
+                    if (entry.listener != null) {
+                        entry.listener.onConfirmed(txid, entry.height, entry.blockHash);
+                    }
+                    entry.future.set(entry.height);
+                }
+            }
+        }
+    }
+
+    /**
+     * Poll at a fixed interval on a background thread until {@link #stop()} is called.
+     * Errors from the node are ignored and the poll is retried at the next interval.
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ConfirmationTracker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (JsonRPCException e) {
+                    // retry on the next tick
+                } catch (IOException e) {
+                    // retry on the next tick
+                }
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void scanBlock(int height) throws JsonRPCException, IOException {
+        Sha256Hash hash = client.getBlockHash(height);
+        Map<String, Object> block = client.getBlock(hash);
+        @SuppressWarnings("unchecked")
+        List<String> txids = (List<String>) block.get("tx");
+        List<Sha256Hash> matched = null;
+        for (String txidString : txids) {
+            Sha256Hash txid = new Sha256Hash(txidString);
+            Entry entry = tracked.get(txid);
+            if (entry != null && entry.height < 0) {
+                entry.height = height;
+                entry.blockHash = hash;
+                if (matched == null) {
+                    matched = new ArrayList<Sha256Hash>();
+                }
+                matched.add(txid);
+            }
+        }
+        if (matched != null) {
+            included.put(height, matched);
+        }
+        chain.put(height, hash);
+        chain.remove(height - MAX_REORG_DEPTH);
+        scannedHeight = height;
+    }
+
+    /*
+     * Walk back until the last scanned block is on the node's main chain,
+     * returning transactions in orphaned blocks to the unconfirmed state
+     */
+    private void unwindOrphanedBlocks(int tip) throws JsonRPCException, IOException {
+        while (scannedHeight > tip && chain.containsKey(scannedHeight)) {
+            orphan(scannedHeight);
+        }
+        while (chain.containsKey(scannedHeight) && !chain.get(scannedHeight).equals(client.getBlockHash(scannedHeight))) {
+            orphan(scannedHeight);
+        }
+    }
+
+    private void orphan(int height) {
+        chain.remove(height);
+        List<Sha256Hash> orphaned = included.remove(height);
+        if (orphaned != null) {
+            for (Sha256Hash txid : orphaned) {
+                Entry entry = tracked.get(txid);
+                if (entry != null) {
+                    entry.height = -1;
+                    entry.blockHash = null;
+                }
+            }
+        }
+        scannedHeight = height - 1;
+    }
+}
@@ -0,0 +1,188 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Transport that POSTs each request to the server on a new HTTP connection
+ * <p>
+ * For https URLs, certificate and host name checks are disabled on the RPC connections only, so a
+ * node's self-signed certificate is accepted. The SSL context is created on the first https request,
+ * plain http clients never load it.
+ */
+public class HttpTransport implements StreamingTransport {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ResponseReader<String> STRING_READER = new ResponseReader<String>() {
+        @Override
+        public String read(InputStream response) {
+            return new Scanner(response, "UTF-8").useDelimiter("\\A").next();
+        }
+    };
+    private final URL serverURL;
+    private final String authorization;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public HttpTransport(URL serverURL) {
+        this(serverURL, null, null);
+    }
+
+    /**
+     * Send HTTP basic authentication with every request, so clients of different servers in one JVM
+     * don't depend on the JVM-wide {@link java.net.Authenticator}
+     */
+    public HttpTransport(URL serverURL, String rpcuser, String rpcpassword) {
+        this.serverURL = serverURL;
+        this.authorization = (rpcuser == null) ? null :
+                "Basic " + BaseEncoding.base64().encode((rpcuser + ":" + rpcpassword).getBytes(UTF8));
+    }
+
+    public URL getServerURL() {
+        return serverURL;
+    }
+
+    @Override
+    public String exchange(String request) throws IOException, JsonRPCException {
+        return exchange(request, STRING_READER);
+    }
+
+    @Override
+    public <T> T exchange(String request, ResponseReader<T> reader) throws IOException, JsonRPCException {
+        HttpURLConnection connection = openConnection();
+        try {
+            return exchange(connection, request, reader);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /*
+     * Write a request (object or batch array) and read the response body, throwing
+     * JsonRPCStatusException for any HTTP status other than 200
+     */
+    private <T> T exchange(HttpURLConnection connection, String request, ResponseReader<T> reader)
+            throws IOException, JsonRPCException {
+        OutputStream output = connection.getOutputStream();
+//        System.out.println("Req json = " + request);
+         try {
+             output.write(request.getBytes(UTF8));
+             output.close();
+         }
+         catch (IOException logOrIgnore) {
+             System.out.println("Exception: " + logOrIgnore);
+         }
+
+        InputStream responseStream = null;
+        int code = connection.getResponseCode();
+        String message = connection.getResponseMessage();
+//        System.out.println("Response code: " + code);
+        if (code == 200) {
+            try {
+                responseStream = connection.getInputStream();
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new JsonRPCException("IOException reading response stream", e);
+            }
+        } else {
+            responseStream = connection.getErrorStream();
+        }
+
+        if (code != 200) {
+            throw statusException(mapper, code, message, STRING_READER.read(responseStream));
+        }
+        return reader.read(responseStream);
+    }
+
+    /**
+     * Create the exception for a non-200 response, using the message of the JSON-RPC error if there is one
+     */
+    static JsonRPCStatusException statusException(ObjectMapper mapper, int code, String httpMessage, String responseString)
+            throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> responseMap = mapper.readValue(responseString, Map.class);
+        String exceptionMessage = httpMessage; // Default to HTTP result message
+
+        if (responseMap != null) {
+            @SuppressWarnings("unchecked")
+            Map <String, Object> error = (Map <String, Object>) responseMap.get("error");
+            if (error != null) {
+                // If there's a more specific message in the JSON use it instead.
+                exceptionMessage = (String) error.get("message");
+            }
+        }
+        return new JsonRPCStatusException(exceptionMessage, code, httpMessage, responseString, responseMap);
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        HttpURLConnection connection =  (HttpURLConnection) serverURL.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            // Disable checks that prevent using a self-signed SSL certificate
+            // TODO: Should checks be enabled by default for security reasons?
+            HttpsURLConnection https = (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(TrustAll.socketFactory);
+            https.setHostnameVerifier(TrustAll.hostnameVerifier);
+        }
+        connection.setDoOutput(true); // For writes
+        connection.setRequestMethod("POST");
+//        connection.setRequestProperty("Accept-Charset", StandardCharsets.UTF_8.toString());
+//        connection.setRequestProperty("Content-Type", " application/json;charset=" + StandardCharsets.UTF_8.toString());
+        connection.setRequestProperty("Accept-Charset", "UTF-8");
+        connection.setRequestProperty("Content-Type", "application/json;charset=" +  "UTF-8");
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        connection.setRequestProperty("Connection", "close");   // Avoid EOFException: http://stackoverflow.com/questions/19641374/android-eofexception-when-using-httpurlconnection-headers
+        return connection;
+    }
+
+    /**
+     * All-trusting SSL settings, initialized on first use
+     */
+    private static class TrustAll {
+        static final SSLSocketFactory socketFactory = createSocketFactory();
+
+        static final HostnameVerifier hostnameVerifier = new HostnameVerifier() {
+            public boolean verify(String hostname, SSLSession session) {
+                return true;
+            }
+        };
+
+        private static SSLSocketFactory createSocketFactory() {
+            // Create a trust manager that does not validate certificate chains
+            TrustManager[] trustAllCerts = new TrustManager[] {new X509TrustManager() {
+                public X509Certificate[] getAcceptedIssuers() {
+                    return null;
+                }
+                public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                }
+                public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                }
+            }
+            };
+            try {
+                SSLContext sc = SSLContext.getInstance("SSL");
+                sc.init(null, trustAllCerts, new java.security.SecureRandom());
+                return sc.getSocketFactory();
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
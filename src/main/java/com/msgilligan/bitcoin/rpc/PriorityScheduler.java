@@ -0,0 +1,165 @@
+package com.msgilligan.bitcoin.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares a transport between interactive and bulk traffic, each with its own concurrency budget
+ * <p>
+ * Clients send through the transport of their priority class:
+ * <pre>
+ * PriorityScheduler scheduler = new PriorityScheduler(new HttpTransport(url, rpcuser, rpcpassword), 8, 4);
+ * userClient.setTransport(scheduler.getTransport(PriorityScheduler.Priority.INTERACTIVE));
+ * consensusClient.setTransport(scheduler.getTransport(PriorityScheduler.Priority.BULK));
+ * </pre>
+ * Requests beyond the budget of their class wait for one of the class to finish. The bulk budget also
+ * adapts to interactive latency, which includes the wait for the budget: while the moving average of
+ * interactive latencies is above the target it is halved every quarter of a second, down to 0, which
+ * pauses bulk traffic. Otherwise it grows by one every quarter of a second, back to the configured budget.
+ * Without interactive traffic for a second, the latency is considered to be back below target.
+ */
+public class PriorityScheduler {
+    public static final long DEFAULT_LATENCY_TARGET = 500;
+    private static final long ADJUST_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long QUIET_PERIOD = TimeUnit.SECONDS.toNanos(1);
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * Priority classes
+     */
+    public enum Priority {
+        /** User-facing requests, e.g. balance checks */
+        INTERACTIVE,
+        /** Background jobs, e.g. consensus snapshots, backfills and payouts */
+        BULK
+    }
+
+    private final RPCTransport delegate;
+    private final int interactiveLimit;
+    private final int bulkLimit;
+    private final long latencyTarget;
+    private final RPCTransport interactive = new Lane(Priority.INTERACTIVE);
+    private final RPCTransport bulk = new Lane(Priority.BULK);
+    private int interactiveActive;
+    private int bulkActive;
+    private int bulkAllowed;
+    private double latency = -1;        // Moving average of interactive latencies in nanoseconds
+    private long lastInteractive;
+    private long lastAdjust;
+
+    public PriorityScheduler(RPCTransport delegate, int interactiveConcurrency, int bulkConcurrency) {
+        this(delegate, interactiveConcurrency, bulkConcurrency, DEFAULT_LATENCY_TARGET);
+    }
+
+    /**
+     * @param interactiveConcurrency maximum interactive requests in flight
+     * @param bulkConcurrency        maximum bulk requests in flight
+     * @param latencyTarget          interactive latency in milliseconds above which bulk traffic is slowed
+     *                               down, 0 for fixed budgets
+     */
+    public PriorityScheduler(RPCTransport delegate, int interactiveConcurrency, int bulkConcurrency,
+                             long latencyTarget) {
+        if (interactiveConcurrency < 1 || bulkConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.delegate = delegate;
+        this.interactiveLimit = interactiveConcurrency;
+        this.bulkLimit = bulkConcurrency;
+        this.latencyTarget = TimeUnit.MILLISECONDS.toNanos(latencyTarget);
+        this.bulkAllowed = bulkConcurrency;
+        this.lastInteractive = System.nanoTime() - QUIET_PERIOD;
+        this.lastAdjust = System.nanoTime() - ADJUST_INTERVAL;
+    }
+
+    /**
+     * @return transport sending requests of a priority class
+     */
+    public RPCTransport getTransport(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactive : bulk;
+    }
+
+    /**
+     * @return current bulk budget, 0 if bulk traffic is paused
+     */
+    public synchronized int getBulkConcurrency() {
+        return bulkAllowed;
+    }
+
+    /**
+     * @return moving average of interactive latencies in milliseconds, -1 if there was no recent interactive traffic
+     */
+    public synchronized long getInteractiveLatency() {
+        return latency < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis((long) latency);
+    }
+
+    private class Lane implements RPCTransport {
+        private final Priority priority;
+
+        Lane(Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public String exchange(String request) throws IOException, JsonRPCException {
+            long start = System.nanoTime();
+            acquire(priority);
+            try {
+                return delegate.exchange(request);
+            } finally {
+                release(priority, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private synchronized void acquire(Priority priority) throws InterruptedIOException {
+        try {
+            if (priority == Priority.INTERACTIVE) {
+                while (interactiveActive >= interactiveLimit) {
+                    wait();
+                }
+                interactiveActive++;
+            } else {
+                adjust(System.nanoTime());
+                while (bulkActive >= bulkAllowed) {
+                    wait(TimeUnit.NANOSECONDS.toMillis(ADJUST_INTERVAL));
+                    adjust(System.nanoTime());
+                }
+                bulkActive++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a " + priority + " request slot");
+        }
+    }
+
+    private synchronized void release(Priority priority, long elapsed) {
+        long now = System.nanoTime();
+        if (priority == Priority.INTERACTIVE) {
+            interactiveActive--;
+            latency = latency < 0 ? elapsed : latency * (1 - LATENCY_WEIGHT) + elapsed * LATENCY_WEIGHT;
+            lastInteractive = now;
+            adjust(now);
+        } else {
+            bulkActive--;
+        }
+        notifyAll();
+    }
+
+    /* Halve or grow the bulk budget, at most once per interval */
+    private void adjust(long now) {
+        if (latencyTarget == 0 || now - lastAdjust < ADJUST_INTERVAL) {
+            return;
+        }
+        if (now - lastInteractive > QUIET_PERIOD) {
+            latency = -1;   // No interactive traffic to protect
+        }
+        if (latency > latencyTarget) {
+            bulkAllowed /= 2;
+        } else if (bulkAllowed < bulkLimit) {
+            bulkAllowed++;
+            notifyAll();
+        }
+        lastAdjust = now;
+    }
+}
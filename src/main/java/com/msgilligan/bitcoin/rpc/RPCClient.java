@@ -1,48 +1,48 @@
 package com.msgilligan.bitcoin.rpc;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.CountingInputStream;
+import com.msgilligan.bitcoin.jfr.FlightEvent;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.Authenticator;
-import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
 import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * JSON-RPC Client
+ *
+ * Each request uses its own connection, so a single client may be shared between threads.
+ * Requests are carried by an {@link RPCTransport}, by default an {@link HttpTransport} to the server URL.
+ * <p>
+ * Every call is recorded as an {@code omni.RPCCall} Flight Recorder event, with the time spent in the
+ * exchange with the server and parsing the response.
  */
 public class RPCClient {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final FlightEvent callEvent = FlightEvent.define("omni.RPCCall", "RPC Call", "Omni",
+            "A JSON-RPC call, status is the HTTP status or -1 for I/O and -2 for other errors",
+            FlightEvent.field("method", String.class, "Method"),
+            FlightEvent.bytes("requestSize", "Request Size"),
+            FlightEvent.bytes("responseSize", "Response Size"),
+            FlightEvent.field("status", int.class, "Status"),
+            FlightEvent.timespan("exchangeTime", "Exchange Time"),
+            FlightEvent.timespan("parseTime", "Parse Time"));
+
     private URL serverURL;
-    private HttpURLConnection connection;
     private ObjectMapper mapper;
-    private long requestId;
-    private static final boolean disableSslVerification = true;
-
-    static {
-        if (disableSslVerification) {
-            // Disable checks that prevent using a self-signed SSL certificate
-            // TODO: Should checks be enabled by default for security reasons?
-            disableSslVerification();
-        }
-    }
+    private volatile RPCTransport transport;
+    private final AtomicLong requestId = new AtomicLong();
 
     public RPCClient(RPCConfig config) {
         this(config.getUrl(), config.getUsername(), config.getPassword());
@@ -56,73 +56,41 @@ public class RPCClient {
         });
 
         serverURL = server;
-        requestId = 0;
         mapper = new ObjectMapper();
+        transport = new HttpTransport(server, rpcuser, rpcpassword);
     }
 
     public URL getServerURL() {
         return serverURL;
     }
 
-    public Map<String, Object> send(Map<String, Object> request) throws IOException, JsonRPCException {
-        openConnection();
-        OutputStream output = connection.getOutputStream();
-        String reqString = mapper.writeValueAsString(request);
-//        System.out.println("Req json = " + reqString);
-         try {
-             mapper.writeValue(output, request);
-             output.close();
-         }
-         catch (IOException logOrIgnore) {
-             System.out.println("Exception: " + logOrIgnore);
-         }
-
-        InputStream responseStream = null;
-        int code = connection.getResponseCode();
-        String message = connection.getResponseMessage();
-//        System.out.println("Response code: " + code);
-        if (code == 200) {
-            try {
-                responseStream = connection.getInputStream();
-            } catch (IOException e) {
-                e.printStackTrace();
-                throw new JsonRPCException("IOException reading response stream", e);
-            }
-        } else {
-            responseStream = connection.getErrorStream();
-        }
+    public RPCTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Replace the transport, e.g. to wrap the current one in a {@link RecordingTransport} or to
+     * use a {@link ReplayTransport} instead of a server
+     */
+    public void setTransport(RPCTransport transport) {
+        this.transport = transport;
+    }
 
-        String responseString = new Scanner(responseStream,"UTF-8").useDelimiter("\\A").next();
+    public Map<String, Object> send(Map<String, Object> request) throws IOException, JsonRPCException {
+        FlightEvent.Instance event = callEvent.begin();
+        String method = (String) request.get("method");
+        String requestString = mapper.writeValueAsString(request);
+        long start = System.nanoTime();
+        String responseString = exchange(event, method, requestString, start);
+        long parseStart = System.nanoTime();
         @SuppressWarnings("unchecked")
         Map<String, Object> responseMap = mapper.readValue(responseString, Map.class);
-
-        if (code != 200) {
-            String exceptionMessage = message; // Default to HTTP result message
-
-            if (responseMap != null) {
-                Map <String, Object> error = (Map <String, Object>) responseMap.get("error");
-                if (error != null) {
-                    // If there's a more specific message in the JSON use it instead.
-                    exceptionMessage = (String) error.get("message");
-                }
-            }
-            throw new JsonRPCStatusException(exceptionMessage, code, message, responseString, responseMap);
-        }
-
-        closeConnection();
+        commit(event, method, requestString, responseString, 200, parseStart - start, System.nanoTime() - parseStart);
         return responseMap;
     }
 
     public Map<String, Object> send(String method, List<Object> params) throws IOException, JsonRPCException  {
-        Map<String, Object> request = new HashMap<String, Object>();
-        request.put("jsonrpc", "1.0");
-        request.put("method", method);
-        request.put("id", Long.toString(requestId));
-
-        if (params != null) {
-            params.removeAll(Collections.singleton(null));  // Remove null entries (should only be at end)
-        }
-        request.put("params", params);
+        Map<String, Object> request = createRequest(method, params);
 
         Map<String, Object> response = send(request);
 
@@ -132,69 +100,175 @@ public class RPCClient {
 //        assert response.get("id") != null;
 //        assert response.get("id").equals(Long.toString(requestId++));
 
-        requestId++;
-
         return response;
     }
 
-    public Object cliSend(String method, List<Object> params) throws IOException, JsonRPCException {
-        Map<String, Object> response = send(method, params);
-        return response.get("result");
+    /**
+     * Send a request and return the response body unparsed, for callers that stream-parse large results
+     *
+     * @param method The RPC method name
+     * @param params The parameters
+     * @return The JSON response object
+     */
+    public String sendForJson(String method, List<Object> params) throws IOException, JsonRPCException {
+        FlightEvent.Instance event = callEvent.begin();
+        String requestString = mapper.writeValueAsString(createRequest(method, params));
+        long start = System.nanoTime();
+        String responseString = exchange(event, method, requestString, start);
+        commit(event, method, requestString, responseString, 200, System.nanoTime() - start, 0);
+        return responseString;
     }
 
-    public Object cliSend(String method, Object... params) throws IOException, JsonRPCException {
-        Map<String, Object> response = send(method, Arrays.asList(params));
-        return response.get("result");
+    /**
+     * Send a request and read the response while it arrives, for results too large to hold as a string
+     * <p>
+     * If the transport isn't a {@link StreamingTransport}, e.g. when recording or replaying, the reader gets the
+     * complete response instead. The time spent reading is recorded as exchange time.
+     *
+     * @param method The RPC method name
+     * @param params The parameters
+     * @param reader Reads the JSON response object, e.g. with a streaming parser
+     * @return The result of {@code reader}
+     */
+    public <T> T sendForStream(String method, List<Object> params, final StreamingTransport.ResponseReader<T> reader)
+            throws IOException, JsonRPCException {
+        FlightEvent.Instance event = callEvent.begin();
+        String requestString = mapper.writeValueAsString(createRequest(method, params));
+        long start = System.nanoTime();
+        RPCTransport current = transport;
+        if (!(current instanceof StreamingTransport)) {
+            String responseString = exchange(event, method, requestString, start);
+            long parseStart = System.nanoTime();
+            T result = reader.read(new ByteArrayInputStream(responseString.getBytes(UTF8)));
+            commit(event, method, requestString, responseString, 200, parseStart - start, System.nanoTime() - parseStart);
+            return result;
+        }
+        final long[] responseSize = new long[1];
+        try {
+            T result = ((StreamingTransport) current).exchange(requestString, new StreamingTransport.ResponseReader<T>() {
+                @Override
+                public T read(InputStream response) throws IOException, JsonRPCException {
+                    CountingInputStream counting = new CountingInputStream(response);
+                    try {
+                        return reader.read(counting);
+                    } finally {
+                        responseSize[0] = counting.getCount();
+                    }
+                }
+            });
+            commit(event, method, requestString.length(), responseSize[0], 200, System.nanoTime() - start, 0);
+            return result;
+        } catch (JsonRPCStatusException e) {
+            commit(event, method, requestString, e.response, e.httpCode, System.nanoTime() - start, 0);
+            throw e;
+        } catch (JsonRPCException e) {
+            commit(event, method, requestString.length(), responseSize[0], Cassette.STATUS_RPC_ERROR, System.nanoTime() - start, 0);
+            throw e;
+        } catch (IOException e) {
+            commit(event, method, requestString.length(), responseSize[0], Cassette.STATUS_IO_ERROR, System.nanoTime() - start, 0);
+            throw e;
+        }
     }
 
-    private void openConnection() throws IOException {
-        connection =  (HttpURLConnection) serverURL.openConnection();
-        connection.setDoOutput(true); // For writes
-        connection.setRequestMethod("POST");
-//        connection.setRequestProperty("Accept-Charset", StandardCharsets.UTF_8.toString());
-//        connection.setRequestProperty("Content-Type", " application/json;charset=" + StandardCharsets.UTF_8.toString());
-        connection.setRequestProperty("Accept-Charset", "UTF-8");
-        connection.setRequestProperty("Content-Type", "application/json;charset=" +  "UTF-8");
-        connection.setRequestProperty("Connection", "close");   // Avoid EOFException: http://stackoverflow.com/questions/19641374/android-eofexception-when-using-httpurlconnection-headers
+    /**
+     * Send several requests in a single JSON-RPC batch (one HTTP round-trip).
+     * <p>
+     * The server executes the requests in order. Errors in individual requests do not fail
+     * the batch, they are returned in the {@code error} field of the matching response.
+     *
+     * @param requests Requests created with {@link #createRequest(String, List)}
+     * @return The responses, in the same order as {@code requests}
+     */
+    public List<Map<String, Object>> sendBatch(List<Map<String, Object>> requests) throws IOException, JsonRPCException {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        FlightEvent.Instance event = callEvent.begin();
+        String method = "batch(" + requests.size() + ")";
+        String requestString = mapper.writeValueAsString(requests);
+        long start = System.nanoTime();
+        String responseString = exchange(event, method, requestString, start);
+        long parseStart = System.nanoTime();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> responseList = mapper.readValue(responseString, List.class);
+        commit(event, method, requestString, responseString, 200, parseStart - start, System.nanoTime() - parseStart);
+
+        Map<Object, Map<String, Object>> responsesById = new HashMap<Object, Map<String, Object>>();
+        for (Map<String, Object> response : responseList) {
+            responsesById.put(response.get("id"), response);
+        }
+        List<Map<String, Object>> ordered = new ArrayList<Map<String, Object>>(requests.size());
+        for (Map<String, Object> request : requests) {
+            Map<String, Object> response = responsesById.get(request.get("id"));
+            if (response == null) {
+                throw new JsonRPCException("No response for batch request id " + request.get("id"));
+            }
+            ordered.add(response);
+        }
+        return ordered;
     }
 
-    private void closeConnection() {
-        connection.disconnect();
+    /*
+     * Exchange a request with the server. Failed calls are recorded here, successful ones by the caller
+     * once the response is parsed.
+     */
+    private String exchange(FlightEvent.Instance event, String method, String request, long start)
+            throws IOException, JsonRPCException {
+        try {
+            return transport.exchange(request);
+        } catch (JsonRPCStatusException e) {
+            commit(event, method, request, e.response, e.httpCode, System.nanoTime() - start, 0);
+            throw e;
+        } catch (JsonRPCException e) {
+            commit(event, method, request, null, Cassette.STATUS_RPC_ERROR, System.nanoTime() - start, 0);
+            throw e;
+        } catch (IOException e) {
+            commit(event, method, request, null, Cassette.STATUS_IO_ERROR, System.nanoTime() - start, 0);
+            throw e;
+        }
     }
 
-    private static void disableSslVerification() {
-        try
-        {
-            // Create a trust manager that does not validate certificate chains
-            TrustManager[] trustAllCerts = new TrustManager[] {new X509TrustManager() {
-                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
-                public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                }
-                public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                }
-            }
-            };
+    private static void commit(FlightEvent.Instance event, String method, String request, String response,
+                               int status, long exchangeNanos, long parseNanos) {
+        // JSON from the server is ASCII in practice, so characters approximate bytes
+        commit(event, method, request.length(), response == null ? 0 : response.length(), status, exchangeNanos,
+                parseNanos);
+    }
 
-            // Install the all-trusting trust manager
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+    private static void commit(FlightEvent.Instance event, String method, long requestSize, long responseSize,
+                               int status, long exchangeNanos, long parseNanos) {
+        if (event.isEnabled()) {
+            event.commit(method, requestSize, responseSize, status, exchangeNanos, parseNanos);
+        }
+    }
 
-            // Create all-trusting host name verifier
-            HostnameVerifier allHostsValid = new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
-            };
-
-            // Install the all-trusting host verifier
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (KeyManagementException e) {
-            e.printStackTrace();
+    /**
+     * Create a request object for {@link #send(Map)} or {@link #sendBatch(List)} with a new request id
+     *
+     * @param method The RPC method name
+     * @param params The parameters, trailing {@code null} entries are removed
+     * @return A JSON-RPC request object
+     */
+    public Map<String, Object> createRequest(String method, List<Object> params) {
+        Map<String, Object> request = new HashMap<String, Object>();
+        request.put("jsonrpc", "1.0");
+        request.put("method", method);
+        request.put("id", Long.toString(requestId.getAndIncrement()));
+
+        if (params != null) {
+            params.removeAll(Collections.singleton(null));  // Remove null entries (should only be at end)
         }
+        request.put("params", params);
+        return request;
+    }
+
+    public Object cliSend(String method, List<Object> params) throws IOException, JsonRPCException {
+        Map<String, Object> response = send(method, params);
+        return response.get("result");
+    }
+
+    public Object cliSend(String method, Object... params) throws IOException, JsonRPCException {
+        Map<String, Object> response = send(method, Arrays.asList(params));
+        return response.get("result");
     }
 }
@@ -0,0 +1,21 @@
+package com.msgilligan.bitcoin.rpc;
+
+import java.io.IOException;
+
+/**
+ * Carries serialized JSON-RPC requests to a server and returns the serialized responses
+ * <p>
+ * {@link RPCClient} serializes requests and parses responses, the transport only moves the JSON text, so
+ * transports can be stacked to record, replay or otherwise intercept traffic. Implementations must be
+ * safe for use by several threads at once.
+ */
+public interface RPCTransport {
+    /**
+     * Send a request object or batch array and wait for the response
+     *
+     * @param request JSON request object or batch array
+     * @return JSON response body
+     * @throws JsonRPCStatusException if the server returned an HTTP status other than 200
+     */
+    String exchange(String request) throws IOException, JsonRPCException;
+}
@@ -0,0 +1,62 @@
+package com.msgilligan.bitcoin.rpc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Transport that records every exchange of another transport to a {@link Cassette} file
+ * <p>
+ * To record a client's traffic:
+ * <pre>
+ * RecordingTransport recorder = new RecordingTransport(client.getTransport(), new File("mainnet.cassette"));
+ * client.setTransport(recorder);
+ * ...
+ * recorder.close();
+ * </pre>
+ * Errors are recorded too and rethrown, so a replay fails the same way. The file is only complete once
+ * the recorder is closed.
+ */
+public class RecordingTransport implements RPCTransport, Closeable {
+    private final RPCTransport delegate;
+    private final Cassette.Writer writer;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param delegate transport to record
+     * @param file     cassette file to create, replacing any existing file
+     */
+    public RecordingTransport(RPCTransport delegate, File file) throws IOException {
+        this.delegate = delegate;
+        this.writer = new Cassette.Writer(file);
+    }
+
+    @Override
+    public String exchange(String request) throws IOException, JsonRPCException {
+        long start = System.nanoTime();
+        try {
+            String response = delegate.exchange(request);
+            record(start, 200, null, request, response);
+            return response;
+        } catch (JsonRPCStatusException e) {
+            record(start, e.httpCode, e.httpMessage, request, e.response);
+            throw e;
+        } catch (JsonRPCException e) {
+            record(start, Cassette.STATUS_RPC_ERROR, e.getMessage(), request, null);
+            throw e;
+        } catch (IOException e) {
+            record(start, Cassette.STATUS_IO_ERROR, e.toString(), request, null);
+            throw e;
+        }
+    }
+
+    private void record(long start, int status, String message, String request, String response) throws IOException {
+        long end = System.nanoTime();
+        writer.write(new Cassette.Entry(start - origin, end - start, status, message, request, response));
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
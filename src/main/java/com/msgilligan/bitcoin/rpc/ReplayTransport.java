@@ -0,0 +1,172 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that answers requests from a {@link Cassette} recorded by {@link RecordingTransport}, without a server
+ * <p>
+ * Requests are matched on their content, ignoring request ids, so a replay doesn't have to issue requests
+ * in the recorded order or with the recorded ids. Identical requests get the recorded responses in recorded
+ * order, and the last one again once those run out. Response ids are rewritten to match the new request.
+ * <p>
+ * Each response is delayed by its recorded duration divided by {@code speed}: 1 replays at recorded speed,
+ * 10 ten times faster and 0 without any delay.
+ */
+public class ReplayTransport implements RPCTransport {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper keyMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Map<String, Track> tracks = new HashMap<String, Track>();
+    private final double speed;
+
+    public ReplayTransport(File cassette, double speed) throws IOException {
+        this(Cassette.read(cassette), speed);
+    }
+
+    public ReplayTransport(List<Cassette.Entry> entries, double speed) throws IOException {
+        this.speed = speed;
+        for (Cassette.Entry entry : entries) {
+            String key = key(entry.request);
+            Track track = tracks.get(key);
+            if (track == null) {
+                track = new Track();
+                tracks.put(key, track);
+            }
+            track.entries.add(entry);
+        }
+    }
+
+    @Override
+    public String exchange(String request) throws IOException, JsonRPCException {
+        Track track = tracks.get(key(request));
+        if (track == null) {
+            throw new JsonRPCException("No recorded response for request: " + request);
+        }
+        Cassette.Entry entry = track.next();
+        delay(entry.durationNanos);
+        switch (entry.status) {
+            case 200:
+                return withIds(entry, request);
+            case Cassette.STATUS_IO_ERROR:
+                throw new IOException(entry.message);
+            case Cassette.STATUS_RPC_ERROR:
+                throw new JsonRPCException(entry.message);
+            default:
+                throw HttpTransport.statusException(mapper, entry.status, entry.message, withIds(entry, request));
+        }
+    }
+
+    /**
+     * @return number of recorded exchanges that have not been replayed yet
+     */
+    public int getRemaining() {
+        int remaining = 0;
+        for (Track track : tracks.values()) {
+            synchronized (track) {
+                remaining += track.entries.size();
+            }
+        }
+        return remaining;
+    }
+
+    private void delay(long recordedNanos) throws InterruptedIOException {
+        if (speed <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep((long) (recordedNanos / speed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replay interrupted");
+        }
+    }
+
+    /* Canonical form of a request or batch: ids removed, object keys sorted */
+    private String key(String request) throws IOException {
+        Object json = mapper.readValue(request, Object.class);
+        if (json instanceof List) {
+            for (Object element : (List<?>) json) {
+                if (element instanceof Map) {
+                    ((Map<?, ?>) element).remove("id");
+                }
+            }
+        } else if (json instanceof Map) {
+            ((Map<?, ?>) json).remove("id");
+        }
+        return keyMapper.writeValueAsString(json);
+    }
+
+    /* The recorded response, with the ids of the recorded request replaced by those of the new one */
+    private String withIds(Cassette.Entry entry, String request) throws IOException {
+        if (entry.response == null) {
+            return null;
+        }
+        List<Object> recordedIds = ids(entry.request);
+        List<Object> ids = ids(request);
+        if (recordedIds.equals(ids)) {
+            return entry.response;
+        }
+        Map<Object, Object> idMap = new HashMap<Object, Object>();
+        for (int i = 0; i < recordedIds.size() && i < ids.size(); i++) {
+            idMap.put(recordedIds.get(i), ids.get(i));
+        }
+        Object response = mapper.readValue(entry.response, Object.class);
+        if (response instanceof List) {
+            for (Object element : (List<?>) response) {
+                replaceId(element, idMap);
+            }
+        } else {
+            replaceId(response, idMap);
+        }
+        return mapper.writeValueAsString(response);
+    }
+
+    private List<Object> ids(String request) throws IOException {
+        Object json = mapper.readValue(request, Object.class);
+        if (json instanceof List) {
+            List<Object> ids = new ArrayList<Object>();
+            for (Object element : (List<?>) json) {
+                ids.add(element instanceof Map ? ((Map<?, ?>) element).get("id") : null);
+            }
+            return ids;
+        }
+        return Collections.singletonList(json instanceof Map ? ((Map<?, ?>) json).get("id") : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void replaceId(Object response, Map<Object, Object> idMap) {
+        if (response instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) response;
+            if (idMap.containsKey(map.get("id"))) {
+                map.put("id", idMap.get(map.get("id")));
+            }
+        }
+    }
+
+    /**
+     * Recorded exchanges for one request, in recorded order
+     */
+    private static class Track {
+        final ArrayDeque<Cassette.Entry> entries = new ArrayDeque<Cassette.Entry>();
+        Cassette.Entry last;
+
+        synchronized Cassette.Entry next() {
+            Cassette.Entry entry = entries.poll();
+            if (entry != null) {
+                last = entry;
+            }
+            return last;
+        }
+    }
+}
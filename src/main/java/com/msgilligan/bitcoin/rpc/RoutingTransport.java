@@ -0,0 +1,393 @@
+package com.msgilligan.bitcoin.rpc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that spreads read-only requests over several nodes and sends everything else to a primary
+ * <p>
+ * To read from two replicas as well as the primary:
+ * <pre>
+ * RoutingTransport routing = new RoutingTransport(client.getTransport(), Arrays.asList(
+ *         new HttpTransport(replica1, rpcuser, rpcpassword),
+ *         new HttpTransport(replica2, rpcuser, rpcpassword)));
+ * client.setTransport(routing);
+ * </pre>
+ * A request, or batch, is a read if all its methods are in the set of read methods, by default
+ * {@link #DEFAULT_READ_METHODS}. Reads go round-robin to the nodes, primary included, that answered the
+ * last {@code getblockcount} check and are at the highest block count, so a lagging replica gets no reads.
+ * Nodes are checked by the first read after the check interval, or by calling {@link #checkNodes()}. A
+ * replica that fails with an {@link IOException} gets no reads until the next check and the read is sent
+ * to the primary instead. JSON-RPC errors are answers and are returned as they are.
+ * <p>
+ * Wallet methods are not in the default set of reads: each node has its own wallet.
+ * <p>
+ * Reads can also be hedged, see {@link #setHedging(double)}: a read that has not been answered within a
+ * percentile of the recent read latencies is sent to a second node as well, and the first answer is used.
+ */
+public class RoutingTransport implements RPCTransport {
+    /**
+     * Methods that only read the block chain or the Omni state
+     */
+    public static final Set<String> DEFAULT_READ_METHODS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "getblock", "getblockcount", "getblockhash", "getrawtransaction", "validateaddress",
+            "getallbalancesforid_MP", "getactivedexsells_MP", "getbalance_MP", "getproperty_MP",
+            "gettransaction_MP", "listproperties_MP")));
+    public static final long DEFAULT_CHECK_INTERVAL = 5000;
+
+    private static final String CHECK_REQUEST =
+            "{\"jsonrpc\":\"1.0\",\"method\":\"getblockcount\",\"id\":\"routing\",\"params\":[]}";
+
+    private final Node primary;
+    private final List<Node> nodes = new ArrayList<Node>();
+    private final Set<String> readMethods;
+    private final long checkInterval;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory = mapper.getFactory();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile long lastCheck;
+    private volatile List<Node> readers;
+    private volatile double hedgePercentile;
+    private final LatencyWindow latencies = new LatencyWindow();
+    private final AtomicLong hedges = new AtomicLong();
+    private ExecutorService hedgeExecutor;
+
+    public RoutingTransport(RPCTransport primary, List<? extends RPCTransport> replicas) {
+        this(primary, replicas, DEFAULT_READ_METHODS, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param readMethods   methods that may be sent to any node at the current block count
+     * @param checkInterval milliseconds between checks of the nodes' block counts
+     */
+    public RoutingTransport(RPCTransport primary, List<? extends RPCTransport> replicas, Set<String> readMethods,
+                            long checkInterval) {
+        this.primary = new Node(primary);
+        this.readMethods = new HashSet<String>(readMethods);
+        this.checkInterval = checkInterval;
+        nodes.add(this.primary);
+        for (RPCTransport replica : replicas) {
+            nodes.add(new Node(replica));
+        }
+        readers = Collections.singletonList(this.primary);
+        lastCheck = System.currentTimeMillis() - checkInterval;
+    }
+
+    @Override
+    public String exchange(String request) throws IOException, JsonRPCException {
+        if (!isRead(request)) {
+            return primary.transport.exchange(request);
+        }
+        if (System.currentTimeMillis() - lastCheck >= checkInterval && checking.compareAndSet(false, true)) {
+            try {
+                checkNodes();
+            } finally {
+                checking.set(false);
+            }
+        }
+        List<Node> current = readers;
+        int index = (next.getAndIncrement() & Integer.MAX_VALUE) % current.size();
+        Node node = current.get(index);
+        if (hedgePercentile > 0 && current.size() > 1) {
+            return hedged(request, node, current.get((index + 1) % current.size()));
+        }
+        if (node == primary) {
+            return primary.transport.exchange(request);
+        }
+        try {
+            return node.transport.exchange(request);
+        } catch (IOException e) {
+            node.healthy = false;
+            updateReaders();
+            return primary.transport.exchange(request);
+        }
+    }
+
+    /**
+     * Ask every node for its block count and route reads to the nodes at the highest one
+     */
+    public void checkNodes() {
+        for (Node node : nodes) {
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> response = mapper.readValue(node.transport.exchange(CHECK_REQUEST), Map.class);
+                node.height = ((Number) response.get("result")).longValue();
+                node.healthy = true;
+            } catch (IOException e) {
+                node.healthy = false;
+            } catch (JsonRPCException e) {
+                node.healthy = false;
+            } catch (RuntimeException e) {
+                node.healthy = false;     // Not a block count
+            }
+        }
+        lastCheck = System.currentTimeMillis();
+        updateReaders();
+    }
+
+    /**
+     * Hedge reads to cut the latency of nodes that stall, e.g. while validating a block
+     * <p>
+     * Each read is sent to a node from a worker thread. If it has not been answered within the given
+     * percentile of the latencies of the last 1000 reads, it is sent to the next node as well and the first
+     * answer is returned. The other attempt is cancelled and its answer discarded. At the 95th percentile
+     * about one read in 20 is sent twice. Nothing is hedged until 50 reads have been timed, nor with only
+     * one node to read from.
+     *
+     * @param percentile latency percentile after which a read is hedged, e.g. 95; 0 to stop hedging
+     */
+    public synchronized void setHedging(double percentile) {
+        if (percentile < 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Percentile must be from 0 to below 100: " + percentile);
+        }
+        if (percentile > 0 && hedgeExecutor == null) {
+            hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RoutingTransport");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        hedgePercentile = percentile;
+    }
+
+    /**
+     * @return number of reads that were sent to a second node because the first was slow
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the transports reads are currently sent to, the primary only if no node is known to be healthy
+     */
+    public List<RPCTransport> getReadTransports() {
+        List<RPCTransport> transports = new ArrayList<RPCTransport>();
+        for (Node node : readers) {
+            transports.add(node.transport);
+        }
+        return transports;
+    }
+
+    /*
+     * Send a read to the first node and, if it is slower than the hedge percentile or fails, to the
+     * second one too. If both fail the read is sent to the primary, unless it was one of them.
+     */
+    private String hedged(String request, Node first, Node second) throws IOException, JsonRPCException {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = hedgeExecutor;
+        }
+        CompletionService<String> completion = new ExecutorCompletionService<String>(executor);
+        List<Future<String>> attempts = new ArrayList<Future<String>>(2);
+        long start = System.nanoTime();
+        long delay = latencies.percentile(hedgePercentile);
+        attempts.add(completion.submit(attempt(first, request)));
+        IOException failure = null;
+        int failed = 0;
+        try {
+            while (failed < attempts.size()) {
+                Future<String> done;
+                if (attempts.size() == 1 && delay >= 0) {
+                    done = completion.poll(delay - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        hedges.incrementAndGet();
+                        attempts.add(completion.submit(attempt(second, request)));
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        failure = (IOException) cause;
+                        failed++;
+                        if (attempts.size() == 1) {
+                            attempts.add(completion.submit(attempt(second, request)));
+                        }
+                    } else if (cause instanceof JsonRPCException) {
+                        throw (JsonRPCException) cause;     // An answer, if an error
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + request);
+        } finally {
+            for (Future<String> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+        if (first == primary || second == primary) {
+            throw failure;
+        }
+        return primary.transport.exchange(request);
+    }
+
+    private Callable<String> attempt(final Node node, final String request) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws IOException, JsonRPCException {
+                long start = System.nanoTime();
+                try {
+                    String response = node.transport.exchange(request);
+                    latencies.add(System.nanoTime() - start);
+                    return response;
+                } catch (IOException e) {
+                    if (node != primary) {
+                        node.healthy = false;
+                        updateReaders();
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private synchronized void updateReaders() {
+        long height = -1;
+        for (Node node : nodes) {
+            if (node.healthy) {
+                height = Math.max(height, node.height);
+            }
+        }
+        List<Node> ready = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (node.healthy && node.height == height && height >= 0) {
+                ready.add(node);
+            }
+        }
+        readers = ready.isEmpty() ? Collections.singletonList(primary) : ready;
+    }
+
+    /*
+     * True if the request object, or every request of a batch, calls a read method. Parses only as far
+     * as needed and skips parameter values.
+     */
+    private boolean isRead(String request) {
+        try {
+            JsonParser parser = factory.createParser(request);
+            try {
+                JsonToken token = parser.nextToken();
+                boolean batch = token == JsonToken.START_ARRAY;
+                if (batch) {
+                    token = parser.nextToken();
+                }
+                boolean any = false;
+                while (token == JsonToken.START_OBJECT) {
+                    String method = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("method".equals(name)) {
+                            method = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (method == null || !readMethods.contains(method)) {
+                        return false;
+                    }
+                    if (!batch) {
+                        return true;
+                    }
+                    any = true;
+                    token = parser.nextToken();
+                }
+                return any && token == JsonToken.END_ARRAY;
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            return false;   // Let the primary answer whatever this is
+        }
+    }
+
+    /**
+     * Latencies of the last successful reads, in nanoseconds
+     */
+    private static class LatencyWindow {
+        static final int SIZE = 1000;
+        static final int MIN_SAMPLES = 50;
+        private static final int RECOMPUTE_EVERY = 50;
+
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private int next;               // Slot of the next sample, wraps around
+        private int sinceRecompute;     // Samples added since the percentile was invalidated
+        private double percentile = -1;
+        private long value = -1;
+
+        synchronized void add(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % SIZE;
+            count = Math.min(count + 1, SIZE);
+            if (++sinceRecompute == RECOMPUTE_EVERY) {
+                sinceRecompute = 0;
+                value = -1;
+            }
+        }
+
+        /**
+         * @return the latency at a percentile, or -1 if there are too few samples
+         */
+        synchronized long percentile(double p) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (value < 0 || p != percentile) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                percentile = p;
+                value = sorted[Math.max(0, (int) Math.ceil(p / 100 * count) - 1)];
+            }
+            return value;
+        }
+    }
+
+    private static class Node {
+        final RPCTransport transport;
+        volatile boolean healthy;
+        volatile long height = -1;
+
+        Node(RPCTransport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.msgilligan.bitcoin.rpc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Transport that can hand the response body to the caller while it arrives
+ * <p>
+ * Used by {@link RPCClient#sendForStream(String, java.util.List, ResponseReader)} for results too large to
+ * hold as a string. Transports that only implement {@link RPCTransport} still work there, the reader gets
+ * the complete response instead.
+ */
+public interface StreamingTransport extends RPCTransport {
+    /**
+     * Reads a response body, e.g. with a streaming JSON parser
+     */
+    interface ResponseReader<T> {
+        T read(InputStream response) throws IOException, JsonRPCException;
+    }
+
+    /**
+     * Send a request object and read the response with {@code reader} as it arrives
+     *
+     * @param request JSON request object
+     * @param reader  Reads the body of a successful response
+     * @return the result of {@code reader}
+     * @throws JsonRPCStatusException if the server returned an HTTP status other than 200, the reader isn't called
+     */
+    <T> T exchange(String request, ResponseReader<T> reader) throws IOException, JsonRPCException;
+}
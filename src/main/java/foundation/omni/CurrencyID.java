@@ -1,5 +1,9 @@
 package foundation.omni;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * Number type to represent a Master Protocol Currency ID
  */
@@ -17,10 +21,17 @@ public final class CurrencyID extends Number implements Cloneable {
     public static final long    MaidSafeCoin_VALUE = 3;
     public static final long    TetherUS_VALUE = 31;
 
-    public static final CurrencyID  MSC = new CurrencyID(MSC_VALUE);
-    public static final CurrencyID  TMSC = new CurrencyID(TMSC_VALUE);
-    public static final CurrencyID  MaidSafeCoin = new CurrencyID(MaidSafeCoin_VALUE);
-    public static final CurrencyID  TetherUS = new CurrencyID(TetherUS_VALUE);
+    /* Property IDs are assigned sequentially in each ecosystem, so the low IDs of both are cached in arrays */
+    private static final int    CACHE_SIZE = 4096;
+    private static final long   FIRST_TEST_ECOSYSTEM_VALUE = MAX_REAL_ECOSYSTEM_VALUE + 1;
+    private static final AtomicReferenceArray<CurrencyID> realCache = new AtomicReferenceArray<CurrencyID>(CACHE_SIZE);
+    private static final AtomicReferenceArray<CurrencyID> testCache = new AtomicReferenceArray<CurrencyID>(CACHE_SIZE);
+    private static final ConcurrentMap<Long, CurrencyID> overflowCache = new ConcurrentHashMap<Long, CurrencyID>();
+
+    public static final CurrencyID  MSC = valueOf(MSC_VALUE);
+    public static final CurrencyID  TMSC = valueOf(TMSC_VALUE);
+    public static final CurrencyID  MaidSafeCoin = valueOf(MaidSafeCoin_VALUE);
+    public static final CurrencyID  TetherUS = valueOf(TetherUS_VALUE);
 
     public CurrencyID(long value) {
         if (value < MIN_VALUE) {
@@ -32,6 +43,45 @@ public final class CurrencyID extends Number implements Cloneable {
         this.value = value;
     }
 
+    /**
+     * Return the canonical (interned) instance for a currency ID.
+     * <p>
+     * Prefer this to the constructor when parsing IDs in bulk, as repeated IDs
+     * share a single instance instead of allocating a new one each time.
+     *
+     * @param value the numeric currency ID
+     * @return the shared CurrencyID instance for {@code value}
+     * @throws NumberFormatException if {@code value} is out of range
+     */
+    public static CurrencyID valueOf(long value) {
+        AtomicReferenceArray<CurrencyID> cache = null;
+        int index = 0;
+        if (value >= MIN_VALUE && value < MIN_VALUE + CACHE_SIZE) {
+            cache = realCache;
+            index = (int) (value - MIN_VALUE);
+        } else if (value >= FIRST_TEST_ECOSYSTEM_VALUE && value < FIRST_TEST_ECOSYSTEM_VALUE + CACHE_SIZE) {
+            cache = testCache;
+            index = (int) (value - FIRST_TEST_ECOSYSTEM_VALUE);
+        }
+        if (cache != null) {
+            CurrencyID cached = cache.get(index);
+            if (cached == null) {
+                cache.compareAndSet(index, null, new CurrencyID(value));
+                cached = cache.get(index);
+            }
+            return cached;
+        }
+        CurrencyID cached = overflowCache.get(value);
+        if (cached == null) {
+            CurrencyID created = new CurrencyID(value);
+            cached = overflowCache.putIfAbsent(value, created);
+            if (cached == null) {
+                cached = created;
+            }
+        }
+        return cached;
+    }
+
     public Ecosystem ecosystem() {
         if (value == MSC_VALUE) {
             return Ecosystem.MSC;
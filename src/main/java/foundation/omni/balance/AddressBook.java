@@ -0,0 +1,132 @@
+package foundation.omni.balance;
+
+import java.util.Arrays;
+
+/**
+ * Interns Bitcoin address strings into dense {@code int} IDs.
+ * <p>
+ * IDs are assigned sequentially starting at 0, so they can be used as array indexes and as
+ * part of the packed keys in {@link BalanceTable}. Each address string is stored exactly once,
+ * no matter how many currencies it holds.
+ * <p>
+ * Not thread-safe: callers that share an instance between threads must synchronize.
+ */
+public class AddressBook {
+    private static final int NO_ID = -1;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private String[] addresses;     // address by ID
+    private int[] slots;            // open-addressing hash table of IDs, NO_ID if empty
+    private int size;
+
+    public AddressBook() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of addresses to size the book for without resizing
+     */
+    public AddressBook(int expectedSize) {
+        addresses = new String[Math.max(expectedSize, 16)];
+        slots = newSlots(tableSizeFor(addresses.length));
+    }
+
+    /**
+     * Return the ID for an address, assigning a new one if the address hasn't been seen
+     *
+     * @param address a Base58 Bitcoin address
+     * @return the ID of the address
+     */
+    public int intern(String address) {
+        int mask = slots.length - 1;
+        int slot = mix(address.hashCode()) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == NO_ID) {
+                break;
+            }
+            if (addresses[id].equals(address)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        int id = size++;
+        addresses[id] = address;
+        slots[slot] = id;
+        if (size * 4 > slots.length * 3) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Look up an address without assigning an ID
+     *
+     * @param address a Base58 Bitcoin address
+     * @return the ID of the address or -1 if it isn't in the book
+     */
+    public int lookup(String address) {
+        int mask = slots.length - 1;
+        int slot = mix(address.hashCode()) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == NO_ID || addresses[id].equals(address)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @param id an ID returned by {@link #intern(String)}
+     * @return the address string for the ID
+     */
+    public String getAddress(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No address with id " + id);
+        }
+        return addresses[id];
+    }
+
+    /**
+     * @return the number of addresses in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int newLength) {
+        int[] newSlots = newSlots(newLength);
+        int mask = newLength - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(addresses[id].hashCode()) & mask;
+            while (newSlots[slot] != NO_ID) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id;
+        }
+        slots = newSlots;
+    }
+
+    private static int[] newSlots(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, NO_ID);
+        return table;
+    }
+
+    static int tableSizeFor(int entries) {
+        int needed = (int) Math.min((entries * 4L) / 3 + 1, 1 << 30);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /* Spread String hash codes, which are weak in the low bits for similar addresses */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
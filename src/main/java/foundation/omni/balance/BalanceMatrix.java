@@ -0,0 +1,100 @@
+package foundation.omni.balance;
+
+import com.google.bitcoin.core.Address;
+import foundation.omni.CurrencyID;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Balances of a fixed set of addresses in a fixed set of currencies.
+ * <p>
+ * Amounts are stored row-major in two {@code long} arrays, one row per address and one column per
+ * currency, in the smallest unit of each currency. Missing balances are zero.
+ */
+public class BalanceMatrix {
+    private final List<Address> addresses;
+    private final List<CurrencyID> currencies;
+    private final Map<Address, Integer> addressIndex;
+    private final Map<CurrencyID, Integer> currencyIndex;
+    private final long[] balances;
+    private final long[] reserves;
+    private final int blockHeight;
+
+    public BalanceMatrix(List<Address> addresses, List<CurrencyID> currencies, long[] balances, long[] reserves,
+                         int blockHeight) {
+        if (balances.length != addresses.size() * currencies.size() || reserves.length != balances.length) {
+            throw new IllegalArgumentException("matrix size doesn't match addresses and currencies");
+        }
+        this.addresses = Collections.unmodifiableList(addresses);
+        this.currencies = Collections.unmodifiableList(currencies);
+        this.addressIndex = indexOf(addresses);
+        this.currencyIndex = indexOf(currencies);
+        this.balances = balances;
+        this.reserves = reserves;
+        this.blockHeight = blockHeight;
+    }
+
+    private static <T> Map<T, Integer> indexOf(List<T> items) {
+        Map<T, Integer> index = new HashMap<T, Integer>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            index.put(items.get(i), i);
+        }
+        return index;
+    }
+
+    public List<Address> getAddresses() {
+        return addresses;
+    }
+
+    public List<CurrencyID> getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * @return the block height the balances are valid at
+     */
+    public int getBlockHeight() {
+        return blockHeight;
+    }
+
+    public long getBalance(int addressIndex, int currencyIndex) {
+        return balances[cell(addressIndex, currencyIndex)];
+    }
+
+    public long getReserved(int addressIndex, int currencyIndex) {
+        return reserves[cell(addressIndex, currencyIndex)];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the address or currency is not in the matrix
+     */
+    public long getBalance(Address address, CurrencyID currency) {
+        return balances[cell(address, currency)];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the address or currency is not in the matrix
+     */
+    public long getReserved(Address address, CurrencyID currency) {
+        return reserves[cell(address, currency)];
+    }
+
+    private int cell(int addressIndex, int currencyIndex) {
+        if (currencyIndex < 0 || currencyIndex >= currencies.size()) {
+            throw new IndexOutOfBoundsException("currency index " + currencyIndex);
+        }
+        return addressIndex * currencies.size() + currencyIndex;
+    }
+
+    private int cell(Address address, CurrencyID currency) {
+        Integer row = addressIndex.get(address);
+        Integer column = currencyIndex.get(currency);
+        if (row == null || column == null) {
+            throw new IllegalArgumentException("Not in matrix: " + address + ", " + currency);
+        }
+        return row * currencies.size() + column;
+    }
+}
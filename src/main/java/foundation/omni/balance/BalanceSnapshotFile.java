@@ -0,0 +1,387 @@
+package foundation.omni.balance;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped checkpoint of a {@link BalanceStore}, read in place without loading
+ * <p>
+ * Layout, big-endian, after a fixed header:
+ * <ol>
+ *     <li>Entries: an open-addressing hash table of {@code (key, balance, reserved, journal offset)},
+ *     keys packed as in {@link BalanceTable}, 0 for an empty slot</li>
+ *     <li>Address index: a hash table of address ID + 1, 0 for an empty slot</li>
+ *     <li>Address offsets: {@code addressCount + 1} offsets into the address bytes</li>
+ *     <li>Address bytes: the addresses in ID order, ASCII</li>
+ *     <li>Currencies: {@code (currency, start, count)} into the holder order, sorted by currency</li>
+ *     <li>Holder order: entry slots with a balance, by currency and then by balance, largest first</li>
+ *     <li>Recent blocks: {@code (height, journal offset, hash)}, for rollback</li>
+ * </ol>
+ */
+class BalanceSnapshotFile {
+    static final String MAGIC = "OMNIBS01";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int HEADER_BYTES = 64;
+    private static final int ENTRY_BYTES = 32;
+    private static final int CURRENCY_BYTES = 16;
+    private static final BalanceSnapshotFile EMPTY = new BalanceSnapshotFile();
+
+    final int height;
+    final int baseHeight;
+    final long journalOffset;
+    final int holderCount;
+    final int addressCount;
+    final List<BalanceStore.Block> blocks;
+
+    private final int tableLength;
+    private final int addressTableLength;
+    private final int currencyCount;
+    private final ByteBuffer entries;
+    private final ByteBuffer addressSlots;
+    private final ByteBuffer addressOffsets;
+    private final ByteBuffer addressBytes;
+    private final ByteBuffer currencies;
+    private final ByteBuffer order;
+
+    private BalanceSnapshotFile() {
+        height = -1;
+        baseHeight = -1;
+        journalOffset = -1;
+        holderCount = 0;
+        addressCount = 0;
+        blocks = Collections.emptyList();
+        tableLength = 0;
+        addressTableLength = 0;
+        currencyCount = 0;
+        entries = addressSlots = addressOffsets = addressBytes = currencies = order = null;
+    }
+
+    private BalanceSnapshotFile(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        header.flip();
+        byte[] magic = new byte[MAGIC.length()];
+        header.get(magic);
+        if (!MAGIC.equals(new String(magic, ASCII))) {
+            throw new IOException("Not a balance snapshot");
+        }
+        height = header.getInt();
+        baseHeight = header.getInt();
+        journalOffset = header.getLong();
+        tableLength = header.getInt();
+        holderCount = header.getInt();
+        addressCount = header.getInt();
+        addressTableLength = header.getInt();
+        currencyCount = header.getInt();
+        int blockCount = header.getInt();
+        long addressBytesLength = header.getLong();
+
+        long position = HEADER_BYTES;
+        entries = map(channel, position, (long) tableLength * ENTRY_BYTES);
+        position += (long) tableLength * ENTRY_BYTES;
+        addressSlots = map(channel, position, (long) addressTableLength * 4);
+        position += (long) addressTableLength * 4;
+        addressOffsets = map(channel, position, (long) (addressCount + 1) * 8);
+        position += (long) (addressCount + 1) * 8;
+        addressBytes = map(channel, position, addressBytesLength);
+        position += addressBytesLength;
+        currencies = map(channel, position, (long) currencyCount * CURRENCY_BYTES);
+        position += (long) currencyCount * CURRENCY_BYTES;
+        order = map(channel, position, (long) holderCount * 4);
+        position += (long) holderCount * 4;
+
+        ByteBuffer blockData = ByteBuffer.allocate((int) (channel.size() - position));
+        readFully(channel, blockData, position);
+        blockData.flip();
+        List<BalanceStore.Block> blockList = new ArrayList<BalanceStore.Block>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            int blockHeight = blockData.getInt();
+            long offset = blockData.getLong();
+            byte[] hash = new byte[blockData.getShort()];
+            blockData.get(hash);
+            blockList.add(new BalanceStore.Block(blockHeight, new String(hash, ASCII), offset));
+        }
+        blocks = Collections.unmodifiableList(blockList);
+    }
+
+    /**
+     * Map a snapshot file, or return an empty snapshot if there is none
+     */
+    static BalanceSnapshotFile open(File file) throws IOException {
+        if (!file.exists()) {
+            return EMPTY;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new BalanceSnapshotFile(raf.getChannel());
+        } finally {
+            raf.close();    // Mappings stay valid after the channel is closed
+        }
+    }
+
+    /**
+     * @return the slot of the key, or -1
+     */
+    int find(long key) {
+        if (tableLength == 0) {
+            return -1;
+        }
+        int mask = tableLength - 1;
+        int slot = BalanceTable.mix(key) & mask;
+        while (true) {
+            long k = entries.getLong(slot * ENTRY_BYTES);
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int getTableLength() {
+        return tableLength;
+    }
+
+    long keyAt(int slot) {
+        return entries.getLong(slot * ENTRY_BYTES);
+    }
+
+    long balanceAt(int slot) {
+        return entries.getLong(slot * ENTRY_BYTES + 8);
+    }
+
+    long reservedAt(int slot) {
+        return entries.getLong(slot * ENTRY_BYTES + 16);
+    }
+
+    long offsetAt(int slot) {
+        return entries.getLong(slot * ENTRY_BYTES + 24);
+    }
+
+    /**
+     * @return the ID of an address, or -1
+     */
+    int lookupAddress(String address) {
+        if (addressTableLength == 0) {
+            return -1;
+        }
+        byte[] bytes = address.getBytes(ASCII);
+        int mask = addressTableLength - 1;
+        int slot = AddressBook.mix(address.hashCode()) & mask;
+        while (true) {
+            int id = addressSlots.getInt(slot * 4) - 1;
+            if (id < 0 || addressEquals(id, bytes)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    String getAddress(int id) {
+        long start = addressOffsets.getLong(id * 8);
+        byte[] bytes = new byte[(int) (addressOffsets.getLong(id * 8 + 8) - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = addressBytes.get((int) start + i);
+        }
+        return new String(bytes, ASCII);
+    }
+
+    private boolean addressEquals(int id, byte[] bytes) {
+        long start = addressOffsets.getLong(id * 8);
+        if (addressOffsets.getLong(id * 8 + 8) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (addressBytes.get((int) start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code {start, count}} of the currency's holders in the holder order
+     */
+    int[] holderRange(long currencyId) {
+        int low = 0;
+        int high = currencyCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long currency = currencies.getLong(middle * CURRENCY_BYTES);
+            if (currency < currencyId) {
+                low = middle + 1;
+            } else if (currency > currencyId) {
+                high = middle - 1;
+            } else {
+                return new int[] { currencies.getInt(middle * CURRENCY_BYTES + 8),
+                        currencies.getInt(middle * CURRENCY_BYTES + 12) };
+            }
+        }
+        return new int[] { 0, 0 };
+    }
+
+    /**
+     * @return the entry slot at a position of the holder order
+     */
+    int holderSlot(int index) {
+        return order.getInt(index * 4);
+    }
+
+    /**
+     * Write a snapshot
+     *
+     * @param keys      hash table of packed keys, laid out with {@link BalanceTable#mix(long)}, 0 for empty slots
+     * @param addresses all addresses, by ID
+     */
+    static void write(File file, int height, int baseHeight, long journalOffset, long[] keys, long[] balances,
+                      long[] reserves, long[] offsets, List<String> addresses, List<BalanceStore.Block> blocks)
+            throws IOException {
+        int[] order = holderOrder(keys, balances);
+        List<long[]> currencyRanges = new ArrayList<long[]>();
+        for (int i = 0; i < order.length; i++) {
+            long currency = BalanceTable.currencyOf(keys[order[i]]);
+            if (currencyRanges.isEmpty() || currencyRanges.get(currencyRanges.size() - 1)[0] != currency) {
+                currencyRanges.add(new long[] { currency, i, 0 });
+            }
+            currencyRanges.get(currencyRanges.size() - 1)[2]++;
+        }
+
+        int addressTableLength = AddressBook.tableSizeFor(Math.max(addresses.size(), 16));
+        int[] addressSlots = new int[addressTableLength];
+        long addressBytesLength = 0;
+        for (int id = 0; id < addresses.size(); id++) {
+            int mask = addressTableLength - 1;
+            int slot = AddressBook.mix(addresses.get(id).hashCode()) & mask;
+            while (addressSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            addressSlots[slot] = id + 1;
+            addressBytesLength += addresses.get(id).length();
+        }
+
+        FileOutputStream stream = new FileOutputStream(file);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        try {
+            out.write(MAGIC.getBytes(ASCII));
+            out.writeInt(height);
+            out.writeInt(baseHeight);
+            out.writeLong(journalOffset);
+            out.writeInt(keys.length);
+            out.writeInt(order.length);
+            out.writeInt(addresses.size());
+            out.writeInt(addressTableLength);
+            out.writeInt(currencyRanges.size());
+            out.writeInt(blocks.size());
+            out.writeLong(addressBytesLength);
+            out.write(new byte[HEADER_BYTES - out.size()]);
+            for (int slot = 0; slot < keys.length; slot++) {
+                out.writeLong(keys[slot]);
+                out.writeLong(balances[slot]);
+                out.writeLong(reserves[slot]);
+                out.writeLong(offsets[slot]);
+            }
+            for (int slot : addressSlots) {
+                out.writeInt(slot);
+            }
+            long offset = 0;
+            for (String address : addresses) {
+                out.writeLong(offset);
+                offset += address.length();
+            }
+            out.writeLong(offset);
+            for (String address : addresses) {
+                out.write(address.getBytes(ASCII));
+            }
+            for (long[] range : currencyRanges) {
+                out.writeLong(range[0]);
+                out.writeInt((int) range[1]);
+                out.writeInt((int) range[2]);
+            }
+            for (int slot : order) {
+                out.writeInt(slot);
+            }
+            for (BalanceStore.Block block : blocks) {
+                byte[] hash = block.hash.getBytes(ASCII);
+                out.writeInt(block.height);
+                out.writeLong(block.offset);
+                out.writeShort(hash.length);
+                out.write(hash);
+            }
+            out.flush();
+            stream.getFD().sync();     // Before the file replaces the previous snapshot
+        } finally {
+            out.close();
+        }
+    }
+
+    /* Slots with a balance, by currency and then by balance, largest first */
+    private static int[] holderOrder(long[] keys, long[] balances) {
+        int[] slots = new int[keys.length];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && balances[slot] != 0) {
+                slots[count++] = slot;
+            }
+        }
+        slots = Arrays.copyOf(slots, count);
+        mergeSort(slots, new int[count], 0, count, keys, balances);
+        return slots;
+    }
+
+    private static void mergeSort(int[] slots, int[] scratch, int from, int to, long[] keys, long[] balances) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(slots, scratch, from, middle, keys, balances);
+        mergeSort(slots, scratch, middle, to, keys, balances);
+        System.arraycopy(slots, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && !before(scratch[right], scratch[left], keys, balances))) {
+                slots[i] = scratch[left++];
+            } else {
+                slots[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static boolean before(int slot1, int slot2, long[] keys, long[] balances) {
+        long currency1 = BalanceTable.currencyOf(keys[slot1]);
+        long currency2 = BalanceTable.currencyOf(keys[slot2]);
+        if (currency1 != currency2) {
+            return currency1 < currency2;
+        }
+        return balances[slot1] > balances[slot2];
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section too large to map: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated balance snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,807 @@
+package foundation.omni.balance;
+
+import foundation.omni.CurrencyID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent balances by (currency, address), updated block by block without asking a node
+ * <p>
+ * The store is a directory with two files:
+ * <ul>
+ *     <li>{@code balances.journal}, append-only: each block is written as its address and balance
+ *     changes, with a checksum, and forced to disk before {@link BlockUpdate#commit()} returns. Every
+ *     change records the offset of the previous change of the same balance, which chains the history
+ *     of each balance for {@link #getBalanceAt} and {@link #rollback}.</li>
+ *     <li>{@code balances.snapshot}, a checkpoint of all balances that is memory-mapped and read in place
+ *     (see {@link BalanceSnapshotFile}). It is rewritten by {@link #checkpoint()}, automatically once the
+ *     journal has grown by {@link #setCheckpointBytes(long) a number of bytes} since the last one.</li>
+ * </ul>
+ * Opening a store maps the snapshot and replays the journal written since it, so it takes milliseconds
+ * regardless of the number of balances. A block that was only partly written is discarded. The snapshot
+ * can be deleted at any time, it is rebuilt from the journal.
+ * <p>
+ * Amounts are in the smallest unit of the currency, as in {@link BalanceTable}. Addresses must be ASCII
+ * (Base58). Only the last {@value #MAX_ROLLBACK_DEPTH} blocks can be rolled back, history goes back to the
+ * first block written.
+ * <p>
+ * Thread-safe: all methods are synchronized.
+ */
+public class BalanceStore implements Closeable {
+    public static final int MAX_ROLLBACK_DEPTH = 100;
+    public static final long DEFAULT_CHECKPOINT_BYTES = 16L << 20;
+    static final String JOURNAL_FILE = "balances.journal";
+    static final String SNAPSHOT_FILE = "balances.snapshot";
+    static final String JOURNAL_MAGIC = "OMNIBJ01";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte ADDRESS = 'A';
+    private static final byte BLOCK = 'B';
+    private static final byte ENTRY = 'E';
+    private static final byte COMMIT = 'C';
+    private static final byte UNDO = 'U';
+    private static final int ENTRY_BYTES = 41;
+    private static final long[] NO_ENTRY = { 0, 0, -1 };
+
+    private final File directory;
+    private final RandomAccessFile journalFile;
+    private final FileChannel journal;
+    private long journalLength;
+    private long checkpointBytes = DEFAULT_CHECKPOINT_BYTES;
+
+    private BalanceSnapshotFile snapshot;
+    private final Map<Long, long[]> recent = new HashMap<Long, long[]>();     // {balance, reserved, offset}
+    private final List<String> newAddresses = new ArrayList<String>();
+    private final Map<String, Integer> newAddressIds = new HashMap<String, Integer>();
+    private final List<Block> blocks = new ArrayList<Block>();
+    private int height;
+    private int baseHeight;
+
+    private BalanceStore(File directory) throws IOException {
+        this.directory = directory;
+        snapshot = BalanceSnapshotFile.open(new File(directory, SNAPSHOT_FILE));
+        height = snapshot.height;
+        baseHeight = snapshot.baseHeight;
+        blocks.addAll(snapshot.blocks);
+        journalFile = new RandomAccessFile(new File(directory, JOURNAL_FILE), "rw");
+        journal = journalFile.getChannel();
+        try {
+            byte[] magic = JOURNAL_MAGIC.getBytes(UTF8);
+            if (journal.size() == 0) {
+                write(ByteBuffer.wrap(magic), 0);
+                journal.force(true);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(magic.length);
+                read(header, 0);
+                if (!JOURNAL_MAGIC.equals(new String(header.array(), UTF8))) {
+                    throw new IOException("Not a balance journal");
+                }
+            }
+            long start = snapshot.journalOffset >= 0 ? snapshot.journalOffset : magic.length;
+            if (start > journal.size()) {
+                throw new IOException("Balance snapshot is ahead of the journal, delete " + SNAPSHOT_FILE);
+            }
+            replay(start);
+        } catch (IOException e) {
+            journalFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a store, creating it if the directory is empty
+     */
+    public static BalanceStore open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        return new BalanceStore(directory);
+    }
+
+    /**
+     * @param bytes journal growth after which a block commit writes a new checkpoint, 0 to never do so
+     */
+    public synchronized void setCheckpointBytes(long bytes) {
+        checkpointBytes = bytes;
+    }
+
+    /**
+     * @return height of the last block, or -1 if the store is empty
+     */
+    public synchronized int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return hash of one of the last {@value #MAX_ROLLBACK_DEPTH} blocks as given to {@link #beginBlock},
+     * or null, e.g. to compare with the node's when checking for a reorg
+     */
+    public synchronized String getBlockHash(int blockHeight) {
+        for (Block block : blocks) {
+            if (block.height == blockHeight) {
+                return block.hash;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start the changes of the next block
+     *
+     * @param blockHeight {@link #getHeight()} + 1, or any height for the first block
+     */
+    public synchronized BlockUpdate beginBlock(int blockHeight, String blockHash) {
+        checkNextHeight(blockHeight);
+        return new BlockUpdate(blockHeight, blockHash == null ? "" : blockHash);
+    }
+
+    /**
+     * @return available balance, or 0 if there is none
+     */
+    public synchronized long getBalance(CurrencyID currency, String address) {
+        return current(currency, address)[0];
+    }
+
+    /**
+     * @return reserved balance, or 0 if there is none
+     */
+    public synchronized long getReserved(CurrencyID currency, String address) {
+        return current(currency, address)[1];
+    }
+
+    /**
+     * @return available balance after the block at {@code blockHeight}
+     * @throws IllegalArgumentException if the height is before the first block of the store
+     */
+    public synchronized long getBalanceAt(CurrencyID currency, String address, int blockHeight) throws IOException {
+        return valueAt(currency, address, blockHeight)[0];
+    }
+
+    /**
+     * @return reserved balance after the block at {@code blockHeight}
+     * @throws IllegalArgumentException if the height is before the first block of the store
+     */
+    public synchronized long getReservedAt(CurrencyID currency, String address, int blockHeight) throws IOException {
+        return valueAt(currency, address, blockHeight)[1];
+    }
+
+    /**
+     * @return up to {@code count} holders of the currency, largest available balance first
+     */
+    public synchronized List<Holder> getTopHolders(CurrencyID currency, int count) {
+        long currencyId = currency.longValue();
+        List<long[]> changed = new ArrayList<long[]>();     // {key, balance, reserved}
+        for (Map.Entry<Long, long[]> entry : recent.entrySet()) {
+            long key = entry.getKey();
+            if (BalanceTable.currencyOf(key) == currencyId && entry.getValue()[0] > 0) {
+                changed.add(new long[] { key, entry.getValue()[0], entry.getValue()[1] });
+            }
+        }
+        Collections.sort(changed, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[1] > b[1] ? -1 : a[1] < b[1] ? 1 : 0;
+            }
+        });
+        int[] range = snapshot.holderRange(currencyId);
+        int next = range[0];
+        int end = range[0] + range[1];
+        int nextChanged = 0;
+        List<Holder> holders = new ArrayList<Holder>(Math.min(count, range[1] + changed.size()));
+        while (holders.size() < count) {
+            while (next < end && recent.containsKey(snapshot.keyAt(snapshot.holderSlot(next)))) {
+                next++;     // Superseded by a later change
+            }
+            long[] candidate = nextChanged < changed.size() ? changed.get(nextChanged) : null;
+            if (next < end && (candidate == null || snapshot.balanceAt(snapshot.holderSlot(next)) >= candidate[1])) {
+                int slot = snapshot.holderSlot(next++);
+                holders.add(new Holder(getAddress(BalanceTable.addressOf(snapshot.keyAt(slot))),
+                        snapshot.balanceAt(slot), snapshot.reservedAt(slot)));
+            } else if (candidate != null) {
+                nextChanged++;
+                holders.add(new Holder(getAddress(BalanceTable.addressOf(candidate[0])), candidate[1], candidate[2]));
+            } else {
+                break;
+            }
+        }
+        return holders;
+    }
+
+    /**
+     * Undo the blocks above a height, e.g. after a reorg
+     *
+     * @throws IllegalArgumentException if that is more than {@value #MAX_ROLLBACK_DEPTH} blocks back
+     */
+    public synchronized void rollback(int blockHeight) throws IOException {
+        if (blockHeight >= height) {
+            return;
+        }
+        if (blocks.isEmpty() || blockHeight < blocks.get(0).height - 1) {
+            throw new IllegalArgumentException("Can't roll back to " + blockHeight + ", only the last " +
+                    blocks.size() + " blocks are kept");
+        }
+        ByteBuffer record = ByteBuffer.allocate(5);
+        record.put(UNDO).putInt(blockHeight).flip();
+        write(record, journalLength);
+        journal.force(false);
+        journalLength += 5;
+        undo(blockHeight);
+    }
+
+    /**
+     * Write a new snapshot of all balances, so reopening only replays the journal written after it
+     */
+    public synchronized void checkpoint() throws IOException {
+        int count = 0;
+        for (int slot = 0; slot < snapshot.getTableLength(); slot++) {
+            long key = snapshot.keyAt(slot);
+            if (key != 0 && !recent.containsKey(key)) {
+                count++;
+            }
+        }
+        for (long[] value : recent.values()) {
+            if (value[2] >= 0) {
+                count++;
+            }
+        }
+        int length = AddressBook.tableSizeFor(Math.max(count, 16));
+        long[] keys = new long[length];
+        long[] balances = new long[length];
+        long[] reserves = new long[length];
+        long[] offsets = new long[length];
+        for (int slot = 0; slot < snapshot.getTableLength(); slot++) {
+            long key = snapshot.keyAt(slot);
+            if (key != 0 && !recent.containsKey(key)) {
+                insert(keys, key, balances, snapshot.balanceAt(slot), reserves, snapshot.reservedAt(slot),
+                        offsets, snapshot.offsetAt(slot));
+            }
+        }
+        for (Map.Entry<Long, long[]> entry : recent.entrySet()) {
+            long[] value = entry.getValue();
+            if (value[2] >= 0) {    // Entries rolled back to before their first change are dropped
+                insert(keys, entry.getKey(), balances, value[0], reserves, value[1], offsets, value[2]);
+            }
+        }
+        final int addressCount = snapshot.addressCount + newAddresses.size();
+        List<String> addresses = new AbstractList<String>() {
+            @Override
+            public String get(int id) {
+                return getAddress(id);
+            }
+
+            @Override
+            public int size() {
+                return addressCount;
+            }
+        };
+        File file = new File(directory, SNAPSHOT_FILE);
+        File temp = new File(directory, SNAPSHOT_FILE + ".tmp");
+        BalanceSnapshotFile.write(temp, height, baseHeight, journalLength, keys, balances, reserves, offsets,
+                addresses, blocks);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshot = BalanceSnapshotFile.open(file);
+        recent.clear();
+        newAddresses.clear();
+        newAddressIds.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journalFile.close();
+    }
+
+    /**
+     * The balance changes of one block, written to the store by {@link #commit()}
+     * <p>
+     * Changes are applied in the order they are made. Nothing is written if the block is not committed.
+     */
+    public class BlockUpdate {
+        private final int blockHeight;
+        private final String blockHash;
+        private final List<Change> changes = new ArrayList<Change>();
+        private boolean committed;
+
+        private BlockUpdate(int blockHeight, String blockHash) {
+            this.blockHeight = blockHeight;
+            this.blockHash = blockHash;
+        }
+
+        /**
+         * Add to the balances of an address, e.g. from a decoded transaction
+         */
+        public BlockUpdate add(CurrencyID currency, String address, long balanceDelta, long reservedDelta) {
+            changes.add(new Change(currency.longValue(), address, false, balanceDelta, reservedDelta));
+            return this;
+        }
+
+        /**
+         * Set the balances of an address, e.g. from the difference of two consensus snapshots
+         */
+        public BlockUpdate set(CurrencyID currency, String address, long balance, long reserved) {
+            changes.add(new Change(currency.longValue(), address, true, balance, reserved));
+            return this;
+        }
+
+        /**
+         * Apply a transaction as returned by {@code gettransaction_MP}
+         * <p>
+         * Only valid simple sends are applied, the effects of other transaction types must be added
+         * with {@link #add} or {@link #set}.
+         *
+         * @return true if the transaction was applied
+         */
+        public boolean applyTransaction(Map<String, Object> transaction) {
+            if (!Boolean.TRUE.equals(transaction.get("valid")) || !"Simple Send".equals(transaction.get("type"))) {
+                return false;
+            }
+            CurrencyID currency = CurrencyID.valueOf(((Number) transaction.get("propertyid")).longValue());
+            boolean divisible = Boolean.TRUE.equals(transaction.get("divisible"));
+            long amount = new BigDecimal(transaction.get("amount").toString())
+                    .movePointRight(divisible ? 8 : 0).longValueExact();
+            add(currency, (String) transaction.get("sendingaddress"), -amount, 0);
+            add(currency, (String) transaction.get("referenceaddress"), amount, 0);
+            return true;
+        }
+
+        /**
+         * Write the block to the journal and apply it
+         *
+         * @throws IllegalArgumentException if a balance would become negative, nothing is written then
+         */
+        public void commit() throws IOException {
+            synchronized (BalanceStore.this) {
+                if (committed) {
+                    throw new IllegalStateException("Block " + blockHeight + " already committed");
+                }
+                BalanceStore.this.commit(this);
+                committed = true;
+            }
+        }
+    }
+
+    /**
+     * A holder of a currency
+     */
+    public static class Holder {
+        private final String address;
+        private final long balance;
+        private final long reserved;
+
+        Holder(String address, long balance, long reserved) {
+            this.address = address;
+            this.balance = balance;
+            this.reserved = reserved;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public long getReserved() {
+            return reserved;
+        }
+
+        @Override
+        public String toString() {
+            return address + ": " + balance + " (" + reserved + " reserved)";
+        }
+    }
+
+    /**
+     * A block kept for rollback, with the journal offset of its first record
+     */
+    static class Block {
+        final int height;
+        final String hash;
+        final long offset;
+
+        Block(int height, String hash, long offset) {
+            this.height = height;
+            this.hash = hash;
+            this.offset = offset;
+        }
+    }
+
+    private static class Change {
+        final long currencyId;
+        final String address;
+        final boolean absolute;
+        final long balance;
+        final long reserved;
+
+        Change(long currencyId, String address, boolean absolute, long balance, long reserved) {
+            this.currencyId = currencyId;
+            this.address = address;
+            this.absolute = absolute;
+            this.balance = balance;
+            this.reserved = reserved;
+        }
+    }
+
+    private void commit(BlockUpdate update) throws IOException {
+        checkNextHeight(update.blockHeight);
+        long start = journalLength;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(BLOCK);
+        data.writeInt(update.blockHeight);
+        writeString(data, update.blockHash);
+
+        Map<Long, long[]> changed = new HashMap<Long, long[]>();
+        List<String> addedAddresses = new ArrayList<String>();
+        Map<String, Integer> addedIds = new HashMap<String, Integer>();
+        for (Change change : update.changes) {
+            int addressId = lookupAddress(change.address);
+            if (addressId < 0) {
+                Integer added = addedIds.get(change.address);
+                if (added == null) {
+                    added = snapshot.addressCount + newAddresses.size() + addedAddresses.size();
+                    addedAddresses.add(change.address);
+                    addedIds.put(change.address, added);
+                    data.writeByte(ADDRESS);
+                    data.writeInt(added);
+                    writeString(data, change.address);
+                }
+                addressId = added;
+            }
+            long key = BalanceTable.entryKey(change.currencyId, addressId);
+            long[] previous = changed.get(key);
+            if (previous == null) {
+                previous = current(key);
+            }
+            long balance = change.absolute ? change.balance : previous[0] + change.balance;
+            long reserved = change.absolute ? change.reserved : previous[1] + change.reserved;
+            if (balance < 0 || reserved < 0) {
+                throw new IllegalArgumentException("Negative balance for " + change.address + " in currency " +
+                        change.currencyId + " at block " + update.blockHeight);
+            }
+            long offset = start + data.size();
+            data.writeByte(ENTRY);
+            data.writeInt(update.blockHeight);
+            data.writeLong(change.currencyId);
+            data.writeInt(addressId);
+            data.writeLong(balance);
+            data.writeLong(reserved);
+            data.writeLong(previous[2]);
+            changed.put(key, new long[] { balance, reserved, offset });
+        }
+        data.writeByte(COMMIT);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        data.writeInt((int) crc.getValue());
+
+        write(ByteBuffer.wrap(bytes.toByteArray()), start);
+        journal.force(false);
+        journalLength += bytes.size();
+
+        for (String address : addedAddresses) {
+            newAddressIds.put(address, snapshot.addressCount + newAddresses.size());
+            newAddresses.add(address);
+        }
+        recent.putAll(changed);
+        addBlock(new Block(update.blockHeight, update.blockHash, start));
+
+        long checkpointStart = snapshot.journalOffset >= 0 ? snapshot.journalOffset : JOURNAL_MAGIC.length();
+        if (checkpointBytes > 0 && journalLength - checkpointStart > checkpointBytes) {
+            checkpoint();
+        }
+    }
+
+    private void checkNextHeight(int blockHeight) {
+        if (height >= 0 && blockHeight != height + 1) {
+            throw new IllegalStateException("Expected block " + (height + 1) + ", not " + blockHeight);
+        }
+    }
+
+    private void addBlock(Block block) {
+        blocks.add(block);
+        if (blocks.size() > MAX_ROLLBACK_DEPTH) {
+            blocks.remove(0);
+        }
+        height = block.height;
+        if (baseHeight < 0) {
+            baseHeight = block.height;
+        }
+    }
+
+    /* Replay the journal from an offset, truncating a partly written block at the end */
+    private void replay(long start) throws IOException {
+        JournalReader reader = new JournalReader(journal, start, journal.size());
+        long complete = start;
+        Block block = null;
+        List<String> addedAddresses = new ArrayList<String>();
+        List<long[]> changes = new ArrayList<long[]>();    // {key, balance, reserved, offset}
+        try {
+            while (reader.hasMore()) {
+                if (block == null) {
+                    reader.crc.reset();
+                }
+                long offset = reader.position();
+                byte type = reader.readByte();
+                if (type == BLOCK && block == null) {
+                    block = new Block(reader.readInt(), reader.readString(), offset);
+                } else if (type == ADDRESS && block != null) {
+                    int id = reader.readInt();
+                    if (id != snapshot.addressCount + newAddresses.size() + addedAddresses.size()) {
+                        throw new IOException("Balance journal address " + id + " out of sequence");
+                    }
+                    addedAddresses.add(reader.readString());
+                } else if (type == ENTRY && block != null) {
+                    reader.readInt();
+                    long currencyId = reader.readLong();
+                    int addressId = reader.readInt();
+                    long balance = reader.readLong();
+                    long reserved = reader.readLong();
+                    reader.readLong();
+                    changes.add(new long[] { BalanceTable.pack(currencyId, addressId), balance, reserved, offset });
+                } else if (type == COMMIT && block != null) {
+                    long expected = reader.crc.getValue();
+                    if (reader.readInt() != (int) expected) {
+                        break;
+                    }
+                    for (String address : addedAddresses) {
+                        newAddressIds.put(address, snapshot.addressCount + newAddresses.size());
+                        newAddresses.add(address);
+                    }
+                    for (long[] change : changes) {
+                        recent.put(change[0], new long[] { change[1], change[2], change[3] });
+                    }
+                    addBlock(block);
+                    block = null;
+                    addedAddresses.clear();
+                    changes.clear();
+                    complete = reader.position();
+                } else if (type == UNDO && block == null) {
+                    undo(reader.readInt());
+                    complete = reader.position();
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // A block or rollback that was only partly written
+        }
+        if (complete < journal.size()) {
+            journal.truncate(complete);
+            journal.force(true);
+        }
+        journalLength = complete;
+    }
+
+    /* Restore every balance changed above a height to its previous value */
+    private void undo(int blockHeight) throws IOException {
+        while (!blocks.isEmpty() && blocks.get(blocks.size() - 1).height > blockHeight) {
+            Block block = blocks.remove(blocks.size() - 1);
+            List<long[]> changes = new ArrayList<long[]>();    // {key, previous offset}
+            JournalReader reader = new JournalReader(journal, block.offset, journal.size());
+            reader.readByte();
+            reader.readInt();
+            reader.readString();
+            while (true) {
+                byte type = reader.readByte();
+                if (type == ADDRESS) {
+                    reader.readInt();
+                    reader.readString();
+                } else if (type == ENTRY) {
+                    reader.readInt();
+                    long currencyId = reader.readLong();
+                    int addressId = reader.readInt();
+                    reader.readLong();
+                    reader.readLong();
+                    changes.add(new long[] { BalanceTable.pack(currencyId, addressId), reader.readLong() });
+                } else {
+                    break;
+                }
+            }
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                long previousOffset = changes.get(i)[1];
+                long[] previous = NO_ENTRY;
+                if (previousOffset >= 0) {
+                    long[] entry = readEntry(previousOffset);
+                    previous = new long[] { entry[1], entry[2], previousOffset };
+                }
+                recent.put(changes.get(i)[0], previous);
+            }
+        }
+        if (blocks.isEmpty() && blockHeight < baseHeight) {
+            height = -1;
+            baseHeight = -1;
+        } else {
+            height = blockHeight;
+        }
+    }
+
+    private long[] current(CurrencyID currency, String address) {
+        int addressId = lookupAddress(address);
+        return addressId < 0 ? NO_ENTRY : current(BalanceTable.pack(currency.longValue(), addressId));
+    }
+
+    /* {balance, reserved, journal offset of the last change} */
+    private long[] current(long key) {
+        long[] value = recent.get(key);
+        if (value != null) {
+            return value;
+        }
+        int slot = snapshot.find(key);
+        if (slot < 0) {
+            return NO_ENTRY;
+        }
+        return new long[] { snapshot.balanceAt(slot), snapshot.reservedAt(slot), snapshot.offsetAt(slot) };
+    }
+
+    private long[] valueAt(CurrencyID currency, String address, int blockHeight) throws IOException {
+        if (blockHeight >= height) {
+            return current(currency, address);
+        }
+        if (blockHeight < baseHeight) {
+            throw new IllegalArgumentException("No history before block " + baseHeight);
+        }
+        long offset = current(currency, address)[2];
+        while (offset >= 0) {
+            long[] entry = readEntry(offset);
+            if (entry[0] <= blockHeight) {
+                return new long[] { entry[1], entry[2] };
+            }
+            offset = entry[3];
+        }
+        return NO_ENTRY;
+    }
+
+    /* {height, balance, reserved, previous offset} of a change record */
+    private long[] readEntry(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_BYTES);
+        read(buffer, offset);
+        buffer.flip();
+        if (buffer.get() != ENTRY) {
+            throw new IOException("No balance change at journal offset " + offset);
+        }
+        int entryHeight = buffer.getInt();
+        buffer.getLong();
+        buffer.getInt();
+        return new long[] { entryHeight, buffer.getLong(), buffer.getLong(), buffer.getLong() };
+    }
+
+    private int lookupAddress(String address) {
+        int id = snapshot.lookupAddress(address);
+        if (id >= 0) {
+            return id;
+        }
+        Integer newId = newAddressIds.get(address);
+        return newId == null ? -1 : newId;
+    }
+
+    private String getAddress(int id) {
+        return id < snapshot.addressCount ? snapshot.getAddress(id) : newAddresses.get(id - snapshot.addressCount);
+    }
+
+    private static void insert(long[] keys, long key, long[] balances, long balance, long[] reserves, long reserved,
+                               long[] offsets, long offset) {
+        int mask = keys.length - 1;
+        int slot = BalanceTable.mix(key) & mask;
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        balances[slot] = balance;
+        reserves[slot] = reserved;
+        offsets[slot] = offset;
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        data.writeShort(bytes.length);
+        data.write(bytes);
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            journal.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (journal.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Balance journal truncated at " + position);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of journal records, with a running checksum of the bytes read
+     */
+    private static class JournalReader {
+        final CRC32 crc = new CRC32();
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private final byte[] scratch = new byte[8];
+        private long position;
+
+        JournalReader(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            buffer.limit(0);
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        long position() {
+            return position;
+        }
+
+        byte readByte() throws IOException {
+            read(scratch, 1);
+            return scratch[0];
+        }
+
+        int readInt() throws IOException {
+            read(scratch, 4);
+            return ByteBuffer.wrap(scratch, 0, 4).getInt();
+        }
+
+        long readLong() throws IOException {
+            read(scratch, 8);
+            return ByteBuffer.wrap(scratch, 0, 8).getLong();
+        }
+
+        String readString() throws IOException {
+            read(scratch, 2);
+            byte[] bytes = new byte[ByteBuffer.wrap(scratch, 0, 2).getShort() & 0xFFFF];
+            read(bytes, bytes.length);
+            return new String(bytes, UTF8);
+        }
+
+        private void read(byte[] into, int length) throws IOException {
+            if (position + length > end) {
+                throw new EOFException();
+            }
+            int done = 0;
+            while (done < length) {
+                if (!buffer.hasRemaining()) {
+                    long filePosition = position + done;
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - filePosition));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, filePosition + buffer.position()) < 0) {
+                            throw new EOFException();
+                        }
+                    }
+                    buffer.flip();
+                }
+                int n = Math.min(length - done, buffer.remaining());
+                buffer.get(into, done, n);
+                done += n;
+            }
+            crc.update(into, 0, length);
+            position += length;
+        }
+    }
+}
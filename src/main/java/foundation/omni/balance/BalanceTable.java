@@ -0,0 +1,272 @@
+package foundation.omni.balance;
+
+import foundation.omni.CurrencyID;
+
+/**
+ * Balances for many currencies and addresses in a single open-addressing hash table.
+ * <p>
+ * Entries are keyed by (currency ID, address ID) packed into one {@code long}, and the balance
+ * and reserved amounts are kept in parallel {@code long} arrays. Amounts are in the smallest
+ * unit of the currency (willets for divisible properties, whole tokens for indivisible ones),
+ * so no {@code BigDecimal}, {@code CurrencyID} or {@code String} objects are held per entry.
+ * <p>
+ * Address strings are interned by the table's {@link AddressBook}.
+ * <p>
+ * Not thread-safe: callers that share an instance between threads must synchronize.
+ */
+public class BalanceTable {
+    private static final long EMPTY = 0L;          // currency IDs start at 1, so a packed key is never 0
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final AddressBook addressBook;
+    private long[] keys;
+    private long[] balances;
+    private long[] reserves;
+    private int size;
+
+    public BalanceTable() {
+        this(new AddressBook(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param addressBook  address book used to intern addresses, may be shared between tables
+     * @param expectedSize number of entries to size the table for without resizing
+     */
+    public BalanceTable(AddressBook addressBook, int expectedSize) {
+        this.addressBook = addressBook;
+        allocate(AddressBook.tableSizeFor(Math.max(expectedSize, 16)));
+    }
+
+    public AddressBook getAddressBook() {
+        return addressBook;
+    }
+
+    /**
+     * @return the number of (currency, address) entries in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Set the balance of an address, replacing any previous value
+     */
+    public void put(CurrencyID currency, String address, long balance, long reserved) {
+        put(currency.longValue(), addressBook.intern(address), balance, reserved);
+    }
+
+    /**
+     * Set the balance of an address ID, replacing any previous value
+     *
+     * @throws IllegalArgumentException if the currency ID is out of range
+     */
+    public void put(long currencyId, int addressId, long balance, long reserved) {
+        int slot = findOrInsert(entryKey(currencyId, addressId));
+        balances[slot] = balance;
+        reserves[slot] = reserved;
+    }
+
+    /**
+     * Add to the balance of an address ID, creating the entry if necessary
+     * <p>
+     * Entries whose balance and reserved amounts both become zero are removed.
+     *
+     * @throws IllegalArgumentException if the currency ID is out of range
+     */
+    public void add(long currencyId, int addressId, long balanceDelta, long reservedDelta) {
+        int slot = findOrInsert(entryKey(currencyId, addressId));
+        balances[slot] += balanceDelta;
+        reserves[slot] += reservedDelta;
+        if (balances[slot] == 0 && reserves[slot] == 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * @return true if there is an entry for the address and currency
+     */
+    public boolean contains(long currencyId, int addressId) {
+        return find(pack(currencyId, addressId)) >= 0;
+    }
+
+    /**
+     * @return available balance, or 0 if there is no entry
+     */
+    public long getBalance(CurrencyID currency, String address) {
+        int addressId = addressBook.lookup(address);
+        return addressId < 0 ? 0 : getBalance(currency.longValue(), addressId);
+    }
+
+    /**
+     * @return available balance, or 0 if there is no entry
+     */
+    public long getBalance(long currencyId, int addressId) {
+        int slot = find(pack(currencyId, addressId));
+        return slot < 0 ? 0 : balances[slot];
+    }
+
+    /**
+     * @return reserved balance, or 0 if there is no entry
+     */
+    public long getReserved(long currencyId, int addressId) {
+        int slot = find(pack(currencyId, addressId));
+        return slot < 0 ? 0 : reserves[slot];
+    }
+
+    /**
+     * Remove an entry
+     *
+     * @return true if an entry was removed
+     */
+    public boolean remove(long currencyId, int addressId) {
+        int slot = find(pack(currencyId, addressId));
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Visit every entry, in no particular order
+     */
+    public void forEach(BalanceVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key != EMPTY) {
+                visitor.visit(currencyOf(key), addressOf(key), balances[slot], reserves[slot]);
+            }
+        }
+    }
+
+    /**
+     * Visit every entry for a single currency, in no particular order
+     */
+    public void forEach(long currencyId, BalanceVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key != EMPTY && currencyOf(key) == currencyId) {
+                visitor.visit(currencyId, addressOf(key), balances[slot], reserves[slot]);
+            }
+        }
+    }
+
+    /**
+     * Pack the key of an entry to be stored
+     * <p>
+     * Currency ID 0 would pack address 0 into the empty key, and IDs above {@link CurrencyID#MAX_VALUE}
+     * would overflow into other currencies, so both are rejected as {@link CurrencyID} does.
+     */
+    static long entryKey(long currencyId, int addressId) {
+        if (currencyId < CurrencyID.MIN_VALUE || currencyId > CurrencyID.MAX_VALUE) {
+            throw new IllegalArgumentException("Currency ID out of range: " + currencyId);
+        }
+        return pack(currencyId, addressId);
+    }
+
+    static long pack(long currencyId, int addressId) {
+        return (currencyId << 32) | (addressId & 0xFFFFFFFFL);
+    }
+
+    static long currencyOf(long key) {
+        return key >>> 32;
+    }
+
+    static int addressOf(long key) {
+        return (int) key;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int findOrInsert(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == EMPTY) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+            return findOrInsert(key);
+        }
+        keys[slot] = key;
+        balances[slot] = 0;
+        reserves[slot] = 0;
+        size++;
+        return slot;
+    }
+
+    /* Backward-shift deletion keeps linear probe chains intact without tombstones */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            // Move the entry back if its home slot is not cyclically within (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                balances[hole] = balances[next];
+                reserves[hole] = reserves[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        balances[hole] = 0;
+        reserves[hole] = 0;
+        size--;
+    }
+
+    private void rehash(int newLength) {
+        long[] oldKeys = keys;
+        long[] oldBalances = balances;
+        long[] oldReserves = reserves;
+        allocate(newLength);
+        int mask = newLength - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                balances[slot] = oldBalances[i];
+                reserves[slot] = oldReserves[i];
+            }
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        balances = new long[length];
+        reserves = new long[length];
+    }
+
+    static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,16 @@
+package foundation.omni.balance;
+
+/**
+ * Callback for iterating the entries of a {@link BalanceTable} without boxing
+ */
+public interface BalanceVisitor {
+    /**
+     * Called once per entry
+     *
+     * @param currencyId the numeric currency ID
+     * @param addressId  the address ID from the table's {@link AddressBook}
+     * @param balance    available balance in the currency's smallest unit
+     * @param reserved   reserved balance in the currency's smallest unit
+     */
+    void visit(long currencyId, int addressId, long balance, long reserved);
+}
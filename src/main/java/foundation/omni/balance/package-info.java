@@ -0,0 +1,4 @@
+/**
+ * Compact, primitive-keyed storage for Omni Protocol balances
+ */
+package foundation.omni.balance;
@@ -0,0 +1,176 @@
+package foundation.omni.cli;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import foundation.omni.rpc.BalanceStreamParser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+/**
+ * Writes consensus snapshots record by record, one currency after another
+ * <p>
+ * Formats:
+ * <dl>
+ *     <dt>{@code tsv}</dt>
+ *     <dd>{@code currency, block, address, balance, reserved} separated by tabs, one line per address</dd>
+ *     <dt>{@code jsonl}</dt>
+ *     <dd>One JSON object per line with the same fields, amounts as strings</dd>
+ *     <dt>{@code binary}</dt>
+ *     <dd>The magic {@value #BINARY_MAGIC}, then per currency a {@code 'C'} record (currency long, block int),
+ *     a {@code 'E'} record per address (address UTF, amount scale byte, balance long, reserved long, both
+ *     unscaled) and a {@code 'Z'} record, in {@link DataOutputStream} encoding</dd>
+ * </dl>
+ */
+public abstract class SnapshotWriter implements BalanceStreamParser.Handler, Closeable {
+    public static final String BINARY_MAGIC = "OMNISNP1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @param format {@code tsv}, {@code jsonl} or {@code binary}
+     * @param out    Destination, closed with the writer
+     */
+    public static SnapshotWriter create(String format, OutputStream out) throws IOException {
+        switch (format) {
+            case "tsv":
+                return new Tsv(out);
+            case "jsonl":
+                return new JsonLines(out);
+            case "binary":
+                return new Binary(out);
+            default:
+                throw new IllegalArgumentException("Unknown snapshot format: " + format);
+        }
+    }
+
+    /**
+     * Start the entries of a currency
+     */
+    public abstract void begin(long currencyId, int blockHeight) throws IOException;
+
+    /**
+     * End the entries of a currency
+     */
+    public abstract void end() throws IOException;
+
+    static class Tsv extends SnapshotWriter {
+        private final Writer writer;
+        private String prefix;
+
+        Tsv(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, UTF8), 1 << 16);
+        }
+
+        @Override
+        public void begin(long currencyId, int blockHeight) {
+            prefix = currencyId + "\t" + blockHeight + "\t";
+        }
+
+        @Override
+        public void entry(String address, String balance, String reserved) throws IOException {
+            writer.write(prefix);
+            writer.write(address);
+            writer.write('\t');
+            writer.write(balance);
+            writer.write('\t');
+            writer.write(reserved);
+            writer.write('\n');
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    static class JsonLines extends SnapshotWriter {
+        private final JsonGenerator generator;
+        private long currencyId;
+        private int blockHeight;
+
+        JsonLines(OutputStream out) throws IOException {
+            generator = new JsonFactory().createGenerator(new BufferedOutputStream(out, 1 << 16));
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin(long currencyId, int blockHeight) {
+            this.currencyId = currencyId;
+            this.blockHeight = blockHeight;
+        }
+
+        @Override
+        public void entry(String address, String balance, String reserved) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("currency", currencyId);
+            generator.writeNumberField("block", blockHeight);
+            generator.writeStringField("address", address);
+            generator.writeStringField("balance", balance);
+            generator.writeStringField("reserved", reserved);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    static class Binary extends SnapshotWriter {
+        private final DataOutputStream data;
+
+        Binary(OutputStream out) throws IOException {
+            data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            data.write(BINARY_MAGIC.getBytes(UTF8));
+        }
+
+        @Override
+        public void begin(long currencyId, int blockHeight) throws IOException {
+            data.writeByte('C');
+            data.writeLong(currencyId);
+            data.writeInt(blockHeight);
+        }
+
+        @Override
+        public void entry(String address, String balance, String reserved) throws IOException {
+            BigDecimal balanceValue = new BigDecimal(balance);
+            BigDecimal reservedValue = new BigDecimal(reserved);
+            int scale = Math.max(0, Math.max(balanceValue.scale(), reservedValue.scale()));
+            data.writeByte('E');
+            data.writeUTF(address);
+            data.writeByte(scale);
+            data.writeLong(balanceValue.setScale(scale).unscaledValue().longValue());
+            data.writeLong(reservedValue.setScale(scale).unscaledValue().longValue());
+        }
+
+        @Override
+        public void end() throws IOException {
+            data.writeByte('Z');
+            data.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
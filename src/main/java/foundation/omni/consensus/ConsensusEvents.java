@@ -0,0 +1,54 @@
+package foundation.omni.consensus;
+
+import com.msgilligan.bitcoin.jfr.FlightEvent;
+
+/**
+ * Flight Recorder events for fetching and comparing consensus snapshots
+ * <p>
+ * Together with the {@code omni.RPCCall} events of the RPC client they show where a slow consensus
+ * run spent its time. Values are committed in the order of the fields listed here.
+ */
+public final class ConsensusEvents {
+    /**
+     * A complete {@link ConsensusFetcher#getConsensusSnapshot} call:
+     * {@code source, currency, blockHeight, entries, attempts}
+     */
+    public static final FlightEvent SNAPSHOT = FlightEvent.define("omni.ConsensusSnapshot",
+            "Consensus Snapshot", "Omni", "Fetching a consensus snapshot",
+            FlightEvent.field("source", String.class, "Source"),
+            FlightEvent.field("currency", long.class, "Currency"),
+            FlightEvent.field("blockHeight", long.class, "Block Height"),
+            FlightEvent.field("entries", int.class, "Entries"),
+            FlightEvent.field("attempts", int.class, "Attempts"));
+
+    /**
+     * One phase of fetching a snapshot: {@code source, currency, phase, attempt}
+     * <p>
+     * Phases are {@code height} (block height check), {@code fetch}, {@code parse}, {@code build}
+     * (the sorted entry map) and {@code retry}, the whole of an attempt that was discarded because
+     * the block height changed.
+     */
+    public static final FlightEvent PHASE = FlightEvent.define("omni.ConsensusPhase",
+            "Consensus Phase", "Omni", "A phase of fetching a consensus snapshot",
+            FlightEvent.field("source", String.class, "Source"),
+            FlightEvent.field("currency", long.class, "Currency"),
+            FlightEvent.field("phase", String.class, "Phase"),
+            FlightEvent.field("attempt", int.class, "Attempt"));
+
+    /**
+     * Comparing two snapshots: {@code source1, source2, currency, addresses, mismatches}
+     * <p>
+     * {@code mismatches} is -1 for {@link ConsensusComparison}, which only merges the addresses and
+     * leaves the comparison to its caller.
+     */
+    public static final FlightEvent COMPARISON = FlightEvent.define("omni.ConsensusComparison",
+            "Consensus Comparison", "Omni", "Comparing two consensus snapshots",
+            FlightEvent.field("source1", String.class, "First Source"),
+            FlightEvent.field("source2", String.class, "Second Source"),
+            FlightEvent.field("currency", long.class, "Currency"),
+            FlightEvent.field("addresses", int.class, "Addresses"),
+            FlightEvent.field("mismatches", int.class, "Mismatches"));
+
+    private ConsensusEvents() {
+    }
+}
@@ -0,0 +1,162 @@
+package foundation.omni.deposit;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.Base58;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.crypto.DeterministicKey;
+import com.google.bitcoin.crypto.HDKeyDerivation;
+import foundation.omni.MPNetworkParameters;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Derives watch-only deposit addresses from an extended public key (BIP 32), offline
+ * <p>
+ * The generator is given the public key of an account, e.g. the {@code xpub} of {@code m/44'/0'/0'}
+ * exported from an offline wallet, and derives the addresses of its external chain: deposit address
+ * {@code i} is the address of key {@code account/0/i}. No private key is needed, deposits are spent
+ * with the wallet holding the account's private key.
+ * <p>
+ * Addresses are derived without the node, in parallel for ranges. The node's wallet only needs to know
+ * the addresses it should watch, see {@link com.msgilligan.bitcoin.rpc.BitcoinClient#importAddresses},
+ * e.g. in bulk when addresses are assigned to customers, instead of one {@code getnewaddress} per address.
+ */
+public class DepositAddressGenerator {
+    /** Number of addresses, above 2^31 children are hardened and can't be derived from a public key */
+    public static final long MAX_ADDRESSES = 1L << 31;
+    private static final int MAINNET_PUBLIC_VERSION = 0x0488B21E;   // xpub
+    private static final int TESTNET_PUBLIC_VERSION = 0x043587CF;   // tpub, also used on regtest
+    private static final int EXTENDED_KEY_BYTES = 78;
+    private static final int CHUNK_SIZE = 500;
+
+    private final MPNetworkParameters netParams;
+    private final DeterministicKey externalChain;
+    private final ExecutorService executor;
+
+    public DepositAddressGenerator(MPNetworkParameters netParams, DeterministicKey accountKey) {
+        this(netParams, accountKey, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param accountKey The account key, only its public key and chain code are used
+     * @param threads    Number of threads deriving ranges of addresses
+     */
+    public DepositAddressGenerator(MPNetworkParameters netParams, DeterministicKey accountKey, int threads) {
+        this.netParams = netParams;
+        this.externalChain = HDKeyDerivation.deriveChildKey(accountKey, 0);
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DepositAddressGenerator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Create a generator for a serialized extended public key
+     *
+     * @param extendedPublicKey Base58 {@code xpub} (main net) or {@code tpub} (test net and regtest) of the account
+     * @throws AddressFormatException if the key is invalid, private, or for another network
+     */
+    public static DepositAddressGenerator fromExtendedPublicKey(MPNetworkParameters netParams, String extendedPublicKey)
+            throws AddressFormatException {
+        byte[] bytes = Base58.decodeChecked(extendedPublicKey);
+        if (bytes.length != EXTENDED_KEY_BYTES) {
+            throw new AddressFormatException("Extended key has " + bytes.length + " bytes, not " + EXTENDED_KEY_BYTES);
+        }
+        NetworkParameters params = netParams.getParams();
+        int expected = NetworkParameters.ID_MAINNET.equals(params.getId()) ?
+                MAINNET_PUBLIC_VERSION : TESTNET_PUBLIC_VERSION;
+        if (ByteBuffer.wrap(bytes, 0, 4).getInt() != expected) {
+            throw new AddressFormatException("Not an extended public key for " + params.getId());
+        }
+        // version (4), depth (1), parent fingerprint (4), child number (4), chain code (32), public key (33)
+        byte[] chainCode = Arrays.copyOfRange(bytes, 13, 45);
+        byte[] publicKey = Arrays.copyOfRange(bytes, 45, 78);
+        return new DepositAddressGenerator(netParams,
+                HDKeyDerivation.createMasterPubKeyFromBytes(publicKey, chainCode));
+    }
+
+    /**
+     * @return The deposit address at an index, from 0 to {@link #MAX_ADDRESSES} - 1
+     */
+    public Address getAddress(int index) {
+        checkRange(index, 1);
+        return derive(index);
+    }
+
+    /**
+     * Derive a range of addresses, in chunks on several threads
+     *
+     * @param first Index of the first address
+     * @param count Number of addresses
+     * @return The addresses from {@code first} to {@code first + count - 1}
+     */
+    public List<Address> getAddresses(int first, int count) {
+        checkRange(first, count);
+        List<Future<List<Address>>> chunks = new ArrayList<Future<List<Address>>>();
+        for (int start = first; start - first < count; start += CHUNK_SIZE) {
+            final int chunkStart = start;
+            final int chunkEnd = (int) Math.min((long) start + CHUNK_SIZE, (long) first + count);
+            chunks.add(executor.submit(new Callable<List<Address>>() {
+                @Override
+                public List<Address> call() {
+                    List<Address> addresses = new ArrayList<Address>(chunkEnd - chunkStart);
+                    for (int index = chunkStart; index < chunkEnd; index++) {
+                        addresses.add(derive(index));
+                    }
+                    return addresses;
+                }
+            }));
+        }
+        List<Address> addresses = new ArrayList<Address>(count);
+        for (Future<List<Address>> chunk : chunks) {
+            addresses.addAll(await(chunk));
+        }
+        return addresses;
+    }
+
+    /**
+     * Stop the threads deriving ranges of addresses
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Address derive(int index) {
+        return HDKeyDerivation.deriveChildKey(externalChain, index).toECKey().toAddress(netParams.getParams());
+    }
+
+    private static void checkRange(int first, int count) {
+        if (first < 0 || count < 0 || (long) first + count > MAX_ADDRESSES) {
+            throw new IllegalArgumentException("Address indexes must be from 0 to " + (MAX_ADDRESSES - 1));
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Deposit addresses derived from an extended public key, without a wallet round-trip per address
+ */
+package foundation.omni.deposit;
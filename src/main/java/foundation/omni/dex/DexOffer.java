@@ -0,0 +1,130 @@
+package foundation.omni.dex;
+
+import com.google.bitcoin.core.Sha256Hash;
+import foundation.omni.CurrencyID;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * An active sell offer on the traditional distributed exchange, as returned by {@code getactivedexsells_MP}.
+ * <p>
+ * Token amounts are in willets (10<sup>-8</sup> of a divisible token) and bitcoin amounts in satoshis.
+ * Only MSC and TMSC, which are both divisible, can be offered on this exchange.
+ */
+public final class DexOffer {
+    private final Sha256Hash txid;
+    private final CurrencyID propertyId;
+    private final String seller;
+    private final long amountAvailable;
+    private final long bitcoinDesired;
+    private final long unitPrice;
+    private final int timeLimit;
+    private final long minimumFee;
+    private final long amountAccepted;
+
+    /**
+     * @param unitPrice satoshis per whole token
+     */
+    public DexOffer(Sha256Hash txid, CurrencyID propertyId, String seller, long amountAvailable, long bitcoinDesired,
+                    long unitPrice, int timeLimit, long minimumFee, long amountAccepted) {
+        this.txid = txid;
+        this.propertyId = propertyId;
+        this.seller = seller;
+        this.amountAvailable = amountAvailable;
+        this.bitcoinDesired = bitcoinDesired;
+        this.unitPrice = unitPrice;
+        this.timeLimit = timeLimit;
+        this.minimumFee = minimumFee;
+        this.amountAccepted = amountAccepted;
+    }
+
+    /**
+     * Convert one element of the {@code getactivedexsells_MP} result
+     */
+    public static DexOffer fromJson(Map<String, Object> json) {
+        return new DexOffer(new Sha256Hash((String) json.get("txid")),
+                CurrencyID.valueOf(((Number) json.get("propertyid")).longValue()),
+                (String) json.get("seller"),
+                toUnits(json.get("amountavailable")),
+                toUnits(json.get("bitcoindesired")),
+                toUnits(json.get("unitprice")),
+                ((Number) json.get("timelimit")).intValue(),
+                toUnits(json.get("minimumfee")),
+                toUnits(json.get("amountaccepted")));
+    }
+
+    /* Amounts arrive as decimal strings or JSON numbers with 8 decimal places */
+    private static long toUnits(Object amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return new BigDecimal(amount.toString()).movePointRight(8).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    public Sha256Hash getTxid() {
+        return txid;
+    }
+
+    public CurrencyID getPropertyId() {
+        return propertyId;
+    }
+
+    public String getSeller() {
+        return seller;
+    }
+
+    public long getAmountAvailable() {
+        return amountAvailable;
+    }
+
+    public long getBitcoinDesired() {
+        return bitcoinDesired;
+    }
+
+    /**
+     * @return price in satoshis per whole token
+     */
+    public long getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getTimeLimit() {
+        return timeLimit;
+    }
+
+    public long getMinimumFee() {
+        return minimumFee;
+    }
+
+    public long getAmountAccepted() {
+        return amountAccepted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DexOffer)) return false;
+        DexOffer that = (DexOffer) o;
+        return amountAvailable == that.amountAvailable &&
+                bitcoinDesired == that.bitcoinDesired &&
+                unitPrice == that.unitPrice &&
+                timeLimit == that.timeLimit &&
+                minimumFee == that.minimumFee &&
+                amountAccepted == that.amountAccepted &&
+                txid.equals(that.txid) &&
+                propertyId.equals(that.propertyId) &&
+                seller.equals(that.seller);
+    }
+
+    @Override
+    public int hashCode() {
+        return txid.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DexOffer{" + txid + ", " + propertyId + ", " + seller + ", " + amountAvailable + " @ " + unitPrice + "}";
+    }
+}
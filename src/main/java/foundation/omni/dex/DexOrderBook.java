@@ -0,0 +1,159 @@
+package foundation.omni.dex;
+
+import com.google.bitcoin.core.Sha256Hash;
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+import foundation.omni.CurrencyID;
+import foundation.omni.rpc.MastercoinClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory order book for the traditional distributed exchange.
+ * <p>
+ * {@link #refresh()} fetches {@code getactivedexsells_MP} at most once per block and rebuilds only the
+ * properties whose offers changed. Queries are answered from an immutable snapshot without RPC calls
+ * or locking, so they can be made from any number of threads while a refresh is in progress.
+ */
+public class DexOrderBook {
+    private final MastercoinClient client;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<CurrencyID, PropertyBook>emptyMap(),
+            Collections.<Sha256Hash, DexOffer>emptyMap(), Collections.<String, List<DexOffer>>emptyMap(), -1);
+
+    private static final class Snapshot {
+        final Map<CurrencyID, PropertyBook> books;
+        final Map<Sha256Hash, DexOffer> byTxid;
+        final Map<String, List<DexOffer>> bySeller;
+        final int blockHeight;
+
+        Snapshot(Map<CurrencyID, PropertyBook> books, Map<Sha256Hash, DexOffer> byTxid,
+                 Map<String, List<DexOffer>> bySeller, int blockHeight) {
+            this.books = books;
+            this.byTxid = byTxid;
+            this.bySeller = bySeller;
+            this.blockHeight = blockHeight;
+        }
+    }
+
+    public DexOrderBook(MastercoinClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Refresh the book if a block has been added since the last refresh
+     *
+     * @return true if the offers were fetched
+     */
+    public synchronized boolean refresh() throws JsonRPCException, IOException {
+        int height = client.getBlockCount();
+        if (height == snapshot.blockHeight) {
+            return false;
+        }
+        List<Map<String, Object>> json = client.getactivedexsells_MP();
+        List<DexOffer> offers = new ArrayList<DexOffer>(json.size());
+        for (Map<String, Object> item : json) {
+            offers.add(DexOffer.fromJson(item));
+        }
+        update(offers, height);
+        return true;
+    }
+
+    /**
+     * Replace the active offers, reusing the sorted books of properties whose offers are unchanged
+     *
+     * @param offers all active offers
+     * @param blockHeight the height the offers are valid at
+     */
+    public synchronized void update(List<DexOffer> offers, int blockHeight) {
+        Snapshot previous = snapshot;
+        Map<CurrencyID, List<DexOffer>> byProperty = new HashMap<CurrencyID, List<DexOffer>>();
+        Map<CurrencyID, Boolean> changed = new HashMap<CurrencyID, Boolean>();
+        Map<Sha256Hash, DexOffer> byTxid = new HashMap<Sha256Hash, DexOffer>(offers.size() * 2);
+        Map<String, List<DexOffer>> bySeller = new HashMap<String, List<DexOffer>>();
+
+        for (DexOffer offer : offers) {
+            CurrencyID property = offer.getPropertyId();
+            List<DexOffer> list = byProperty.get(property);
+            if (list == null) {
+                list = new ArrayList<DexOffer>();
+                byProperty.put(property, list);
+            }
+            list.add(offer);
+            if (!offer.equals(previous.byTxid.get(offer.getTxid()))) {
+                changed.put(property, Boolean.TRUE);
+            }
+            byTxid.put(offer.getTxid(), offer);
+            List<DexOffer> sellerOffers = bySeller.get(offer.getSeller());
+            if (sellerOffers == null) {
+                sellerOffers = new ArrayList<DexOffer>(1);
+                bySeller.put(offer.getSeller(), sellerOffers);
+            }
+            sellerOffers.add(offer);
+        }
+
+        Map<CurrencyID, PropertyBook> books = new HashMap<CurrencyID, PropertyBook>();
+        for (Map.Entry<CurrencyID, List<DexOffer>> entry : byProperty.entrySet()) {
+            CurrencyID property = entry.getKey();
+            PropertyBook old = previous.books.get(property);
+            // Unchanged if no offer is new or modified and none was removed
+            boolean reuse = old != null && !changed.containsKey(property) && old.size() == entry.getValue().size();
+            books.put(property, reuse ? old : new PropertyBook(entry.getValue()));
+        }
+        for (Map.Entry<String, List<DexOffer>> entry : bySeller.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        snapshot = new Snapshot(books, byTxid, bySeller, blockHeight);
+    }
+
+    /**
+     * @return the cheapest offer for a property, or null if there is none
+     */
+    public DexOffer getBestOffer(CurrencyID property) {
+        PropertyBook book = snapshot.books.get(property);
+        return book != null ? book.best() : null;
+    }
+
+    /**
+     * @return total amount of a property, in willets, offered at or below a unit price
+     */
+    public long getDepth(CurrencyID property, long maxUnitPrice) {
+        PropertyBook book = snapshot.books.get(property);
+        return book != null ? book.depth(maxUnitPrice) : 0;
+    }
+
+    /**
+     * @return offers for a property at or below a unit price, cheapest first
+     */
+    public List<DexOffer> getOffers(CurrencyID property, long maxUnitPrice) {
+        PropertyBook book = snapshot.books.get(property);
+        return book != null ? book.offersAtOrBelow(maxUnitPrice) : Collections.<DexOffer>emptyList();
+    }
+
+    /**
+     * @return all offers for a property, cheapest first
+     */
+    public List<DexOffer> getOffers(CurrencyID property) {
+        PropertyBook book = snapshot.books.get(property);
+        return book != null ? book.offers() : Collections.<DexOffer>emptyList();
+    }
+
+    public List<DexOffer> getOffersBySeller(String seller) {
+        List<DexOffer> offers = snapshot.bySeller.get(seller);
+        return offers != null ? offers : Collections.<DexOffer>emptyList();
+    }
+
+    public DexOffer getOffer(Sha256Hash txid) {
+        return snapshot.byTxid.get(txid);
+    }
+
+    /**
+     * @return the block height of the last refresh, or -1 if never refreshed
+     */
+    public int getBlockHeight() {
+        return snapshot.blockHeight;
+    }
+}
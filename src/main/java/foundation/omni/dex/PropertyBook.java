@@ -0,0 +1,84 @@
+package foundation.omni.dex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, price-sorted offers for a single property
+ * <p>
+ * Prices and cumulative amounts are kept in parallel primitive arrays, so best-price and depth
+ * queries are a binary search with no allocation.
+ */
+final class PropertyBook {
+    private static final Comparator<DexOffer> BY_PRICE = new Comparator<DexOffer>() {
+        @Override
+        public int compare(DexOffer a, DexOffer b) {
+            int c = compareLongs(a.getUnitPrice(), b.getUnitPrice());
+            return c != 0 ? c : a.getTxid().toString().compareTo(b.getTxid().toString());
+        }
+    };
+
+    private final DexOffer[] offers;        // ascending unit price, ties by txid
+    private final long[] unitPrices;
+    private final long[] cumulativeAmounts; // cumulativeAmounts[i] = sum of amounts of offers[0..i]
+
+    PropertyBook(List<DexOffer> unsorted) {
+        offers = unsorted.toArray(new DexOffer[unsorted.size()]);
+        Arrays.sort(offers, BY_PRICE);
+        unitPrices = new long[offers.length];
+        cumulativeAmounts = new long[offers.length];
+        long total = 0;
+        for (int i = 0; i < offers.length; i++) {
+            unitPrices[i] = offers[i].getUnitPrice();
+            total += offers[i].getAmountAvailable();
+            cumulativeAmounts[i] = total;
+        }
+    }
+
+    int size() {
+        return offers.length;
+    }
+
+    DexOffer best() {
+        return offers.length > 0 ? offers[0] : null;
+    }
+
+    /**
+     * @return total amount offered at or below a unit price
+     */
+    long depth(long maxUnitPrice) {
+        int count = countAtOrBelow(maxUnitPrice);
+        return count > 0 ? cumulativeAmounts[count - 1] : 0;
+    }
+
+    /**
+     * @return offers at or below a unit price, cheapest first
+     */
+    List<DexOffer> offersAtOrBelow(long maxUnitPrice) {
+        return Collections.unmodifiableList(Arrays.asList(offers).subList(0, countAtOrBelow(maxUnitPrice)));
+    }
+
+    List<DexOffer> offers() {
+        return Collections.unmodifiableList(Arrays.asList(offers));
+    }
+
+    private int countAtOrBelow(long maxUnitPrice) {
+        int low = 0;
+        int high = unitPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (unitPrices[mid] <= maxUnitPrice) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
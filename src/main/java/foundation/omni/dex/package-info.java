@@ -0,0 +1,4 @@
+/**
+ * Typed, in-memory view of the traditional distributed exchange
+ */
+package foundation.omni.dex;
@@ -0,0 +1,65 @@
+package foundation.omni.exodus;
+
+import com.google.bitcoin.core.Sha256Hash;
+
+/**
+ * A payment to the Exodus address during the fundraiser and the MSC it generated
+ */
+public final class ExodusPurchase {
+    private final Sha256Hash txid;
+    private final int blockHeight;
+    private final long blockTime;
+    private final String sender;
+    private final long invested;
+    private final long generated;
+
+    public ExodusPurchase(Sha256Hash txid, int blockHeight, long blockTime, String sender, long invested, long generated) {
+        this.txid = txid;
+        this.blockHeight = blockHeight;
+        this.blockTime = blockTime;
+        this.sender = sender;
+        this.invested = invested;
+        this.generated = generated;
+    }
+
+    public Sha256Hash getTxid() {
+        return txid;
+    }
+
+    public int getBlockHeight() {
+        return blockHeight;
+    }
+
+    /**
+     * @return block timestamp in seconds, used for the early-bird bonus
+     */
+    public long getBlockTime() {
+        return blockTime;
+    }
+
+    /**
+     * @return the address credited with the purchase
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * @return satoshis paid to the Exodus address
+     */
+    public long getInvested() {
+        return invested;
+    }
+
+    /**
+     * @return willets of MSC (and of TMSC) generated, including the early-bird bonus
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    @Override
+    public String toString() {
+        return "ExodusPurchase{" + txid + ", " + blockHeight + ", " + sender + ", " + invested + " -> " + generated + "}";
+    }
+}
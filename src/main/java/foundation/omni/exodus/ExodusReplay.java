@@ -0,0 +1,268 @@
+package foundation.omni.exodus;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ScriptException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.google.bitcoin.core.TransactionOutput;
+import com.google.bitcoin.script.Script;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+import foundation.omni.MPNetworkParameters;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays the Exodus fundraiser from raw blocks, independently of any Omni Protocol server.
+ * <p>
+ * Every transaction in the Exodus block range that pays the Exodus address is a purchase. It is credited
+ * to the input address contributing the most bitcoin (the first such address in sort order on ties), and
+ * generates {@code round(100 * satoshis * bonus)} willets of both MSC and TMSC, where the early-bird
+ * bonus is 1 plus 10% per week between the block time and the fundraiser deadline. The arithmetic
+ * follows Master Core, including its use of double precision.
+ * <p>
+ * Blocks are fetched and decoded on a thread pool, up to {@code prefetch} blocks ahead of the
+ * block being collected, so the replay is limited by the node rather than by round-trips.
+ * Development MSC, which vested to the Exodus address later, is not included.
+ * Requires a node with {@code -txindex} to look up the inputs of purchases.
+ */
+public class ExodusReplay {
+    /** 2013-09-01 00:00:00 UTC */
+    public static final long EXODUS_DEADLINE = 1377993600L;
+    /** MSC per BTC, before the bonus */
+    public static final long EXODUS_REWARD = 100;
+    public static final double EXODUS_BONUS_PER_WEEK = 0.10;
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_PREFETCH = 32;
+    private static final int SECONDS_PER_WEEK = 60 * 60 * 24 * 7;
+
+    private final BitcoinClient client;
+    private final NetworkParameters netParams;
+    private final byte[] exodusHash;
+    private final int firstBlock;
+    private final int lastBlock;
+    private final int threads;
+    private final int prefetch;
+    private volatile int lastReplayedBlock = -1;
+
+    public ExodusReplay(BitcoinClient client, MPNetworkParameters params) {
+        this(client, params, DEFAULT_THREADS, DEFAULT_PREFETCH);
+    }
+
+    public ExodusReplay(BitcoinClient client, MPNetworkParameters params, int threads, int prefetch) {
+        this.client = client;
+        this.netParams = params.getParams();
+        this.exodusHash = params.getExodusAddress().getHash160();
+        this.firstBlock = params.getFirstExodusBlock();
+        this.lastBlock = params.getLastExodusBlock();
+        this.threads = threads;
+        this.prefetch = Math.max(prefetch, threads);
+    }
+
+    /**
+     * Scan the Exodus block range, up to the node's chain tip
+     * <p>
+     * On regtest the range ends far above the chain, so only the existing blocks are scanned.
+     *
+     * @return all purchases, in block order
+     */
+    public List<ExodusPurchase> replay() throws JsonRPCException, IOException {
+        int last = Math.min(lastBlock, client.getBlockCount());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<ExodusPurchase> purchases = new ArrayList<ExodusPurchase>();
+            Deque<Future<List<ExodusPurchase>>> pending = new ArrayDeque<Future<List<ExodusPurchase>>>();
+            int next = firstBlock;
+            while (next <= last || !pending.isEmpty()) {
+                while (next <= last && pending.size() < prefetch) {
+                    final int height = next++;
+                    pending.add(executor.submit(new Callable<List<ExodusPurchase>>() {
+                        @Override
+                        public List<ExodusPurchase> call() throws Exception {
+                            return scanBlock(height);
+                        }
+                    }));
+                }
+                purchases.addAll(await(pending.poll()));
+            }
+            lastReplayedBlock = last;
+            return purchases;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return last block scanned by the most recent {@link #replay()}, the chain tip if it is below
+     * the end of the Exodus range, or -1 before the first replay
+     */
+    public int getLastReplayedBlock() {
+        return lastReplayedBlock;
+    }
+
+    /**
+     * Total MSC (or TMSC) generated per address
+     *
+     * @return willets by address, sorted by address
+     */
+    public static SortedMap<String, Long> allocations(List<ExodusPurchase> purchases) {
+        SortedMap<String, Long> balances = new TreeMap<String, Long>();
+        for (ExodusPurchase purchase : purchases) {
+            Long balance = balances.get(purchase.getSender());
+            balances.put(purchase.getSender(), (balance != null ? balance : 0L) + purchase.getGenerated());
+        }
+        return balances;
+    }
+
+    /**
+     * @param invested  satoshis paid to the Exodus address
+     * @param blockTime timestamp of the block, in seconds
+     * @return willets generated, including the early-bird bonus
+     */
+    public static long generated(long invested, long blockTime) {
+        int deadlineTimeLeft = (int) (EXODUS_DEADLINE - blockTime);
+        double bonusPercentage = EXODUS_BONUS_PER_WEEK * deadlineTimeLeft / SECONDS_PER_WEEK;
+        double bonus = 1.0 + Math.max(bonusPercentage, 0.0);
+        return Math.round(EXODUS_REWARD * invested * bonus);
+    }
+
+    private List<ExodusPurchase> scanBlock(int height) throws JsonRPCException, IOException {
+        Sha256Hash hash = client.getBlockHash(height);
+        Block block = new Block(netParams, client.getBlockBytes(hash));
+        long blockTime = block.getTimeSeconds();
+
+        Map<Transaction, Long> payments = new LinkedHashMap<Transaction, Long>();
+        for (Transaction tx : block.getTransactions()) {
+            if (tx.isCoinBase()) {
+                continue;
+            }
+            long invested = 0;
+            for (TransactionOutput output : tx.getOutputs()) {
+                if (paysExodus(output.getScriptPubKey())) {
+                    invested += output.getValue().longValue();
+                }
+            }
+            if (invested > 0) {
+                payments.put(tx, invested);
+            }
+        }
+        if (payments.isEmpty()) {
+            return new ArrayList<ExodusPurchase>();
+        }
+
+        Map<Sha256Hash, Transaction> previous = fetchPreviousTransactions(payments.keySet());
+        List<ExodusPurchase> purchases = new ArrayList<ExodusPurchase>(payments.size());
+        for (Map.Entry<Transaction, Long> payment : payments.entrySet()) {
+            Transaction tx = payment.getKey();
+            long invested = payment.getValue();
+            String sender = sender(tx, previous);
+            if (sender != null) {
+                purchases.add(new ExodusPurchase(tx.getHash(), height, blockTime, sender, invested,
+                        generated(invested, blockTime)));
+            }
+        }
+        return purchases;
+    }
+
+    private boolean paysExodus(Script script) {
+        return script.isSentToAddress() && Arrays.equals(script.getPubKeyHash(), exodusHash);
+    }
+
+    /*
+     * Fetch the transactions spent by the purchases in one batch
+     */
+    private Map<Sha256Hash, Transaction> fetchPreviousTransactions(Iterable<Transaction> txs)
+            throws JsonRPCException, IOException {
+        List<Sha256Hash> txids = new ArrayList<Sha256Hash>();
+        for (Transaction tx : txs) {
+            for (TransactionInput input : tx.getInputs()) {
+                Sha256Hash txid = input.getOutpoint().getHash();
+                if (!txids.contains(txid)) {
+                    txids.add(txid);
+                }
+            }
+        }
+        List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>(txids.size());
+        for (Sha256Hash txid : txids) {
+            requests.add(client.createRequest("getrawtransaction", new ArrayList<Object>(Arrays.asList(txid.toString()))));
+        }
+        List<Map<String, Object>> responses = client.sendBatch(requests);
+        Map<Sha256Hash, Transaction> previous = new HashMap<Sha256Hash, Transaction>(txids.size() * 2);
+        for (int i = 0; i < txids.size(); i++) {
+            Map<String, Object> response = responses.get(i);
+            if (response.get("error") != null) {
+                throw new JsonRPCException("getrawtransaction " + txids.get(i) + ": " + response.get("error"));
+            }
+            byte[] raw = BitcoinClient.hexStringToByteArray((String) response.get("result"));
+            previous.put(txids.get(i), new Transaction(netParams, raw));
+        }
+        return previous;
+    }
+
+    /*
+     * The input address contributing the most bitcoin, or null if no input has an address
+     */
+    private String sender(Transaction tx, Map<Sha256Hash, Transaction> previous) {
+        SortedMap<String, Long> byAddress = new TreeMap<String, Long>();
+        for (TransactionInput input : tx.getInputs()) {
+            TransactionOutPoint outPoint = input.getOutpoint();
+            TransactionOutput spent = previous.get(outPoint.getHash()).getOutput((int) outPoint.getIndex());
+            Address address;
+            try {
+                address = spent.getScriptPubKey().getToAddress(netParams);
+            } catch (ScriptException e) {
+                continue;   // non-standard input
+            }
+            String key = address.toString();
+            Long sum = byAddress.get(key);
+            byAddress.put(key, (sum != null ? sum : 0L) + spent.getValue().longValue());
+        }
+        String sender = null;
+        long max = 0;
+        for (Map.Entry<String, Long> entry : byAddress.entrySet()) {
+            if (entry.getValue() > max) {
+                sender = entry.getKey();
+                max = entry.getValue();
+            }
+        }
+        return sender;
+    }
+
+    private static <T> T await(Future<T> future) throws JsonRPCException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JsonRPCException) {
+                throw (JsonRPCException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Independent replay of the Exodus fundraiser
+ */
+package foundation.omni.exodus;
@@ -0,0 +1,44 @@
+package foundation.omni.payout;
+
+import com.google.bitcoin.core.Address;
+import foundation.omni.CurrencyID;
+
+/**
+ * A single Omni Protocol simple send to be made by the {@link PayoutEngine}
+ */
+public class Payout {
+    private final Address destination;
+    private final CurrencyID currency;
+    private final long amount;
+
+    /**
+     * @param destination The receiving address
+     * @param currency    The currency to send
+     * @param amount      The amount in the smallest unit of the currency (willets for divisible properties)
+     */
+    public Payout(Address destination, CurrencyID currency, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Payout amount must be positive");
+        }
+        this.destination = destination;
+        this.currency = currency;
+        this.amount = amount;
+    }
+
+    public Address getDestination() {
+        return destination;
+    }
+
+    public CurrencyID getCurrency() {
+        return currency;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "Payout{" + destination + ", " + currency + ", " + amount + "}";
+    }
+}
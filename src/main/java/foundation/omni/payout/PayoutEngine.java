@@ -0,0 +1,425 @@
+package foundation.omni.payout;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.ECKey;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.msgilligan.bitcoin.BTC;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+import foundation.omni.MPNetworkParameters;
+import foundation.omni.rpc.MastercoinClient;
+import foundation.omni.tx.KeySource;
+import foundation.omni.tx.OmniPayloads;
+import foundation.omni.tx.OmniTxBuilder;
+import foundation.omni.tx.SpendableOutput;
+import foundation.omni.tx.TransactionSigner;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends large numbers of Omni Protocol simple sends.
+ * <p>
+ * Payouts are spread over one or more funded sender addresses ("lanes"). Each lane builds its payouts
+ * locally with an {@link OmniTxBuilder}, signs them with a {@link TransactionSigner} and broadcasts them with
+ * {@code sendrawtransaction}, {@code batchSize} transactions per JSON-RPC batch. Up to {@code maxConcurrency}
+ * lanes run at the same time. Results are written to a {@link PayoutJournal} so an interrupted run can be
+ * resumed without paying anyone twice.
+ * <p>
+ * The node only provides the senders' confirmed unspent outputs, so the sender addresses must be in its
+ * wallet, watch-only is enough. Every payout spends the next output(s) of its sender, and unconfirmed change
+ * is not reused. Use {@link #splitInputs(Address, int, BigDecimal)} to give each sender one confirmed
+ * input per payout first.
+ */
+public class PayoutEngine {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    /* Keep split transactions well below the standard transaction size limit */
+    public static final int MAX_SPLIT_OUTPUTS = 250;
+    private static final int INPUT_SIZE_ESTIMATE = 148;
+    private static final int OUTPUT_SIZE_ESTIMATE = 34;
+    private static final int TX_OVERHEAD_ESTIMATE = 10;
+    /* bitcoind error code of gettransaction for a transaction the wallet doesn't know */
+    private static final int RPC_INVALID_ADDRESS_OR_KEY = -5;
+
+    private final MastercoinClient client;
+    private final MPNetworkParameters params;
+    private final KeySource keySource;
+    private final OmniTxBuilder builder;
+    private final TransactionSigner signer;
+    private final int maxConcurrency;
+    private final int batchSize;
+    private volatile OmniTxBuilder.Encoding encoding = OmniTxBuilder.Encoding.CLASS_B;
+
+    public PayoutEngine(MastercoinClient client, MPNetworkParameters params, KeySource keySource) {
+        this(client, params, keySource, 4, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param client         client for a node whose wallet watches the sender addresses
+     * @param params         network the node is running on
+     * @param keySource      private keys of the sender addresses
+     * @param maxConcurrency maximum number of lanes submitting at the same time
+     * @param batchSize      number of payouts per JSON-RPC batch
+     */
+    public PayoutEngine(MastercoinClient client, MPNetworkParameters params, KeySource keySource,
+                        int maxConcurrency, int batchSize) {
+        this.client = client;
+        this.params = params;
+        this.keySource = keySource;
+        this.builder = new OmniTxBuilder(params);
+        this.signer = new TransactionSigner(keySource);
+        this.maxConcurrency = maxConcurrency;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the encoding of payout transactions, Class B (the default) or Class C
+     */
+    public void setEncoding(OmniTxBuilder.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Split confirmed outputs of {@code sender} into {@code count} outputs of {@code amountPerInput} back to
+     * {@code sender}, using as many transactions as needed.
+     * <p>
+     * The transactions are built locally, because {@code createrawtransaction} can't pay the same address
+     * more than once, signed with the sender's key and broadcast.
+     *
+     * @param sender         address to split
+     * @param count          number of outputs to create
+     * @param amountPerInput value of each output in BTC, enough to pay for one Omni transaction
+     * @return hashes of the split transactions
+     */
+    public List<Sha256Hash> splitInputs(Address sender, int count, BigDecimal amountPerInput)
+            throws JsonRPCException, IOException {
+        NetworkParameters netParams = params.getParams();
+        BigInteger outputValue = BTC.btcToSatoshis(amountPerInput);
+        List<SpendableOutput> unspent = confirmedOutputs(sender);
+        List<Sha256Hash> txids = new ArrayList<Sha256Hash>();
+
+        int remaining = count;
+        while (remaining > 0) {
+            int outputs = Math.min(remaining, MAX_SPLIT_OUTPUTS);
+            Transaction tx = new Transaction(netParams);
+            List<SpendableOutput> spent = new ArrayList<SpendableOutput>();
+            BigInteger needed = outputValue.multiply(BigInteger.valueOf(outputs));
+            BigInteger gathered = BigInteger.ZERO;
+            BigInteger fee = BigInteger.ZERO;
+            while (gathered.compareTo(needed.add(fee)) < 0) {
+                if (unspent.isEmpty()) {
+                    throw new IllegalStateException("Insufficient funds in " + sender + " to split " + count + " inputs");
+                }
+                SpendableOutput output = unspent.remove(0);
+                TransactionOutPoint outPoint = new TransactionOutPoint(netParams, output.getVout(), output.getTxid());
+                tx.addInput(new TransactionInput(netParams, tx, new byte[0], outPoint));
+                spent.add(output);
+                gathered = gathered.add(output.getValue());
+                fee = estimateFee(spent.size(), outputs + 1);
+            }
+            for (int i = 0; i < outputs; i++) {
+                tx.addOutput(outputValue, sender);
+            }
+            BigInteger change = gathered.subtract(needed).subtract(fee);
+            if (change.compareTo(Transaction.MIN_NONDUST_OUTPUT) >= 0) {
+                tx.addOutput(change, sender);
+            }
+
+            txids.add(client.sendRawTransaction(signer.sign(tx, spent)));
+            remaining -= outputs;
+        }
+        return txids;
+    }
+
+    /**
+     * Send all payouts, skipping those already recorded as successful in {@code journal}
+     * <p>
+     * A batch whose response is lost, e.g. to a timeout, may or may not have been accepted by the node. Its
+     * payouts are recorded as {@link PayoutResult.Status#UNKNOWN} and are not sent again. When a run is resumed,
+     * they are first looked up with {@code gettransaction}: those the node's wallet knows are recorded as
+     * successful, those it doesn't are recorded as failed and sent again. Payouts that can't be looked up stay
+     * unknown and are skipped, so a journal must be resumed with the same payouts and senders.
+     *
+     * @param senders  funded sender addresses, payout {@code i} is sent from {@code senders[i % senders.size()]}
+     * @param payouts  the payouts to make
+     * @param journal  journal to record results in and resume from
+     * @param listener progress callback, may be null
+     * @return the results of the payouts reconciled or attempted in this run, in no particular order
+     */
+    public List<PayoutResult> run(List<Address> senders, List<Payout> payouts, final PayoutJournal journal,
+                                  final PayoutListener listener) throws InterruptedException, IOException {
+        List<PayoutResult> reconciled = reconcile(senders, payouts, journal);
+        Set<Integer> done = journal.getCompletedIndexes();
+        done.addAll(journal.getUnknownTxids().keySet());
+        List<List<Integer>> lanes = new ArrayList<List<Integer>>();
+        for (int i = 0; i < senders.size(); i++) {
+            lanes.add(new ArrayList<Integer>());
+        }
+        int total = reconciled.size();
+        for (int i = 0; i < payouts.size(); i++) {
+            if (!done.contains(i)) {
+                lanes.get(i % senders.size()).add(i);
+                total++;
+            }
+        }
+
+        final AtomicInteger completed = new AtomicInteger();
+        final List<PayoutResult> results = Collections.synchronizedList(new ArrayList<PayoutResult>(total));
+        for (PayoutResult result : reconciled) {
+            results.add(result);
+            int count = completed.incrementAndGet();
+            if (listener != null) {
+                listener.onResult(result, count, total);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrency, senders.size())));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int lane = 0; lane < senders.size(); lane++) {
+                futures.add(executor.submit(new LaneTask(senders.get(lane), lanes.get(lane), payouts, journal,
+                        listener, results, completed, total)));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;      // Journal write failed
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Look up the payouts recorded as unknown and record whether they were accepted
+     *
+     * @return the payouts found to be accepted or not, payouts that couldn't be looked up are left out
+     */
+    private List<PayoutResult> reconcile(List<Address> senders, List<Payout> payouts, PayoutJournal journal)
+            throws IOException {
+        Map<Integer, Sha256Hash> unknown = journal.getUnknownTxids();
+        List<PayoutResult> reconciled = new ArrayList<PayoutResult>(unknown.size());
+        if (unknown.isEmpty()) {
+            return reconciled;
+        }
+        List<Integer> indexes = new ArrayList<Integer>(unknown.keySet());
+        List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>(indexes.size());
+        for (Integer index : indexes) {
+            requests.add(client.createRequest("gettransaction",
+                    Collections.singletonList((Object) unknown.get(index).toString())));
+        }
+        List<Map<String, Object>> responses;
+        try {
+            responses = client.sendBatch(requests);
+        } catch (JsonRPCException e) {
+            return reconciled;      // Still unknown, try again on the next run
+        } catch (IOException e) {
+            return reconciled;
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            Payout payout = payouts.get(index);
+            Address sender = senders.get(index % senders.size());
+            Sha256Hash txid = unknown.get(index);
+            Object error = responses.get(i).get("error");
+            PayoutResult result;
+            if (error == null) {
+                result = PayoutResult.success(index, payout, sender, txid);
+            } else if (error instanceof Map && isNotFound((Map<?, ?>) error)) {
+                result = PayoutResult.failure(index, payout, sender, "Transaction " + txid + " not found by the node");
+            } else {
+                continue;
+            }
+            journal.record(result);
+            reconciled.add(result);
+        }
+        return reconciled;
+    }
+
+    private static boolean isNotFound(Map<?, ?> error) {
+        Object code = error.get("code");
+        return code instanceof Number && ((Number) code).intValue() == RPC_INVALID_ADDRESS_OR_KEY;
+    }
+
+    /**
+     * Create a hex-encoded Omni payload for transaction type 0: "simple send".
+     */
+    static String createSimpleSendHex(Payout payout) {
+        return BitcoinClient.byteArrayToHexString(OmniPayloads.simpleSend(payout.getCurrency(), payout.getAmount()));
+    }
+
+    private List<SpendableOutput> confirmedOutputs(Address sender) throws JsonRPCException, IOException {
+        List<Map<String, Object>> unspent = client.listUnspent(1, 9999999, Collections.singletonList(sender));
+        List<SpendableOutput> outputs = new ArrayList<SpendableOutput>(unspent.size());
+        for (Map<String, Object> output : unspent) {
+            outputs.add(SpendableOutput.fromListUnspent(output));
+        }
+        return outputs;
+    }
+
+    private static BigInteger estimateFee(int inputs, int outputs) {
+        long size = TX_OVERHEAD_ESTIMATE + (long) inputs * INPUT_SIZE_ESTIMATE + (long) outputs * OUTPUT_SIZE_ESTIMATE;
+        long kilobytes = (size + 999) / 1000;
+        return Transaction.REFERENCE_DEFAULT_MIN_TX_FEE.multiply(BigInteger.valueOf(kilobytes));
+    }
+
+    /**
+     * Submits one sender's payouts in batches
+     */
+    private class LaneTask implements Callable<Void> {
+        private final Address sender;
+        private final List<Integer> indexes;
+        private final List<Payout> payouts;
+        private final PayoutJournal journal;
+        private final PayoutListener listener;
+        private final List<PayoutResult> results;
+        private final AtomicInteger completed;
+        private final int total;
+
+        LaneTask(Address sender, List<Integer> indexes, List<Payout> payouts, PayoutJournal journal,
+                 PayoutListener listener, List<PayoutResult> results, AtomicInteger completed, int total) {
+            this.sender = sender;
+            this.indexes = indexes;
+            this.payouts = payouts;
+            this.journal = journal;
+            this.listener = listener;
+            this.results = results;
+            this.completed = completed;
+            this.total = total;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            List<SpendableOutput> unspent;
+            byte[] senderPubKey = null;
+            try {
+                unspent = confirmedOutputs(sender);
+                if (encoding == OmniTxBuilder.Encoding.CLASS_B) {
+                    ECKey key = keySource.getKey(sender.getHash160());
+                    if (key == null) {
+                        throw new IllegalStateException("No key for sender " + sender);
+                    }
+                    senderPubKey = key.getPubKey();
+                }
+            } catch (JsonRPCException e) {
+                failAll(indexes, e.getMessage());
+                return null;
+            } catch (IOException e) {
+                failAll(indexes, e.toString());
+                return null;
+            } catch (IllegalStateException e) {
+                failAll(indexes, e.getMessage());
+                return null;
+            }
+
+            for (int start = 0; start < indexes.size(); start += batchSize) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                List<Integer> chunk = indexes.subList(start, Math.min(start + batchSize, indexes.size()));
+                List<Integer> built = new ArrayList<Integer>(chunk.size());
+                List<Transaction> txs = new ArrayList<Transaction>(chunk.size());
+                List<SpendableOutput> spent = new ArrayList<SpendableOutput>();
+                for (Integer index : chunk) {
+                    Payout payout = payouts.get(index);
+                    Transaction tx;
+                    try {
+                        tx = builder.simpleSend(sender, senderPubKey, unspent, payout.getDestination(),
+                                payout.getCurrency(), payout.getAmount(), encoding);
+                    } catch (IllegalStateException e) {
+                        record(PayoutResult.failure(index, payout, sender, e.getMessage()));   // Out of inputs
+                        continue;
+                    }
+                    /* The builder spends outputs in order, so the inputs are the first unspent outputs */
+                    List<SpendableOutput> inputs = unspent.subList(0, tx.getInputs().size());
+                    spent.addAll(inputs);
+                    inputs.clear();
+                    built.add(index);
+                    txs.add(tx);
+                }
+                if (built.isEmpty()) {
+                    continue;
+                }
+
+                List<String> signed;
+                try {
+                    signed = signer.signAll(txs, spent);
+                } catch (IllegalStateException e) {
+                    failAll(built, e.getMessage());
+                    continue;
+                }
+                List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>(built.size());
+                for (String hex : signed) {
+                    requests.add(client.createRequest("sendrawtransaction", Collections.singletonList((Object) hex)));
+                }
+
+                List<Map<String, Object>> responses = null;
+                String batchError = null;
+                try {
+                    responses = client.sendBatch(requests);
+                } catch (JsonRPCException e) {
+                    batchError = e.getMessage();
+                } catch (IOException e) {
+                    batchError = e.toString();
+                }
+
+                for (int i = 0; i < built.size(); i++) {
+                    int index = built.get(i);
+                    Payout payout = payouts.get(index);
+                    if (responses == null) {
+                        record(PayoutResult.unknown(index, payout, sender, txs.get(i).getHash(), batchError));
+                    } else {
+                        record(toResult(index, payout, responses.get(i)));
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void failAll(List<Integer> failed, String error) throws IOException {
+            for (Integer index : failed) {
+                record(PayoutResult.failure(index, payouts.get(index), sender, error));
+            }
+        }
+
+        private void record(PayoutResult result) throws IOException {
+            journal.record(result);
+            results.add(result);
+            int count = completed.incrementAndGet();
+            if (listener != null) {
+                listener.onResult(result, count, total);
+            }
+        }
+
+        private PayoutResult toResult(int index, Payout payout, Map<String, Object> response) {
+            Object error = response.get("error");
+            if (error != null) {
+                Object message = (error instanceof Map) ? ((Map<?, ?>) error).get("message") : error;
+                return PayoutResult.failure(index, payout, sender, String.valueOf(message));
+            }
+            return PayoutResult.success(index, payout, sender, new Sha256Hash((String) response.get("result")));
+        }
+    }
+}
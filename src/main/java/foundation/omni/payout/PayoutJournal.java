@@ -0,0 +1,122 @@
+package foundation.omni.payout;
+
+import com.google.bitcoin.core.Sha256Hash;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only, tab-separated log of payout results
+ * <p>
+ * Each line holds: index, destination, currency ID, amount, sender, status ({@code OK}, {@code FAIL} or
+ * {@code UNKNOWN}) and the txid or error message, or both for {@code UNKNOWN}. Lines are flushed as they
+ * are written, so an interrupted batch can be resumed by skipping the indexes returned by
+ * {@link #getCompletedIndexes()}. Payouts whose outcome is unknown must not be resent before they are
+ * reconciled, see {@link #getUnknownTxids()}. The last line recorded for a payout determines its status.
+ */
+public class PayoutJournal implements Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    static final String OK = "OK";
+    static final String FAIL = "FAIL";
+    static final String UNKNOWN = "UNKNOWN";
+
+    private final Writer writer;
+    private final Set<Integer> completed = new HashSet<Integer>();
+    private final Map<Integer, Sha256Hash> unknown = new HashMap<Integer, Sha256Hash>();
+
+    /**
+     * Open a journal file, appending to it if it already exists
+     */
+    public PayoutJournal(File file) throws IOException {
+        if (file.exists()) {
+            read(file);
+        }
+        writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+    }
+
+    /**
+     * @return the indexes of payouts already recorded as successful
+     */
+    public synchronized Set<Integer> getCompletedIndexes() {
+        return new HashSet<Integer>(completed);
+    }
+
+    /**
+     * @return the txids of payouts that were sent without learning whether the node accepted them, by index
+     */
+    public synchronized Map<Integer, Sha256Hash> getUnknownTxids() {
+        return new HashMap<Integer, Sha256Hash>(unknown);
+    }
+
+    public synchronized void record(PayoutResult result) throws IOException {
+        Payout payout = result.getPayout();
+        StringBuilder line = new StringBuilder();
+        line.append(result.getIndex()).append('\t')
+            .append(payout.getDestination()).append('\t')
+            .append(payout.getCurrency().longValue()).append('\t')
+            .append(payout.getAmount()).append('\t')
+            .append(result.getSender()).append('\t');
+        switch (result.getStatus()) {
+            case OK:
+                line.append(OK).append('\t').append(result.getTxid());
+                break;
+            case UNKNOWN:
+                line.append(UNKNOWN).append('\t').append(result.getTxid()).append('\t').append(sanitize(result.getError()));
+                break;
+            default:
+                line.append(FAIL).append('\t').append(sanitize(result.getError()));
+        }
+        line.append('\n');
+        writer.write(line.toString());
+        writer.flush();
+        update(result.getIndex(), result.getStatus().name(), result.getTxid());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void read(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length >= 6) {
+                    boolean hasTxid = fields.length >= 7 && !fields[5].equals(FAIL);
+                    update(Integer.parseInt(fields[0]), fields[5], hasTxid ? new Sha256Hash(fields[6]) : null);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void update(int index, String status, Sha256Hash txid) {
+        if (status.equals(OK)) {
+            completed.add(index);
+            unknown.remove(index);
+        } else if (status.equals(UNKNOWN)) {
+            unknown.put(index, txid);
+        } else {
+            unknown.remove(index);
+        }
+    }
+
+    private static String sanitize(String message) {
+        return message == null ? "" : message.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,10 @@
+package foundation.omni.payout;
+
+/**
+ * Progress callback for the {@link PayoutEngine}
+ * <p>
+ * Called from the engine's worker threads, so implementations must be thread-safe.
+ */
+public interface PayoutListener {
+    void onResult(PayoutResult result, int completed, int total);
+}
@@ -0,0 +1,90 @@
+package foundation.omni.payout;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Sha256Hash;
+
+/**
+ * The outcome of a single {@link Payout}
+ */
+public class PayoutResult {
+    /**
+     * Outcome of a payout
+     */
+    public enum Status {
+        /** Accepted by the node */
+        OK,
+        /** Not sent, or rejected by the node */
+        FAIL,
+        /** Sent, but the node's response was lost, so it may or may not have been accepted */
+        UNKNOWN
+    }
+
+    private final int index;
+    private final Payout payout;
+    private final Address sender;
+    private final Status status;
+    private final Sha256Hash txid;
+    private final String error;
+
+    private PayoutResult(int index, Payout payout, Address sender, Status status, Sha256Hash txid, String error) {
+        this.index = index;
+        this.payout = payout;
+        this.sender = sender;
+        this.status = status;
+        this.txid = txid;
+        this.error = error;
+    }
+
+    public static PayoutResult success(int index, Payout payout, Address sender, Sha256Hash txid) {
+        return new PayoutResult(index, payout, sender, Status.OK, txid, null);
+    }
+
+    public static PayoutResult failure(int index, Payout payout, Address sender, String error) {
+        return new PayoutResult(index, payout, sender, Status.FAIL, null, error);
+    }
+
+    /**
+     * @param txid  hash of the transaction that was sent
+     * @param error the transport error that lost the response
+     */
+    public static PayoutResult unknown(int index, Payout payout, Address sender, Sha256Hash txid, String error) {
+        return new PayoutResult(index, payout, sender, Status.UNKNOWN, txid, error);
+    }
+
+    /**
+     * @return position of the payout in the list passed to {@link PayoutEngine#run}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Payout getPayout() {
+        return payout;
+    }
+
+    public Address getSender() {
+        return sender;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the transaction hash, or null if the payout failed
+     */
+    public Sha256Hash getTxid() {
+        return txid;
+    }
+
+    /**
+     * @return the error message, or null if the payout succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+}
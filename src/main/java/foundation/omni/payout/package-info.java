@@ -0,0 +1,4 @@
+/**
+ * Bulk Omni Protocol payouts using raw transactions
+ */
+package foundation.omni.payout;
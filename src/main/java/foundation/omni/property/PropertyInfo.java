@@ -0,0 +1,130 @@
+package foundation.omni.property;
+
+import foundation.omni.CurrencyID;
+import foundation.omni.PropertyType;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Metadata of an Omni Protocol property, with amount conversions for its divisibility.
+ * <p>
+ * Amounts are converted between the property's smallest unit ({@code long}, as used in transactions and
+ * {@link foundation.omni.balance.BalanceTable}) and token amounts ({@code BigDecimal}, as used by the RPCs).
+ */
+public final class PropertyInfo {
+    private static final int DIVISIBLE_SCALE = 8;
+
+    private final CurrencyID id;
+    private final String name;
+    private final String category;
+    private final String subcategory;
+    private final String url;
+    private final String data;
+    private final PropertyType type;
+    private final int scale;
+
+    public PropertyInfo(CurrencyID id, String name, String category, String subcategory, String url, String data,
+                        PropertyType type) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.subcategory = subcategory;
+        this.url = url;
+        this.data = data;
+        this.type = type;
+        this.scale = PropertyType.DIVISIBLE.equals(type) ? DIVISIBLE_SCALE : 0;
+    }
+
+    /**
+     * Convert a {@code listproperties_MP} entry or a {@code getproperty_MP} result
+     *
+     * @param id The property, for results that don't include {@code propertyid}
+     */
+    public static PropertyInfo fromJson(CurrencyID id, Map<String, Object> json) {
+        boolean divisible = Boolean.TRUE.equals(json.get("divisible"));
+        return new PropertyInfo(id,
+                (String) json.get("name"),
+                (String) json.get("category"),
+                (String) json.get("subcategory"),
+                (String) json.get("url"),
+                (String) json.get("data"),
+                divisible ? PropertyType.DIVISIBLE : PropertyType.INDIVISIBLE);
+    }
+
+    public CurrencyID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getSubcategory() {
+        return subcategory;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public PropertyType getType() {
+        return type;
+    }
+
+    public boolean isDivisible() {
+        return scale != 0;
+    }
+
+    /**
+     * @return number of decimal places: 8 for divisible properties, 0 for indivisible ones
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @param units amount in the smallest unit
+     * @return amount in tokens, with {@link #getScale()} decimal places
+     */
+    public BigDecimal toDecimal(long units) {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    /**
+     * @param amount amount in tokens
+     * @return amount in the smallest unit
+     * @throws ArithmeticException if the amount has more decimal places than the property allows
+     */
+    public long toUnits(BigDecimal amount) {
+        return amount.movePointRight(scale).longValueExact();
+    }
+
+    /**
+     * @return the amount as the RPCs print it, e.g. {@code "1.50000000"} or {@code "15"}
+     */
+    public String format(long units) {
+        return toDecimal(units).toPlainString();
+    }
+
+    /**
+     * @throws NumberFormatException if the string is not a decimal number
+     * @throws ArithmeticException if the amount has more decimal places than the property allows
+     */
+    public long parse(String amount) {
+        return toUnits(new BigDecimal(amount));
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyInfo{" + id + ", " + name + ", " + (isDivisible() ? "divisible" : "indivisible") + "}";
+    }
+}
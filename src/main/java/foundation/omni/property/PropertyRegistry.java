@@ -0,0 +1,135 @@
+package foundation.omni.property;
+
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+import foundation.omni.CurrencyID;
+import foundation.omni.PropertyType;
+import foundation.omni.rpc.MastercoinClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of property metadata, loaded from {@code listproperties_MP} once and extended as new
+ * properties appear.
+ * <p>
+ * Property IDs are assigned sequentially in each ecosystem, so properties are stored in two dense arrays
+ * indexed by ID rather than in a map. Lookups don't lock or allocate; when an unknown ID is requested
+ * only that property is fetched with {@code getproperty_MP}. Property metadata never changes once
+ * created, so entries are never refreshed.
+ */
+public class PropertyRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final MastercoinClient client;
+    /* Copy-on-write: index i is property i in the real ecosystem and MAX_REAL_ECOSYSTEM_VALUE + i in the test ecosystem */
+    private volatile PropertyInfo[] real = new PropertyInfo[INITIAL_CAPACITY];
+    private volatile PropertyInfo[] test = new PropertyInfo[INITIAL_CAPACITY];
+    private volatile int size;
+
+    public PropertyRegistry(MastercoinClient client) {
+        this.client = client;
+        add(Arrays.asList(
+                new PropertyInfo(CurrencyID.MSC, "MasterCoin", "", "", "", "", PropertyType.DIVISIBLE),
+                new PropertyInfo(CurrencyID.TMSC, "Test MasterCoin", "", "", "", "", PropertyType.DIVISIBLE)));
+    }
+
+    /**
+     * Add any properties not yet in the registry
+     *
+     * @return number of properties added
+     */
+    public synchronized int refresh() throws JsonRPCException, IOException {
+        List<Object> properties = client.listproperties_MP();
+        List<PropertyInfo> added = new ArrayList<PropertyInfo>();
+        for (Object item : properties) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> json = (Map<String, Object>) item;
+            CurrencyID id = CurrencyID.valueOf(((Number) json.get("propertyid")).longValue());
+            if (getIfPresent(id) == null) {
+                added.add(PropertyInfo.fromJson(id, json));
+            }
+        }
+        add(added);
+        return added.size();
+    }
+
+    /**
+     * @return the property, fetching it from the server if it isn't known yet
+     * @throws JsonRPCException if the property doesn't exist
+     */
+    public PropertyInfo get(CurrencyID id) throws JsonRPCException, IOException {
+        PropertyInfo info = getIfPresent(id);
+        if (info == null) {
+            synchronized (this) {
+                info = getIfPresent(id);
+                if (info == null) {
+                    info = PropertyInfo.fromJson(id, client.getproperty_MP(id));
+                    add(Collections.singletonList(info));
+                }
+            }
+        }
+        return info;
+    }
+
+    /**
+     * @return the property, or null if it isn't in the registry; never calls the server
+     */
+    public PropertyInfo getIfPresent(CurrencyID id) {
+        long value = id.longValue();
+        PropertyInfo[] table;
+        long index;
+        if (value <= CurrencyID.MAX_REAL_ECOSYSTEM_VALUE) {
+            table = real;
+            index = value;
+        } else {
+            table = test;
+            index = value - CurrencyID.MAX_REAL_ECOSYSTEM_VALUE;
+        }
+        return index < table.length ? table[(int) index] : null;
+    }
+
+    /**
+     * @return number of properties in the registry
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Copy the tables with the new entries so that readers never see a partially updated array
+     */
+    private synchronized void add(List<PropertyInfo> infos) {
+        PropertyInfo[] newReal = real;
+        PropertyInfo[] newTest = test;
+        for (PropertyInfo info : infos) {
+            long value = info.getId().longValue();
+            if (value <= CurrencyID.MAX_REAL_ECOSYSTEM_VALUE) {
+                newReal = store(newReal, real, (int) value, info);
+            } else {
+                newTest = store(newTest, test, (int) (value - CurrencyID.MAX_REAL_ECOSYSTEM_VALUE), info);
+            }
+        }
+        real = newReal;
+        test = newTest;
+        size += infos.size();
+    }
+
+    /*
+     * Store into the copy, making the copy first if it is still the published table or too small
+     */
+    private static PropertyInfo[] store(PropertyInfo[] copy, PropertyInfo[] published, int index, PropertyInfo info) {
+        int length = copy.length;
+        while (length <= index) {
+            length *= 2;
+        }
+        if (copy == published || length != copy.length) {
+            copy = Arrays.copyOf(copy, length);
+        }
+        copy[index] = info;
+        return copy;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Typed Omni Protocol property metadata
+ */
+package foundation.omni.property;
@@ -0,0 +1,187 @@
+package foundation.omni.rpc;
+
+import com.google.bitcoin.core.Address;
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+import foundation.omni.CurrencyID;
+import foundation.omni.balance.AddressBook;
+import foundation.omni.balance.BalanceMatrix;
+import foundation.omni.balance.BalanceTable;
+import foundation.omni.property.PropertyInfo;
+import foundation.omni.property.PropertyRegistry;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fetches the balances of many addresses in many currencies with batched {@code getbalance_MP} calls.
+ * <p>
+ * Requests are grouped into JSON-RPC batches of {@code batchSize} and up to {@code maxConcurrency} batches
+ * are in flight at once. Results are cached until the block height changes, so repeated queries within a
+ * block only fetch balances that weren't requested before. Amounts are converted to the smallest unit with the
+ * divisibility of each property, from a {@link PropertyRegistry}.
+ */
+public class BalanceFetcher {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final MastercoinClient client;
+    private final PropertyRegistry properties;
+    private final int batchSize;
+    private final ExecutorService executor;
+
+    /* Guarded by this */
+    private BalanceTable cache = new BalanceTable();
+    private int cacheHeight = -1;
+
+    public BalanceFetcher(MastercoinClient client) {
+        this(client, DEFAULT_BATCH_SIZE, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public BalanceFetcher(MastercoinClient client, int batchSize, int maxConcurrency) {
+        this(client, new PropertyRegistry(client), batchSize, maxConcurrency);
+    }
+
+    public BalanceFetcher(MastercoinClient client, PropertyRegistry properties, int batchSize, int maxConcurrency) {
+        this.client = client;
+        this.properties = properties;
+        this.batchSize = batchSize;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BalanceFetcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return balances of every address in every currency, consistent with a single block height
+     */
+    public synchronized BalanceMatrix getBalances(Collection<Address> addresses, Collection<CurrencyID> currencies)
+            throws JsonRPCException, IOException {
+        List<Address> rows = new ArrayList<Address>(addresses);
+        List<CurrencyID> columns = new ArrayList<CurrencyID>(currencies);
+        while (true) {
+            int height = client.getBlockCount();
+            if (height != cacheHeight) {
+                cache = new BalanceTable(new AddressBook(rows.size()), rows.size() * columns.size());
+                cacheHeight = height;
+            }
+            fetchMissing(rows, columns);
+            /* Balances fetched across a block boundary may be inconsistent, so start over */
+            if (client.getBlockCount() == height) {
+                return toMatrix(rows, columns, height);
+            }
+        }
+    }
+
+    /**
+     * Release the fetcher's threads
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void fetchMissing(List<Address> rows, List<CurrencyID> columns) throws JsonRPCException, IOException {
+        AddressBook book = cache.getAddressBook();
+        List<String> missingAddresses = new ArrayList<String>();
+        List<CurrencyID> missingCurrencies = new ArrayList<CurrencyID>();
+        for (Address address : rows) {
+            String addressString = address.toString();
+            int addressId = book.lookup(addressString);
+            for (CurrencyID currency : columns) {
+                if (addressId < 0 || !cache.contains(currency.longValue(), addressId)) {
+                    missingAddresses.add(addressString);
+                    missingCurrencies.add(currency);
+                }
+            }
+        }
+
+        List<Future<List<Map<String, Object>>>> batches = new ArrayList<Future<List<Map<String, Object>>>>();
+        for (int start = 0; start < missingAddresses.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, missingAddresses.size());
+            final List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>(end - start);
+            for (int i = start; i < end; i++) {
+                List<Object> params = new ArrayList<Object>(Arrays.asList((Object) missingAddresses.get(i),
+                        missingCurrencies.get(i).longValue()));
+                requests.add(client.createRequest("getbalance_MP", params));
+            }
+            batches.add(executor.submit(new Callable<List<Map<String, Object>>>() {
+                @Override
+                public List<Map<String, Object>> call() throws Exception {
+                    return client.sendBatch(requests);
+                }
+            }));
+        }
+
+        int i = 0;
+        for (Future<List<Map<String, Object>>> batch : batches) {
+            for (Map<String, Object> response : await(batch)) {
+                if (response.get("error") != null) {
+                    throw new JsonRPCException("getbalance_MP " + missingAddresses.get(i) + ": " + response.get("error"));
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> result = (Map<String, Object>) response.get("result");
+                CurrencyID currency = missingCurrencies.get(i);
+                PropertyInfo property = properties.get(currency);
+                cache.put(currency, missingAddresses.get(i),
+                        toUnits(result.get("balance"), property), toUnits(result.get("reserved"), property));
+                i++;
+            }
+        }
+    }
+
+    private BalanceMatrix toMatrix(List<Address> rows, List<CurrencyID> columns, int height) {
+        long[] balances = new long[rows.size() * columns.size()];
+        long[] reserves = new long[balances.length];
+        AddressBook book = cache.getAddressBook();
+        int cell = 0;
+        for (Address address : rows) {
+            int addressId = book.lookup(address.toString());
+            for (CurrencyID currency : columns) {
+                balances[cell] = cache.getBalance(currency.longValue(), addressId);
+                reserves[cell] = cache.getReserved(currency.longValue(), addressId);
+                cell++;
+            }
+        }
+        return new BalanceMatrix(rows, columns, balances, reserves, height);
+    }
+
+    /*
+     * Throws ArithmeticException if the amount has more decimal places than the property allows
+     */
+    static long toUnits(Object amount, PropertyInfo property) {
+        return property.toUnits(new BigDecimal(amount.toString()));
+    }
+
+    private static <T> T await(Future<T> future) throws JsonRPCException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JsonRPCException) {
+                throw (JsonRPCException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
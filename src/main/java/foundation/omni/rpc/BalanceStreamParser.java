@@ -0,0 +1,94 @@
+package foundation.omni.rpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.msgilligan.bitcoin.rpc.JsonRPCException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for {@code getallbalancesforid_MP} responses
+ * <p>
+ * Entries are handed to a {@link Handler} as they are read, without building a list of maps or
+ * {@link MPBalanceEntry} objects first. Parsed from the HTTP response stream, see
+ * {@link com.msgilligan.bitcoin.rpc.RPCClient#sendForStream}, a response with millions of addresses is never
+ * held in memory. Amounts are passed on as the server formatted them.
+ */
+public class BalanceStreamParser {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Receives the entries of a response in server order
+     */
+    public interface Handler {
+        void entry(String address, String balance, String reserved) throws IOException;
+    }
+
+    /**
+     * @param response A complete JSON-RPC response, as returned by
+     *                 {@link com.msgilligan.bitcoin.rpc.RPCClient#sendForJson(String, java.util.List)}
+     * @param handler  Receives each entry
+     * @return number of entries
+     */
+    public static int parse(String response, Handler handler) throws IOException, JsonRPCException {
+        return parse(mapper.getFactory().createParser(response), handler);
+    }
+
+    /**
+     * @param response The body of a JSON-RPC response, read as it arrives
+     * @param handler  Receives each entry
+     * @return number of entries
+     */
+    public static int parse(InputStream response, Handler handler) throws IOException, JsonRPCException {
+        return parse(mapper.getFactory().createParser(response), handler);
+    }
+
+    private static int parse(JsonParser parser, Handler handler) throws IOException, JsonRPCException {
+        try {
+            int count = 0;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonRPCException("Not a JSON-RPC response object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("result") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        parseEntry(parser, handler);
+                        count++;
+                    }
+                } else if (field.equals("error") && value != JsonToken.VALUE_NULL) {
+                    throw new JsonRPCException("RPC error: " + parser.readValueAsTree());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return count;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static void parseEntry(JsonParser parser, Handler handler) throws IOException {
+        String address = null;
+        String balance = null;
+        String reserved = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            // Strings in current versions, integers in some older ones
+            if (field.equals("address")) {
+                address = parser.getText();
+            } else if (field.equals("balance")) {
+                balance = parser.getText();
+            } else if (field.equals("reserved")) {
+                reserved = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        handler.entry(address, balance, reserved);
+    }
+}
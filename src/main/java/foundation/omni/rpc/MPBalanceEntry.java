@@ -1,6 +1,7 @@
 package foundation.omni.rpc;
 
 import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
 
 import java.math.BigDecimal;
 
@@ -8,18 +9,30 @@ import java.math.BigDecimal;
  * Balance data for a specific Mastercoin CurrencyID in a single Bitcoin address
  *
  * A Java representation of the JSON entry returned by getallbalancesforid_MP
+ *
+ * The address is kept as the string returned by the server and is only decoded into
+ * an {@link Address} (Base58 decode and checksum) the first time {@link #getAddress()} is called.
  */
 public class MPBalanceEntry {
+    private final String addressString;
     private Address address;
     private BigDecimal balance;
     private BigDecimal reserved;
 
     public MPBalanceEntry(Address address, BigDecimal balance, BigDecimal reserved) {
+        this.addressString = address.toString();
         this.address = address;
         this.balance = balance;
         this.reserved = reserved;
     }
 
+    public MPBalanceEntry(String addressString, BigDecimal balance, BigDecimal reserved) {
+        this.addressString = addressString;
+        this.address = null;
+        this.balance = balance;
+        this.reserved = reserved;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -27,7 +40,7 @@ public class MPBalanceEntry {
 
         MPBalanceEntry that = (MPBalanceEntry) o;
 
-        if (!address.equals(that.address)) return false;
+        if (!addressString.equals(that.addressString)) return false;
         if (!balance.equals(that.balance)) return false;
         if (!reserved.equals(that.reserved)) return false;
 
@@ -36,16 +49,35 @@ public class MPBalanceEntry {
 
     @Override
     public int hashCode() {
-        int result = address.hashCode();
+        int result = addressString.hashCode();
         result = 31 * result + balance.hashCode();
         result = 31 * result + reserved.hashCode();
         return result;
     }
 
+    /**
+     * Return the address, decoding (and validating) it on first use
+     *
+     * @return the address as a bitcoinj Address
+     */
     public Address getAddress() {
+        if (address == null) {
+            try {
+                address = new Address(null, addressString);
+            } catch (AddressFormatException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return address;
     }
 
+    /**
+     * @return the address as returned by the server, without decoding it
+     */
+    public String getAddressString() {
+        return addressString;
+    }
+
     public BigDecimal getBalance() {
         return balance;
     }
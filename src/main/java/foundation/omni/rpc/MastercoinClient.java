@@ -1,11 +1,11 @@
 package foundation.omni.rpc;
 
 import com.google.bitcoin.core.Address;
-import com.google.bitcoin.core.AddressFormatException;
 import com.google.bitcoin.core.Sha256Hash;
 import com.msgilligan.bitcoin.rpc.BitcoinClient;
 import com.msgilligan.bitcoin.rpc.JsonRPCException;
 import foundation.omni.CurrencyID;
+import foundation.omni.balance.BalanceMatrix;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -15,6 +15,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +26,7 @@ public class MastercoinClient extends BitcoinClient {
 
     public static Sha256Hash zeroHash = new Sha256Hash("0000000000000000000000000000000000000000000000000000000000000000");
     private DecimalFormat jsonDecimalFormat;
+    private BalanceFetcher balanceFetcher;
 
     public MastercoinClient(URL server, String rpcuser, String rpcpassword) throws IOException {
         super(server, rpcuser, rpcpassword);
@@ -53,6 +55,21 @@ public class MastercoinClient extends BitcoinClient {
         return result;
     }
 
+    /**
+     * Returns the metadata of a single property
+     *
+     * @param currency The property to look up
+     * @return A Map (JSON object) with the name, category, divisibility etc. of the property
+     */
+    public Map<String, Object> getproperty_MP(CurrencyID currency) throws JsonRPCException, IOException {
+        List<Object> params = Arrays.asList((Object) currency.longValue());
+        Map<String, Object> response = send("getproperty_MP", params);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) response.get("result");
+        return result;
+    }
+
     public Sha256Hash send_MP(Address fromAddress, Address toAddress, CurrencyID currency, BigDecimal amount) throws JsonRPCException, IOException {
         List<Object> params = Arrays.asList((Object) fromAddress.toString(), toAddress.toString(), currency.longValue(), amount.toPlainString());
         Map<String, Object> response = send("send_MP", params);
@@ -94,7 +111,48 @@ public class MastercoinClient extends BitcoinClient {
         return entry;
     }
 
-    public List<MPBalanceEntry> getallbalancesforid_MP(CurrencyID currency) throws JsonRPCException, IOException, ParseException, AddressFormatException {
+    /**
+     * Return the balances of many addresses in many currencies.
+     * <p>
+     * Requests are batched and results are cached until the next block, see {@link BalanceFetcher}.
+     *
+     * @param addresses The addresses to query
+     * @param currencies The currencies to query
+     * @return A matrix of balances, in the smallest unit of each currency
+     */
+    public BalanceMatrix getBalances(Collection<Address> addresses, Collection<CurrencyID> currencies)
+            throws JsonRPCException, IOException {
+        BalanceFetcher fetcher;
+        synchronized (this) {
+            if (balanceFetcher == null) {
+                balanceFetcher = new BalanceFetcher(this);
+            }
+            fetcher = balanceFetcher;
+        }
+        return fetcher.getBalances(addresses, currencies);
+    }
+
+    /**
+     * Release the threads used by {@link #getBalances(Collection, Collection)}.
+     * <p>
+     * The client can still be used, the threads are created again when needed.
+     */
+    public synchronized void close() {
+        if (balanceFetcher != null) {
+            balanceFetcher.close();
+            balanceFetcher = null;
+        }
+    }
+
+    /**
+     * Return the balances of all addresses holding a currency.
+     * <p>
+     * Addresses are returned undecoded, see {@link MPBalanceEntry#getAddressString()}.
+     *
+     * @param currency The currency to list balances for
+     * @return One entry per address
+     */
+    public List<MPBalanceEntry> getallbalancesforid_MP(CurrencyID currency) throws JsonRPCException, IOException, ParseException {
         List<Object> params = Arrays.asList((Object) currency.longValue());
         Map<String, Object> response = send("getallbalancesforid_MP", params);
         @SuppressWarnings("unchecked")
@@ -104,7 +162,6 @@ public class MastercoinClient extends BitcoinClient {
             BigDecimal balance;
             BigDecimal reserved;
             String addressString = (String) map.get("address");
-            Address address = new Address(null, addressString);
             Object balanceJson = map.get("balance");
             Object reservedJson = map.get("reserved");
             /* Assume that if balanceJson field is of type String, so is reserved */
@@ -119,7 +176,7 @@ public class MastercoinClient extends BitcoinClient {
             } else {
                 throw new RuntimeException("unexpected data type");
             }
-            MPBalanceEntry balanceEntry = new MPBalanceEntry(address, balance, reserved);
+            MPBalanceEntry balanceEntry = new MPBalanceEntry(addressString, balance, reserved);
             balances.add(balanceEntry);
         }
         return balances;
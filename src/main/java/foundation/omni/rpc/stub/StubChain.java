@@ -0,0 +1,409 @@
+package foundation.omni.rpc.stub;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ScriptException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.google.bitcoin.core.TransactionOutput;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Synthetic blockchain and Omni Protocol state served by {@link StubRPCServer}.
+ * <p>
+ * Holders, balances, blocks and transactions are pure functions of their index, so millions of them cost no
+ * memory until they are requested. Synthetic addresses, block hashes and txids embed their index, so they
+ * can be mapped back without a lookup table. Transactions submitted by clients are kept in memory and
+ * included in the next mined block. The outputs of submitted raw transactions to standard addresses are
+ * tracked until they are spent, so every address acts as a wallet address that can be funded with
+ * {@link #fund(Address, long)}.
+ * <p>
+ * Property 1 (MSC) and 2 (TMSC) and odd-numbered properties are divisible, the others indivisible.
+ * Every property is held by holders {@code 0} to {@code holders - 1}.
+ */
+public class StubChain {
+    private static final byte[] ADDRESS_MAGIC = {'s', 't', 'u', 'b'};
+    private static final byte[] TXID_MAGIC = {'s', 't', 'x', 0};
+    private static final byte[] OMNI_TXID_MAGIC = {'s', 'o', 'x', 0};
+    private static final byte[] FUNDING_MAGIC = {'s', 'f', 'd', 0};
+    private static final byte[] BLOCK_MAGIC = {'s', 'b', 'k', 0};
+    private static final long GENESIS_TIME = 1400000000L;
+    private static final long BLOCK_INTERVAL = 600;
+
+    /**
+     * A transaction submitted with {@code sendrawtransaction}, {@code send_MP} or {@code sendrawtx_MP}
+     */
+    public static class Submitted {
+        public final Sha256Hash txid;
+        public final byte[] raw;                // null for Omni transactions created by the stub
+        public final String sendingAddress;
+        public final String referenceAddress;
+        public final long propertyId;
+        public final String amount;
+        volatile int height = -1;           // -1 while unconfirmed
+
+        Submitted(Sha256Hash txid, byte[] raw, String sendingAddress, String referenceAddress, long propertyId, String amount) {
+            this.txid = txid;
+            this.raw = raw;
+            this.sendingAddress = sendingAddress;
+            this.referenceAddress = referenceAddress;
+            this.propertyId = propertyId;
+            this.amount = amount;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    /**
+     * An unspent output of a submitted raw transaction
+     */
+    public static class Unspent {
+        public final Submitted tx;
+        public final int vout;
+        public final String address;
+        public final long value;            // satoshis
+        public final byte[] scriptPubKey;
+
+        Unspent(Submitted tx, int vout, String address, long value, byte[] scriptPubKey) {
+            this.tx = tx;
+            this.vout = vout;
+            this.address = address;
+            this.value = value;
+            this.scriptPubKey = scriptPubKey;
+        }
+    }
+
+    private final NetworkParameters params;
+    private final int properties;
+    private final int holders;
+    private final int txsPerBlock;
+    private final String[] addressCache;
+
+    /* Guarded by this */
+    private int height;
+    private final Map<Sha256Hash, Submitted> submitted = new HashMap<Sha256Hash, Submitted>();
+    private final List<Submitted> mempool = new ArrayList<Submitted>();
+    private final Map<Integer, List<Submitted>> minedSubmissions = new HashMap<Integer, List<Submitted>>();
+    private final Map<String, Unspent> unspent = new LinkedHashMap<String, Unspent>();
+    private long nextOmniTx;
+    private long nextFunding;
+
+    /**
+     * @param params      network, for address encoding
+     * @param properties  number of properties in the main ecosystem, including MSC
+     * @param holders     number of holders of every property
+     * @param txsPerBlock synthetic Omni transactions in every block
+     * @param height      initial block height
+     */
+    public StubChain(NetworkParameters params, int properties, int holders, int txsPerBlock, int height) {
+        this.params = params;
+        this.properties = properties;
+        this.holders = holders;
+        this.txsPerBlock = txsPerBlock;
+        this.height = height;
+        /* Base58 encoding dominates large balance listings, so encoded addresses are kept for up to 4M holders */
+        this.addressCache = new String[Math.min(holders, 4 * 1024 * 1024)];
+    }
+
+    public NetworkParameters getParams() {
+        return params;
+    }
+
+    public int getHolders() {
+        return holders;
+    }
+
+    public int getTxsPerBlock() {
+        return txsPerBlock;
+    }
+
+    public synchronized int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return property IDs 1 to {@code properties}
+     */
+    public List<Long> getPropertyIds() {
+        List<Long> ids = new ArrayList<Long>(properties);
+        for (long id = 1; id <= properties; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    public boolean propertyExists(long propertyId) {
+        return propertyId >= 1 && propertyId <= properties;
+    }
+
+    public boolean isDivisible(long propertyId) {
+        return propertyId <= 2 || propertyId % 2 == 1;
+    }
+
+    public String getPropertyName(long propertyId) {
+        if (propertyId == 1) {
+            return "MasterCoin";
+        } else if (propertyId == 2) {
+            return "Test MasterCoin";
+        }
+        return "Stub Property " + propertyId;
+    }
+
+    /**
+     * @return the address of a synthetic holder
+     */
+    public String getHolderAddress(int index) {
+        if (index < addressCache.length) {
+            String cached = addressCache[index];
+            if (cached == null) {
+                cached = encodeAddress(index);
+                addressCache[index] = cached;   // benign race, Strings are immutable
+            }
+            return cached;
+        }
+        return encodeAddress(index);
+    }
+
+    private String encodeAddress(int index) {
+        byte[] hash160 = new byte[20];
+        System.arraycopy(ADDRESS_MAGIC, 0, hash160, 0, ADDRESS_MAGIC.length);
+        ByteBuffer.wrap(hash160, 4, 8).putLong(index);
+        return new Address(params, hash160).toString();
+    }
+
+    /**
+     * @return holder index of a synthetic address, or -1 for any other address
+     */
+    public int getHolderIndex(String address) {
+        byte[] hash160;
+        try {
+            hash160 = new Address(params, address).getHash160();
+        } catch (AddressFormatException e) {
+            return -1;
+        }
+        for (int i = 0; i < ADDRESS_MAGIC.length; i++) {
+            if (hash160[i] != ADDRESS_MAGIC[i]) {
+                return -1;
+            }
+        }
+        long index = ByteBuffer.wrap(hash160, 4, 8).getLong();
+        return index < holders ? (int) index : -1;
+    }
+
+    /**
+     * @return balance of a holder in the property's smallest unit, between 1 and 10<sup>11</sup>
+     */
+    public long getBalance(long propertyId, int holder) {
+        return 1 + Math.abs(mix(propertyId * 0x9E3779B97F4A7C15L + holder) % 100000000000L);
+    }
+
+    /**
+     * @return amount formatted the way Omni Core does for the property
+     */
+    public String formatAmount(long propertyId, long units) {
+        if (isDivisible(propertyId)) {
+            return BigDecimal.valueOf(units, 8).toPlainString();
+        }
+        return Long.toString(units);
+    }
+
+    public Sha256Hash getBlockHash(int blockHeight) {
+        return structuredHash(BLOCK_MAGIC, blockHeight, 0);
+    }
+
+    /**
+     * @return height of a block hash created by this chain, or -1
+     */
+    public int getBlockHeight(Sha256Hash hash) {
+        ByteBuffer buffer = ByteBuffer.wrap(hash.getBytes());
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, BLOCK_MAGIC)) {
+            return -1;
+        }
+        long blockHeight = buffer.getLong();
+        return blockHeight <= getHeight() ? (int) blockHeight : -1;
+    }
+
+    public long getBlockTime(int blockHeight) {
+        return GENESIS_TIME + blockHeight * BLOCK_INTERVAL;
+    }
+
+    /**
+     * @return txids of the synthetic and submitted transactions in a block
+     */
+    public List<Sha256Hash> getBlockTransactions(int blockHeight) {
+        List<Sha256Hash> txids = new ArrayList<Sha256Hash>(txsPerBlock);
+        for (int i = 0; i < txsPerBlock; i++) {
+            txids.add(getSyntheticTxid(blockHeight, i));
+        }
+        synchronized (this) {
+            List<Submitted> mined = minedSubmissions.get(blockHeight);
+            if (mined != null) {
+                for (Submitted tx : mined) {
+                    txids.add(tx.txid);
+                }
+            }
+        }
+        return txids;
+    }
+
+    public Sha256Hash getSyntheticTxid(int blockHeight, int index) {
+        return structuredHash(TXID_MAGIC, blockHeight, index);
+    }
+
+    /**
+     * @return {blockHeight, index} of a synthetic txid, or null
+     */
+    public int[] parseSyntheticTxid(Sha256Hash txid) {
+        ByteBuffer buffer = ByteBuffer.wrap(txid.getBytes());
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, TXID_MAGIC)) {
+            return null;
+        }
+        long blockHeight = buffer.getLong();
+        long index = buffer.getLong();
+        if (blockHeight < 0 || blockHeight > getHeight() || index < 0 || index >= txsPerBlock) {
+            return null;
+        }
+        return new int[] {(int) blockHeight, (int) index};
+    }
+
+    /**
+     * Accept a raw transaction into the mempool
+     * <p>
+     * Signatures aren't verified, and inputs spending unknown outputs are accepted, but the outputs the
+     * transaction spends are no longer listed as unspent.
+     */
+    public synchronized Sha256Hash submitRaw(byte[] raw) {
+        Transaction tx = new Transaction(params, raw);
+        Sha256Hash txid = tx.getHash();
+        if (!submitted.containsKey(txid)) {
+            Submitted entry = new Submitted(txid, raw, null, null, 0, null);
+            add(entry);
+            for (TransactionInput input : tx.getInputs()) {
+                TransactionOutPoint outPoint = input.getOutpoint();
+                unspent.remove(outPointKey(outPoint.getHash(), outPoint.getIndex()));
+            }
+            List<TransactionOutput> outputs = tx.getOutputs();
+            for (int vout = 0; vout < outputs.size(); vout++) {
+                TransactionOutput output = outputs.get(vout);
+                String address;
+                try {
+                    address = output.getScriptPubKey().getToAddress(params).toString();
+                } catch (ScriptException e) {
+                    continue;       // Not to an address, e.g. OP_RETURN or bare multisig
+                }
+                unspent.put(outPointKey(txid, vout), new Unspent(entry, vout, address,
+                        output.getValue().longValue(), output.getScriptBytes()));
+            }
+        }
+        return txid;
+    }
+
+    /**
+     * Submit a transaction paying {@code satoshis} to {@code address}, spending an output that doesn't exist
+     *
+     * @return the txid of the funding transaction, its output 0 pays the address
+     */
+    public synchronized Sha256Hash fund(Address address, long satoshis) {
+        Transaction tx = new Transaction(params);
+        TransactionOutPoint outPoint = new TransactionOutPoint(params, 0, structuredHash(FUNDING_MAGIC, 0, nextFunding++));
+        tx.addInput(new TransactionInput(params, tx, new byte[0], outPoint));
+        tx.addOutput(BigInteger.valueOf(satoshis), address);
+        return submitRaw(tx.bitcoinSerialize());
+    }
+
+    /**
+     * @param addresses addresses to list outputs of, or null for all addresses
+     * @return unspent outputs of submitted raw transactions, in the order they were created
+     */
+    public synchronized List<Unspent> getUnspent(Set<String> addresses) {
+        List<Unspent> outputs = new ArrayList<Unspent>();
+        for (Unspent output : unspent.values()) {
+            if (addresses == null || addresses.contains(output.address)) {
+                outputs.add(output);
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Accept an Omni Protocol transaction created by {@code send_MP} or {@code sendrawtx_MP}
+     */
+    public synchronized Sha256Hash submitOmni(String sendingAddress, String referenceAddress, long propertyId, String amount) {
+        Sha256Hash txid = structuredHash(OMNI_TXID_MAGIC, 0, nextOmniTx++);
+        add(new Submitted(txid, null, sendingAddress, referenceAddress, propertyId, amount));
+        return txid;
+    }
+
+    private void add(Submitted tx) {
+        submitted.put(tx.txid, tx);
+        mempool.add(tx);
+    }
+
+    public synchronized Submitted getSubmitted(Sha256Hash txid) {
+        return submitted.get(txid);
+    }
+
+    /**
+     * Mine blocks, including all submitted transactions in the first one
+     *
+     * @return hashes of the new blocks
+     */
+    public synchronized List<Sha256Hash> mine(int blocks) {
+        List<Sha256Hash> hashes = new ArrayList<Sha256Hash>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            height++;
+            if (!mempool.isEmpty()) {
+                for (Submitted tx : mempool) {
+                    tx.height = height;
+                }
+                minedSubmissions.put(height, new ArrayList<Submitted>(mempool));
+                mempool.clear();
+            }
+            hashes.add(getBlockHash(height));
+        }
+        return Collections.unmodifiableList(hashes);
+    }
+
+    private static String outPointKey(Sha256Hash txid, long vout) {
+        return txid + ":" + vout;
+    }
+
+    /*
+     * Magic and fields are in the leading bytes, to be parsed back, and a digest of all of them in the
+     * trailing bytes, as bitcoinj hashes and compares Sha256Hash by its last four bytes only
+     */
+    private static Sha256Hash structuredHash(byte[] magic, long first, long second) {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.put(magic).putLong(first).putLong(second);
+        long digest = mix(mix(ByteBuffer.wrap(magic).getInt() * 0x9E3779B97F4A7C15L + first) + second);
+        buffer.putInt((int) (digest >>> 32)).putLong(digest);
+        return new Sha256Hash(buffer.array());
+    }
+
+    /* SplitMix64 finalizer, for well-distributed synthetic balances */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,683 @@
+package foundation.omni.rpc.stub;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.google.bitcoin.params.MainNetParams;
+import com.msgilligan.bitcoin.BTC;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded JSON-RPC server that answers the calls made by {@link foundation.omni.rpc.MastercoinClient}
+ * from a {@link StubChain}, so the client and consensus code can be load tested without a node.
+ * <p>
+ * Single requests and batch arrays are supported. Errors are reported the way bitcoind does: a
+ * single request that fails gets HTTP status 500 (404 for an unknown method) and a JSON-RPC error
+ * object, a failed entry of a batch gets an error object in a 200 response. Large results such as
+ * {@code getallbalancesforid_MP} are streamed, so millions of holders don't need to fit in memory.
+ * <p>
+ * Every HTTP exchange is delayed by the configured latency, plus a uniformly distributed jitter, to
+ * emulate a remote or busy node.
+ * <p>
+ * Raw transactions are only available for transactions submitted with {@code sendrawtransaction}.
+ * Synthetic transactions have Omni Protocol details ({@code gettransaction_MP}) but no bytes.
+ * <p>
+ * The wallet calls {@code listunspent}, {@code createrawtransaction} and {@code signrawtransaction} work on
+ * the outputs of submitted raw transactions, see {@link StubChain#fund}. The stub holds no keys and doesn't
+ * verify scripts, so {@code signrawtransaction} returns the transaction unchanged and complete.
+ */
+public class StubRPCServer {
+    public static final String RPC_USER = "stub";
+    public static final String RPC_PASSWORD = "stub";
+
+    /* bitcoind error codes */
+    static final int RPC_METHOD_NOT_FOUND = -32601;
+    static final int RPC_PARSE_ERROR = -32700;
+    static final int RPC_INVALID_ADDRESS_OR_KEY = -5;
+    static final int RPC_INVALID_PARAMETER = -8;
+    static final int RPC_DESERIALIZATION_ERROR = -22;
+
+    private static final int DEFAULT_THREADS = 8;
+
+    private final StubChain chain;
+    private final InetSocketAddress bindAddress;
+    private final int threads;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Create a server on a free port of the loopback interface
+     */
+    public StubRPCServer(StubChain chain) {
+        this(chain, new InetSocketAddress("127.0.0.1", 0), DEFAULT_THREADS);
+    }
+
+    /**
+     * @param chain       the synthetic chain to serve
+     * @param bindAddress address to listen on, port 0 for any free port
+     * @param threads     number of request handling threads
+     */
+    public StubRPCServer(StubChain chain, InetSocketAddress bindAddress, int threads) {
+        this.chain = chain;
+        this.bindAddress = bindAddress;
+        this.threads = threads;
+    }
+
+    public StubChain getChain() {
+        return chain;
+    }
+
+    /**
+     * Set the delay added to every HTTP exchange
+     *
+     * @param latencyMillis fixed delay in milliseconds
+     * @param jitterMillis  maximum random delay in milliseconds added to the fixed delay
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * @return number of JSON-RPC requests handled, counting each entry of a batch
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Already started");
+        }
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "stub-rpc-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server = HttpServer.create(bindAddress, 1024);
+        server.createContext("/", new RPCHandler());
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return URL to pass to the client
+     */
+    public synchronized URL getURL() {
+        if (server == null) {
+            throw new IllegalStateException("Not started");
+        }
+        InetSocketAddress address = server.getAddress();
+        try {
+            return new URL("http", address.getHostString(), address.getPort(), "/");
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class RPCHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                delay();
+                Object request;
+                InputStream in = exchange.getRequestBody();
+                try {
+                    request = mapper.readValue(in, Object.class);
+                } catch (JsonProcessingException e) {
+                    Map<String, Object> response = createError(null, RPC_PARSE_ERROR, "Parse error");
+                    respond(exchange, 500, response);
+                    return;
+                } finally {
+                    in.close();
+                }
+
+                if (request instanceof List) {
+                    List<?> batch = (List<?>) request;
+                    List<Map<String, Object>> responses = new ArrayList<Map<String, Object>>(batch.size());
+                    for (Object entry : batch) {
+                        responses.add(dispatch(entry));
+                    }
+                    respond(exchange, 200, responses);
+                } else {
+                    Map<String, Object> response = dispatch(request);
+                    Map<?, ?> error = (Map<?, ?>) response.get("error");
+                    int status = 200;
+                    if (error != null) {
+                        status = ((Integer) error.get("code")) == RPC_METHOD_NOT_FOUND ? 404 : 500;
+                    }
+                    respond(exchange, status, response);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, 0);    // chunked, results are streamed
+            OutputStream out = exchange.getResponseBody();
+            try {
+                mapper.writeValue(out, body);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void delay() {
+            long delay = latencyMillis;
+            long jitter = jitterMillis;
+            if (jitter > 0) {
+                delay += (long) (Math.random() * (jitter + 1));
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private Map<String, Object> dispatch(Object request) {
+        requestCount.incrementAndGet();
+        if (!(request instanceof Map)) {
+            return createError(null, RPC_PARSE_ERROR, "Invalid request object");
+        }
+        Map<?, ?> map = (Map<?, ?>) request;
+        Object id = map.get("id");
+        Object method = map.get("method");
+        List<?> params = map.get("params") instanceof List ? (List<?>) map.get("params") : Collections.emptyList();
+        try {
+            Object result = call(String.valueOf(method), params);
+            Map<String, Object> response = new LinkedHashMap<String, Object>();
+            response.put("result", result);
+            response.put("error", null);
+            response.put("id", id);
+            return response;
+        } catch (StubRPCException e) {
+            return createError(id, e.code, e.getMessage());
+        } catch (RuntimeException e) {
+            return createError(id, RPC_INVALID_PARAMETER, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static Map<String, Object> createError(Object id, int code, String message) {
+        Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("code", code);
+        error.put("message", message);
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("result", null);
+        response.put("error", error);
+        response.put("id", id);
+        return response;
+    }
+
+    Object call(String method, List<?> params) throws StubRPCException {
+        switch (method) {
+            case "getblockcount":
+                return chain.getHeight();
+            case "getblockhash":
+                return getBlockHash(intParam(params, 0));
+            case "getblock":
+                return getBlock(hashParam(params, 0));
+            case "getinfo":
+                return getInfo();
+            case "getinfo_MP":
+                return getInfoMP();
+            case "getrawtransaction":
+                return getRawTransaction(hashParam(params, 0), params.size() > 1 && isTrue(params.get(1)));
+            case "gettransaction":
+                return getWalletTransaction(hashParam(params, 0));
+            case "sendrawtransaction":
+                return sendRawTransaction(stringParam(params, 0));
+            case "createrawtransaction":
+                return createRawTransaction((List<?>) param(params, 0), (Map<?, ?>) param(params, 1));
+            case "signrawtransaction":
+                return signRawTransaction(stringParam(params, 0));
+            case "listunspent":
+                return listUnspent(params.size() > 0 && params.get(0) != null ? intParam(params, 0) : 1,
+                        params.size() > 1 && params.get(1) != null ? intParam(params, 1) : 9999999,
+                        params.size() > 2 ? (List<?>) params.get(2) : null);
+            case "setgenerate":
+                if (isTrue(params.get(0))) {
+                    chain.mine(params.size() > 1 ? intParam(params, 1) : 1);
+                }
+                return null;
+            case "generate":
+                return hashStrings(chain.mine(intParam(params, 0)));
+            case "listproperties_MP":
+                return listProperties();
+            case "getproperty_MP":
+                return getProperty(propertyParam(params, 0));
+            case "getallbalancesforid_MP":
+                return new BalanceListing(propertyParam(params, 0));
+            case "getbalance_MP":
+                return getBalance(stringParam(params, 0), propertyParam(params, 1));
+            case "gettransaction_MP":
+                return getTransactionMP(hashParam(params, 0));
+            case "send_MP":
+                return chain.submitOmni(stringParam(params, 0), stringParam(params, 1), propertyParam(params, 2),
+                        stringParam(params, 3)).toString();
+            case "sendrawtx_MP":
+                return sendRawTxMP(stringParam(params, 0), stringParam(params, 1),
+                        params.size() > 2 ? stringParam(params, 2) : null);
+            case "getactivedexsells_MP":
+                return Collections.emptyList();
+            default:
+                throw new StubRPCException(RPC_METHOD_NOT_FOUND, "Method not found");
+        }
+    }
+
+    private String getBlockHash(int height) throws StubRPCException {
+        if (height < 0 || height > chain.getHeight()) {
+            throw new StubRPCException(RPC_INVALID_PARAMETER, "Block height out of range");
+        }
+        return chain.getBlockHash(height).toString();
+    }
+
+    private Map<String, Object> getBlock(Sha256Hash hash) throws StubRPCException {
+        int height = chain.getBlockHeight(hash);
+        if (height < 0) {
+            throw new StubRPCException(RPC_INVALID_ADDRESS_OR_KEY, "Block not found");
+        }
+        int tip = chain.getHeight();
+        Map<String, Object> block = new LinkedHashMap<String, Object>();
+        block.put("hash", hash.toString());
+        block.put("confirmations", tip - height + 1);
+        block.put("height", height);
+        block.put("version", 2);
+        block.put("tx", hashStrings(chain.getBlockTransactions(height)));
+        block.put("time", chain.getBlockTime(height));
+        if (height > 0) {
+            block.put("previousblockhash", chain.getBlockHash(height - 1).toString());
+        }
+        if (height < tip) {
+            block.put("nextblockhash", chain.getBlockHash(height + 1).toString());
+        }
+        return block;
+    }
+
+    private Map<String, Object> getInfo() {
+        Map<String, Object> info = new LinkedHashMap<String, Object>();
+        info.put("version", 90300);
+        info.put("protocolversion", 70002);
+        info.put("blocks", chain.getHeight());
+        info.put("connections", 0);
+        info.put("testnet", !chain.getParams().getId().equals(NetworkParameters.ID_MAINNET));
+        info.put("errors", "");
+        return info;
+    }
+
+    private Map<String, Object> getInfoMP() {
+        int height = chain.getHeight();
+        Map<String, Object> info = new LinkedHashMap<String, Object>();
+        info.put("mastercoreversion", "0.0.9-stub");
+        info.put("bitcoincoreversion", "0.9.3");
+        info.put("block", height);
+        info.put("blocktime", chain.getBlockTime(height));
+        info.put("blocktransactions", chain.getTxsPerBlock());
+        return info;
+    }
+
+    private Object getRawTransaction(Sha256Hash txid, boolean verbose) throws StubRPCException {
+        StubChain.Submitted tx = chain.getSubmitted(txid);
+        if (tx == null || tx.raw == null) {
+            throw new StubRPCException(RPC_INVALID_ADDRESS_OR_KEY, "No information available about transaction");
+        }
+        String hex = BitcoinClient.byteArrayToHexString(tx.raw);
+        if (!verbose) {
+            return hex;
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("hex", hex);
+        result.put("txid", txid.toString());
+        putConfirmations(result, tx.getHeight());
+        return result;
+    }
+
+    private Map<String, Object> getWalletTransaction(Sha256Hash txid) throws StubRPCException {
+        StubChain.Submitted tx = chain.getSubmitted(txid);
+        if (tx == null) {
+            throw new StubRPCException(RPC_INVALID_ADDRESS_OR_KEY, "Invalid or non-wallet transaction id");
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("txid", txid.toString());
+        putConfirmations(result, tx.getHeight());
+        if (tx.raw != null) {
+            result.put("hex", BitcoinClient.byteArrayToHexString(tx.raw));
+        }
+        return result;
+    }
+
+    private String sendRawTransaction(String hex) throws StubRPCException {
+        try {
+            return chain.submitRaw(BitcoinClient.hexStringToByteArray(hex)).toString();
+        } catch (ProtocolException e) {
+            throw new StubRPCException(RPC_DESERIALIZATION_ERROR, "TX decode failed");
+        } catch (RuntimeException e) {
+            throw new StubRPCException(RPC_DESERIALIZATION_ERROR, "TX decode failed");
+        }
+    }
+
+    private String createRawTransaction(List<?> inputs, Map<?, ?> outputs) throws StubRPCException {
+        NetworkParameters params = chain.getParams();
+        Transaction tx = new Transaction(params);
+        for (Object entry : inputs) {
+            Map<?, ?> input = (Map<?, ?>) entry;
+            List<?> outPoint = Arrays.asList(input.get("txid"), input.get("vout"));
+            Sha256Hash txid = hashParam(outPoint, 0);
+            int vout = intParam(outPoint, 1);
+            tx.addInput(new TransactionInput(params, tx, new byte[0], new TransactionOutPoint(params, vout, txid)));
+        }
+        for (Map.Entry<?, ?> output : outputs.entrySet()) {
+            Address address;
+            try {
+                address = new Address(params, String.valueOf(output.getKey()));
+            } catch (AddressFormatException e) {
+                throw new StubRPCException(RPC_INVALID_ADDRESS_OR_KEY, "Invalid Bitcoin address: " + output.getKey());
+            }
+            tx.addOutput(BTC.btcToSatoshis(new BigDecimal(String.valueOf(output.getValue()))), address);
+        }
+        return BitcoinClient.transactionToHex(tx);
+    }
+
+    private Map<String, Object> signRawTransaction(String hex) throws StubRPCException {
+        try {
+            new Transaction(chain.getParams(), BitcoinClient.hexStringToByteArray(hex));
+        } catch (RuntimeException e) {
+            throw new StubRPCException(RPC_DESERIALIZATION_ERROR, "TX decode failed");
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("hex", hex);
+        result.put("complete", true);
+        return result;
+    }
+
+    private List<Map<String, Object>> listUnspent(int minConf, int maxConf, List<?> addresses) {
+        Set<String> filter = null;
+        if (addresses != null) {
+            filter = new HashSet<String>();
+            for (Object address : addresses) {
+                filter.add(String.valueOf(address));
+            }
+        }
+        int tip = chain.getHeight();
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        for (StubChain.Unspent output : chain.getUnspent(filter)) {
+            int height = output.tx.getHeight();
+            int confirmations = height < 0 ? 0 : tip - height + 1;
+            if (confirmations < minConf || confirmations > maxConf) {
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<String, Object>();
+            entry.put("txid", output.tx.txid.toString());
+            entry.put("vout", output.vout);
+            entry.put("address", output.address);
+            entry.put("scriptPubKey", BitcoinClient.byteArrayToHexString(output.scriptPubKey));
+            entry.put("amount", BigDecimal.valueOf(output.value, 8));
+            entry.put("confirmations", confirmations);
+            entry.put("spendable", true);
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /* Only simple sends are decoded, other payloads are recorded with property 0 */
+    private String sendRawTxMP(String sender, String payloadHex, String reference) throws StubRPCException {
+        long propertyId = 0;
+        String amount = null;
+        if (payloadHex.length() == 32 && payloadHex.startsWith("00000000")) {
+            propertyId = Long.parseLong(payloadHex.substring(8, 16), 16);
+            amount = chain.formatAmount(propertyId, Long.parseLong(payloadHex.substring(16, 32), 16));
+        }
+        return chain.submitOmni(sender, reference, propertyId, amount).toString();
+    }
+
+    private List<Map<String, Object>> listProperties() {
+        List<Long> ids = chain.getPropertyIds();
+        List<Map<String, Object>> properties = new ArrayList<Map<String, Object>>(ids.size());
+        for (Long id : ids) {
+            properties.add(describeProperty(id));
+        }
+        return properties;
+    }
+
+    private Map<String, Object> getProperty(long propertyId) throws StubRPCException {
+        Map<String, Object> property = describeProperty(propertyId);
+        property.put("issuer", chain.getHolderAddress(0));
+        property.put("fixedissuance", true);
+        return property;
+    }
+
+    private Map<String, Object> describeProperty(long propertyId) {
+        Map<String, Object> property = new LinkedHashMap<String, Object>();
+        property.put("propertyid", propertyId);
+        property.put("name", chain.getPropertyName(propertyId));
+        property.put("category", "Stub");
+        property.put("subcategory", "Synthetic");
+        property.put("data", "");
+        property.put("url", "");
+        property.put("divisible", chain.isDivisible(propertyId));
+        return property;
+    }
+
+    private Map<String, Object> getBalance(String address, long propertyId) {
+        int holder = chain.getHolderIndex(address);
+        long units = holder < 0 ? 0 : chain.getBalance(propertyId, holder);
+        Map<String, Object> balance = new LinkedHashMap<String, Object>();
+        balance.put("balance", chain.formatAmount(propertyId, units));
+        balance.put("reserved", chain.formatAmount(propertyId, 0));
+        return balance;
+    }
+
+    private Map<String, Object> getTransactionMP(Sha256Hash txid) throws StubRPCException {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("txid", txid.toString());
+        int[] synthetic = chain.parseSyntheticTxid(txid);
+        if (synthetic != null) {
+            int height = synthetic[0];
+            int index = synthetic[1];
+            long sequence = (long) height * chain.getTxsPerBlock() + index;
+            int sender = (int) (sequence % chain.getHolders());
+            int receiver = (sender + 1) % chain.getHolders();
+            long propertyId = 1 + index % chain.getPropertyIds().size();
+            result.put("sendingaddress", chain.getHolderAddress(sender));
+            result.put("referenceaddress", chain.getHolderAddress(receiver));
+            putSimpleSend(result, propertyId, chain.formatAmount(propertyId, 1 + sequence % 1000));
+            putConfirmations(result, height);
+            return result;
+        }
+        StubChain.Submitted tx = chain.getSubmitted(txid);
+        if (tx == null || tx.sendingAddress == null) {
+            throw new StubRPCException(RPC_INVALID_ADDRESS_OR_KEY,
+                    "Not a Master Protocol transaction");
+        }
+        result.put("sendingaddress", tx.sendingAddress);
+        if (tx.referenceAddress != null) {
+            result.put("referenceaddress", tx.referenceAddress);
+        }
+        putSimpleSend(result, tx.propertyId, tx.amount);
+        putConfirmations(result, tx.getHeight());
+        return result;
+    }
+
+    private void putSimpleSend(Map<String, Object> result, long propertyId, String amount) {
+        result.put("ismine", false);
+        result.put("version", 0);
+        result.put("type_int", 0);
+        result.put("type", "Simple Send");
+        result.put("propertyid", propertyId);
+        result.put("divisible", chain.isDivisible(propertyId));
+        result.put("amount", amount);
+        result.put("valid", true);
+    }
+
+    private void putConfirmations(Map<String, Object> result, int height) {
+        if (height < 0) {
+            result.put("confirmations", 0);
+        } else {
+            result.put("confirmations", chain.getHeight() - height + 1);
+            result.put("blockhash", chain.getBlockHash(height).toString());
+            result.put("blocktime", chain.getBlockTime(height));
+            result.put("block", height);
+        }
+    }
+
+    /**
+     * Result of {@code getallbalancesforid_MP}, written straight to the response stream
+     */
+    private class BalanceListing implements JsonSerializable {
+        private final long propertyId;
+
+        BalanceListing(long propertyId) {
+            this.propertyId = propertyId;
+        }
+
+        @Override
+        public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+            String reserved = chain.formatAmount(propertyId, 0);
+            int holders = chain.getHolders();
+            generator.writeStartArray();
+            for (int i = 0; i < holders; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("address", chain.getHolderAddress(i));
+                generator.writeStringField("balance", chain.formatAmount(propertyId, chain.getBalance(propertyId, i)));
+                generator.writeStringField("reserved", reserved);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer)
+                throws IOException {
+            serialize(generator, provider);
+        }
+    }
+
+    private long propertyParam(List<?> params, int index) throws StubRPCException {
+        long propertyId = ((Number) param(params, index)).longValue();
+        if (!chain.propertyExists(propertyId)) {
+            throw new StubRPCException(RPC_INVALID_PARAMETER, "Property identifier does not exist");
+        }
+        return propertyId;
+    }
+
+    private static int intParam(List<?> params, int index) throws StubRPCException {
+        return ((Number) param(params, index)).intValue();
+    }
+
+    private static String stringParam(List<?> params, int index) throws StubRPCException {
+        return String.valueOf(param(params, index));
+    }
+
+    private static Sha256Hash hashParam(List<?> params, int index) throws StubRPCException {
+        String hex = stringParam(params, index);
+        if (!hex.matches("[0-9a-fA-F]{64}")) {
+            throw new StubRPCException(RPC_INVALID_PARAMETER, "Invalid hash: " + hex);
+        }
+        return new Sha256Hash(hex);
+    }
+
+    private static Object param(List<?> params, int index) throws StubRPCException {
+        if (index >= params.size() || params.get(index) == null) {
+            throw new StubRPCException(RPC_INVALID_PARAMETER, "Missing parameter " + index);
+        }
+        return params.get(index);
+    }
+
+    private static boolean isTrue(Object param) {
+        return Boolean.TRUE.equals(param) || (param instanceof Number && ((Number) param).intValue() != 0);
+    }
+
+    private static List<String> hashStrings(List<Sha256Hash> hashes) {
+        List<String> strings = new ArrayList<String>(hashes.size());
+        for (Sha256Hash hash : hashes) {
+            strings.add(hash.toString());
+        }
+        return strings;
+    }
+
+    static class StubRPCException extends Exception {
+        final int code;
+
+        StubRPCException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Run a stub server until killed
+     * <p>
+     * Arguments: {@code [port [holders [properties [txsPerBlock [latencyMillis]]]]]}
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18332;
+        int holders = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int properties = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int txsPerBlock = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        long latency = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        StubChain chain = new StubChain(MainNetParams.get(), properties, holders, txsPerBlock, 350000);
+        StubRPCServer server = new StubRPCServer(chain, new InetSocketAddress("127.0.0.1", port), DEFAULT_THREADS);
+        server.setLatency(latency, latency / 2);
+        server.start();
+        System.out.println("Stub JSON-RPC server listening on " + server.getURL() + " with " + holders +
+                " holders of " + properties + " properties");
+    }
+}
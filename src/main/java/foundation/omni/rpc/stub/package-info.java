@@ -0,0 +1,5 @@
+/**
+ * In-process JSON-RPC server emulating bitcoind and Omni Core with synthetic data, for load and
+ * concurrency testing of the client without a node
+ */
+package foundation.omni.rpc.stub;
@@ -0,0 +1,251 @@
+package foundation.omni.sto;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes "send to owners" distributions the way Omni Core does, without a node.
+ * <p>
+ * Every address other than the sender that holds the property (available plus reserved) is an owner.
+ * Owners are paid in order of descending holding, ties broken by descending address. Each owner's share
+ * is {@code ceil(holding * amount / totalHeld)}, capped by what is left of the amount, so the last owners
+ * in the order may receive less than their share or nothing. The fee is {@link #TRANSFER_FEE_PER_OWNER}
+ * willets of MSC (TMSC in the test ecosystem) per owner that receives tokens.
+ * <p>
+ * Shares are computed in parallel on a fork-join pool, using {@code long} arithmetic only (with a 128-bit
+ * intermediate product where needed), and owners are ordered with primitive sorts.
+ */
+public class StoCalculator {
+    public static final long TRANSFER_FEE_PER_OWNER = 1;
+    /* Bounds under which a double estimate of holding * amount / totalHeld is within one of the quotient */
+    private static final long EXACT_ESTIMATE_LIMIT = 1L << 50;
+    private static final long EXACT_ESTIMATE_LIMIT_TOTAL = 1L << 61;
+    /* Below this many owners a task works sequentially */
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    private final ForkJoinPool pool;
+
+    public StoCalculator() {
+        this(new ForkJoinPool());
+    }
+
+    public StoCalculator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param sender    address sending the tokens, excluded from the owners
+     * @param addresses addresses holding the property, in ascending order
+     * @param holdings  available plus reserved amount held by each address, in the property's smallest unit
+     * @param amount    amount to distribute, in the property's smallest unit
+     * @return the distribution, with no receivers if there are no owners besides the sender
+     */
+    public StoDistribution calculate(String sender, String[] addresses, long[] holdings, long amount) {
+        if (addresses.length != holdings.length) {
+            throw new IllegalArgumentException("addresses and holdings differ in length");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        int[] candidates = new int[addresses.length];
+        int count = 0;
+        long totalHeld = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            if (holdings[i] > 0 && !addresses[i].equals(sender)) {
+                candidates[count++] = i;
+                totalHeld += holdings[i];
+            }
+        }
+        if (count == 0) {
+            return new StoDistribution(new String[0], new long[0], 0);
+        }
+        int[] order = paymentOrder(candidates, count, holdings);
+
+        long[] shares = new long[count];
+        pool.invoke(new ShareTask(order, holdings, shares, totalHeld, amount, 0, count));
+
+        /* Pay in order until the amount runs out; the rounding surplus is taken from the smallest holders */
+        long remaining = amount;
+        int receivers = 0;
+        while (receivers < count && remaining > 0) {
+            long paid = Math.min(shares[receivers], remaining);
+            shares[receivers] = paid;
+            remaining -= paid;
+            receivers++;
+        }
+        String[] owners = new String[receivers];
+        long[] amounts = new long[receivers];
+        for (int i = 0; i < receivers; i++) {
+            owners[i] = addresses[order[i]];
+            amounts[i] = shares[i];
+        }
+        return new StoDistribution(owners, amounts, TRANSFER_FEE_PER_OWNER * receivers);
+    }
+
+    /*
+     * Sort owners by descending holding, then descending address. Addresses are in ascending order, so
+     * descending index is descending address, and (holding, index) is packed into a long so that a
+     * primitive sort can be used. When holdings are too large to pack, they are replaced by their rank
+     * among the distinct holdings first.
+     */
+    private int[] paymentOrder(int[] candidates, int count, long[] holdings) {
+        int indexBits = 64 - Long.numberOfLeadingZeros(candidates[count - 1]);
+        long maxHolding = 0;
+        for (int i = 0; i < count; i++) {
+            maxHolding = Math.max(maxHolding, holdings[candidates[i]]);
+        }
+        long[] keys = new long[count];
+        if (maxHolding < (1L << (63 - indexBits))) {
+            for (int i = 0; i < count; i++) {
+                int index = candidates[i];
+                keys[i] = (holdings[index] << indexBits) | index;
+            }
+        } else {
+            long[] distinct = new long[count];
+            for (int i = 0; i < count; i++) {
+                distinct[i] = holdings[candidates[i]];
+            }
+            Arrays.sort(distinct);
+            int distinctCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinctCount == 0 || distinct[distinctCount - 1] != distinct[i]) {
+                    distinct[distinctCount++] = distinct[i];
+                }
+            }
+            pool.invoke(new RankTask(candidates, holdings, distinct, distinctCount, keys, 0, count));
+            indexBits = 32;
+        }
+        Arrays.sort(keys);
+        long indexMask = (1L << indexBits) - 1;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) (keys[count - 1 - i] & indexMask);
+        }
+        return order;
+    }
+
+    /**
+     * @return {@code ceil(holding * amount / totalHeld)}
+     */
+    static long share(long holding, long amount, long totalHeld) {
+        if (holding <= Long.MAX_VALUE / amount) {
+            long product = holding * amount;
+            return product / totalHeld + (product % totalHeld != 0 ? 1 : 0);
+        }
+        if (amount < EXACT_ESTIMATE_LIMIT && totalHeld < EXACT_ESTIMATE_LIMIT_TOTAL) {
+            /*
+             * The floating point quotient is off by at most one, so the true remainder lies within
+             * (-2 * totalHeld, 2 * totalHeld) and is exact in the low 64 bits of the product
+             */
+            long quotient = (long) ((double) holding * (double) amount / (double) totalHeld);
+            long remainder = holding * amount - quotient * totalHeld;
+            while (remainder < 0) {
+                quotient--;
+                remainder += totalHeld;
+            }
+            while (remainder >= totalHeld) {
+                quotient++;
+                remainder -= totalHeld;
+            }
+            return quotient + (remainder != 0 ? 1 : 0);
+        }
+        /* 128-bit product divided by shift-and-subtract; the quotient fits since holding <= totalHeld */
+        long high = multiplyHigh(holding, amount);
+        long low = holding * amount;
+        long remainder = high;
+        long quotient = 0;
+        for (int bit = 63; bit >= 0; bit--) {
+            remainder = (remainder << 1) | ((low >>> bit) & 1);
+            quotient <<= 1;
+            /* remainder < 2 * totalHeld < 2^64, so a negative value means it exceeds totalHeld */
+            if (remainder < 0 || remainder >= totalHeld) {
+                remainder -= totalHeld;
+                quotient |= 1;
+            }
+        }
+        return quotient + (remainder != 0 ? 1 : 0);
+    }
+
+    /**
+     * @return the upper 64 bits of the 128-bit product of two non-negative longs
+     */
+    static long multiplyHigh(long x, long y) {
+        long x1 = x >>> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+        return x1 * y1 + (t >>> 32) + (z1 >>> 32);
+    }
+
+    private static class RankTask extends RecursiveAction {
+        private final int[] owners;
+        private final long[] holdings;
+        private final long[] distinct;
+        private final int distinctCount;
+        private final long[] keys;
+        private final int from;
+        private final int to;
+
+        RankTask(int[] owners, long[] holdings, long[] distinct, int distinctCount, long[] keys, int from, int to) {
+            this.owners = owners;
+            this.holdings = holdings;
+            this.distinct = distinct;
+            this.distinctCount = distinctCount;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    int index = owners[i];
+                    long rank = Arrays.binarySearch(distinct, 0, distinctCount, holdings[index]);
+                    keys[i] = (rank << 32) | index;
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RankTask(owners, holdings, distinct, distinctCount, keys, from, middle),
+                          new RankTask(owners, holdings, distinct, distinctCount, keys, middle, to));
+            }
+        }
+    }
+
+    private static class ShareTask extends RecursiveAction {
+        private final int[] order;
+        private final long[] holdings;
+        private final long[] shares;
+        private final long totalHeld;
+        private final long amount;
+        private final int from;
+        private final int to;
+
+        ShareTask(int[] order, long[] holdings, long[] shares, long totalHeld, long amount, int from, int to) {
+            this.order = order;
+            this.holdings = holdings;
+            this.shares = shares;
+            this.totalHeld = totalHeld;
+            this.amount = amount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    shares[i] = share(holdings[order[i]], amount, totalHeld);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ShareTask(order, holdings, shares, totalHeld, amount, from, middle),
+                          new ShareTask(order, holdings, shares, totalHeld, amount, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package foundation.omni.sto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The result of a "send to owners" transaction: what each owner receives and the fee the sender pays
+ * <p>
+ * Owners are listed in the order Omni Core pays them, largest holding first. Owners that receive
+ * nothing are not included.
+ */
+public final class StoDistribution {
+    private final String[] owners;
+    private final long[] amounts;
+    private final long fee;
+
+    StoDistribution(String[] owners, long[] amounts, long fee) {
+        this.owners = owners;
+        this.amounts = amounts;
+        this.fee = fee;
+    }
+
+    /**
+     * @return number of owners that receive tokens
+     */
+    public int getReceiverCount() {
+        return owners.length;
+    }
+
+    public String getOwner(int index) {
+        return owners[index];
+    }
+
+    /**
+     * @return amount received by the owner at an index, in the property's smallest unit
+     */
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    /**
+     * @return the fee in willets of MSC (or TMSC in the test ecosystem)
+     */
+    public long getFee() {
+        return fee;
+    }
+
+    /**
+     * @return total amount distributed, equal to the amount sent when there is at least one owner
+     */
+    public long getTotalDistributed() {
+        long total = 0;
+        for (long amount : amounts) {
+            total += amount;
+        }
+        return total;
+    }
+
+    /**
+     * @return amounts received, by owner address, in payment order
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<String, Long>(owners.length * 2);
+        for (int i = 0; i < owners.length; i++) {
+            map.put(owners[i], amounts[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Local computation of "send to owners" distributions
+ */
+package foundation.omni.sto;
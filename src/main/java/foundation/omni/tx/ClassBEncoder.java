@@ -0,0 +1,179 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.script.Script;
+import com.google.bitcoin.script.ScriptBuilder;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.google.bitcoin.script.ScriptOpCodes.OP_1;
+import static com.google.bitcoin.script.ScriptOpCodes.OP_CHECKMULTISIG;
+
+/**
+ * Class B encoding: the payload is stored in fake public keys of bare 1-of-n multisig outputs.
+ * <p>
+ * The payload is split into packets of a sequence number and 30 data bytes. Each packet is obfuscated
+ * by XOR with a SHA256 hash chain seeded with the sender's address, and then turned into a compressed
+ * public key by prepending {@code 0x02} and choosing a last byte that puts the key on the curve.
+ * Each output holds the redeeming (sender's) public key followed by up to two packets.
+ * <p>
+ * Omni Core picks the last byte at random, this implementation uses the smallest valid value so the
+ * output is deterministic. Both decode identically.
+ */
+public class ClassBEncoder {
+    public static final int PACKET_SIZE = 31;
+    public static final int DATA_PER_PACKET = PACKET_SIZE - 1;
+    public static final int PACKETS_PER_OUTPUT = 2;
+    /* Omni Core limits the hash chain, and therefore the payload, to 255 packets */
+    public static final int MAX_PACKETS = 255;
+    private static final int PUBKEY_SIZE = 33;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /* secp256k1 field prime */
+    private static final BigInteger P = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+    private static final BigInteger SEVEN = BigInteger.valueOf(7);
+    private static final BigInteger EULER_EXPONENT = P.subtract(BigInteger.ONE).shiftRight(1);
+
+    /**
+     * @param senderAddress   Base58 address of the sender, seeds the obfuscation
+     * @param redeemingPubKey public key that can redeem the outputs (usually the sender's)
+     * @param payload         An Omni Protocol payload, see {@link OmniPayloads}
+     * @return One multisig output script per two packets
+     */
+    public static List<Script> encode(String senderAddress, byte[] redeemingPubKey, byte[] payload) {
+        int packets = (payload.length + DATA_PER_PACKET - 1) / DATA_PER_PACKET;
+        if (packets > MAX_PACKETS) {
+            throw new IllegalArgumentException("Payload too large for Class B: " + payload.length + " bytes");
+        }
+        byte[][] hashes = obfuscationHashes(senderAddress, packets);
+        List<Script> outputs = new ArrayList<Script>();
+        int offset = 0;
+        int seqNum = 1;
+        while (offset < payload.length) {
+            List<byte[]> keys = new ArrayList<byte[]>();
+            keys.add(redeemingPubKey);
+            for (int i = 0; i < PACKETS_PER_OUTPUT && offset < payload.length; i++) {
+                int length = Math.min(DATA_PER_PACKET, payload.length - offset);
+                byte[] key = new byte[PUBKEY_SIZE];
+                key[0] = 0x02;
+                key[1] = (byte) seqNum;
+                System.arraycopy(payload, offset, key, 2, length);
+                byte[] hash = hashes[seqNum];
+                for (int j = 0; j < PACKET_SIZE; j++) {
+                    key[j + 1] ^= hash[j];
+                }
+                keys.add(toValidKey(key));
+                offset += length;
+                seqNum++;
+            }
+            outputs.add(multisig(keys));
+        }
+        return outputs;
+    }
+
+    /**
+     * Extract the payload from Class B multisig outputs
+     *
+     * @param senderAddress Base58 address of the sender
+     * @param outputs       the multisig output scripts, in transaction order
+     * @return the payload, zero-padded to a whole number of packets
+     */
+    public static byte[] decode(String senderAddress, List<Script> outputs) {
+        List<byte[]> keys = new ArrayList<byte[]>();
+        for (Script script : outputs) {
+            List<byte[]> outputKeys = multisigKeys(script.getProgram());
+            keys.addAll(outputKeys.subList(1, outputKeys.size()));     // First key redeems, rest are data
+        }
+        byte[][] hashes = obfuscationHashes(senderAddress, keys.size());
+        byte[][] packets = new byte[keys.size() + 1][];
+        for (byte[] key : keys) {
+            for (int seqNum = 1; seqNum <= keys.size(); seqNum++) {
+                // The sequence number is obfuscated too, so try each hash until one yields its own index
+                if (((key[1] ^ hashes[seqNum][0]) & 0xFF) == seqNum && packets[seqNum] == null) {
+                    byte[] packet = new byte[PACKET_SIZE];
+                    for (int j = 0; j < PACKET_SIZE; j++) {
+                        packet[j] = (byte) (key[j + 1] ^ hashes[seqNum][j]);
+                    }
+                    packets[seqNum] = packet;
+                    break;
+                }
+            }
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (int seqNum = 1; seqNum < packets.length && packets[seqNum] != null; seqNum++) {
+            payload.write(packets[seqNum], 1, DATA_PER_PACKET);
+        }
+        return payload.toByteArray();
+    }
+
+    /**
+     * Compute the obfuscation hash chain: hash[n] = SHA256(uppercase hex of hash[n-1]), hash[1] = SHA256(address)
+     *
+     * @return array of hashes indexed by sequence number (index 0 unused)
+     */
+    static byte[][] obfuscationHashes(String senderAddress, int count) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[][] hashes = new byte[count + 1][];
+        String input = senderAddress;
+        for (int i = 1; i <= count; i++) {
+            hashes[i] = sha256.digest(input.getBytes(ASCII));
+            input = BitcoinClient.byteArrayToHexString(hashes[i]).toUpperCase(Locale.ROOT);
+        }
+        return hashes;
+    }
+
+    /* Adjust the last byte until the compressed key's x coordinate is on secp256k1 */
+    private static byte[] toValidKey(byte[] key) {
+        for (int i = 0; i < 256; i++) {
+            key[PUBKEY_SIZE - 1] = (byte) i;
+            if (isOnCurve(key)) {
+                return key;
+            }
+        }
+        throw new IllegalStateException("No valid public key for packet");
+    }
+
+    static boolean isOnCurve(byte[] compressedKey) {
+        byte[] xBytes = new byte[PUBKEY_SIZE - 1];
+        System.arraycopy(compressedKey, 1, xBytes, 0, xBytes.length);
+        BigInteger x = new BigInteger(1, xBytes);
+        if (x.compareTo(P) >= 0) {
+            return false;
+        }
+        BigInteger rhs = x.pow(3).add(SEVEN).mod(P);
+        // y^2 = x^3 + 7 has a solution iff rhs is a quadratic residue (Euler's criterion)
+        return rhs.signum() == 0 || rhs.modPow(EULER_EXPONENT, P).equals(BigInteger.ONE);
+    }
+
+    private static Script multisig(List<byte[]> keys) {
+        ScriptBuilder builder = new ScriptBuilder().op(OP_1);
+        for (byte[] key : keys) {
+            builder.data(key);
+        }
+        return builder.op(OP_1 + keys.size() - 1).op(OP_CHECKMULTISIG).build();
+    }
+
+    static List<byte[]> multisigKeys(byte[] program) {
+        List<byte[]> keys = new ArrayList<byte[]>();
+        int i = 1;      // skip OP_1
+        while (i < program.length && (program[i] & 0xFF) == PUBKEY_SIZE) {
+            byte[] key = new byte[PUBKEY_SIZE];
+            System.arraycopy(program, i + 1, key, 0, PUBKEY_SIZE);
+            keys.add(key);
+            i += 1 + PUBKEY_SIZE;
+        }
+        return keys;
+    }
+}
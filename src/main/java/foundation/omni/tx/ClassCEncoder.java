@@ -0,0 +1,61 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.script.Script;
+import com.google.bitcoin.script.ScriptBuilder;
+
+import static com.google.bitcoin.script.ScriptOpCodes.OP_RETURN;
+
+/**
+ * Class C encoding: the payload is stored in an {@code OP_RETURN} output, prefixed with the "omni" marker.
+ */
+public class ClassCEncoder {
+    public static final byte[] MARKER = {0x6f, 0x6d, 0x6e, 0x69};     // "omni"
+    /**
+     * Maximum payload size, given the 80 byte {@code OP_RETURN} relay limit of Bitcoin Core 0.11
+     */
+    public static final int MAX_PAYLOAD_SIZE = 80 - MARKER.length;
+
+    /**
+     * @param payload An Omni Protocol payload, see {@link OmniPayloads}
+     * @return An {@code OP_RETURN} output script
+     */
+    public static Script encode(byte[] payload) {
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Payload too large for Class C: " + payload.length + " bytes");
+        }
+        byte[] data = new byte[MARKER.length + payload.length];
+        System.arraycopy(MARKER, 0, data, 0, MARKER.length);
+        System.arraycopy(payload, 0, data, MARKER.length, payload.length);
+        return new ScriptBuilder().op(OP_RETURN).data(data).build();
+    }
+
+    /**
+     * Extract the payload from a Class C output script
+     *
+     * @param script an output script
+     * @return the payload or null if {@code script} isn't a Class C output
+     */
+    public static byte[] decode(Script script) {
+        byte[] program = script.getProgram();
+        if (program.length < 2 + MARKER.length || (program[0] & 0xFF) != OP_RETURN) {
+            return null;
+        }
+        int length = program[1] & 0xFF;
+        int offset = 2;
+        if (length == 0x4c) {       // OP_PUSHDATA1
+            length = program[2] & 0xFF;
+            offset = 3;
+        }
+        if (offset + length != program.length || length < MARKER.length) {
+            return null;
+        }
+        for (int i = 0; i < MARKER.length; i++) {
+            if (program[offset + i] != MARKER[i]) {
+                return null;
+            }
+        }
+        byte[] payload = new byte[length - MARKER.length];
+        System.arraycopy(program, offset + MARKER.length, payload, 0, payload.length);
+        return payload;
+    }
+}
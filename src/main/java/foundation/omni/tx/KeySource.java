@@ -0,0 +1,16 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.core.ECKey;
+
+/**
+ * Source of private keys for {@link TransactionSigner}
+ * <p>
+ * Implementations are called concurrently from signing threads and must be thread-safe.
+ */
+public interface KeySource {
+    /**
+     * @param pubKeyHash the RIPEMD160(SHA256(pubkey)) hash from a pay-to-pubkey-hash output
+     * @return the key with a private part, or null if this source doesn't hold it
+     */
+    ECKey getKey(byte[] pubKeyHash);
+}
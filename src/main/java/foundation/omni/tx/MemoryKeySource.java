@@ -0,0 +1,65 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.DumpedPrivateKey;
+import com.google.bitcoin.core.ECKey;
+import com.google.bitcoin.core.NetworkParameters;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory {@link KeySource}, indexed by public key hash
+ */
+public class MemoryKeySource implements KeySource {
+    private final Map<ByteBuffer, ECKey> keys = new ConcurrentHashMap<ByteBuffer, ECKey>();
+
+    public void addKey(ECKey key) {
+        keys.put(ByteBuffer.wrap(key.getPubKeyHash()), key);
+    }
+
+    /**
+     * Add a key in wallet import format, as returned by {@code dumpprivkey}
+     */
+    public void addKey(NetworkParameters params, String wif) throws AddressFormatException {
+        addKey(new DumpedPrivateKey(params, wif).getKey());
+    }
+
+    /**
+     * Load keys from a text file with one key in wallet import format per line.
+     * Blank lines and lines starting with {@code #} are ignored.
+     */
+    public static MemoryKeySource fromWifFile(NetworkParameters params, File file)
+            throws IOException, AddressFormatException {
+        MemoryKeySource source = new MemoryKeySource();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("US-ASCII")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    source.addKey(params, line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return source;
+    }
+
+    @Override
+    public ECKey getKey(byte[] pubKeyHash) {
+        return keys.get(ByteBuffer.wrap(pubKeyHash));
+    }
+
+    public int size() {
+        return keys.size();
+    }
+}
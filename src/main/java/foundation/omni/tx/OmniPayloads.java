@@ -0,0 +1,50 @@
+package foundation.omni.tx;
+
+import foundation.omni.CurrencyID;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes Omni Protocol transaction payloads.
+ * <p>
+ * The payloads are the same bytes that are passed hex-encoded to {@code sendrawtx_MP}, and that
+ * {@link ClassBEncoder} and {@link ClassCEncoder} embed in a Bitcoin transaction.
+ */
+public class OmniPayloads {
+    public static final short TX_SIMPLE_SEND = 0;
+    public static final short TX_SEND_TO_OWNERS = 3;
+
+    /**
+     * Create the payload for transaction type 0: "simple send".
+     *
+     * @param currency The currency to send
+     * @param amount   The amount in the smallest unit of the currency (willets for divisible properties)
+     * @return 16 byte payload
+     */
+    public static byte[] simpleSend(CurrencyID currency, long amount) {
+        return currencyAndAmount(TX_SIMPLE_SEND, currency, amount);
+    }
+
+    /**
+     * Create the payload for transaction type 3: "send to owners".
+     *
+     * @param currency The currency to distribute
+     * @param amount   The amount in the smallest unit of the currency (willets for divisible properties)
+     * @return 16 byte payload
+     */
+    public static byte[] sendToOwners(CurrencyID currency, long amount) {
+        return currencyAndAmount(TX_SEND_TO_OWNERS, currency, amount);
+    }
+
+    private static byte[] currencyAndAmount(short txType, CurrencyID currency, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);     // Big-endian, as in the Omni Protocol spec
+        buffer.putShort((short) 0);                     // Transaction version
+        buffer.putShort(txType);
+        buffer.putInt((int) currency.longValue());      // Unsigned 32-bit
+        buffer.putLong(amount);
+        return buffer.array();
+    }
+}
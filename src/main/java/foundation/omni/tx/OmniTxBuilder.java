@@ -0,0 +1,160 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.google.bitcoin.core.TransactionOutput;
+import com.google.bitcoin.script.Script;
+import com.google.bitcoin.script.ScriptBuilder;
+import foundation.omni.CurrencyID;
+import foundation.omni.MPNetworkParameters;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds unsigned Omni Protocol transactions locally, as bitcoinj {@link Transaction} objects.
+ * <p>
+ * The output layout follows Omni Core: the data outputs (and for Class B the Exodus marker) come first,
+ * followed by change back to the sender and the reference output last. Sign the result with the
+ * sender's key(s) and broadcast it with {@code sendrawtransaction}. Building is pure CPU work
+ * and an instance can be shared between threads.
+ */
+public class OmniTxBuilder {
+    /* Bitcoin Core 0.10/0.11 dust rule: 3 * (output size + spending input size) at 1000 satoshi/kB */
+    private static final int DUST_SPEND_SIZE = 148;
+    private static final int DUST_FACTOR = 3;
+    private static final int INPUT_SIZE_ESTIMATE = 148;
+    private static final int TX_OVERHEAD_ESTIMATE = 10;
+
+    public enum Encoding {
+        /** Bare multisig, see {@link ClassBEncoder} */
+        CLASS_B,
+        /** OP_RETURN, see {@link ClassCEncoder} */
+        CLASS_C
+    }
+
+    private final MPNetworkParameters params;
+
+    public OmniTxBuilder(MPNetworkParameters params) {
+        this.params = params;
+    }
+
+    /**
+     * Build an unsigned simple send
+     *
+     * @see #build(Address, byte[], List, Address, byte[], Encoding)
+     */
+    public Transaction simpleSend(Address sender, byte[] senderPubKey, List<SpendableOutput> unspent,
+                                  Address destination, CurrencyID currency, long amount, Encoding encoding) {
+        return build(sender, senderPubKey, unspent, destination, OmniPayloads.simpleSend(currency, amount), encoding);
+    }
+
+    /**
+     * Build an unsigned send to owners
+     *
+     * @see #build(Address, byte[], List, Address, byte[], Encoding)
+     */
+    public Transaction sendToOwners(Address sender, byte[] senderPubKey, List<SpendableOutput> unspent,
+                                    CurrencyID currency, long amount, Encoding encoding) {
+        return build(sender, senderPubKey, unspent, null, OmniPayloads.sendToOwners(currency, amount), encoding);
+    }
+
+    /**
+     * Build an unsigned Omni transaction
+     *
+     * @param sender       the sending address, all inputs must belong to it and change returns to it
+     * @param senderPubKey the sender's compressed public key, only needed for Class B
+     * @param unspent      outputs of the sender to spend, used in order until amounts and fee are covered
+     * @param reference    the reference (receiving) address, or null if the transaction type has none
+     * @param payload      An Omni Protocol payload, see {@link OmniPayloads}
+     * @param encoding     Class B or Class C
+     * @return the unsigned transaction
+     */
+    public Transaction build(Address sender, byte[] senderPubKey, List<SpendableOutput> unspent,
+                             Address reference, byte[] payload, Encoding encoding) {
+        NetworkParameters netParams = params.getParams();
+        List<Script> outputScripts = new ArrayList<Script>();
+        if (encoding == Encoding.CLASS_B) {
+            if (senderPubKey == null) {
+                throw new IllegalArgumentException("Class B encoding requires the sender's public key");
+            }
+            outputScripts.addAll(ClassBEncoder.encode(sender.toString(), senderPubKey, payload));
+            outputScripts.add(ScriptBuilder.createOutputScript(params.getExodusAddress()));
+        } else {
+            outputScripts.add(ClassCEncoder.encode(payload));
+        }
+        Script changeScript = ScriptBuilder.createOutputScript(sender);
+        Script referenceScript = (reference != null) ? ScriptBuilder.createOutputScript(reference) : null;
+
+        BigInteger outputTotal = BigInteger.ZERO;
+        int outputSize = outputSize(changeScript);
+        List<BigInteger> values = new ArrayList<BigInteger>();
+        for (Script script : outputScripts) {
+            BigInteger value = isOpReturn(script) ? BigInteger.ZERO : dustThreshold(script);
+            values.add(value);
+            outputTotal = outputTotal.add(value);
+            outputSize += outputSize(script);
+        }
+        if (referenceScript != null) {
+            outputTotal = outputTotal.add(dustThreshold(referenceScript));
+            outputSize += outputSize(referenceScript);
+        }
+
+        Transaction tx = new Transaction(netParams);
+        BigInteger inputTotal = BigInteger.ZERO;
+        BigInteger fee = BigInteger.ZERO;
+        int inputs = 0;
+        for (SpendableOutput output : unspent) {
+            if (inputs > 0 && inputTotal.compareTo(outputTotal.add(fee)) >= 0) {
+                break;
+            }
+            TransactionOutPoint outPoint = new TransactionOutPoint(netParams, output.getVout(), output.getTxid());
+            tx.addInput(new TransactionInput(netParams, tx, new byte[0], outPoint));
+            inputTotal = inputTotal.add(output.getValue());
+            inputs++;
+            fee = estimateFee(inputs, outputSize);
+        }
+        if (inputTotal.compareTo(outputTotal.add(fee)) < 0) {
+            throw new IllegalStateException("Insufficient funds in " + sender + ": have " + inputTotal +
+                    ", need " + outputTotal.add(fee) + " satoshis");
+        }
+
+        for (int i = 0; i < outputScripts.size(); i++) {
+            tx.addOutput(new TransactionOutput(netParams, tx, values.get(i), outputScripts.get(i).getProgram()));
+        }
+        BigInteger change = inputTotal.subtract(outputTotal).subtract(fee);
+        if (change.compareTo(dustThreshold(changeScript)) >= 0) {
+            tx.addOutput(new TransactionOutput(netParams, tx, change, changeScript.getProgram()));
+        }
+        if (referenceScript != null) {
+            tx.addOutput(new TransactionOutput(netParams, tx, dustThreshold(referenceScript), referenceScript.getProgram()));
+        }
+        return tx;
+    }
+
+    /**
+     * @return the smallest non-dust value for an output with {@code script}, in satoshis
+     */
+    public static BigInteger dustThreshold(Script script) {
+        return BigInteger.valueOf(DUST_FACTOR * (outputSize(script) + DUST_SPEND_SIZE));
+    }
+
+    private static int outputSize(Script script) {
+        int length = script.getProgram().length;
+        return 8 + (length < 0xfd ? 1 : 3) + length;
+    }
+
+    private static boolean isOpReturn(Script script) {
+        return ClassCEncoder.decode(script) != null;
+    }
+
+    private static BigInteger estimateFee(int inputs, int outputSize) {
+        long size = TX_OVERHEAD_ESTIMATE + (long) inputs * INPUT_SIZE_ESTIMATE + outputSize;
+        long kilobytes = (size + 999) / 1000;
+        return Transaction.REFERENCE_DEFAULT_MIN_TX_FEE.multiply(BigInteger.valueOf(kilobytes));
+    }
+}
@@ -0,0 +1,59 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.core.Sha256Hash;
+import com.msgilligan.bitcoin.BTC;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * An unspent transaction output that can be used as an input, with the data needed to sign for it
+ */
+public class SpendableOutput {
+    private final Sha256Hash txid;
+    private final long vout;
+    private final BigInteger value;
+    private final byte[] scriptPubKey;
+
+    /**
+     * @param txid         hash of the transaction holding the output
+     * @param vout         index of the output
+     * @param value        value in satoshis
+     * @param scriptPubKey the output script
+     */
+    public SpendableOutput(Sha256Hash txid, long vout, BigInteger value, byte[] scriptPubKey) {
+        this.txid = txid;
+        this.vout = vout;
+        this.value = value;
+        this.scriptPubKey = scriptPubKey;
+    }
+
+    /**
+     * Convert an entry returned by {@link BitcoinClient#listUnspent()}
+     */
+    public static SpendableOutput fromListUnspent(Map<String, Object> unspent) {
+        Sha256Hash txid = new Sha256Hash((String) unspent.get("txid"));
+        long vout = ((Number) unspent.get("vout")).longValue();
+        BigInteger value = BTC.btcToSatoshis(BigDecimal.valueOf((Double) unspent.get("amount")));
+        byte[] script = BitcoinClient.hexStringToByteArray((String) unspent.get("scriptPubKey"));
+        return new SpendableOutput(txid, vout, value, script);
+    }
+
+    public Sha256Hash getTxid() {
+        return txid;
+    }
+
+    public long getVout() {
+        return vout;
+    }
+
+    public BigInteger getValue() {
+        return value;
+    }
+
+    public byte[] getScriptPubKey() {
+        return scriptPubKey;
+    }
+}
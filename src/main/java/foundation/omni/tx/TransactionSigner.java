@@ -0,0 +1,143 @@
+package foundation.omni.tx;
+
+import com.google.bitcoin.core.ECKey;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionInput;
+import com.google.bitcoin.core.TransactionOutPoint;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.crypto.TransactionSignature;
+import com.google.bitcoin.script.Script;
+import com.google.bitcoin.script.ScriptBuilder;
+import com.msgilligan.bitcoin.rpc.BitcoinClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Signs transactions locally with keys from a {@link KeySource}, instead of with {@code signrawtransaction}.
+ * <p>
+ * Pay-to-pubkey-hash and pay-to-pubkey inputs are signed with {@code SIGHASH_ALL}. Batches are split across
+ * a fork-join pool, up to four transactions per task, so signing scales with the number of cores.
+ */
+public class TransactionSigner {
+    /* Transactions per leaf task; signing is expensive enough that small leaves pay off */
+    private static final int BATCH_THRESHOLD = 4;
+
+    private final KeySource keySource;
+    private final ForkJoinPool pool;
+
+    public TransactionSigner(KeySource keySource) {
+        this(keySource, new ForkJoinPool());
+    }
+
+    public TransactionSigner(KeySource keySource, ForkJoinPool pool) {
+        this.keySource = keySource;
+        this.pool = pool;
+    }
+
+    /**
+     * Sign all inputs of a transaction in place
+     *
+     * @param tx       an unsigned transaction
+     * @param prevouts the outputs spent by {@code tx}, providing each input's script
+     * @return the hex-encoded signed transaction, ready for {@code sendrawtransaction}
+     * @throws IllegalStateException if an input's output or key can't be found
+     */
+    public String sign(Transaction tx, List<SpendableOutput> prevouts) {
+        signInPlace(tx, index(prevouts));
+        return BitcoinClient.transactionToHex(tx);
+    }
+
+    /**
+     * Sign a batch of transactions in parallel
+     *
+     * @param txs      unsigned transactions, each is signed in place
+     * @param prevouts the outputs spent by all of the transactions
+     * @return the hex-encoded signed transactions, in the same order as {@code txs}
+     */
+    public List<String> signAll(List<Transaction> txs, List<SpendableOutput> prevouts) {
+        String[] signed = new String[txs.size()];
+        pool.invoke(new SignTask(txs, index(prevouts), signed, 0, txs.size()));
+        return Arrays.asList(signed);
+    }
+
+    private void signInPlace(Transaction tx, Map<String, SpendableOutput> prevouts) {
+        List<TransactionInput> inputs = tx.getInputs();
+        for (int i = 0; i < inputs.size(); i++) {
+            TransactionInput input = inputs.get(i);
+            SpendableOutput spent = prevouts.get(key(input.getOutpoint()));
+            if (spent == null) {
+                throw new IllegalStateException("Unknown output spent by input " + i + " of " + tx.getHashAsString());
+            }
+            Script scriptPubKey = new Script(spent.getScriptPubKey());
+            ECKey key;
+            boolean payToPubKey = scriptPubKey.isSentToRawPubKey();
+            if (payToPubKey) {
+                key = keySource.getKey(Utils.sha256hash160(scriptPubKey.getPubKey()));
+            } else if (scriptPubKey.isSentToAddress()) {
+                key = keySource.getKey(scriptPubKey.getPubKeyHash());
+            } else {
+                throw new IllegalStateException("Unsupported script type for input " + i + " of " + tx.getHashAsString());
+            }
+            if (key == null) {
+                throw new IllegalStateException("No key for input " + i + " of " + tx.getHashAsString());
+            }
+            Sha256Hash hash = tx.hashForSignature(i, spent.getScriptPubKey(), Transaction.SigHash.ALL, false);
+            TransactionSignature signature = new TransactionSignature(key.sign(hash), Transaction.SigHash.ALL, false);
+            input.setScriptSig(payToPubKey ? ScriptBuilder.createInputScript(signature)
+                                           : ScriptBuilder.createInputScript(signature, key));
+        }
+    }
+
+    private static Map<String, SpendableOutput> index(List<SpendableOutput> prevouts) {
+        Map<String, SpendableOutput> map = new HashMap<String, SpendableOutput>(prevouts.size() * 2);
+        for (SpendableOutput output : prevouts) {
+            map.put(output.getTxid() + ":" + output.getVout(), output);
+        }
+        return map;
+    }
+
+    private static String key(TransactionOutPoint outPoint) {
+        return outPoint.getHash() + ":" + outPoint.getIndex();
+    }
+
+    /**
+     * Recursively splits a range of transactions until it is small enough to sign directly
+     */
+    private class SignTask extends RecursiveAction {
+        private final List<Transaction> txs;
+        private final Map<String, SpendableOutput> prevouts;
+        private final String[] signed;
+        private final int from;
+        private final int to;
+
+        SignTask(List<Transaction> txs, Map<String, SpendableOutput> prevouts, String[] signed, int from, int to) {
+            this.txs = txs;
+            this.prevouts = prevouts;
+            this.signed = signed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    Transaction tx = txs.get(i);
+                    signInPlace(tx, prevouts);
+                    signed[i] = BitcoinClient.transactionToHex(tx);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SignTask(txs, prevouts, signed, from, middle),
+                          new SignTask(txs, prevouts, signed, middle, to));
+            }
+        }
+    }
+}
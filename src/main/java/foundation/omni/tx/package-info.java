@@ -0,0 +1,4 @@
+/**
+ * Local encoding of Omni Protocol transactions, without wallet RPCs
+ */
+package foundation.omni.tx;
@@ -0,0 +1,97 @@
+package com.msgilligan.bitcoin.cli
+
+import com.google.bitcoin.params.MainNetParams
+import foundation.omni.rpc.stub.StubChain
+import foundation.omni.rpc.stub.StubRPCServer
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Test Specification for the resident CLI daemon, with a stub RPC server
+ */
+class CliDaemonSpec extends Specification {
+    @Shared CliDaemon daemon
+    @Shared StubRPCServer server
+
+    def setupSpec() {
+        server = new StubRPCServer(new StubChain(MainNetParams.get(), 2, 10, 1, 1234))
+        server.start()
+        daemon = new CliDaemon(0)
+        Thread.start { daemon.serve() }
+    }
+
+    def cleanupSpec() {
+        daemon.close()
+        server.stop()
+    }
+
+    /**
+     * Send a command the way bin/btcclient does and return [output lines, exit status]
+     */
+    List call(String... argv) {
+        def socket = new Socket("127.0.0.1", daemon.port)
+        try {
+            socket.outputStream.withWriter("UTF-8") { writer ->
+                writer << "${argv.length}\n"
+                argv.each { writer << it << "\n" }
+                writer.flush()
+                def lines = socket.inputStream.newReader("UTF-8").readLines()
+                def status = lines.last().substring(CliDaemon.EXIT_PREFIX.length()) as Integer
+                return [lines[0..<-1], status]
+            }
+        } finally {
+            socket.close()
+        }
+    }
+
+    def "runs a command and returns its output and exit status"() {
+        when:
+        def (lines, status) = call("btcstatus", "-rpcport", server.getURL().port as String)
+
+        then:
+        status == 0
+        lines.contains("Block count: 1234")
+    }
+
+    def "help exits the command, not the daemon"() {
+        when:
+        def (lines, status) = call("btcstatus", "-help")
+
+        then:
+        status == 0
+        lines.any { it.startsWith("usage: btcstatus") }
+
+        when: "the daemon is still serving"
+        (lines, status) = call("btcstatus", "-rpcport", server.getURL().port as String)
+
+        then:
+        status == 0
+    }
+
+    def "unknown commands fail"() {
+        when:
+        def (lines, status) = call("nosuchcommand")
+
+        then:
+        status == 2
+        lines[0].startsWith("Unknown command")
+        lines[0].contains(GetBlockCount.commandName)
+    }
+
+    def "a client that is still sending doesn't hold up others"() {
+        given: "a connection whose arguments haven't arrived"
+        def stalled = new Socket("127.0.0.1", daemon.port)
+        stalled.outputStream.write("3\nbtcstatus\n".getBytes("UTF-8"))
+        stalled.outputStream.flush()
+
+        when:
+        def (lines, status) = call("btcstatus", "-rpcport", server.getURL().port as String)
+
+        then:
+        status == 0
+        lines.contains("Block count: 1234")
+
+        cleanup:
+        stalled.close()
+    }
+}
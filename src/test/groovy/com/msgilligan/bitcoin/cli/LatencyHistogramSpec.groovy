@@ -0,0 +1,95 @@
+package com.msgilligan.bitcoin.cli
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Test Specification for the load generator's latency histogram, interval statistics and mix parsing
+ */
+class LatencyHistogramSpec extends Specification {
+
+    @Unroll
+    def "value #value is counted in a bucket no more than 1/32 below it"() {
+        when:
+        def lower = LatencyHistogram.lowerBound(LatencyHistogram.bucketOf(value))
+
+        then:
+        lower <= value
+        value - lower <= value / 32
+
+        where:
+        value << [0, 1, 63, 64, 65, 127, 128, 1000, 65535, 1000000, 123456789, 1L << 40]
+    }
+
+    def "percentiles of a uniform distribution"() {
+        given:
+        def histogram = new LatencyHistogram()
+
+        when:
+        (1..1000).each { histogram.record(it * 1000) }
+
+        then:
+        histogram.count == 1000
+        histogram.max == 1000000
+        Math.abs(histogram.getPercentile(50) - 500000) <= 500000 / 32
+        Math.abs(histogram.getPercentile(99) - 990000) <= 990000 / 32
+        histogram.getPercentile(100) <= histogram.max
+    }
+
+    def "empty histogram reports zero"() {
+        expect:
+        new LatencyHistogram().getPercentile(99) == 0
+    }
+
+    def "histograms can be added"() {
+        given:
+        def a = new LatencyHistogram()
+        def b = new LatencyHistogram()
+        a.record(10)
+        b.record(20)
+        b.record(5000)
+
+        when:
+        a.add(b)
+
+        then:
+        a.count == 3
+        a.max == 5000
+        a.getPercentile(50) == 20
+    }
+
+    def "mix parameters are typed"() {
+        expect:
+        LoadGen.parseParam("1000") == 1000L
+        LoadGen.parseParam("0.5") == 0.5d
+        LoadGen.parseParam("true") == true
+        LoadGen.parseParam("mpexoDuSkGGqvqrkrjiFng38QPkJQVFyqv") == "mpexoDuSkGGqvqrkrjiFng38QPkJQVFyqv"
+    }
+
+    def "samples recorded while intervals are swapped are all reported, with their errors"() {
+        given:
+        def call = new LoadGen.Call("getblockcount", "getblockcount", [], 1)
+        def threads = 4
+        def perThread = 50000
+        def intervals = []
+        def done = new java.util.concurrent.CountDownLatch(threads)
+        threads.times { t ->
+            Thread.start {
+                perThread.times { call.record(it % 1000, it % 3 != 0) }
+                done.countDown()
+            }
+        }
+
+        when:
+        while (done.count > 0) {
+            intervals << call.nextInterval()
+        }
+        intervals << call.nextInterval()
+
+        then:
+        intervals.sum { it.latencies.count } == threads * perThread
+        intervals.sum { it.errors.get() } == call.total.errors.get()
+        intervals.every { it.errors.get() <= it.latencies.count }
+        call.total.latencies.count == threads * perThread
+    }
+}
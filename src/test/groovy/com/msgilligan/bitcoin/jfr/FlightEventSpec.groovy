@@ -0,0 +1,65 @@
+package com.msgilligan.bitcoin.jfr
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * Test Specification for Flight Recorder events, jdk.jfr is only accessed dynamically so the spec compiles on any JDK
+ */
+class FlightEventSpec extends Specification {
+    static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Recording")
+            return true
+        } catch (ClassNotFoundException e) {
+            return false
+        }
+    }
+
+    static final FlightEvent testEvent = FlightEvent.define("omni.test.FlightEventSpec", "Test Event", "Omni Test",
+            "Event of FlightEventSpec",
+            FlightEvent.field("name", String.class, "Name"),
+            FlightEvent.field("count", long.class, "Count"),
+            FlightEvent.timespan("time", "Time"))
+
+    def "events are not recorded without a recording"() {
+        when:
+        def event = testEvent.begin()
+        event.commit("ignored", 1, 2L)
+
+        then:
+        !testEvent.isEnabled()
+        !event.isEnabled()
+    }
+
+    @Requires({ FlightEventSpec.isJfrAvailable() })
+    def "events are recorded with their fields, numbers converted to the field type"() {
+        given:
+        def recording = Class.forName("jdk.jfr.Recording").newInstance()
+        recording.enable("omni.test.FlightEventSpec")
+        recording.start()
+
+        when:
+        def event = testEvent.begin()
+        event.commit("recorded", 42 as Integer, 1000L)
+        recording.stop()
+        def file = Files.createTempFile("FlightEventSpec", ".jfr")
+        recording.dump(file)
+        def recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile")
+        def events = recordingFile.readAllEvents(file).findAll { it.eventType.name == "omni.test.FlightEventSpec" }
+
+        then:
+        events.size() == 1
+        events[0].getString("name") == "recorded"
+        events[0].getLong("count") == 42
+        events[0].getDuration("time").toNanos() == 1000
+
+        cleanup:
+        recording?.close()
+        if (file != null) {
+            Files.deleteIfExists(file)
+        }
+    }
+}
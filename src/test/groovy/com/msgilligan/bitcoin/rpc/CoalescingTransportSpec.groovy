@@ -0,0 +1,144 @@
+package com.msgilligan.bitcoin.rpc
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test Specification for coalescing identical concurrent requests, with a fake transport in place of a server
+ */
+class CoalescingTransportSpec extends Specification {
+    /**
+     * Holds every request until released and answers with the method and parameters, counting requests
+     */
+    static class GatedTransport implements RPCTransport {
+        def mapper = new ObjectMapper()
+        def gate = new CountDownLatch(1)
+        def sent = new AtomicInteger()
+        boolean fail
+
+        @Override
+        String exchange(String request) {
+            sent.incrementAndGet()
+            gate.await(10, TimeUnit.SECONDS)
+            if (fail) {
+                throw new ConnectException("Connection refused")
+            }
+            def json = mapper.readValue(request, Map)
+            return mapper.writeValueAsString([result: "${json.method}${json.params}".toString(), error: null, id: json.id])
+        }
+    }
+
+    GatedTransport server = new GatedTransport()
+    CoalescingTransport coalescing = new CoalescingTransport(server)
+    RPCClient client = new RPCClient(new URL("http://localhost:1"), "user", "pass")
+    def executor = Executors.newFixedThreadPool(10)
+
+    def setup() {
+        client.setTransport(coalescing)
+    }
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    /**
+     * Start calls on several threads, and release the server once they are all waiting
+     */
+    List calls(int count, Closure call) {
+        def futures = (1..count).collect { executor.submit(call as java.util.concurrent.Callable) }
+        while (server.sent.get() + coalescing.coalescedCount < count && !futures.any { it.done }) {
+            Thread.sleep(10)
+        }
+        server.gate.countDown()
+        return futures
+    }
+
+    def "identical concurrent requests are sent once"() {
+        when:
+        def responses = calls(10) { client.send("getallbalancesforid_MP", [1]) }*.get()
+
+        then:
+        server.sent.get() == 1
+        coalescing.coalescedCount == 9
+        responses.every { it.result == "getallbalancesforid_MP[1]" }
+        responses*.id.toSet().size() == 10
+    }
+
+    def "requests with different parameters are sent separately"() {
+        when:
+        def futures = calls(4) { client.send("getallbalancesforid_MP", [1]) } +
+                (2..5).collect { currency -> executor.submit({ client.send("getallbalancesforid_MP", [currency]) } as java.util.concurrent.Callable) }
+        def responses = futures*.get()
+
+        then:
+        server.sent.get() == 5
+        responses*.result.toSet().size() == 5
+    }
+
+    def "coalesced responses are valid JSON with each caller's own id"() {
+        setup:
+        def mapper = new ObjectMapper()
+        def requests = ids.collect { mapper.writeValueAsString([method: "getblockcount", params: [], id: it]) }
+        def next = new AtomicInteger()
+
+        when:
+        def responses = calls(ids.size()) { coalescing.exchange(requests[next.getAndIncrement()]) }*.get()
+                .collect { mapper.readValue(it, Map) }
+
+        then:
+        server.sent.get() == 1
+        responses*.id.toSet() == ids.toSet()
+        responses.every { it.result == "getblockcount[]" && it.containsKey("error") && it.error == null }
+
+        where:
+        ids << [["a", "b", "c"], [1, 42, 1234567890123], ["1", 2, null]]
+    }
+
+    def "requests with side effects are never coalesced"() {
+        when:
+        def responses = calls(3) { client.send("send_MP", ["from", "to", 1, "1.0"]) }*.get()
+
+        then:
+        server.sent.get() == 3
+        coalescing.coalescedCount == 0
+        responses.size() == 3
+    }
+
+    def "a failure is passed to every waiting caller"() {
+        setup:
+        server.fail = true
+
+        when:
+        def futures = calls(5) { client.send("getblockcount", null) }
+        def failures = futures.collect {
+            try {
+                it.get()
+                null
+            } catch (java.util.concurrent.ExecutionException e) {
+                e.cause
+            }
+        }
+
+        then:
+        server.sent.get() == 1
+        failures.every { it instanceof ConnectException }
+    }
+
+    def "requests made after the response are sent again"() {
+        setup:
+        server.gate.countDown()
+
+        when:
+        client.send("getblockcount", null)
+        client.send("getblockcount", null)
+
+        then:
+        server.sent.get() == 2
+        coalescing.coalescedCount == 0
+    }
+}
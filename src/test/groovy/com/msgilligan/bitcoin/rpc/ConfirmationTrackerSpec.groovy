@@ -0,0 +1,135 @@
+package com.msgilligan.bitcoin.rpc
+
+import com.google.bitcoin.core.Sha256Hash
+import spock.lang.Specification
+
+/**
+ * Test Specification for ConfirmationTracker, against an in-memory chain
+ */
+class ConfirmationTrackerSpec extends Specification {
+
+    /**
+     * A BitcoinClient that serves blocks from a list instead of a server
+     */
+    static class FakeChainClient extends BitcoinClient {
+        List<Sha256Hash> hashes = []
+        Map<Sha256Hash, List<String>> blocks = [:]
+        int getBlockHashCalls = 0
+        int getBlockCalls = 0
+
+        FakeChainClient() {
+            super(new URL("http://localhost:1"), "user", "pass")
+            mine([])
+        }
+
+        void mine(List<Sha256Hash> txids, String salt = "") {
+            def hash = Sha256Hash.create("${hashes.size()}:${salt}".bytes)
+            hashes << hash
+            blocks[hash] = txids*.toString()
+        }
+
+        void rewindTo(int height) {
+            hashes = hashes.subList(0, height + 1)
+        }
+
+        @Override
+        Integer getBlockCount() {
+            return hashes.size() - 1
+        }
+
+        @Override
+        Sha256Hash getBlockHash(Integer index) {
+            getBlockHashCalls++
+            return hashes[index]
+        }
+
+        @Override
+        Map<String, Object> getBlock(Sha256Hash hash) {
+            getBlockCalls++
+            return [hash: hash.toString(), tx: blocks[hash]]
+        }
+    }
+
+    static Sha256Hash txid(int n) {
+        return Sha256Hash.create("tx${n}".bytes)
+    }
+
+    def client = new FakeChainClient()
+
+    def "transactions confirm at the configured depth"() {
+        setup:
+        def tracker = new ConfirmationTracker(client, 2)
+        def future = tracker.track(txid(1))
+
+        when: "the transaction is mined"
+        client.mine([txid(1)])
+        tracker.poll()
+
+        then: "it has only one confirmation"
+        !future.done
+
+        when: "another block is mined"
+        client.mine([])
+        tracker.poll()
+
+        then:
+        future.done
+        future.get() == 1
+        tracker.pendingCount == 0
+    }
+
+    def "each block is fetched once regardless of the number of tracked transactions"() {
+        setup:
+        def tracker = new ConfirmationTracker(client, 1)
+        def futures = tracker.trackAll((1..1000).collect { txid(it) })
+
+        when:
+        client.mine((1..500).collect { txid(it) })
+        client.mine((501..1000).collect { txid(it) })
+        tracker.poll()
+
+        then:
+        futures.every { it.done }
+        client.getBlockCalls == 2
+    }
+
+    def "listeners are called with the block that confirmed the transaction"() {
+        setup:
+        def tracker = new ConfirmationTracker(client, 1)
+        def confirmed = [:]
+        tracker.track(txid(1), { id, height, hash -> confirmed[id] = hash } as ConfirmationTracker.Listener)
+
+        when:
+        client.mine([txid(1)])
+        tracker.poll()
+
+        then:
+        confirmed[txid(1)] == client.hashes[1]
+    }
+
+    def "transactions in orphaned blocks are tracked again"() {
+        setup:
+        def tracker = new ConfirmationTracker(client, 2)
+        def future = tracker.track(txid(1))
+        client.mine([txid(1)])
+        tracker.poll()
+
+        when: "the block is replaced by one without the transaction"
+        client.rewindTo(0)
+        client.mine([], "fork")
+        client.mine([], "fork")
+        tracker.poll()
+
+        then:
+        !future.done
+        tracker.pendingCount == 1
+
+        when: "the transaction is mined again"
+        client.mine([txid(1)], "fork")
+        client.mine([], "fork")
+        tracker.poll()
+
+        then:
+        future.get() == 3
+    }
+}
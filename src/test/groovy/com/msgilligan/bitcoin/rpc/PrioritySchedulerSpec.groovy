@@ -0,0 +1,117 @@
+package com.msgilligan.bitcoin.rpc
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import static com.msgilligan.bitcoin.rpc.PriorityScheduler.Priority.BULK
+import static com.msgilligan.bitcoin.rpc.PriorityScheduler.Priority.INTERACTIVE
+
+/**
+ * Test Specification for the priority scheduler, with a fake transport in place of a server
+ */
+class PrioritySchedulerSpec extends Specification {
+    /**
+     * Answers every request after a delay, or once released, counting requests in flight
+     */
+    static class SlowTransport implements RPCTransport {
+        long delay
+        CountDownLatch gate
+        int active
+        int maxActive
+
+        @Override
+        String exchange(String request) {
+            synchronized (this) {
+                maxActive = Math.max(maxActive, ++active)
+            }
+            try {
+                if (gate != null) {
+                    gate.await(10, TimeUnit.SECONDS)
+                } else if (delay > 0) {
+                    Thread.sleep(delay)
+                }
+                return '{"result":1,"error":null,"id":"1"}'
+            } finally {
+                synchronized (this) {
+                    active--
+                }
+            }
+        }
+    }
+
+    static final String request = '{"jsonrpc":"1.0","method":"getblockcount","id":"1","params":[]}'
+
+    SlowTransport server = new SlowTransport()
+    def executor = Executors.newCachedThreadPool()
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "each class is limited to its own budget"() {
+        setup:
+        server.gate = new CountDownLatch(1)
+        def scheduler = new PriorityScheduler(server, 3, 2, 0)
+
+        when:
+        def futures = (1..10).collect {
+            executor.submit({ scheduler.getTransport(BULK).exchange(request) } as Callable)
+        }
+        Thread.sleep(200)
+        int bulkOnly = server.active
+        futures += (1..10).collect {
+            executor.submit({ scheduler.getTransport(INTERACTIVE).exchange(request) } as Callable)
+        }
+        Thread.sleep(200)
+        int both = server.active
+        server.gate.countDown()
+        futures*.get()
+
+        then:
+        bulkOnly == 2
+        both == 5
+        server.maxActive == 5
+    }
+
+    def "bulk traffic is paused while interactive latency is above target, and resumes"() {
+        setup:
+        server.delay = 200
+        def scheduler = new PriorityScheduler(server, 4, 4, 50)
+
+        when:
+        6.times { scheduler.getTransport(INTERACTIVE).exchange(request) }
+
+        then:
+        scheduler.bulkConcurrency == 0
+        scheduler.interactiveLatency >= 150
+
+        when:
+        server.delay = 0
+        long start = System.nanoTime()
+        scheduler.getTransport(BULK).exchange(request)
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then: "bulk waits for a quiet second without interactive traffic"
+        waited >= 500
+        scheduler.bulkConcurrency >= 1
+        scheduler.interactiveLatency == -1
+    }
+
+    def "bulk traffic is not slowed down by fast interactive requests"() {
+        setup:
+        def scheduler = new PriorityScheduler(server, 4, 4, 50)
+
+        when:
+        10.times {
+            scheduler.getTransport(INTERACTIVE).exchange(request)
+            scheduler.getTransport(BULK).exchange(request)
+        }
+
+        then:
+        scheduler.bulkConcurrency == 4
+    }
+}
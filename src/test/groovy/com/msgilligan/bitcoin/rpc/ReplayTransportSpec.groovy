@@ -0,0 +1,142 @@
+package com.msgilligan.bitcoin.rpc
+
+import spock.lang.Specification
+
+/**
+ * Test Specification for recording and replaying RPC traffic, with a fake transport in place of a server
+ */
+class ReplayTransportSpec extends Specification {
+    static final String notFound = '{"result":null,"error":{"code":-32601,"message":"Method not found"},"id":"%s"}'
+
+    /**
+     * Answers getblockcount with an increasing count and fails any other method
+     */
+    static class FakeTransport implements RPCTransport {
+        def mapper = new com.fasterxml.jackson.databind.ObjectMapper()
+        int blocks = 100
+
+        @Override
+        String exchange(String request) {
+            def json = mapper.readValue(request, Object)
+            def answer = { r ->
+                if (r.method != "getblockcount") {
+                    throw new JsonRPCStatusException("Method not found", 404, "Not Found", String.format(notFound, r.id),
+                            [error: [code: -32601, message: "Method not found"]])
+                }
+                [result: blocks++, error: null, id: r.id]
+            }
+            return mapper.writeValueAsString(json instanceof List ? json.collect(answer) : answer(json))
+        }
+    }
+
+    File cassette
+
+    def setup() {
+        cassette = File.createTempFile("rpc", ".cassette")
+    }
+
+    def cleanup() {
+        cassette.delete()
+    }
+
+    RPCClient record(Closure traffic) {
+        def client = new RPCClient(new URL("http://localhost:1"), "user", "pass")
+        def recorder = new RecordingTransport(new FakeTransport(), cassette)
+        client.setTransport(recorder)
+        traffic(client)
+        recorder.close()
+        return client
+    }
+
+    RPCClient replay(double speed = 0) {
+        def client = new RPCClient(new URL("http://localhost:1"), "user", "pass")
+        client.setTransport(new ReplayTransport(cassette, speed))
+        return client
+    }
+
+    def "recorded exchanges are written to the cassette"() {
+        when:
+        record { client ->
+            client.send("getblockcount", null)
+            client.send("getblockcount", null)
+        }
+        def entries = Cassette.read(cassette)
+
+        then:
+        entries.size() == 2
+        entries*.status == [200, 200]
+        entries[1].response.contains('"result":101')
+        entries[1].startNanos >= entries[0].startNanos
+    }
+
+    def "identical requests replay in recorded order, then repeat the last response"() {
+        given:
+        record { client -> 2.times { client.send("getblockcount", null) } }
+        def client = replay()
+
+        expect:
+        client.send("getblockcount", null).result == 100
+        client.send("getblockcount", null).result == 101
+        client.send("getblockcount", null).result == 101
+    }
+
+    def "response ids are rewritten to match new request ids"() {
+        given:
+        record { client -> client.sendBatch([client.createRequest("getblockcount", null)]) }
+        def client = replay()
+        5.times { client.createRequest("getblockcount", null) }      // Advance the request id
+
+        when:
+        def responses = client.sendBatch([client.createRequest("getblockcount", null)])
+
+        then:
+        responses.size() == 1
+        responses[0].id == "5"
+        responses[0].result == 100
+    }
+
+    def "recorded errors are replayed as errors"() {
+        given:
+        record { client ->
+            try {
+                client.send("nosuchmethod", null)
+            } catch (JsonRPCStatusException e) {
+            }
+        }
+        def client = replay()
+
+        when:
+        client.send("nosuchmethod", null)
+
+        then:
+        JsonRPCStatusException e = thrown()
+        e.httpCode == 404
+        e.message == "Method not found"
+    }
+
+    def "requests that were not recorded fail"() {
+        given:
+        record { client -> client.send("getblockcount", null) }
+
+        when:
+        replay().send("getblockhash", [1])
+
+        then:
+        thrown(JsonRPCException)
+    }
+
+    def "replay at recorded speed waits for the recorded duration"() {
+        given:
+        def entries = [new Cassette.Entry(0, 50_000_000, 200, null, '{"method":"getblockcount","id":"0"}', '{"result":1,"id":"0"}')]
+        def transport = new ReplayTransport(entries, 1.0)
+
+        when:
+        def start = System.nanoTime()
+        transport.exchange('{"method":"getblockcount","id":"0"}')
+        def elapsed = System.nanoTime() - start
+
+        then:
+        elapsed >= 50_000_000
+        transport.remaining == 0
+    }
+}
@@ -0,0 +1,190 @@
+package com.msgilligan.bitcoin.rpc
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+/**
+ * Test Specification for routing requests over several nodes, with fake transports in place of servers
+ */
+class RoutingTransportSpec extends Specification {
+    /**
+     * Answers getblockcount with its height and any other method with its name, counting requests
+     */
+    static class FakeNode implements RPCTransport {
+        def mapper = new ObjectMapper()
+        String name
+        long height = 100
+        boolean down
+        long delay
+        List<String> methods = Collections.synchronizedList([])
+
+        @Override
+        String exchange(String request) {
+            if (down) {
+                throw new ConnectException("${name} is down")
+            }
+            if (delay > 0 && !request.contains('"getblockcount"')) {
+                Thread.sleep(delay)
+            }
+            def json = mapper.readValue(request, Object)
+            def answer = { r ->
+                if (r.id != "routing") {
+                    methods << r.method
+                }
+                [result: r.method == "getblockcount" ? height : name, error: null, id: r.id]
+            }
+            return mapper.writeValueAsString(json instanceof List ? json.collect(answer) : answer(json))
+        }
+    }
+
+    FakeNode primary = new FakeNode(name: "primary")
+    FakeNode replica1 = new FakeNode(name: "replica1")
+    FakeNode replica2 = new FakeNode(name: "replica2")
+
+    RPCClient client(RoutingTransport routing) {
+        def client = new RPCClient(new URL("http://localhost:1"), "user", "pass")
+        client.setTransport(routing)
+        return client
+    }
+
+    def "reads are spread over the nodes, writes go to the primary"() {
+        setup:
+        def client = client(new RoutingTransport(primary, [replica1, replica2]))
+
+        when:
+        def readers = (1..6).collect { client.cliSend("gettransaction_MP", "txid") }
+        (1..3).each { client.cliSend("send_MP", "from", "to", 1, "1.0") }
+
+        then:
+        readers.toSet() == ["primary", "replica1", "replica2"].toSet()
+        replica1.methods.count("gettransaction_MP") == 2
+        replica2.methods.count("gettransaction_MP") == 2
+        primary.methods.count("send_MP") == 3
+        !replica1.methods.contains("send_MP")
+        !replica2.methods.contains("send_MP")
+    }
+
+    def "a batch is a read only if all its methods are"() {
+        setup:
+        def client = client(new RoutingTransport(primary, [replica1]))
+
+        when:
+        (1..4).each {
+            client.sendBatch([client.createRequest("getblockhash", [1]), client.createRequest("sendrawtransaction", ["00"])])
+        }
+
+        then:
+        primary.methods.count("sendrawtransaction") == 4
+        replica1.methods.isEmpty()
+    }
+
+    def "replicas behind the highest block count get no reads"() {
+        setup:
+        replica1.height = 99
+        def routing = new RoutingTransport(primary, [replica1, replica2])
+        def client = client(routing)
+
+        when:
+        (1..4).each { client.cliSend("getallbalancesforid_MP", 1) }
+
+        then:
+        routing.readTransports == [primary, replica2]
+        replica1.methods.isEmpty()
+
+        when:
+        replica1.height = 100
+        routing.checkNodes()
+
+        then:
+        routing.readTransports == [primary, replica1, replica2]
+    }
+
+    def "reads from a failing replica are sent to the primary"() {
+        setup:
+        def routing = new RoutingTransport(primary, [replica1])
+        def client = client(routing)
+        routing.checkNodes()
+        replica1.down = true
+
+        when:
+        def answers = (1..4).collect { client.cliSend("getblockcount") }
+
+        then:
+        answers.every { it == 100 }
+        routing.readTransports == [primary]
+        primary.methods.count("getblockcount") == 4
+    }
+
+    def "reads go to the primary until a node is known to be healthy"() {
+        setup:
+        replica1.down = true
+        replica2.down = true
+        primary.down = true
+        def routing = new RoutingTransport(primary, [replica1, replica2])
+
+        when:
+        routing.checkNodes()
+
+        then:
+        routing.readTransports == [primary]
+    }
+
+    def "slow reads are hedged to another node once latencies are known"() {
+        setup:
+        def routing = new RoutingTransport(primary, [replica1])
+        routing.setHedging(90)
+        def client = client(routing)
+        (1..60).each { client.cliSend("gettransaction_MP", "txid") }
+
+        when:
+        replica1.delay = 5000
+        long start = System.nanoTime()
+        def answers = (1..10).collect { client.cliSend("gettransaction_MP", "txid") }
+        long elapsed = (System.nanoTime() - start) / 1000000
+
+        then:
+        answers.every { it == "primary" }
+        routing.hedgeCount >= 5
+        elapsed < 5000
+    }
+
+    def "a hedged read that fails is sent to the other node"() {
+        setup:
+        def routing = new RoutingTransport(primary, [replica1])
+        routing.setHedging(95)
+        def client = client(routing)
+        routing.checkNodes()
+        replica1.down = true
+
+        when:
+        def answers = (1..4).collect { client.cliSend("getproperty_MP", 1) }
+
+        then:
+        answers.every { it == "primary" }
+        routing.hedgeCount == 0
+        routing.readTransports == [primary]
+    }
+
+    def "the latency window keeps the latest samples and refreshes its percentile every 50 samples"() {
+        setup:
+        def window = new RoutingTransport.LatencyWindow()
+
+        when:
+        (1..3000).each { window.add(it) }
+
+        then: "only the last 1000 samples are kept"
+        window.percentile(50) == 2500
+
+        when:
+        49.times { window.add(10000) }
+
+        then: "the percentile is cached between refreshes"
+        window.percentile(50) == 2500
+
+        when:
+        window.add(10000)
+
+        then:
+        window.percentile(50) == 2550
+    }
+}
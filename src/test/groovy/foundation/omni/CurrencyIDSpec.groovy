@@ -152,4 +152,30 @@ class CurrencyIDSpec extends Specification {
         4294967295 | "CurrencyID:4294967295"
     }
 
+    def "valueOf returns a shared instance"() {
+        expect:
+        CurrencyID.valueOf(id).is(CurrencyID.valueOf(id))
+        CurrencyID.valueOf(id) == new CurrencyID(id)
+
+        where:
+        id << [1, 2, 3, 31, 4096, 4097, 2147483647, 2147483648, 2147483651, 4294967295]
+    }
+
+    def "valueOf returns the predefined constants"() {
+        expect:
+        CurrencyID.valueOf(CurrencyID.MSC_VALUE).is(CurrencyID.MSC)
+        CurrencyID.valueOf(CurrencyID.TetherUS_VALUE).is(CurrencyID.TetherUS)
+    }
+
+    def "valueOf rejects invalid values"() {
+        when:
+        CurrencyID.valueOf(id)
+
+        then:
+        NumberFormatException e = thrown()
+
+        where:
+        id << [0, -1, 4294967296]
+    }
+
 }
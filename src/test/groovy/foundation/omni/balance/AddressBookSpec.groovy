@@ -0,0 +1,42 @@
+package foundation.omni.balance
+
+import spock.lang.Specification
+
+/**
+ * Test Specification for AddressBook
+ */
+class AddressBookSpec extends Specification {
+
+    def "interning assigns sequential IDs"() {
+        setup:
+        def book = new AddressBook()
+
+        expect:
+        book.intern("a") == 0
+        book.intern("b") == 1
+        book.intern("a") == 0
+        book.size() == 2
+        book.getAddress(1) == "b"
+    }
+
+    def "lookup doesn't assign IDs"() {
+        setup:
+        def book = new AddressBook()
+
+        expect:
+        book.lookup("a") == -1
+        book.size() == 0
+    }
+
+    def "survives growth"() {
+        setup:
+        def book = new AddressBook(16)
+
+        when:
+        def ids = (0..<5000).collect { book.intern("address${it}") }
+
+        then:
+        ids == (0..<5000).toList()
+        (0..<5000).every { book.lookup("address${it}") == it }
+    }
+}
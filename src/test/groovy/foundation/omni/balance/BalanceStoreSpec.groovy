@@ -0,0 +1,248 @@
+package foundation.omni.balance
+
+import foundation.omni.CurrencyID
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * Test Specification for BalanceStore
+ */
+class BalanceStoreSpec extends Specification {
+    static final CurrencyID MSC = CurrencyID.MSC
+    static final CurrencyID MaidSafeCoin = CurrencyID.valueOf(CurrencyID.MaidSafeCoin_VALUE)
+
+    File directory
+
+    def setup() {
+        directory = Files.createTempDirectory("BalanceStoreSpec").toFile()
+    }
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def "blocks are applied in order"() {
+        setup:
+        def store = BalanceStore.open(directory)
+
+        when:
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).set(MaidSafeCoin, "1A", 7, 0).commit()
+        store.beginBlock(101, "hash101").add(MSC, "1A", -300, 0).add(MSC, "1B", 300, 10).commit()
+
+        then:
+        store.height == 101
+        store.getBlockHash(101) == "hash101"
+        store.getBalance(MSC, "1A") == 700
+        store.getBalance(MSC, "1B") == 300
+        store.getReserved(MSC, "1B") == 10
+        store.getBalance(MaidSafeCoin, "1A") == 7
+        store.getBalance(MSC, "1C") == 0
+
+        when:
+        store.beginBlock(103, "hash103")
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        store?.close()
+    }
+
+    def "simple sends are applied from decoded transactions"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 100000000, 0).commit()
+        def update = store.beginBlock(101, "hash101")
+
+        when:
+        def applied = update.applyTransaction([valid: true, type: "Simple Send", propertyid: 1, divisible: true,
+                amount: "0.25000000", sendingaddress: "1A", referenceaddress: "1B"])
+        def skipped = update.applyTransaction([valid: false, type: "Simple Send", propertyid: 1, divisible: true,
+                amount: "0.25000000", sendingaddress: "1A", referenceaddress: "1B"])
+        update.commit()
+
+        then:
+        applied
+        !skipped
+        store.getBalance(MSC, "1A") == 75000000
+        store.getBalance(MSC, "1B") == 25000000
+
+        cleanup:
+        store?.close()
+    }
+
+    def "a block that would make a balance negative is not written"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 10, 0).commit()
+
+        when:
+        store.beginBlock(101, "hash101").add(MSC, "1B", 5, 0).add(MSC, "1A", -11, 0).commit()
+
+        then:
+        thrown(IllegalArgumentException)
+        store.height == 100
+        store.getBalance(MSC, "1B") == 0
+
+        cleanup:
+        store?.close()
+    }
+
+    def "balances are kept across reopening, with and without a checkpoint"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).commit()
+        if (checkpoint) {
+            store.checkpoint()
+        }
+        store.beginBlock(101, "hash101").add(MSC, "1A", -400, 0).add(MSC, "1B", 400, 0).commit()
+        store.close()
+
+        when:
+        store = BalanceStore.open(directory)
+
+        then:
+        store.height == 101
+        store.getBalance(MSC, "1A") == 600
+        store.getBalance(MSC, "1B") == 400
+        store.getBalanceAt(MSC, "1A", 100) == 1000
+
+        cleanup:
+        store?.close()
+
+        where:
+        checkpoint << [false, true]
+    }
+
+    def "balances can be read at earlier heights"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).commit()
+        store.beginBlock(101, "hash101").add(MSC, "1B", 1, 0).commit()
+        store.beginBlock(102, "hash102").add(MSC, "1A", -500, 20).commit()
+
+        expect:
+        store.getBalanceAt(MSC, "1A", 100) == 1000
+        store.getBalanceAt(MSC, "1A", 101) == 1000
+        store.getBalanceAt(MSC, "1A", 102) == 500
+        store.getReservedAt(MSC, "1A", 102) == 20
+        store.getBalanceAt(MSC, "1B", 100) == 0
+
+        when:
+        store.getBalanceAt(MSC, "1A", 99)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        store?.close()
+    }
+
+    def "rollback restores the balances of a height and survives reopening"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).commit()
+        store.checkpoint()
+        store.beginBlock(101, "hash101").add(MSC, "1A", -100, 0).add(MSC, "1B", 100, 0).commit()
+        store.beginBlock(102, "hash102").add(MSC, "1B", -50, 0).add(MSC, "1C", 50, 0).commit()
+
+        when:
+        store.rollback(100)
+        store.beginBlock(101, "other101").add(MSC, "1A", -1, 0).add(MSC, "1D", 1, 0).commit()
+        store.close()
+        store = BalanceStore.open(directory)
+
+        then:
+        store.height == 101
+        store.getBlockHash(101) == "other101"
+        store.getBalance(MSC, "1A") == 999
+        store.getBalance(MSC, "1B") == 0
+        store.getBalance(MSC, "1C") == 0
+        store.getBalance(MSC, "1D") == 1
+
+        cleanup:
+        store?.close()
+    }
+
+    def "rollback is limited to the retained blocks"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        (0..BalanceStore.MAX_ROLLBACK_DEPTH).each { store.beginBlock(it, "hash${it}").add(MSC, "1A", 1, 0).commit() }
+
+        when:
+        store.rollback(-1)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        store.rollback(0)
+
+        then:
+        store.height == 0
+        store.getBalance(MSC, "1A") == 1
+
+        cleanup:
+        store?.close()
+    }
+
+    def "top holders merge the snapshot with later blocks"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 300, 0).set(MSC, "1B", 200, 0).set(MSC, "1C", 100, 0)
+                .set(MaidSafeCoin, "1D", 1000, 0).commit()
+        store.checkpoint()
+        store.beginBlock(101, "hash101").add(MSC, "1C", 150, 0).add(MSC, "1A", -300, 0).commit()
+
+        expect:
+        store.getTopHolders(MSC, 10)*.address == ["1C", "1B"]
+        store.getTopHolders(MSC, 10)*.balance == [250L, 200L]
+        store.getTopHolders(MSC, 1)*.address == ["1C"]
+        store.getTopHolders(MaidSafeCoin, 10)*.address == ["1D"]
+
+        cleanup:
+        store?.close()
+    }
+
+    def "a partly written block is discarded when reopening"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).commit()
+        store.close()
+        def journal = new File(directory, BalanceStore.JOURNAL_FILE)
+        def length = journal.length()
+        journal << ([(byte) 'B', 0, 0, 0] as byte[])
+
+        when:
+        store = BalanceStore.open(directory)
+        store.beginBlock(101, "hash101").add(MSC, "1A", 1, 0).commit()
+
+        then:
+        store.getBalance(MSC, "1A") == 1001
+        journal.length() > length
+
+        cleanup:
+        store?.close()
+    }
+
+    def "the snapshot is rebuilt from the journal if it is deleted"() {
+        setup:
+        def store = BalanceStore.open(directory)
+        store.beginBlock(100, "hash100").set(MSC, "1A", 1000, 0).commit()
+        store.checkpoint()
+        store.beginBlock(101, "hash101").add(MSC, "1A", 1, 0).commit()
+        store.close()
+        new File(directory, BalanceStore.SNAPSHOT_FILE).delete()
+
+        when:
+        store = BalanceStore.open(directory)
+
+        then:
+        store.height == 101
+        store.getBalance(MSC, "1A") == 1001
+
+        cleanup:
+        store?.close()
+    }
+}
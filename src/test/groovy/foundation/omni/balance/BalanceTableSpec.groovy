@@ -0,0 +1,110 @@
+package foundation.omni.balance
+
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for BalanceTable
+ */
+class BalanceTableSpec extends Specification {
+
+    def "balances are stored per currency and address"() {
+        setup:
+        def table = new BalanceTable()
+
+        when: "we put balances for two currencies"
+        table.put(MSC, "a", 100, 5)
+        table.put(TMSC, "a", 200, 0)
+        table.put(MSC, "b", 300, 0)
+
+        then: "each entry is kept separately"
+        table.size() == 3
+        table.getBalance(MSC, "a") == 100
+        table.getBalance(TMSC, "a") == 200
+        table.getBalance(MSC, "b") == 300
+        table.getReserved(MSC_VALUE, table.addressBook.lookup("a")) == 5
+
+        and: "addresses are only stored once"
+        table.addressBook.size() == 2
+    }
+
+    def "currency IDs out of range are rejected instead of colliding with empty or other keys"() {
+        setup:
+        def table = new BalanceTable()
+
+        when:
+        table.put(currencyId, 0, 100, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        table.add(currencyId, 0, 100, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+        table.size() == 0
+
+        where:
+        currencyId << [0L, -1L, MAX_VALUE + 1]
+    }
+
+    def "missing entries have a zero balance"() {
+        setup:
+        def table = new BalanceTable()
+
+        expect:
+        table.getBalance(MSC, "nobody") == 0
+        !table.contains(MSC_VALUE, 0)
+    }
+
+    def "entries that reach zero are removed by add"() {
+        setup:
+        def table = new BalanceTable()
+        int id = table.addressBook.intern("a")
+
+        when:
+        table.add(MSC_VALUE, id, 10, 0)
+        table.add(MSC_VALUE, id, -10, 0)
+
+        then:
+        table.size() == 0
+        !table.contains(MSC_VALUE, id)
+    }
+
+    def "survives growth and removal of many entries"() {
+        setup:
+        def table = new BalanceTable(new AddressBook(16), 16)
+        def count = 10000
+
+        when: "we add many entries and remove every other one"
+        for (int i = 0; i < count; i++) {
+            table.put(TetherUS, "address${i}", i + 1, 0)
+        }
+        for (int i = 0; i < count; i += 2) {
+            table.remove(TetherUS_VALUE, table.addressBook.lookup("address${i}"))
+        }
+
+        then: "the remaining entries are intact"
+        table.size() == count / 2
+        (1..<count).step(2).every { i -> table.getBalance(TetherUS, "address${i}") == i + 1 }
+    }
+
+    def "forEach visits entries of a single currency"() {
+        setup:
+        def table = new BalanceTable()
+        table.put(MSC, "a", 1, 0)
+        table.put(MSC, "b", 2, 0)
+        table.put(TMSC, "c", 3, 0)
+        long total = 0
+
+        when:
+        table.forEach(MSC_VALUE, { long currencyId, int addressId, long balance, long reserved ->
+            total += balance
+        } as BalanceVisitor)
+
+        then:
+        total == 3
+    }
+}
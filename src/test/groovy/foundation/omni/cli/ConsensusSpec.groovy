@@ -0,0 +1,162 @@
+package foundation.omni.cli
+
+import com.google.bitcoin.params.MainNetParams
+import com.msgilligan.bitcoin.cli.CliDaemon
+import foundation.omni.rpc.BalanceStreamParser
+import foundation.omni.rpc.stub.StubChain
+import foundation.omni.rpc.stub.StubRPCServer
+import groovy.json.JsonSlurper
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Test Specification for the msc-consensus command, with stub RPC servers
+ */
+class ConsensusSpec extends Specification {
+    static final int holders = 50
+
+    @Shared StubChain chain
+    @Shared StubRPCServer server
+    @Shared StubRPCServer otherServer
+    @Shared CliDaemon daemon
+
+    def setupSpec() {
+        chain = new StubChain(MainNetParams.get(), 3, holders, 1, 2000)
+        server = new StubRPCServer(chain)
+        server.start()
+        otherServer = new StubRPCServer(new StubChain(MainNetParams.get(), 3, holders + 1, 1, 2000))
+        otherServer.start()
+        daemon = new CliDaemon(0)
+    }
+
+    def cleanupSpec() {
+        daemon.close()
+        server.stop()
+        otherServer.stop()
+    }
+
+    /**
+     * Run msc-consensus against the stub server and return [output lines, exit status]
+     */
+    List consensus(String... args) {
+        def bytes = new ByteArrayOutputStream()
+        def out = new PrintStream(bytes, true, "UTF-8")
+        def argv = ["msc-consensus", "-rpcport", server.getURL().port as String] + (args as List)
+        int status = daemon.run(argv as String[], out)
+        return [bytes.toString("UTF-8").readLines(), status]
+    }
+
+    int nonZeroHolders(long property) {
+        (0..<holders).count { chain.getBalance(property, it) != 0 } as int
+    }
+
+    def "snapshot of several properties as TSV"() {
+        when:
+        def (lines, status) = consensus("-property", "1,3")
+
+        then:
+        status == 0
+        lines.size() == nonZeroHolders(1) + nonZeroHolders(3)
+        lines.collect { it.split("\t")[0] }.toSet() == ["1", "3"].toSet()
+
+        when:
+        def fields = lines.find { it.startsWith("3\t") }.split("\t")
+        int holder = chain.getHolderIndex(fields[2])
+
+        then:
+        fields[1] == "2000"
+        fields[3] == chain.formatAmount(3, chain.getBalance(3, holder))
+    }
+
+    def "snapshot of all properties as JSON lines to a file"() {
+        given:
+        def file = File.createTempFile("snapshot", ".jsonl")
+        file.deleteOnExit()
+
+        when:
+        def (lines, status) = consensus("-property", "all", "-format", "jsonl", "-output", file.path)
+        def records = file.readLines().collect { new JsonSlurper().parseText(it) }
+
+        then:
+        status == 0
+        lines.isEmpty()
+        records.size() == (1..3).sum { nonZeroHolders(it) }
+        records.every { it.block == 2000 && it.address && it.balance && it.reserved }
+    }
+
+    def "binary snapshot"() {
+        given:
+        def file = File.createTempFile("snapshot", ".bin")
+        file.deleteOnExit()
+
+        when:
+        def (lines, status) = consensus("-property", "2", "-format", "binary", "-output", file.path)
+        def data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+        def magic = new byte[8]
+        data.readFully(magic)
+
+        then:
+        status == 0
+        new String(magic, "UTF-8") == SnapshotWriter.BINARY_MAGIC
+        data.readByte() == ('C' as char) as byte
+        data.readLong() == 2
+        data.readInt() == 2000
+
+        when:
+        int count = 0
+        while (data.readByte() == ('E' as char) as byte) {
+            data.readUTF()
+            data.readByte()
+            data.readLong()
+            data.readLong()
+            count++
+        }
+
+        then:
+        count == nonZeroHolders(2)
+
+        cleanup:
+        data?.close()
+    }
+
+    def "included entries are packed in arrival order and read back sorted by address"() {
+        given:
+        def entries = new Consensus.Entries()
+        [["b", "1.50000000", "0.00000000"], ["a", "2", "0"], ["c", "0.00000000", "0.00000000"], ["", "1", "0"],
+         ["d", "0", "3"]].each { entries.entry(it[0], it[1], it[2]) }
+
+        when:
+        def replayed = []
+        entries.replay({ address, balance, reserved -> replayed << address } as BalanceStreamParser.Handler)
+        def cursor = entries.sorted().cursor()
+        def sorted = []
+        def entry
+        while ((entry = cursor.next()) != null) {
+            sorted << entry.toList()
+        }
+
+        then:
+        entries.size() == 3
+        replayed == ["b", "a", "d"]
+        sorted == [["a", "2", "0"], ["b", "1.50000000", "0.00000000"], ["d", "0", "3"]]
+    }
+
+    def "comparing identical servers succeeds"() {
+        when:
+        def (lines, status) = consensus("-property", "all", "-compare", server.getURL().toString())
+
+        then:
+        status == 0
+        lines.last() == "Compared 3 properties, 0 mismatched"
+    }
+
+    def "comparing different servers lists the differences and fails"() {
+        when:
+        def (lines, status) = consensus("-property", "1", "-compare", otherServer.getURL().toString())
+
+        then:
+        status == 1
+        lines.last() == "Compared 1 properties, 1 mismatched: [1]"
+        lines.size() > 2
+    }
+}
@@ -0,0 +1,102 @@
+package foundation.omni.consensus
+
+import foundation.omni.CurrencyID
+import spock.lang.Specification
+
+/**
+ * Test Specification for single-pass consensus verification
+ */
+class ConsensusVerifierSpec extends Specification {
+
+    static ConsensusSnapshot snapshot(Map<String, ConsensusEntry> entries, Long blockHeight = 1) {
+        return new ConsensusSnapshot(currencyID: CurrencyID.MSC, blockHeight: blockHeight, sourceType: "TEST DATA",
+                sourceURI: "http://localhost".toURI(), entries: new TreeMap<String, ConsensusEntry>(entries))
+    }
+
+    static Map<String, ConsensusEntry> generate(int count) {
+        def entries = [:]
+        count.times { i -> entries[String.format("addr%07d", i)] = new ConsensusEntry(balance: i, reserved: 0) }
+        return entries
+    }
+
+    def "identical snapshots are consistent"() {
+        when:
+        def report = new ConsensusVerifier().verify(new ConsensusComparison(SnapshotData.small1(), SnapshotData.small1()))
+
+        then:
+        report.consistent
+        report.compared == 3
+        report.balanceDelta == 0
+        report.mismatches.isEmpty()
+    }
+
+    def "differences and missing entries are reported"() {
+        when:
+        def report = new ConsensusVerifier().verify(new ConsensusComparison(SnapshotData.small1(), SnapshotData.small2()))
+
+        then:
+        !report.consistent
+        report.compared == 3
+        report.mismatches*.address == ["b", "c"]
+        report.missingIn1 == 0
+        report.missingIn2 == 1
+        report.balanceDelta == 1G
+        report.reservedDelta == 1G
+        report.summary(1).contains("b: 1.5/1.5 != 1.5/0.5")
+        report.summary(1).contains("1 more")
+    }
+
+    def "reserved amounts can be ignored"() {
+        when:
+        def report = new ConsensusVerifier(2, false).verify(new ConsensusComparison(SnapshotData.small1(), SnapshotData.small2()))
+
+        then:
+        report.mismatches*.address == ["c"]
+    }
+
+    def "amounts are compared numerically"() {
+        given:
+        def c1 = snapshot([a: new ConsensusEntry(balance: 1.0G, reserved: 0G)])
+        def c2 = snapshot([a: new ConsensusEntry(balance: 1.00000000G, reserved: 0.00000000G)])
+
+        expect:
+        new ConsensusVerifier().verify(new ConsensusComparison(c1, c2)).consistent
+    }
+
+    def "large snapshots are split over threads and mismatches stay in address order"() {
+        given:
+        def entries1 = generate(100000)
+        def entries2 = generate(100000)
+        [99999, 5, 50000].each { i ->
+            entries2[String.format("addr%07d", i)] = new ConsensusEntry(balance: i + 1, reserved: 0)
+        }
+
+        when:
+        def report = new ConsensusVerifier(4).verify(new ConsensusComparison(snapshot(entries1), snapshot(entries2)))
+
+        then:
+        report.compared == 100000
+        report.mismatches*.address == ["addr0000005", "addr0050000", "addr0099999"]
+        report.balanceDelta == -3
+    }
+
+    def "block height mismatch is inconsistent"() {
+        expect:
+        !new ConsensusVerifier().verify(new ConsensusComparison(snapshot([:], 1), snapshot([:], 2))).consistent
+    }
+
+    def "full diff is written as tab-separated values"() {
+        given:
+        def report = new ConsensusVerifier().verify(new ConsensusComparison(SnapshotData.small1(), SnapshotData.small2()))
+        def writer = new StringWriter()
+
+        when:
+        report.writeDiff(writer)
+        def lines = writer.toString().readLines()
+
+        then:
+        lines.size() == 3
+        lines[1] == "b\t1.5\t1.5\t1.5\t0.5\t0.0"
+        lines[2] == "c\t1\t0\t\t\t1"
+    }
+}
@@ -0,0 +1,79 @@
+package foundation.omni.deposit
+
+import com.google.bitcoin.core.AddressFormatException
+import com.google.bitcoin.crypto.HDKeyDerivation
+import foundation.omni.MPMainNetParams
+import foundation.omni.MPRegTestParams
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Test Specification for DepositAddressGenerator
+ */
+class DepositAddressGeneratorSpec extends Specification {
+    /** Master key of BIP 32 test vector 1, seed 000102030405060708090a0b0c0d0e0f */
+    static final String vector1xpub = "xpub661MyMwAqRbcFtXgS5sYJABqqG9YLmC4Q1Rdap9gSE8NqtwybGhePY2gZ29ESFjqJoCu1Rupje8YtGqsefD265TMg7usUDFdp6W1EGMcet8"
+    static final String vector1xprv = "xprv9s21ZrQH143K3QTDL4LXw2F7HEK3wJUD2nW2nRk4stbPy6cq3jPPqjiChkVvvNKmPGJxWUtg6LnF5kejMRNNU3TGtRBeJgk33yuGBxrMPHi"
+
+    @Shared
+    def master = HDKeyDerivation.createMasterPrivateKey("000102030405060708090a0b0c0d0e0f".decodeHex())
+    @Shared
+    def generator = DepositAddressGenerator.fromExtendedPublicKey(MPMainNetParams.get(), vector1xpub)
+
+    def cleanupSpec() {
+        generator.shutdown()
+    }
+
+    def "addresses are those of the external chain keys of the private account key"() {
+        expect:
+        generator.getAddress(index) ==
+                HDKeyDerivation.deriveChildKey(HDKeyDerivation.deriveChildKey(master, 0), index).toECKey()
+                        .toAddress(MPMainNetParams.get().params)
+
+        where:
+        index << [0, 1, 2, 1000, Integer.MAX_VALUE]
+    }
+
+    def "a range of addresses is derived in order"() {
+        when:
+        def addresses = generator.getAddresses(990, 1234)
+
+        then:
+        addresses.size() == 1234
+        addresses[0] == generator.getAddress(990)
+        addresses[1233] == generator.getAddress(990 + 1233)
+        addresses.toSet().size() == 1234
+    }
+
+    def "a generator can be created from a key instead of its serialized form"() {
+        setup:
+        def fromKey = new DepositAddressGenerator(MPMainNetParams.get(), master, 1)
+
+        expect:
+        fromKey.getAddresses(0, 10) == generator.getAddresses(0, 10)
+
+        cleanup:
+        fromKey.shutdown()
+    }
+
+    def "private and other networks' extended keys are rejected"() {
+        when:
+        DepositAddressGenerator.fromExtendedPublicKey(params, key)
+
+        then:
+        thrown(AddressFormatException)
+
+        where:
+        params                 | key
+        MPMainNetParams.get()  | vector1xprv
+        MPRegTestParams.get()  | vector1xpub
+    }
+
+    def "indexes of hardened keys are rejected"() {
+        when:
+        generator.getAddresses(Integer.MAX_VALUE, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
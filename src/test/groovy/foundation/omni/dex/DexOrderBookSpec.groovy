@@ -0,0 +1,97 @@
+package foundation.omni.dex
+
+import com.google.bitcoin.core.Sha256Hash
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for the DEx order book, without a server
+ */
+class DexOrderBookSpec extends Specification {
+    static final long COIN = 100000000L
+
+    static DexOffer offer(int n, def property, String seller, long amount, long unitPrice) {
+        return new DexOffer(Sha256Hash.create("offer${n}".bytes), property, seller, amount,
+                (amount * unitPrice).intdiv(COIN) as long, unitPrice, 10, 10000, 0)
+    }
+
+    def book = new DexOrderBook(null)
+
+    def "offers are sorted by unit price per property"() {
+        when:
+        book.update([offer(1, MSC, "a", 5 * COIN, 30000),
+                     offer(2, MSC, "b", 2 * COIN, 10000),
+                     offer(3, TMSC, "c", 1 * COIN, 5000),
+                     offer(4, MSC, "c", 3 * COIN, 20000)], 100)
+
+        then:
+        book.getBestOffer(MSC).seller == "b"
+        book.getOffers(MSC)*.seller == ["b", "c", "a"]
+        book.getBestOffer(TMSC).seller == "c"
+        book.getBestOffer(MaidSafeCoin) == null
+        book.blockHeight == 100
+    }
+
+    def "depth is the total amount at or below a price"() {
+        when:
+        book.update([offer(1, MSC, "a", 5 * COIN, 30000),
+                     offer(2, MSC, "b", 2 * COIN, 10000),
+                     offer(3, MSC, "c", 3 * COIN, 20000)], 1)
+
+        then:
+        book.getDepth(MSC, 9999) == 0
+        book.getDepth(MSC, 10000) == 2 * COIN
+        book.getDepth(MSC, 25000) == 5 * COIN
+        book.getDepth(MSC, Long.MAX_VALUE) == 10 * COIN
+        book.getOffers(MSC, 20000)*.seller == ["b", "c"]
+    }
+
+    def "offers can be looked up by seller and txid"() {
+        given:
+        def first = offer(1, MSC, "a", COIN, 10000)
+        def second = offer(2, TMSC, "a", COIN, 20000)
+
+        when:
+        book.update([first, second, offer(3, MSC, "b", COIN, 10000)], 1)
+
+        then:
+        book.getOffersBySeller("a") == [first, second]
+        book.getOffersBySeller("nobody") == []
+        book.getOffer(second.txid) == second
+    }
+
+    def "updates replace removed and changed offers"() {
+        given:
+        book.update([offer(1, MSC, "a", 5 * COIN, 30000), offer(2, MSC, "b", 2 * COIN, 10000)], 1)
+
+        when: "b's offer is removed and a's is partially accepted"
+        book.update([offer(1, MSC, "a", 4 * COIN, 30000)], 2)
+
+        then:
+        book.getOffers(MSC).size() == 1
+        book.getBestOffer(MSC).amountAvailable == 4 * COIN
+        book.getOffersBySeller("b") == []
+    }
+
+    def "offers are converted from getactivedexsells_MP results"() {
+        when:
+        def offer = DexOffer.fromJson([txid           : "b" * 64,
+                                       propertyid     : 1,
+                                       seller         : "mfaiZGBkY4mBqt3PHPD2qWgbaafGa7vR64",
+                                       amountavailable: "1.50000000",
+                                       bitcoindesired : "0.30000000",
+                                       unitprice      : "0.20000000",
+                                       timelimit      : 10,
+                                       minimumfee     : "0.00010000",
+                                       amountaccepted : "0.00000000"])
+
+        then:
+        offer.propertyId == MSC
+        offer.amountAvailable == 150000000L
+        offer.bitcoinDesired == 30000000L
+        offer.unitPrice == 20000000L
+        offer.minimumFee == 10000L
+        offer.timeLimit == 10
+    }
+}
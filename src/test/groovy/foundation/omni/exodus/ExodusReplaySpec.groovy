@@ -0,0 +1,177 @@
+package foundation.omni.exodus
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.bitcoin.core.Address
+import com.google.bitcoin.core.Block
+import com.google.bitcoin.core.ECKey
+import com.google.bitcoin.core.Sha256Hash
+import com.google.bitcoin.core.Transaction
+import com.google.bitcoin.core.TransactionInput
+import com.google.bitcoin.core.TransactionOutPoint
+import com.msgilligan.bitcoin.rpc.BitcoinClient
+import com.msgilligan.bitcoin.rpc.JsonRPCException
+import com.msgilligan.bitcoin.rpc.RPCTransport
+import foundation.omni.MPRegTestParams
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Test Specification for the Exodus fundraiser arithmetic and the replay of a small fixed chain
+ */
+class ExodusReplaySpec extends Specification {
+    static final long COIN = 100000000L
+    static final long WEEK = 604800L
+    static final long deadline = ExodusReplay.EXODUS_DEADLINE
+    static final netParams = MPRegTestParams.get()
+    static final params = netParams.params
+
+    /**
+     * Serves a fixed chain of raw blocks, and the transactions spent by its purchases
+     */
+    static class FakeNode implements RPCTransport {
+        def mapper = new ObjectMapper()
+        List<byte[]> blocks = []
+        Map<String, Transaction> transactions = [:]
+        Map<String, Integer> heights = [:]
+        int maxRequested = -1
+
+        void addBlock(List<Transaction> txs) {
+            int height = blocks.size()
+            def header = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN)
+            header.putInt(2).put(new byte[64]).putInt((int) blockTime(height)).putInt(0x207fffff).putInt(height)
+            def bytes = new ByteArrayOutputStream()
+            bytes.write(header.array())
+            bytes.write(txs.size())
+            txs.each { bytes.write(it.bitcoinSerialize()) }
+            blocks << bytes.toByteArray()
+            heights[new Block(params, bytes.toByteArray()).hashAsString] = height
+        }
+
+        static long blockTime(int height) {
+            return deadline - 2 * WEEK + 600 * height
+        }
+
+        /* A transaction outside the chain paying an address, found only with getrawtransaction */
+        Transaction fund(Address to, long value) {
+            def tx = new Transaction(params)
+            def outPoint = new TransactionOutPoint(params, 0, Sha256Hash.create([transactions.size()] as byte[]))
+            tx.addInput(new TransactionInput(params, tx, new byte[0], outPoint))
+            tx.addOutput(BigInteger.valueOf(value), to)
+            transactions[tx.hashAsString] = tx
+            return tx
+        }
+
+        @Override
+        synchronized String exchange(String request) {
+            def json = mapper.readValue(request, Object)
+            def answer = { r ->
+                switch (r.method) {
+                    case "getblockcount":
+                        return blocks.size() - 1
+                    case "getblockhash":
+                        maxRequested = Math.max(maxRequested, r.params[0] as int)
+                        if (r.params[0] >= blocks.size()) {
+                            throw new JsonRPCException("Block height out of range")
+                        }
+                        return new Block(params, blocks[r.params[0] as int]).hashAsString
+                    case "getblock":
+                        return BitcoinClient.byteArrayToHexString(blocks[heights[r.params[0]]])
+                    case "getrawtransaction":
+                        return BitcoinClient.transactionToHex(transactions[r.params[0]])
+                }
+            }
+            def respond = { r -> [result: answer(r), error: null, id: r.id] }
+            return mapper.writeValueAsString(json instanceof List ? json.collect(respond) : respond(json))
+        }
+    }
+
+    @Unroll
+    def "#btc BTC invested #description generates #msc MSC"() {
+        expect:
+        ExodusReplay.generated(btc * COIN as long, blockTime) == msc * COIN
+
+        where:
+        description               | btc | blockTime                 | msc
+        "at the deadline"         | 1   | deadline                  | 100
+        "after the deadline"      | 1   | deadline + WEEK           | 100
+        "one week early"          | 1   | deadline - WEEK           | 110
+        "four weeks early"        | 10  | deadline - 4 * WEEK       | 1400
+        "half a week early"       | 2   | deadline - WEEK.intdiv(2) | 210
+    }
+
+    def "allocations are summed per sender"() {
+        setup:
+        def purchases = [
+                new ExodusPurchase(Sha256Hash.create("1".bytes), 1, deadline, "b", COIN, 100 * COIN),
+                new ExodusPurchase(Sha256Hash.create("2".bytes), 2, deadline, "a", COIN, 100 * COIN),
+                new ExodusPurchase(Sha256Hash.create("3".bytes), 3, deadline, "b", COIN, 100 * COIN)]
+
+        when:
+        def allocations = ExodusReplay.allocations(purchases)
+
+        then:
+        allocations == [a: 100 * COIN, b: 200 * COIN]
+        allocations.firstKey() == "a"
+    }
+
+    def "a chain below the end of the Exodus range is replayed up to its tip"() {
+        setup:
+        def node = new FakeNode()
+        def alice = new ECKey().toAddress(params)
+        def bob = new ECKey().toAddress(params)
+        def other = new ECKey().toAddress(params)
+        def aliceCoins = node.fund(alice, 100000000)
+        def aliceChange = node.fund(alice, 30000000)
+        def bobCoins = node.fund(bob, 70000000)
+        def early = node.fund(alice, 100000000)
+        def late = node.fund(alice, 100000000)
+
+        node.addBlock([coinbase(0)])
+        (1..3).each { node.addBlock([coinbase(it)]) }
+        node.addBlock([coinbase(4), pay([early], netParams.exodusAddress, 50000000)])
+        node.addBlock([coinbase(5)])
+        node.addBlock([coinbase(6), pay([aliceCoins], netParams.exodusAddress, 50000000)])
+        node.addBlock([coinbase(7), pay([aliceChange, bobCoins], netParams.exodusAddress, 90000000)])
+        node.addBlock([coinbase(8), pay([late], other, 50000000)])
+
+        def client = new BitcoinClient(new URL("http://localhost:1"), "user", "pass")
+        client.setTransport(node)
+
+        when:
+        def replay = new ExodusReplay(client, netParams, 2, 4)
+        def purchases = replay.replay()
+
+        then: "purchases outside the range and payments to other addresses are ignored"
+        node.maxRequested == 8
+        replay.lastReplayedBlock == 8
+        purchases*.blockHeight == [6, 7]
+
+        and: "each purchase is credited to the address contributing the most"
+        purchases[0].sender == alice.toString()
+        purchases[0].invested == 50000000
+        purchases[0].generated == ExodusReplay.generated(50000000, FakeNode.blockTime(6))
+        purchases[1].sender == bob.toString()
+        purchases[1].invested == 90000000
+        purchases[1].blockTime == FakeNode.blockTime(7)
+    }
+
+    private static Transaction coinbase(int height) {
+        def tx = new Transaction(params)
+        tx.addInput(new TransactionInput(params, tx, [1, height] as byte[]))
+        tx.addOutput(BigInteger.valueOf(50 * COIN), new ECKey().toAddress(params))
+        return tx
+    }
+
+    /* Spend output 0 of each transaction, paying the rest back to the first input's address */
+    private static Transaction pay(List<Transaction> spent, Address to, long value) {
+        def tx = new Transaction(params)
+        spent.each { tx.addInput(new TransactionInput(params, tx, new byte[0], new TransactionOutPoint(params, 0, it.hash))) }
+        tx.addOutput(BigInteger.valueOf(value), to)
+        long change = spent.sum { it.outputs[0].value.longValue() } - value - 10000
+        tx.addOutput(BigInteger.valueOf(change), spent[0].outputs[0].scriptPubKey.getToAddress(params))
+        return tx
+    }
+}
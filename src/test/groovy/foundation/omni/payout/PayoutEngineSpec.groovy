@@ -0,0 +1,173 @@
+package foundation.omni.payout
+
+import com.google.bitcoin.core.ECKey
+import com.google.bitcoin.core.Transaction
+import com.msgilligan.bitcoin.rpc.RPCTransport
+import foundation.omni.MPRegTestParams
+import foundation.omni.rpc.MastercoinClient
+import foundation.omni.rpc.stub.StubChain
+import foundation.omni.rpc.stub.StubRPCServer
+import foundation.omni.tx.MemoryKeySource
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.MSC
+import static foundation.omni.payout.PayoutResult.Status.FAIL
+import static foundation.omni.payout.PayoutResult.Status.OK
+import static foundation.omni.payout.PayoutResult.Status.UNKNOWN
+
+/**
+ * Test Specification for the PayoutEngine, against the stub JSON-RPC server
+ */
+class PayoutEngineSpec extends Specification {
+    /**
+     * Fails batches of sendrawtransaction calls like a timeout would, before or after the server handled them
+     */
+    static class LosingTransport implements RPCTransport {
+        RPCTransport delegate
+        volatile boolean losing
+        volatile boolean forward
+        volatile int sends
+
+        @Override
+        String exchange(String request) {
+            if (request.contains('"sendrawtransaction"')) {
+                sends++
+                if (losing) {
+                    if (forward) {
+                        delegate.exchange(request)
+                    }
+                    throw new SocketTimeoutException("Read timed out")
+                }
+            }
+            return delegate.exchange(request)
+        }
+    }
+
+    static final netParams = MPRegTestParams.get()
+    static final params = netParams.params
+
+    StubChain chain = new StubChain(params, 2, 100, 1, 100)
+    StubRPCServer server = new StubRPCServer(chain)
+    MastercoinClient client
+    MemoryKeySource keys = new MemoryKeySource()
+    ECKey senderKey = new ECKey()
+    def sender = senderKey.toAddress(params)
+    File journalFile
+
+    def setup() {
+        server.start()
+        client = new MastercoinClient(server.getURL(), StubRPCServer.RPC_USER, StubRPCServer.RPC_PASSWORD)
+        keys.addKey(senderKey)
+        journalFile = File.createTempFile("payouts", ".tsv")
+        journalFile.delete()
+    }
+
+    def cleanup() {
+        server.stop()
+        journalFile.delete()
+    }
+
+    def "inputs are split, and payouts are built, signed locally and broadcast"() {
+        setup:
+        def engine = new PayoutEngine(client, netParams, keys, 2, 4)
+        chain.fund(sender, 100000000)
+        chain.mine(1)
+        def payouts = (1..10).collect { new Payout(new ECKey().toAddress(params), MSC, it) }
+
+        when:
+        def splits = engine.splitInputs(sender, 10, 0.001)
+        chain.mine(1)
+        def journal = new PayoutJournal(journalFile)
+        def results = engine.run([sender], payouts, journal, null)
+        journal.close()
+
+        then:
+        splits.size() == 1
+        results.size() == 10
+        results.every { it.success }
+        results*.txid.toSet().size() == 10
+        results.every { result ->
+            def tx = new Transaction(params, chain.getSubmitted(result.txid).raw)
+            tx.inputs.size() == 1 && tx.inputs[0].outpoint.hash == splits[0]
+        }
+        new PayoutJournal(journalFile).completedIndexes == (0..9) as Set
+    }
+
+    def "payouts whose response was lost are not resent, but reconciled"() {
+        setup:
+        def transport = new LosingTransport(delegate: client.transport, losing: true, forward: true)
+        client.transport = transport
+        def engine = new PayoutEngine(client, netParams, keys, 1, 10)
+        3.times { chain.fund(sender, 100000) }
+        chain.mine(1)
+        def payouts = (1..3).collect { new Payout(new ECKey().toAddress(params), MSC, it) }
+
+        when: "the response to the batch is lost"
+        def journal = new PayoutJournal(journalFile)
+        def lost = engine.run([sender], payouts, journal, null)
+        journal.close()
+
+        then: "the payouts are unknown, though the node accepted them"
+        lost*.status == [UNKNOWN] * 3
+        lost.every { chain.getSubmitted(it.txid) != null }
+
+        when: "the run is resumed"
+        transport.losing = false
+        transport.sends = 0
+        journal = new PayoutJournal(journalFile)
+        def resumed = engine.run([sender], payouts, journal, null)
+        journal.close()
+
+        then: "the payouts are found instead of being sent again"
+        transport.sends == 0
+        resumed*.status == [OK] * 3
+        resumed*.txid.toSet() == lost*.txid.toSet()
+        new PayoutJournal(journalFile).completedIndexes == [0, 1, 2] as Set
+    }
+
+    def "unknown payouts the node never received are sent again after reconciliation"() {
+        setup:
+        def transport = new LosingTransport(delegate: client.transport, losing: true, forward: false)
+        client.transport = transport
+        def engine = new PayoutEngine(client, netParams, keys, 1, 10)
+        3.times { chain.fund(sender, 100000) }
+        chain.mine(1)
+        def payouts = (1..3).collect { new Payout(new ECKey().toAddress(params), MSC, it) }
+
+        when: "the batch never reaches the node"
+        def journal = new PayoutJournal(journalFile)
+        def lost = engine.run([sender], payouts, journal, null)
+        journal.close()
+
+        and: "the run is resumed"
+        transport.losing = false
+        journal = new PayoutJournal(journalFile)
+        def resumed = engine.run([sender], payouts, journal, null)
+        journal.close()
+
+        then:
+        lost*.status == [UNKNOWN] * 3
+        lost.every { chain.getSubmitted(it.txid) == null }
+        resumed.findAll { it.status == FAIL }*.index.toSet() == [0, 1, 2] as Set
+        resumed.findAll { it.status == OK }*.index.toSet() == [0, 1, 2] as Set
+        resumed.findAll { it.status == OK }.every { chain.getSubmitted(it.txid) != null }
+    }
+
+    def "payouts beyond the sender's inputs fail without being sent"() {
+        setup:
+        def engine = new PayoutEngine(client, netParams, keys, 1, 4)
+        chain.fund(sender, 100000)
+        chain.fund(sender, 100000)
+        chain.mine(1)
+        def payouts = (1..3).collect { new Payout(new ECKey().toAddress(params), MSC, it) }
+
+        when:
+        def journal = new PayoutJournal(journalFile)
+        def results = engine.run([sender], payouts, journal, null).sort { it.index }
+        journal.close()
+
+        then:
+        results*.success == [true, true, false]
+        results[2].error.startsWith("Insufficient funds")
+    }
+}
@@ -0,0 +1,78 @@
+package foundation.omni.payout
+
+import com.google.bitcoin.core.Address
+import com.google.bitcoin.core.Sha256Hash
+import com.google.bitcoin.params.MainNetParams
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for PayoutJournal and payout payloads
+ */
+class PayoutJournalSpec extends Specification {
+    static final Address destination = new Address(MainNetParams.get(), "1GtCqbyqTzbvtBWMMRgkwkxenPJNzz1TY4")
+    static final Address sender = new Address(MainNetParams.get(), "1EXoDusjGwvnjZUyKkxZ4UHEf77z6A5S4P")
+    static final Sha256Hash txid = new Sha256Hash("b8a1b4c53e2e4ff1f5f8a87c6d3e0e0b4e8c3bd7b1a9a9e9b9a7f3c8d1e2f3a4")
+
+    def "successful payouts are read back as completed"() {
+        setup:
+        def file = File.createTempFile("payouts", ".tsv")
+        file.delete()
+        def payout = new Payout(destination, MSC, 100)
+
+        when: "we record a success and a failure"
+        def journal = new PayoutJournal(file)
+        journal.record(PayoutResult.success(0, payout, sender, txid))
+        journal.record(PayoutResult.failure(1, payout, sender, "Insufficient\tfunds"))
+        journal.close()
+
+        and: "reopen the journal"
+        def reopened = new PayoutJournal(file)
+        reopened.close()
+
+        then: "only the successful payout is complete"
+        reopened.completedIndexes == [0] as Set
+        file.readLines().size() == 2
+
+        cleanup:
+        file.delete()
+    }
+
+    def "unknown payouts are neither completed nor forgotten until a later result is recorded"() {
+        setup:
+        def file = File.createTempFile("payouts", ".tsv")
+        file.delete()
+        def payout = new Payout(destination, MSC, 100)
+
+        when:
+        def journal = new PayoutJournal(file)
+        journal.record(PayoutResult.unknown(0, payout, sender, txid, "Read timed out"))
+        journal.record(PayoutResult.unknown(1, payout, sender, txid, "Read timed out"))
+        journal.record(PayoutResult.success(1, payout, sender, txid))
+        journal.close()
+        def reopened = new PayoutJournal(file)
+        reopened.close()
+
+        then:
+        reopened.completedIndexes == [1] as Set
+        reopened.unknownTxids == [0: txid]
+
+        cleanup:
+        file.delete()
+    }
+
+    def "simple send payload matches a valid reference payload"() {
+        expect:
+        PayoutEngine.createSimpleSendHex(new Payout(destination, MSC, 1)) == "00000000000000010000000000000001"
+        PayoutEngine.createSimpleSendHex(new Payout(destination, TMSC, 0xcafebabeL)) == "000000000000000200000000cafebabe"
+    }
+
+    def "payout amounts must be positive"() {
+        when:
+        new Payout(destination, MSC, 0)
+
+        then:
+        IllegalArgumentException e = thrown()
+    }
+}
@@ -0,0 +1,98 @@
+package foundation.omni.property
+
+import foundation.omni.CurrencyID
+import foundation.omni.PropertyType
+import foundation.omni.rpc.MastercoinClient
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for PropertyRegistry and PropertyInfo, against a fake server
+ */
+class PropertyRegistrySpec extends Specification {
+    static final CurrencyID testSPT = CurrencyID.valueOf(CurrencyID.MAX_REAL_ECOSYSTEM_VALUE + 1)
+
+    static class FakePropertyClient extends MastercoinClient {
+        List<Object> properties = [
+                [propertyid: 3, name: "MaidSafeCoin", category: "", subcategory: "", data: "", url: "", divisible: false],
+                [propertyid: 31, name: "TetherUS", category: "", subcategory: "", data: "", url: "", divisible: true]]
+        int getPropertyCalls = 0
+
+        FakePropertyClient() {
+            super(new URL("http://localhost:1"), "user", "pass")
+        }
+
+        @Override
+        List<Object> listproperties_MP() {
+            return properties
+        }
+
+        @Override
+        Map<String, Object> getproperty_MP(CurrencyID currency) {
+            getPropertyCalls++
+            return [name: "Test SPT", category: "", subcategory: "", data: "", url: "", divisible: true]
+        }
+    }
+
+    def client = new FakePropertyClient()
+    def registry = new PropertyRegistry(client)
+
+    def "MSC and TMSC are known without a server"() {
+        expect:
+        registry.getIfPresent(MSC).divisible
+        registry.getIfPresent(TMSC).divisible
+        registry.size() == 2
+    }
+
+    def "refresh only adds new properties"() {
+        when:
+        def added = registry.refresh()
+
+        then:
+        added == 2
+        registry.getIfPresent(MaidSafeCoin).type == PropertyType.INDIVISIBLE
+        registry.getIfPresent(TetherUS).name == "TetherUS"
+
+        when: "a new property appears"
+        client.properties << [propertyid: 100, name: "New", category: "", subcategory: "", data: "", url: "", divisible: false]
+        added = registry.refresh()
+
+        then:
+        added == 1
+        registry.size() == 5
+        registry.getIfPresent(CurrencyID.valueOf(100)).name == "New"
+    }
+
+    def "unknown properties are fetched once"() {
+        when:
+        def first = registry.get(testSPT)
+        def second = registry.get(testSPT)
+
+        then:
+        first.is(second)
+        first.name == "Test SPT"
+        client.getPropertyCalls == 1
+    }
+
+    def "amounts are converted according to divisibility"() {
+        given:
+        def divisible = new PropertyInfo(MSC, "MSC", "", "", "", "", PropertyType.DIVISIBLE)
+        def indivisible = new PropertyInfo(MaidSafeCoin, "MaidSafeCoin", "", "", "", "", PropertyType.INDIVISIBLE)
+
+        expect:
+        divisible.format(150000000L) == "1.50000000"
+        divisible.parse("1.5") == 150000000L
+        divisible.toDecimal(1) == 0.00000001
+        indivisible.format(15) == "15"
+        indivisible.parse("15") == 15L
+    }
+
+    def "amounts with too many decimal places are rejected"() {
+        when:
+        new PropertyInfo(MaidSafeCoin, "MaidSafeCoin", "", "", "", "", PropertyType.INDIVISIBLE).parse("1.5")
+
+        then:
+        thrown(ArithmeticException)
+    }
+}
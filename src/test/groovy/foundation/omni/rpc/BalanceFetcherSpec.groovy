@@ -0,0 +1,144 @@
+package foundation.omni.rpc
+
+import com.google.bitcoin.core.ECKey
+import com.google.bitcoin.params.MainNetParams
+import com.msgilligan.bitcoin.rpc.JsonRPCException
+import foundation.omni.CurrencyID
+import foundation.omni.PropertyType
+import foundation.omni.property.PropertyInfo
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+import static foundation.omni.PropertyType.DIVISIBLE
+import static foundation.omni.PropertyType.INDIVISIBLE
+
+/**
+ * Test Specification for batched balance queries, against a fake server
+ */
+class BalanceFetcherSpec extends Specification {
+
+    /**
+     * Answers getbalance_MP batches with a balance derived from the request
+     */
+    static class FakeBalanceClient extends MastercoinClient {
+        int blockCount = 100
+        int batches = 0
+        int requests = 0
+
+        FakeBalanceClient() {
+            super(new URL("http://localhost:1"), "user", "pass")
+        }
+
+        @Override
+        Integer getBlockCount() {
+            return blockCount
+        }
+
+        @Override
+        synchronized List<Map<String, Object>> sendBatch(List<Map<String, Object>> batch) {
+            batches++
+            requests += batch.size()
+            return batch.collect { request ->
+                def (address, currency) = request.params
+                [id: request.id, error: null, result: [balance: "${currency}.00000000", reserved: "0.00000001"]]
+            }
+        }
+    }
+
+    def client = new FakeBalanceClient()
+    def fetcher = new BalanceFetcher(client, 10, 2)
+    def addresses = (1..25).collect { new ECKey().toAddress(MainNetParams.get()) }
+
+    def "balances are fetched in batches into a matrix"() {
+        when:
+        def matrix = fetcher.getBalances(addresses, [MSC, TMSC])
+
+        then: "50 requests are sent in 5 batches"
+        client.requests == 50
+        client.batches == 5
+
+        and:
+        matrix.blockHeight == 100
+        matrix.getBalance(addresses[3], MSC) == 100000000L
+        matrix.getBalance(addresses[3], TMSC) == 200000000L
+        matrix.getReserved(24, 1) == 1L
+    }
+
+    def "balances are cached until the next block"() {
+        given:
+        fetcher.getBalances(addresses, [MSC])
+
+        when: "the same and additional balances are requested in the same block"
+        fetcher.getBalances(addresses, [MSC, TMSC])
+
+        then: "only the additional balances are fetched"
+        client.requests == 50
+
+        when: "a block is found"
+        client.blockCount++
+        def matrix = fetcher.getBalances(addresses, [MSC])
+
+        then:
+        client.requests == 75
+        matrix.blockHeight == 101
+    }
+
+    def "amounts are converted to the smallest unit of the property"() {
+        expect:
+        BalanceFetcher.toUnits(amount, property(type)) == units
+
+        where:
+        amount        | type        | units
+        "1.00000000"  | DIVISIBLE   | 100000000L
+        "0.00000001"  | DIVISIBLE   | 1L
+        "1.0E+10"     | DIVISIBLE   | 1000000000000000000L
+        "42"          | DIVISIBLE   | 4200000000L
+        "42"          | INDIVISIBLE | 42L
+        0             | INDIVISIBLE | 0L
+    }
+
+    def "amounts with more decimal places than the property allows are rejected"() {
+        when:
+        BalanceFetcher.toUnits(amount, property(type))
+
+        then:
+        thrown(ArithmeticException)
+
+        where:
+        amount        | type
+        "0.000000005" | DIVISIBLE
+        "1.5"         | INDIVISIBLE
+    }
+
+    def "the fetcher's threads are released when the client is closed"() {
+        given:
+        client.getBalances(addresses, [MSC])
+
+        when:
+        client.close()
+        def matrix = client.getBalances(addresses, [MSC])
+
+        then: "a new fetcher is started on demand"
+        matrix.getBalance(addresses[0], MSC) == 100000000L
+    }
+
+    static PropertyInfo property(PropertyType type) {
+        return new PropertyInfo(new CurrencyID(3), "Test", "", "", "", "", type)
+    }
+
+    def "errors in a batch are reported"() {
+        given:
+        def failing = new FakeBalanceClient() {
+            @Override
+            synchronized List<Map<String, Object>> sendBatch(List<Map<String, Object>> batch) {
+                return batch.collect { [id: it.id, error: [code: -8, message: "Property identifier does not exist"], result: null] }
+            }
+        }
+
+        when:
+        new BalanceFetcher(failing).getBalances(addresses, [MSC])
+
+        then:
+        thrown(JsonRPCException)
+    }
+}
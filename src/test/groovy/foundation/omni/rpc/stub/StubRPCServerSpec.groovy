@@ -0,0 +1,209 @@
+package foundation.omni.rpc.stub
+
+import com.google.bitcoin.core.Address
+import com.google.bitcoin.core.ECKey
+import com.google.bitcoin.core.Sha256Hash
+import com.google.bitcoin.core.Transaction
+import com.google.bitcoin.core.TransactionInput
+import com.google.bitcoin.core.TransactionOutPoint
+import com.google.bitcoin.params.MainNetParams
+import com.msgilligan.bitcoin.rpc.JsonRPCStatusException
+import foundation.omni.CurrencyID
+import foundation.omni.rpc.MastercoinClient
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Test Specification for the stub JSON-RPC server, using the real client
+ */
+class StubRPCServerSpec extends Specification {
+    static final params = MainNetParams.get()
+
+    @Shared StubChain chain
+    @Shared StubRPCServer server
+    @Shared MastercoinClient client
+
+    def setupSpec() {
+        chain = new StubChain(params, 5, 10000, 20, 1000)
+        server = new StubRPCServer(chain)
+        server.start()
+        client = new MastercoinClient(server.getURL(), StubRPCServer.RPC_USER, StubRPCServer.RPC_PASSWORD)
+    }
+
+    def cleanupSpec() {
+        server.stop()
+    }
+
+    def "block count, hashes and blocks are consistent"() {
+        when:
+        def height = client.getBlockCount()
+        def hash = client.getBlockHash(height)
+        def block = client.getBlock(hash)
+
+        then:
+        height == chain.getHeight()
+        block.height == height
+        block.tx.size() == 20
+        block.previousblockhash == client.getBlockHash(height - 1).toString()
+    }
+
+    def "all balances of a property are listed"() {
+        when:
+        def balances = client.getallbalancesforid_MP(new CurrencyID(3))
+
+        then:
+        balances.size() == 10000
+        balances[7].addressString == chain.getHolderAddress(7)
+        balances[7].balance == new BigDecimal(chain.formatAmount(3, chain.getBalance(3, 7)))
+    }
+
+    def "balances of synthetic and unknown addresses"() {
+        when:
+        def holder = client.getbalance_MP(new Address(params, chain.getHolderAddress(42)), new CurrencyID(4))
+        def stranger = client.getbalance_MP(new ECKey().toAddress(params), new CurrencyID(4))
+
+        then:
+        holder.balance == new BigDecimal(chain.getBalance(4, 42))
+        stranger.balance == 0
+    }
+
+    def "properties are listed"() {
+        when:
+        def properties = client.listproperties_MP()
+
+        then:
+        properties.size() == 5
+        properties*.propertyid == [1, 2, 3, 4, 5]
+        properties*.divisible == [true, true, true, false, true]
+    }
+
+    def "synthetic transactions have Omni details"() {
+        given:
+        def txid = chain.getSyntheticTxid(990, 3)
+
+        when:
+        def tx = client.getTransactionMP(txid)
+
+        then:
+        tx.txid == txid.toString()
+        tx.type == "Simple Send"
+        tx.confirmations == 11
+        tx.sendingaddress == chain.getHolderAddress((990 * 20 + 3) % 10000)
+    }
+
+    def "batches return one response per request, with per-entry errors"() {
+        given:
+        def requests = (1..50).collect { client.createRequest("getblockhash", [it]) }
+        requests << client.createRequest("getblockhash", [1000000])
+
+        when:
+        def responses = client.sendBatch(requests)
+
+        then:
+        responses.size() == 51
+        responses[0].result == chain.getBlockHash(1).toString()
+        responses[50].error.code == StubRPCServer.RPC_INVALID_PARAMETER
+    }
+
+    def "single request errors are reported with an HTTP error status"() {
+        when:
+        client.getTransactionMP(Sha256Hash.ZERO_HASH)
+
+        then:
+        JsonRPCStatusException e = thrown()
+        e.httpCode == 500
+    }
+
+    def "submitted raw transactions confirm when blocks are mined"() {
+        given:
+        def tx = new Transaction(params)
+        tx.addInput(new TransactionInput(params, tx, new byte[0], new TransactionOutPoint(params, 0, Sha256Hash.ZERO_HASH)))
+        tx.addOutput(BigInteger.valueOf(10000), new ECKey().toAddress(params))
+
+        when:
+        def txid = client.sendRawTransaction(tx)
+        def unconfirmed = client.getRawTransactionMap(txid).confirmations
+        client.generateBlocks(2)
+
+        then:
+        txid == tx.getHash()
+        unconfirmed == 0
+        client.getRawTransactionMap(txid).confirmations == 2
+        client.getRawTransaction(txid).getHash() == txid
+    }
+
+    def "transactions submitted with send_MP and sendrawtx_MP can be read back"() {
+        given:
+        def sender = new Address(params, chain.getHolderAddress(1))
+        def receiver = new Address(params, chain.getHolderAddress(2))
+
+        when:
+        def sent = client.send_MP(sender, receiver, new CurrencyID(3), 1.5)
+        def raw = client.sendrawtx_MP(sender, "00000000000000040000000000000007", receiver)
+        def unconfirmed = client.getTransactionMP(sent)
+        client.generateBlocks(1)
+        def sentTx = client.getTransactionMP(sent)
+        def rawTx = client.getTransactionMP(raw)
+
+        then:
+        !sent.equals(raw)
+        chain.parseSyntheticTxid(sent) == null
+        unconfirmed.confirmations == 0
+        sentTx.sendingaddress == sender.toString()
+        sentTx.referenceaddress == receiver.toString()
+        sentTx.propertyid == 3
+        new BigDecimal(sentTx.amount) == 1.5
+        sentTx.confirmations == 1
+        rawTx.propertyid == 4
+        rawTx.amount == "7"
+        rawTx.block == chain.getHeight()
+    }
+
+    def "funded outputs are listed and spent with the wallet calls"() {
+        given:
+        def funded = new ECKey().toAddress(params)
+        def destination = new ECKey().toAddress(params)
+        def fundingTxid = chain.fund(funded, 100000000)
+
+        when:
+        def unconfirmed = client.listUnspent(1, 9999999, [funded])
+        client.generateBlocks(1)
+        def unspent = client.listUnspent(1, 9999999, [funded])
+
+        then:
+        unconfirmed.isEmpty()
+        unspent.size() == 1
+        unspent[0].txid == fundingTxid.toString()
+        unspent[0].vout == 0
+        unspent[0].amount == 1.0
+        unspent[0].confirmations == 1
+
+        when:
+        def unsigned = client.createRawTransaction([[txid: unspent[0].txid, vout: unspent[0].vout]],
+                [(destination): 0.4, (funded): 0.5999])
+        def signed = client.signRawTransaction(unsigned)
+        def txid = client.sendRawTransaction((String) signed.hex)
+        client.generateBlocks(1)
+
+        then:
+        signed.complete
+        client.listUnspent(1, 9999999, [funded])*.txid == [txid.toString()]
+        client.listUnspent(1, 9999999, [destination])*.amount == [0.4]
+    }
+
+    def "latency is added to every exchange"() {
+        given:
+        server.setLatency(50, 0)
+
+        when:
+        def start = System.currentTimeMillis()
+        client.getBlockCount()
+        def elapsed = System.currentTimeMillis() - start
+
+        then:
+        elapsed >= 50
+
+        cleanup:
+        server.setLatency(0, 0)
+    }
+}
@@ -0,0 +1,87 @@
+package foundation.omni.sto
+
+import foundation.omni.PropertyType
+import foundation.omni.consensus.ConsensusEntry
+import foundation.omni.consensus.ConsensusSnapshot
+import foundation.omni.consensus.ConsensusStoCalculator
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for local "send to owners" distributions
+ * <p>
+ * Expected values are taken from the regtest plan in sto-testplan.tsv
+ */
+class StoCalculatorSpec extends Specification {
+    static final String sender = "sender"
+
+    def calculator = new StoCalculator()
+
+    @Unroll
+    def "#amount sent to owners holding #holdings distributes #expected"() {
+        setup:
+        def addresses = (0..<holdings.size()).collect { "owner${it}" } as String[]
+
+        when:
+        def distribution = calculator.calculate(sender, addresses, holdings as long[], amount)
+
+        then:
+        (0..<holdings.size()).collect { distribution.toMap()["owner${it}".toString()] ?: 0L } == expected
+        distribution.fee == fee
+
+        where:
+        holdings               | amount           | expected                             | fee
+        [1]                    | 1                | [1]                                  | 1
+        [100000000, 100000000] | 1000000000000000 | [500000000000000, 500000000000000]   | 2
+        [2, 1, 3]              | 6000000000       | [2000000000, 1000000000, 3000000000] | 3
+        [1, 1, 1]              | 10               | [2, 4, 4]                            | 3
+        [1, 1, 1]              | 1                | [0, 0, 1]                            | 1
+        [50, 0, 50]            | 3                | [1, 0, 2]                            | 2
+    }
+
+    def "the sender is not an owner"() {
+        when:
+        def distribution = calculator.calculate(sender, ["a", sender] as String[], [1, 100] as long[], 10)
+
+        then:
+        distribution.toMap() == [a: 10L]
+    }
+
+    def "there are no receivers if only the sender holds the property"() {
+        when:
+        def distribution = calculator.calculate(sender, [sender] as String[], [100] as long[], 10)
+
+        then:
+        distribution.receiverCount == 0
+        distribution.fee == 0
+    }
+
+    def "shares are exact when the product of holding and amount exceeds 64 bits"() {
+        expect:
+        StoCalculator.share(holding, amount, total) == expected
+
+        where:
+        holding              | amount              | total                | expected
+        3000000000000000000L | 9000000000000000000L | 9000000000000000000L | 3000000000000000000L
+        1L                   | 9000000000000000000L | 7L                   | 1285714285714285715L
+        4611686018427387904L | 4611686018427387905L | 9223372036854775807L | 2305843009213693953L
+    }
+
+    def "distributions are computed from a consensus snapshot"() {
+        setup:
+        def entries = new TreeMap<String, ConsensusEntry>([
+                (sender): new ConsensusEntry(balance: 90.0, reserved: 0.0),
+                a       : new ConsensusEntry(balance: 2.0, reserved: 0.0),
+                b       : new ConsensusEntry(balance: 1.0, reserved: 2.0)])
+        def snapshot = new ConsensusSnapshot(MSC, 1, "test", null, entries)
+
+        when:
+        def distribution = new ConsensusStoCalculator().calculate(snapshot, sender, 0.5, PropertyType.DIVISIBLE)
+
+        then:
+        distribution.toMap() == [b: 30000000L, a: 20000000L]
+        distribution.fee == 2
+    }
+}
@@ -0,0 +1,83 @@
+package foundation.omni.tx
+
+import com.google.bitcoin.core.ECKey
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for Class B and Class C encoding
+ */
+class ClassEncoderSpec extends Specification {
+    static final String sender = "1GtCqbyqTzbvtBWMMRgkwkxenPJNzz1TY4"
+    static final byte[] senderPubKey = new ECKey().pubKey
+
+    def "Class C payload round-trips"() {
+        setup:
+        def payload = OmniPayloads.simpleSend(MSC, 100)
+
+        when:
+        def script = ClassCEncoder.encode(payload)
+
+        then:
+        ClassCEncoder.decode(script) == payload
+    }
+
+    def "Class C rejects oversized payloads"() {
+        when:
+        ClassCEncoder.encode(new byte[ClassCEncoder.MAX_PAYLOAD_SIZE + 1])
+
+        then:
+        IllegalArgumentException e = thrown()
+    }
+
+    def "Class B payload round-trips"() {
+        setup:
+        def payload = new byte[length]
+        new Random(length).nextBytes(payload)
+
+        when:
+        def scripts = ClassBEncoder.encode(sender, senderPubKey, payload)
+        def decoded = ClassBEncoder.decode(sender, scripts)
+
+        then: "one output per two packets"
+        scripts.size() == outputs
+
+        and: "the payload is recovered, zero padded to whole packets"
+        decoded.length % ClassBEncoder.DATA_PER_PACKET == 0
+        decoded[0..<length] == payload.toList()
+
+        where:
+        length | outputs
+        16     | 1
+        30     | 1
+        31     | 1
+        60     | 1
+        61     | 2
+        200    | 4
+    }
+
+    def "Class B keys are valid curve points"() {
+        when:
+        def scripts = ClassBEncoder.encode(sender, senderPubKey, OmniPayloads.simpleSend(MSC, 1))
+
+        then:
+        scripts.every { script -> ClassBEncoder.multisigKeys(script.program).every { ClassBEncoder.isOnCurve(it) } }
+    }
+
+    def "obfuscation hash chain matches the Omni Protocol spec"() {
+        when:
+        def hashes = ClassBEncoder.obfuscationHashes("1CdighsfdfRcj4ytQSskZgQXbUEamuMUNF", 1)
+
+        then:
+        hashes[1].encodeHex().toString() == "1d9a3de5c2e22bf89a1e41e6fedab54582f8a0c3ae14394a59366293dd130c59"
+    }
+
+    def "secp256k1 generator point is on the curve"() {
+        setup:
+        byte[] g = ("02" + "79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798").decodeHex()
+
+        expect:
+        ClassBEncoder.isOnCurve(g)
+    }
+}
@@ -0,0 +1,36 @@
+package foundation.omni.tx
+
+import com.msgilligan.bitcoin.rpc.BitcoinClient
+import spock.lang.Specification
+
+import static foundation.omni.CurrencyID.*
+
+/**
+ * Test Specification for OmniPayloads
+ */
+class OmniPayloadsSpec extends Specification {
+
+    def "simple send payload matches a valid reference payload"() {
+        expect:
+        BitcoinClient.byteArrayToHexString(OmniPayloads.simpleSend(MSC, 1)) == "00000000000000010000000000000001"
+        BitcoinClient.byteArrayToHexString(OmniPayloads.simpleSend(TMSC, 0xcafebabeL)) == "000000000000000200000000cafebabe"
+    }
+
+    def "send to owners payload matches a valid reference payload"() {
+        expect:
+        BitcoinClient.byteArrayToHexString(OmniPayloads.sendToOwners(valueOf(6), 100000000000L)) == "0000000300000006000000174876e800"
+    }
+
+    def "currency IDs in the test ecosystem are encoded unsigned"() {
+        expect:
+        BitcoinClient.byteArrayToHexString(OmniPayloads.simpleSend(valueOf(2147483651L), 1)) == "00000000800000030000000000000001"
+    }
+
+    def "amount must be positive"() {
+        when:
+        OmniPayloads.simpleSend(MSC, 0)
+
+        then:
+        IllegalArgumentException e = thrown()
+    }
+}
@@ -0,0 +1,84 @@
+package foundation.omni.tx
+
+import com.google.bitcoin.core.Address
+import com.google.bitcoin.core.ECKey
+import com.google.bitcoin.core.Sha256Hash
+import com.google.bitcoin.core.Transaction
+import com.google.bitcoin.core.TransactionInput
+import com.google.bitcoin.core.TransactionOutPoint
+import com.google.bitcoin.params.RegTestParams
+import com.google.bitcoin.script.ScriptBuilder
+import com.msgilligan.bitcoin.rpc.BitcoinClient
+import spock.lang.Specification
+
+/**
+ * Test Specification for local transaction signing
+ */
+class TransactionSignerSpec extends Specification {
+    static final params = RegTestParams.get()
+
+    def key = new ECKey()
+    def keySource = new MemoryKeySource()
+    def signer = new TransactionSigner(keySource)
+
+    def setup() {
+        keySource.addKey(key)
+    }
+
+    def "signed pay-to-pubkey-hash inputs pass script verification"() {
+        setup:
+        def prevout = output(1, key.toAddress(params).hash160)
+        def tx = spend(prevout)
+
+        when:
+        def hex = signer.sign(tx, [prevout])
+
+        then:
+        hex != null
+        tx.inputs[0].scriptSig.correctlySpends(tx, 0, ScriptBuilder.createOutputScript(key.toAddress(params)), true)
+    }
+
+    def "a batch is signed in order"() {
+        setup:
+        def prevouts = (1..20).collect { output(it, key.toAddress(params).hash160) }
+        def txs = prevouts.collect { spend(it) }
+
+        when:
+        def hexes = signer.signAll(txs, prevouts)
+
+        then: "each hex is the serialization of the transaction at the same position"
+        hexes.size() == 20
+        (0..<20).every { i -> hexes[i] == BitcoinClient.transactionToHex(txs[i]) }
+        hexes.toSet().size() == 20
+
+        and: "every transaction is signed"
+        txs.each { tx ->
+            tx.inputs[0].scriptSig.correctlySpends(tx, 0, ScriptBuilder.createOutputScript(key.toAddress(params)), true)
+        }
+    }
+
+    def "an input without a key is rejected"() {
+        setup:
+        def prevout = output(1, new ECKey().pubKeyHash)
+
+        when:
+        signer.sign(spend(prevout), [prevout])
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private static SpendableOutput output(int n, byte[] pubKeyHash) {
+        def txid = Sha256Hash.create([n] as byte[])
+        def script = ScriptBuilder.createOutputScript(new Address(params, pubKeyHash))
+        return new SpendableOutput(txid, 0, BigInteger.valueOf(100000), script.program)
+    }
+
+    private static Transaction spend(SpendableOutput prevout) {
+        def tx = new Transaction(params)
+        tx.addInput(new TransactionInput(params, tx, new byte[0],
+                new TransactionOutPoint(params, prevout.vout, prevout.txid)))
+        tx.addOutput(BigInteger.valueOf(90000), new ECKey().toAddress(params))
+        return tx
+    }
+}